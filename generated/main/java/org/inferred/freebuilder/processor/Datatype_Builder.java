@@ -17,6 +17,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Spliterator;
 import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 import java.util.function.UnaryOperator;
 import java.util.stream.BaseStream;
 import javax.annotation.Generated;
@@ -55,7 +56,13 @@ abstract class Datatype_Builder {
     PARTIAL_TYPE("partialType"),
     PROPERTY_ENUM("propertyEnum"),
     BUILDER_SERIALIZABLE("builderSerializable"),
+    COMPACT_LAYOUT("compactLayout"),
+    SPARSE_LAYOUT("sparseLayout"),
+    TO_STRING_LIMIT("toStringLimit"),
     HAS_TO_BUILDER_METHOD("hasToBuilderMethod"),
+    HAS_STATIC_FACTORY_METHOD("hasStaticFactoryMethod"),
+    HAS_OVERRIDDEN_BUILD_METHOD("hasOverriddenBuildMethod"),
+    HAS_INTERN_METHOD("hasInternMethod"),
     VALUE_TYPE_VISIBILITY("valueTypeVisibility"),
     ;
 
@@ -90,9 +97,18 @@ abstract class Datatype_Builder {
   private final LinkedHashMap<StandardMethod, UnderrideLevel> standardMethodUnderrides =
       new LinkedHashMap<>();
   private boolean builderSerializable;
+  private boolean compactLayout;
+  private boolean sparseLayout;
+  private int toStringLimit;
   private boolean hasToBuilderMethod;
+  private boolean hasStaticFactoryMethod;
+  private boolean hasOverriddenBuildMethod;
+  private boolean hasInternMethod;
   private List<Excerpt> generatedBuilderAnnotations = ImmutableList.of();
   private List<Excerpt> valueTypeAnnotations = ImmutableList.of();
+  private List<Excerpt> valueTypeMembers = ImmutableList.of();
+  private List<Excerpt> partialTypeMembers = ImmutableList.of();
+  private List<Excerpt> generatedBuilderMembers = ImmutableList.of();
   private Datatype.Visibility valueTypeVisibility;
   private List<Excerpt> nestedClasses = ImmutableList.of();
   private final EnumSet<Property> _unsetProperties = EnumSet.allOf(Property.class);
@@ -626,6 +642,111 @@ abstract class Datatype_Builder {
     return builderSerializable;
   }
 
+  /**
+   * Sets the value to be returned by {@link Datatype#isCompactLayout()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Datatype.Builder setCompactLayout(boolean compactLayout) {
+    this.compactLayout = compactLayout;
+    _unsetProperties.remove(Property.COMPACT_LAYOUT);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Replaces the value to be returned by {@link Datatype#isCompactLayout()} by applying
+   * {@code mapper} to it and using the result.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mapper} is null or returns null
+   * @throws IllegalStateException if the field has not been set
+   */
+  public Datatype.Builder mapCompactLayout(UnaryOperator<Boolean> mapper) {
+    Objects.requireNonNull(mapper);
+    return setCompactLayout(mapper.apply(isCompactLayout()));
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Datatype#isCompactLayout()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean isCompactLayout() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Property.COMPACT_LAYOUT), "compactLayout not set");
+    return compactLayout;
+  }
+
+  /**
+   * Sets the value to be returned by {@link Datatype#isSparseLayout()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Datatype.Builder setSparseLayout(boolean sparseLayout) {
+    this.sparseLayout = sparseLayout;
+    _unsetProperties.remove(Property.SPARSE_LAYOUT);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Replaces the value to be returned by {@link Datatype#isSparseLayout()} by applying
+   * {@code mapper} to it and using the result.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mapper} is null or returns null
+   * @throws IllegalStateException if the field has not been set
+   */
+  public Datatype.Builder mapSparseLayout(UnaryOperator<Boolean> mapper) {
+    Objects.requireNonNull(mapper);
+    return setSparseLayout(mapper.apply(isSparseLayout()));
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Datatype#isSparseLayout()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean isSparseLayout() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Property.SPARSE_LAYOUT), "sparseLayout not set");
+    return sparseLayout;
+  }
+
+  /**
+   * Sets the value to be returned by {@link Datatype#getToStringLimit()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Datatype.Builder setToStringLimit(int toStringLimit) {
+    this.toStringLimit = toStringLimit;
+    _unsetProperties.remove(Property.TO_STRING_LIMIT);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Replaces the value to be returned by {@link Datatype#getToStringLimit()} by applying
+   * {@code mapper} to it and using the result.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mapper} is null or returns null
+   * @throws IllegalStateException if the field has not been set
+   */
+  public Datatype.Builder mapToStringLimit(IntUnaryOperator mapper) {
+    Objects.requireNonNull(mapper);
+    return setToStringLimit(mapper.applyAsInt(getToStringLimit()));
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Datatype#getToStringLimit()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public int getToStringLimit() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Property.TO_STRING_LIMIT), "toStringLimit not set");
+    return toStringLimit;
+  }
+
   /**
    * Sets the value to be returned by {@link Datatype#getHasToBuilderMethod()}.
    *
@@ -661,6 +782,111 @@ abstract class Datatype_Builder {
     return hasToBuilderMethod;
   }
 
+  /**
+   * Sets the value to be returned by {@link Datatype#getHasStaticFactoryMethod()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Datatype.Builder setHasStaticFactoryMethod(boolean hasStaticFactoryMethod) {
+    this.hasStaticFactoryMethod = hasStaticFactoryMethod;
+    _unsetProperties.remove(Property.HAS_STATIC_FACTORY_METHOD);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Replaces the value to be returned by {@link Datatype#getHasStaticFactoryMethod()} by applying
+   * {@code mapper} to it and using the result.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mapper} is null or returns null
+   * @throws IllegalStateException if the field has not been set
+   */
+  public Datatype.Builder mapHasStaticFactoryMethod(UnaryOperator<Boolean> mapper) {
+    Objects.requireNonNull(mapper);
+    return setHasStaticFactoryMethod(mapper.apply(getHasStaticFactoryMethod()));
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Datatype#getHasStaticFactoryMethod()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean getHasStaticFactoryMethod() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Property.HAS_STATIC_FACTORY_METHOD), "hasStaticFactoryMethod not set");
+    return hasStaticFactoryMethod;
+  }
+
+  /**
+   * Sets the value to be returned by {@link Datatype#getHasOverriddenBuildMethod()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Datatype.Builder setHasOverriddenBuildMethod(boolean hasOverriddenBuildMethod) {
+    this.hasOverriddenBuildMethod = hasOverriddenBuildMethod;
+    _unsetProperties.remove(Property.HAS_OVERRIDDEN_BUILD_METHOD);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Replaces the value to be returned by {@link Datatype#getHasOverriddenBuildMethod()} by applying
+   * {@code mapper} to it and using the result.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mapper} is null or returns null
+   * @throws IllegalStateException if the field has not been set
+   */
+  public Datatype.Builder mapHasOverriddenBuildMethod(UnaryOperator<Boolean> mapper) {
+    Objects.requireNonNull(mapper);
+    return setHasOverriddenBuildMethod(mapper.apply(getHasOverriddenBuildMethod()));
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Datatype#getHasOverriddenBuildMethod()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean getHasOverriddenBuildMethod() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Property.HAS_OVERRIDDEN_BUILD_METHOD), "hasOverriddenBuildMethod not set");
+    return hasOverriddenBuildMethod;
+  }
+
+  /**
+   * Sets the value to be returned by {@link Datatype#getHasInternMethod()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Datatype.Builder setHasInternMethod(boolean hasInternMethod) {
+    this.hasInternMethod = hasInternMethod;
+    _unsetProperties.remove(Property.HAS_INTERN_METHOD);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Replaces the value to be returned by {@link Datatype#getHasInternMethod()} by applying
+   * {@code mapper} to it and using the result.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mapper} is null or returns null
+   * @throws IllegalStateException if the field has not been set
+   */
+  public Datatype.Builder mapHasInternMethod(UnaryOperator<Boolean> mapper) {
+    Objects.requireNonNull(mapper);
+    return setHasInternMethod(mapper.apply(getHasInternMethod()));
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Datatype#getHasInternMethod()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean getHasInternMethod() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Property.HAS_INTERN_METHOD), "hasInternMethod not set");
+    return hasInternMethod;
+  }
+
   /**
    * Adds {@code element} to the list to be returned from {@link
    * Datatype#getGeneratedBuilderAnnotations()}.
@@ -895,6 +1121,351 @@ abstract class Datatype_Builder {
     return Collections.unmodifiableList(valueTypeAnnotations);
   }
 
+  /**
+   * Adds {@code element} to the list to be returned from {@link
+   * Datatype#getValueTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code element} is null
+   */
+  public Datatype.Builder addValueTypeMembers(Excerpt element) {
+    if (valueTypeMembers instanceof ImmutableList) {
+      valueTypeMembers = new ArrayList<>(valueTypeMembers);
+    }
+    valueTypeMembers.add(Objects.requireNonNull(element));
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getValueTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addValueTypeMembers(Excerpt... elements) {
+    return addAllValueTypeMembers(Arrays.asList(elements));
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getValueTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addAllValueTypeMembers(Spliterator<? extends Excerpt> elements) {
+    if ((elements.characteristics() & Spliterator.SIZED) != 0) {
+      long elementsSize = elements.estimateSize();
+      if (elementsSize > 0 && elementsSize <= Integer.MAX_VALUE) {
+        if (valueTypeMembers instanceof ImmutableList) {
+          valueTypeMembers = new ArrayList<>(valueTypeMembers);
+        }
+        ((ArrayList<?>) valueTypeMembers)
+            .ensureCapacity(valueTypeMembers.size() + (int) elementsSize);
+      }
+    }
+    elements.forEachRemaining(this::addValueTypeMembers);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getValueTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addAllValueTypeMembers(BaseStream<? extends Excerpt, ?> elements) {
+    return addAllValueTypeMembers(elements.spliterator());
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getValueTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addAllValueTypeMembers(Iterable<? extends Excerpt> elements) {
+    return addAllValueTypeMembers(elements.spliterator());
+  }
+
+  /**
+   * Applies {@code mutator} to the list to be returned from {@link
+   * Datatype#getValueTypeMembers()}.
+   *
+   * <p>This method mutates the list in-place. {@code mutator} is a void consumer, so any value
+   * returned from a lambda will be ignored. Take care not to call pure functions, like {@link
+   * Collection#stream()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mutator} is null
+   */
+  public Datatype.Builder mutateValueTypeMembers(Consumer<? super List<Excerpt>> mutator) {
+    if (valueTypeMembers instanceof ImmutableList) {
+      valueTypeMembers = new ArrayList<>(valueTypeMembers);
+    }
+    // If addValueTypeMembers is overridden, this method will be updated to delegate to it
+    mutator.accept(valueTypeMembers);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Clears the list to be returned from {@link Datatype#getValueTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Datatype.Builder clearValueTypeMembers() {
+    if (valueTypeMembers instanceof ImmutableList) {
+      valueTypeMembers = ImmutableList.of();
+    } else {
+      valueTypeMembers.clear();
+    }
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Returns an unmodifiable view of the list that will be returned by {@link
+   * Datatype#getValueTypeMembers()}. Changes to this builder will be reflected in the view.
+   */
+  public List<Excerpt> getValueTypeMembers() {
+    if (valueTypeMembers instanceof ImmutableList) {
+      valueTypeMembers = new ArrayList<>(valueTypeMembers);
+    }
+    return Collections.unmodifiableList(valueTypeMembers);
+  }
+
+  /**
+   * Adds {@code element} to the list to be returned from {@link
+   * Datatype#getPartialTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code element} is null
+   */
+  public Datatype.Builder addPartialTypeMembers(Excerpt element) {
+    if (partialTypeMembers instanceof ImmutableList) {
+      partialTypeMembers = new ArrayList<>(partialTypeMembers);
+    }
+    partialTypeMembers.add(Objects.requireNonNull(element));
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getPartialTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addPartialTypeMembers(Excerpt... elements) {
+    return addAllPartialTypeMembers(Arrays.asList(elements));
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getPartialTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addAllPartialTypeMembers(Spliterator<? extends Excerpt> elements) {
+    if ((elements.characteristics() & Spliterator.SIZED) != 0) {
+      long elementsSize = elements.estimateSize();
+      if (elementsSize > 0 && elementsSize <= Integer.MAX_VALUE) {
+        if (partialTypeMembers instanceof ImmutableList) {
+          partialTypeMembers = new ArrayList<>(partialTypeMembers);
+        }
+        ((ArrayList<?>) partialTypeMembers)
+            .ensureCapacity(partialTypeMembers.size() + (int) elementsSize);
+      }
+    }
+    elements.forEachRemaining(this::addPartialTypeMembers);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getPartialTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addAllPartialTypeMembers(BaseStream<? extends Excerpt, ?> elements) {
+    return addAllPartialTypeMembers(elements.spliterator());
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getPartialTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addAllPartialTypeMembers(Iterable<? extends Excerpt> elements) {
+    return addAllPartialTypeMembers(elements.spliterator());
+  }
+
+  /**
+   * Applies {@code mutator} to the list to be returned from {@link
+   * Datatype#getPartialTypeMembers()}.
+   *
+   * <p>This method mutates the list in-place. {@code mutator} is a void consumer, so any value
+   * returned from a lambda will be ignored. Take care not to call pure functions, like {@link
+   * Collection#stream()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mutator} is null
+   */
+  public Datatype.Builder mutatePartialTypeMembers(Consumer<? super List<Excerpt>> mutator) {
+    if (partialTypeMembers instanceof ImmutableList) {
+      partialTypeMembers = new ArrayList<>(partialTypeMembers);
+    }
+    // If addPartialTypeMembers is overridden, this method will be updated to delegate to it
+    mutator.accept(partialTypeMembers);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Clears the list to be returned from {@link Datatype#getPartialTypeMembers()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Datatype.Builder clearPartialTypeMembers() {
+    if (partialTypeMembers instanceof ImmutableList) {
+      partialTypeMembers = ImmutableList.of();
+    } else {
+      partialTypeMembers.clear();
+    }
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Returns an unmodifiable view of the list that will be returned by {@link
+   * Datatype#getPartialTypeMembers()}. Changes to this builder will be reflected in the view.
+   */
+  public List<Excerpt> getPartialTypeMembers() {
+    if (partialTypeMembers instanceof ImmutableList) {
+      partialTypeMembers = new ArrayList<>(partialTypeMembers);
+    }
+    return Collections.unmodifiableList(partialTypeMembers);
+  }
+
+  /**
+   * Adds {@code element} to the list to be returned from {@link
+   * Datatype#getGeneratedBuilderMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code element} is null
+   */
+  public Datatype.Builder addGeneratedBuilderMembers(Excerpt element) {
+    if (generatedBuilderMembers instanceof ImmutableList) {
+      generatedBuilderMembers = new ArrayList<>(generatedBuilderMembers);
+    }
+    generatedBuilderMembers.add(Objects.requireNonNull(element));
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getGeneratedBuilderMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addGeneratedBuilderMembers(Excerpt... elements) {
+    return addAllGeneratedBuilderMembers(Arrays.asList(elements));
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getGeneratedBuilderMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addAllGeneratedBuilderMembers(Spliterator<? extends Excerpt> elements) {
+    if ((elements.characteristics() & Spliterator.SIZED) != 0) {
+      long elementsSize = elements.estimateSize();
+      if (elementsSize > 0 && elementsSize <= Integer.MAX_VALUE) {
+        if (generatedBuilderMembers instanceof ImmutableList) {
+          generatedBuilderMembers = new ArrayList<>(generatedBuilderMembers);
+        }
+        ((ArrayList<?>) generatedBuilderMembers)
+            .ensureCapacity(generatedBuilderMembers.size() + (int) elementsSize);
+      }
+    }
+    elements.forEachRemaining(this::addGeneratedBuilderMembers);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getGeneratedBuilderMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addAllGeneratedBuilderMembers(BaseStream<? extends Excerpt, ?> elements) {
+    return addAllGeneratedBuilderMembers(elements.spliterator());
+  }
+
+  /**
+   * Adds each element of {@code elements} to the list to be returned from {@link
+   * Datatype#getGeneratedBuilderMembers()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a null element
+   */
+  public Datatype.Builder addAllGeneratedBuilderMembers(Iterable<? extends Excerpt> elements) {
+    return addAllGeneratedBuilderMembers(elements.spliterator());
+  }
+
+  /**
+   * Applies {@code mutator} to the list to be returned from {@link
+   * Datatype#getGeneratedBuilderMembers()}.
+   *
+   * <p>This method mutates the list in-place. {@code mutator} is a void consumer, so any value
+   * returned from a lambda will be ignored. Take care not to call pure functions, like {@link
+   * Collection#stream()}.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mutator} is null
+   */
+  public Datatype.Builder mutateGeneratedBuilderMembers(Consumer<? super List<Excerpt>> mutator) {
+    if (generatedBuilderMembers instanceof ImmutableList) {
+      generatedBuilderMembers = new ArrayList<>(generatedBuilderMembers);
+    }
+    // If addGeneratedBuilderMembers is overridden, this method will be updated to delegate to it
+    mutator.accept(generatedBuilderMembers);
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Clears the list to be returned from {@link Datatype#getGeneratedBuilderMembers()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Datatype.Builder clearGeneratedBuilderMembers() {
+    if (generatedBuilderMembers instanceof ImmutableList) {
+      generatedBuilderMembers = ImmutableList.of();
+    } else {
+      generatedBuilderMembers.clear();
+    }
+    return (Datatype.Builder) this;
+  }
+
+  /**
+   * Returns an unmodifiable view of the list that will be returned by {@link
+   * Datatype#getGeneratedBuilderMembers()}. Changes to this builder will be reflected in the view.
+   */
+  public List<Excerpt> getGeneratedBuilderMembers() {
+    if (generatedBuilderMembers instanceof ImmutableList) {
+      generatedBuilderMembers = new ArrayList<>(generatedBuilderMembers);
+    }
+    return Collections.unmodifiableList(generatedBuilderMembers);
+  }
+
   /**
    * Sets the value to be returned by {@link Datatype#getValueTypeVisibility()}.
    *
@@ -1089,10 +1660,34 @@ abstract class Datatype_Builder {
         || value.isBuilderSerializable() != defaults.isBuilderSerializable()) {
       setBuilderSerializable(value.isBuilderSerializable());
     }
+    if (defaults._unsetProperties.contains(Property.COMPACT_LAYOUT)
+        || value.isCompactLayout() != defaults.isCompactLayout()) {
+      setCompactLayout(value.isCompactLayout());
+    }
+    if (defaults._unsetProperties.contains(Property.SPARSE_LAYOUT)
+        || value.isSparseLayout() != defaults.isSparseLayout()) {
+      setSparseLayout(value.isSparseLayout());
+    }
+    if (defaults._unsetProperties.contains(Property.TO_STRING_LIMIT)
+        || value.getToStringLimit() != defaults.getToStringLimit()) {
+      setToStringLimit(value.getToStringLimit());
+    }
     if (defaults._unsetProperties.contains(Property.HAS_TO_BUILDER_METHOD)
         || value.getHasToBuilderMethod() != defaults.getHasToBuilderMethod()) {
       setHasToBuilderMethod(value.getHasToBuilderMethod());
     }
+    if (defaults._unsetProperties.contains(Property.HAS_STATIC_FACTORY_METHOD)
+        || value.getHasStaticFactoryMethod() != defaults.getHasStaticFactoryMethod()) {
+      setHasStaticFactoryMethod(value.getHasStaticFactoryMethod());
+    }
+    if (defaults._unsetProperties.contains(Property.HAS_OVERRIDDEN_BUILD_METHOD)
+        || value.getHasOverriddenBuildMethod() != defaults.getHasOverriddenBuildMethod()) {
+      setHasOverriddenBuildMethod(value.getHasOverriddenBuildMethod());
+    }
+    if (defaults._unsetProperties.contains(Property.HAS_INTERN_METHOD)
+        || value.getHasInternMethod() != defaults.getHasInternMethod()) {
+      setHasInternMethod(value.getHasInternMethod());
+    }
     if (value instanceof Value && generatedBuilderAnnotations == ImmutableList.<Excerpt>of()) {
       generatedBuilderAnnotations = ImmutableList.copyOf(value.getGeneratedBuilderAnnotations());
     } else {
@@ -1103,6 +1698,21 @@ abstract class Datatype_Builder {
     } else {
       addAllValueTypeAnnotations(value.getValueTypeAnnotations());
     }
+    if (value instanceof Value && valueTypeMembers == ImmutableList.<Excerpt>of()) {
+      valueTypeMembers = ImmutableList.copyOf(value.getValueTypeMembers());
+    } else {
+      addAllValueTypeMembers(value.getValueTypeMembers());
+    }
+    if (value instanceof Value && partialTypeMembers == ImmutableList.<Excerpt>of()) {
+      partialTypeMembers = ImmutableList.copyOf(value.getPartialTypeMembers());
+    } else {
+      addAllPartialTypeMembers(value.getPartialTypeMembers());
+    }
+    if (value instanceof Value && generatedBuilderMembers == ImmutableList.<Excerpt>of()) {
+      generatedBuilderMembers = ImmutableList.copyOf(value.getGeneratedBuilderMembers());
+    } else {
+      addAllGeneratedBuilderMembers(value.getGeneratedBuilderMembers());
+    }
     if (defaults._unsetProperties.contains(Property.VALUE_TYPE_VISIBILITY)
         || !Objects.equals(value.getValueTypeVisibility(), defaults.getValueTypeVisibility())) {
       setValueTypeVisibility(value.getValueTypeVisibility());
@@ -1173,13 +1783,46 @@ abstract class Datatype_Builder {
             || template.isBuilderSerializable() != defaults.isBuilderSerializable())) {
       setBuilderSerializable(template.isBuilderSerializable());
     }
+    if (!base._unsetProperties.contains(Property.COMPACT_LAYOUT)
+        && (defaults._unsetProperties.contains(Property.COMPACT_LAYOUT)
+            || template.isCompactLayout() != defaults.isCompactLayout())) {
+      setCompactLayout(template.isCompactLayout());
+    }
+    if (!base._unsetProperties.contains(Property.SPARSE_LAYOUT)
+        && (defaults._unsetProperties.contains(Property.SPARSE_LAYOUT)
+            || template.isSparseLayout() != defaults.isSparseLayout())) {
+      setSparseLayout(template.isSparseLayout());
+    }
+    if (!base._unsetProperties.contains(Property.TO_STRING_LIMIT)
+        && (defaults._unsetProperties.contains(Property.TO_STRING_LIMIT)
+            || template.getToStringLimit() != defaults.getToStringLimit())) {
+      setToStringLimit(template.getToStringLimit());
+    }
     if (!base._unsetProperties.contains(Property.HAS_TO_BUILDER_METHOD)
         && (defaults._unsetProperties.contains(Property.HAS_TO_BUILDER_METHOD)
             || template.getHasToBuilderMethod() != defaults.getHasToBuilderMethod())) {
       setHasToBuilderMethod(template.getHasToBuilderMethod());
     }
+    if (!base._unsetProperties.contains(Property.HAS_STATIC_FACTORY_METHOD)
+        && (defaults._unsetProperties.contains(Property.HAS_STATIC_FACTORY_METHOD)
+            || template.getHasStaticFactoryMethod() != defaults.getHasStaticFactoryMethod())) {
+      setHasStaticFactoryMethod(template.getHasStaticFactoryMethod());
+    }
+    if (!base._unsetProperties.contains(Property.HAS_OVERRIDDEN_BUILD_METHOD)
+        && (defaults._unsetProperties.contains(Property.HAS_OVERRIDDEN_BUILD_METHOD)
+            || template.getHasOverriddenBuildMethod() != defaults.getHasOverriddenBuildMethod())) {
+      setHasOverriddenBuildMethod(template.getHasOverriddenBuildMethod());
+    }
+    if (!base._unsetProperties.contains(Property.HAS_INTERN_METHOD)
+        && (defaults._unsetProperties.contains(Property.HAS_INTERN_METHOD)
+            || template.getHasInternMethod() != defaults.getHasInternMethod())) {
+      setHasInternMethod(template.getHasInternMethod());
+    }
     addAllGeneratedBuilderAnnotations(base.generatedBuilderAnnotations);
     addAllValueTypeAnnotations(base.valueTypeAnnotations);
+    addAllValueTypeMembers(base.valueTypeMembers);
+    addAllPartialTypeMembers(base.partialTypeMembers);
+    addAllGeneratedBuilderMembers(base.generatedBuilderMembers);
     if (!base._unsetProperties.contains(Property.VALUE_TYPE_VISIBILITY)
         && (defaults._unsetProperties.contains(Property.VALUE_TYPE_VISIBILITY)
             || !Objects.equals(
@@ -1209,9 +1852,18 @@ abstract class Datatype_Builder {
     propertyEnum = defaults.propertyEnum;
     standardMethodUnderrides.clear();
     builderSerializable = defaults.builderSerializable;
+    compactLayout = defaults.compactLayout;
+    sparseLayout = defaults.sparseLayout;
+    toStringLimit = defaults.toStringLimit;
     hasToBuilderMethod = defaults.hasToBuilderMethod;
+    hasStaticFactoryMethod = defaults.hasStaticFactoryMethod;
+    hasOverriddenBuildMethod = defaults.hasOverriddenBuildMethod;
+    hasInternMethod = defaults.hasInternMethod;
     clearGeneratedBuilderAnnotations();
     clearValueTypeAnnotations();
+    clearValueTypeMembers();
+    clearPartialTypeMembers();
+    clearGeneratedBuilderMembers();
     valueTypeVisibility = defaults.valueTypeVisibility;
     clearNestedClasses();
     _unsetProperties.clear();
@@ -1270,9 +1922,18 @@ abstract class Datatype_Builder {
     private final TypeClass propertyEnum;
     private final ImmutableMap<StandardMethod, UnderrideLevel> standardMethodUnderrides;
     private final boolean builderSerializable;
+    private final boolean compactLayout;
+    private final boolean sparseLayout;
+    private final int toStringLimit;
     private final boolean hasToBuilderMethod;
+    private final boolean hasStaticFactoryMethod;
+    private final boolean hasOverriddenBuildMethod;
+    private final boolean hasInternMethod;
     private final ImmutableList<Excerpt> generatedBuilderAnnotations;
     private final ImmutableList<Excerpt> valueTypeAnnotations;
+    private final ImmutableList<Excerpt> valueTypeMembers;
+    private final ImmutableList<Excerpt> partialTypeMembers;
+    private final ImmutableList<Excerpt> generatedBuilderMembers;
     private final Visibility valueTypeVisibility;
     private final ImmutableList<Excerpt> nestedClasses;
 
@@ -1289,9 +1950,18 @@ abstract class Datatype_Builder {
       this.propertyEnum = builder.propertyEnum;
       this.standardMethodUnderrides = ImmutableMap.copyOf(builder.standardMethodUnderrides);
       this.builderSerializable = builder.builderSerializable;
+      this.compactLayout = builder.compactLayout;
+      this.sparseLayout = builder.sparseLayout;
+      this.toStringLimit = builder.toStringLimit;
       this.hasToBuilderMethod = builder.hasToBuilderMethod;
+      this.hasStaticFactoryMethod = builder.hasStaticFactoryMethod;
+      this.hasOverriddenBuildMethod = builder.hasOverriddenBuildMethod;
+      this.hasInternMethod = builder.hasInternMethod;
       this.generatedBuilderAnnotations = ImmutableList.copyOf(builder.generatedBuilderAnnotations);
       this.valueTypeAnnotations = ImmutableList.copyOf(builder.valueTypeAnnotations);
+      this.valueTypeMembers = ImmutableList.copyOf(builder.valueTypeMembers);
+      this.partialTypeMembers = ImmutableList.copyOf(builder.partialTypeMembers);
+      this.generatedBuilderMembers = ImmutableList.copyOf(builder.generatedBuilderMembers);
       this.valueTypeVisibility = builder.valueTypeVisibility;
       this.nestedClasses = ImmutableList.copyOf(builder.nestedClasses);
     }
@@ -1356,11 +2026,41 @@ abstract class Datatype_Builder {
       return builderSerializable;
     }
 
+    @Override
+    public boolean isCompactLayout() {
+      return compactLayout;
+    }
+
+    @Override
+    public boolean isSparseLayout() {
+      return sparseLayout;
+    }
+
+    @Override
+    public int getToStringLimit() {
+      return toStringLimit;
+    }
+
     @Override
     public boolean getHasToBuilderMethod() {
       return hasToBuilderMethod;
     }
 
+    @Override
+    public boolean getHasStaticFactoryMethod() {
+      return hasStaticFactoryMethod;
+    }
+
+    @Override
+    public boolean getHasOverriddenBuildMethod() {
+      return hasOverriddenBuildMethod;
+    }
+
+    @Override
+    public boolean getHasInternMethod() {
+      return hasInternMethod;
+    }
+
     @Override
     public ImmutableList<Excerpt> getGeneratedBuilderAnnotations() {
       return generatedBuilderAnnotations;
@@ -1371,6 +2071,21 @@ abstract class Datatype_Builder {
       return valueTypeAnnotations;
     }
 
+    @Override
+    public ImmutableList<Excerpt> getValueTypeMembers() {
+      return valueTypeMembers;
+    }
+
+    @Override
+    public ImmutableList<Excerpt> getPartialTypeMembers() {
+      return partialTypeMembers;
+    }
+
+    @Override
+    public ImmutableList<Excerpt> getGeneratedBuilderMembers() {
+      return generatedBuilderMembers;
+    }
+
     @Override
     public Visibility getValueTypeVisibility() {
       return valueTypeVisibility;
@@ -1396,9 +2111,18 @@ abstract class Datatype_Builder {
       builder.propertyEnum = propertyEnum;
       builder.standardMethodUnderrides.putAll(standardMethodUnderrides);
       builder.builderSerializable = builderSerializable;
+      builder.compactLayout = compactLayout;
+      builder.sparseLayout = sparseLayout;
+      builder.toStringLimit = toStringLimit;
       builder.hasToBuilderMethod = hasToBuilderMethod;
+      builder.hasStaticFactoryMethod = hasStaticFactoryMethod;
+      builder.hasOverriddenBuildMethod = hasOverriddenBuildMethod;
+      builder.hasInternMethod = hasInternMethod;
       builder.generatedBuilderAnnotations = generatedBuilderAnnotations;
       builder.valueTypeAnnotations = valueTypeAnnotations;
+      builder.valueTypeMembers = valueTypeMembers;
+      builder.partialTypeMembers = partialTypeMembers;
+      builder.generatedBuilderMembers = generatedBuilderMembers;
       builder.valueTypeVisibility = valueTypeVisibility;
       builder.nestedClasses = nestedClasses;
       builder._unsetProperties.clear();
@@ -1423,9 +2147,18 @@ abstract class Datatype_Builder {
           && Objects.equals(propertyEnum, other.propertyEnum)
           && Objects.equals(standardMethodUnderrides, other.standardMethodUnderrides)
           && builderSerializable == other.builderSerializable
+          && compactLayout == other.compactLayout
+          && sparseLayout == other.sparseLayout
+          && toStringLimit == other.toStringLimit
           && hasToBuilderMethod == other.hasToBuilderMethod
+          && hasStaticFactoryMethod == other.hasStaticFactoryMethod
+          && hasOverriddenBuildMethod == other.hasOverriddenBuildMethod
+          && hasInternMethod == other.hasInternMethod
           && Objects.equals(generatedBuilderAnnotations, other.generatedBuilderAnnotations)
           && Objects.equals(valueTypeAnnotations, other.valueTypeAnnotations)
+          && Objects.equals(valueTypeMembers, other.valueTypeMembers)
+          && Objects.equals(partialTypeMembers, other.partialTypeMembers)
+          && Objects.equals(generatedBuilderMembers, other.generatedBuilderMembers)
           && Objects.equals(valueTypeVisibility, other.valueTypeVisibility)
           && Objects.equals(nestedClasses, other.nestedClasses);
     }
@@ -1445,9 +2178,18 @@ abstract class Datatype_Builder {
           propertyEnum,
           standardMethodUnderrides,
           builderSerializable,
+          compactLayout,
+          sparseLayout,
+          toStringLimit,
           hasToBuilderMethod,
+          hasStaticFactoryMethod,
+          hasOverriddenBuildMethod,
+          hasInternMethod,
           generatedBuilderAnnotations,
           valueTypeAnnotations,
+          valueTypeMembers,
+          partialTypeMembers,
+          generatedBuilderMembers,
           valueTypeVisibility,
           nestedClasses);
     }
@@ -1483,12 +2225,30 @@ abstract class Datatype_Builder {
           .append(standardMethodUnderrides)
           .append(", builderSerializable=")
           .append(builderSerializable)
+          .append(", compactLayout=")
+          .append(compactLayout)
+          .append(", sparseLayout=")
+          .append(sparseLayout)
+          .append(", toStringLimit=")
+          .append(toStringLimit)
           .append(", hasToBuilderMethod=")
           .append(hasToBuilderMethod)
+          .append(", hasStaticFactoryMethod=")
+          .append(hasStaticFactoryMethod)
+          .append(", hasOverriddenBuildMethod=")
+          .append(hasOverriddenBuildMethod)
+          .append(", hasInternMethod=")
+          .append(hasInternMethod)
           .append(", generatedBuilderAnnotations=")
           .append(generatedBuilderAnnotations)
           .append(", valueTypeAnnotations=")
           .append(valueTypeAnnotations)
+          .append(", valueTypeMembers=")
+          .append(valueTypeMembers)
+          .append(", partialTypeMembers=")
+          .append(partialTypeMembers)
+          .append(", generatedBuilderMembers=")
+          .append(generatedBuilderMembers)
           .append(", valueTypeVisibility=")
           .append(valueTypeVisibility)
           .append(", nestedClasses=")
@@ -1517,9 +2277,18 @@ abstract class Datatype_Builder {
     private final TypeClass propertyEnum;
     private final ImmutableMap<StandardMethod, UnderrideLevel> standardMethodUnderrides;
     private final boolean builderSerializable;
+    private final boolean compactLayout;
+    private final boolean sparseLayout;
+    private final int toStringLimit;
     private final boolean hasToBuilderMethod;
+    private final boolean hasStaticFactoryMethod;
+    private final boolean hasOverriddenBuildMethod;
+    private final boolean hasInternMethod;
     private final ImmutableList<Excerpt> generatedBuilderAnnotations;
     private final ImmutableList<Excerpt> valueTypeAnnotations;
+    private final ImmutableList<Excerpt> valueTypeMembers;
+    private final ImmutableList<Excerpt> partialTypeMembers;
+    private final ImmutableList<Excerpt> generatedBuilderMembers;
     private final Visibility valueTypeVisibility;
     private final ImmutableList<Excerpt> nestedClasses;
     private final EnumSet<Property> _unsetProperties;
@@ -1537,9 +2306,18 @@ abstract class Datatype_Builder {
       this.propertyEnum = builder.propertyEnum;
       this.standardMethodUnderrides = ImmutableMap.copyOf(builder.standardMethodUnderrides);
       this.builderSerializable = builder.builderSerializable;
+      this.compactLayout = builder.compactLayout;
+      this.sparseLayout = builder.sparseLayout;
+      this.toStringLimit = builder.toStringLimit;
       this.hasToBuilderMethod = builder.hasToBuilderMethod;
+      this.hasStaticFactoryMethod = builder.hasStaticFactoryMethod;
+      this.hasOverriddenBuildMethod = builder.hasOverriddenBuildMethod;
+      this.hasInternMethod = builder.hasInternMethod;
       this.generatedBuilderAnnotations = ImmutableList.copyOf(builder.generatedBuilderAnnotations);
       this.valueTypeAnnotations = ImmutableList.copyOf(builder.valueTypeAnnotations);
+      this.valueTypeMembers = ImmutableList.copyOf(builder.valueTypeMembers);
+      this.partialTypeMembers = ImmutableList.copyOf(builder.partialTypeMembers);
+      this.generatedBuilderMembers = ImmutableList.copyOf(builder.generatedBuilderMembers);
       this.valueTypeVisibility = builder.valueTypeVisibility;
       this.nestedClasses = ImmutableList.copyOf(builder.nestedClasses);
       this._unsetProperties = builder._unsetProperties.clone();
@@ -1632,6 +2410,30 @@ abstract class Datatype_Builder {
       return builderSerializable;
     }
 
+    @Override
+    public boolean isCompactLayout() {
+      if (_unsetProperties.contains(Property.COMPACT_LAYOUT)) {
+        throw new UnsupportedOperationException("compactLayout not set");
+      }
+      return compactLayout;
+    }
+
+    @Override
+    public boolean isSparseLayout() {
+      if (_unsetProperties.contains(Property.SPARSE_LAYOUT)) {
+        throw new UnsupportedOperationException("sparseLayout not set");
+      }
+      return sparseLayout;
+    }
+
+    @Override
+    public int getToStringLimit() {
+      if (_unsetProperties.contains(Property.TO_STRING_LIMIT)) {
+        throw new UnsupportedOperationException("toStringLimit not set");
+      }
+      return toStringLimit;
+    }
+
     @Override
     public boolean getHasToBuilderMethod() {
       if (_unsetProperties.contains(Property.HAS_TO_BUILDER_METHOD)) {
@@ -1640,6 +2442,30 @@ abstract class Datatype_Builder {
       return hasToBuilderMethod;
     }
 
+    @Override
+    public boolean getHasStaticFactoryMethod() {
+      if (_unsetProperties.contains(Property.HAS_STATIC_FACTORY_METHOD)) {
+        throw new UnsupportedOperationException("hasStaticFactoryMethod not set");
+      }
+      return hasStaticFactoryMethod;
+    }
+
+    @Override
+    public boolean getHasOverriddenBuildMethod() {
+      if (_unsetProperties.contains(Property.HAS_OVERRIDDEN_BUILD_METHOD)) {
+        throw new UnsupportedOperationException("hasOverriddenBuildMethod not set");
+      }
+      return hasOverriddenBuildMethod;
+    }
+
+    @Override
+    public boolean getHasInternMethod() {
+      if (_unsetProperties.contains(Property.HAS_INTERN_METHOD)) {
+        throw new UnsupportedOperationException("hasInternMethod not set");
+      }
+      return hasInternMethod;
+    }
+
     @Override
     public ImmutableList<Excerpt> getGeneratedBuilderAnnotations() {
       return generatedBuilderAnnotations;
@@ -1650,6 +2476,21 @@ abstract class Datatype_Builder {
       return valueTypeAnnotations;
     }
 
+    @Override
+    public ImmutableList<Excerpt> getValueTypeMembers() {
+      return valueTypeMembers;
+    }
+
+    @Override
+    public ImmutableList<Excerpt> getPartialTypeMembers() {
+      return partialTypeMembers;
+    }
+
+    @Override
+    public ImmutableList<Excerpt> getGeneratedBuilderMembers() {
+      return generatedBuilderMembers;
+    }
+
     @Override
     public Visibility getValueTypeVisibility() {
       if (_unsetProperties.contains(Property.VALUE_TYPE_VISIBILITY)) {
@@ -1685,9 +2526,18 @@ abstract class Datatype_Builder {
       builder.propertyEnum = propertyEnum;
       builder.standardMethodUnderrides.putAll(standardMethodUnderrides);
       builder.builderSerializable = builderSerializable;
+      builder.compactLayout = compactLayout;
+      builder.sparseLayout = sparseLayout;
+      builder.toStringLimit = toStringLimit;
       builder.hasToBuilderMethod = hasToBuilderMethod;
+      builder.hasStaticFactoryMethod = hasStaticFactoryMethod;
+      builder.hasOverriddenBuildMethod = hasOverriddenBuildMethod;
+      builder.hasInternMethod = hasInternMethod;
       builder.generatedBuilderAnnotations = generatedBuilderAnnotations;
       builder.valueTypeAnnotations = valueTypeAnnotations;
+      builder.valueTypeMembers = valueTypeMembers;
+      builder.partialTypeMembers = partialTypeMembers;
+      builder.generatedBuilderMembers = generatedBuilderMembers;
       builder.valueTypeVisibility = valueTypeVisibility;
       builder.nestedClasses = nestedClasses;
       builder._unsetProperties.clear();
@@ -1713,9 +2563,18 @@ abstract class Datatype_Builder {
           && Objects.equals(propertyEnum, other.propertyEnum)
           && Objects.equals(standardMethodUnderrides, other.standardMethodUnderrides)
           && builderSerializable == other.builderSerializable
+          && compactLayout == other.compactLayout
+          && sparseLayout == other.sparseLayout
+          && toStringLimit == other.toStringLimit
           && hasToBuilderMethod == other.hasToBuilderMethod
+          && hasStaticFactoryMethod == other.hasStaticFactoryMethod
+          && hasOverriddenBuildMethod == other.hasOverriddenBuildMethod
+          && hasInternMethod == other.hasInternMethod
           && Objects.equals(generatedBuilderAnnotations, other.generatedBuilderAnnotations)
           && Objects.equals(valueTypeAnnotations, other.valueTypeAnnotations)
+          && Objects.equals(valueTypeMembers, other.valueTypeMembers)
+          && Objects.equals(partialTypeMembers, other.partialTypeMembers)
+          && Objects.equals(generatedBuilderMembers, other.generatedBuilderMembers)
           && Objects.equals(valueTypeVisibility, other.valueTypeVisibility)
           && Objects.equals(nestedClasses, other.nestedClasses)
           && Objects.equals(_unsetProperties, other._unsetProperties);
@@ -1736,9 +2595,18 @@ abstract class Datatype_Builder {
           propertyEnum,
           standardMethodUnderrides,
           builderSerializable,
+          compactLayout,
+          sparseLayout,
+          toStringLimit,
           hasToBuilderMethod,
+          hasStaticFactoryMethod,
+          hasOverriddenBuildMethod,
+          hasInternMethod,
           generatedBuilderAnnotations,
           valueTypeAnnotations,
+          valueTypeMembers,
+          partialTypeMembers,
+          generatedBuilderMembers,
           valueTypeVisibility,
           nestedClasses,
           _unsetProperties);
@@ -1781,14 +2649,38 @@ abstract class Datatype_Builder {
       if (!_unsetProperties.contains(Property.BUILDER_SERIALIZABLE)) {
         result.append(", builderSerializable=").append(builderSerializable);
       }
+      if (!_unsetProperties.contains(Property.COMPACT_LAYOUT)) {
+        result.append(", compactLayout=").append(compactLayout);
+      }
+      if (!_unsetProperties.contains(Property.SPARSE_LAYOUT)) {
+        result.append(", sparseLayout=").append(sparseLayout);
+      }
+      if (!_unsetProperties.contains(Property.TO_STRING_LIMIT)) {
+        result.append(", toStringLimit=").append(toStringLimit);
+      }
       if (!_unsetProperties.contains(Property.HAS_TO_BUILDER_METHOD)) {
         result.append(", hasToBuilderMethod=").append(hasToBuilderMethod);
       }
+      if (!_unsetProperties.contains(Property.HAS_STATIC_FACTORY_METHOD)) {
+        result.append(", hasStaticFactoryMethod=").append(hasStaticFactoryMethod);
+      }
+      if (!_unsetProperties.contains(Property.HAS_OVERRIDDEN_BUILD_METHOD)) {
+        result.append(", hasOverriddenBuildMethod=").append(hasOverriddenBuildMethod);
+      }
+      if (!_unsetProperties.contains(Property.HAS_INTERN_METHOD)) {
+        result.append(", hasInternMethod=").append(hasInternMethod);
+      }
       result
           .append(", generatedBuilderAnnotations=")
           .append(generatedBuilderAnnotations)
           .append(", valueTypeAnnotations=")
-          .append(valueTypeAnnotations);
+          .append(valueTypeAnnotations)
+          .append(", valueTypeMembers=")
+          .append(valueTypeMembers)
+          .append(", partialTypeMembers=")
+          .append(partialTypeMembers)
+          .append(", generatedBuilderMembers=")
+          .append(generatedBuilderMembers);
       if (!_unsetProperties.contains(Property.VALUE_TYPE_VISIBILITY)) {
         result.append(", valueTypeVisibility=").append(valueTypeVisibility);
       }
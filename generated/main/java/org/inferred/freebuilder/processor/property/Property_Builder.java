@@ -72,6 +72,8 @@ abstract class Property_Builder {
   private String allCapsName;
   private boolean usingBeanConvention;
   private boolean inToString;
+  private boolean withMethodDeclared;
+  private boolean setterOverridden;
   private boolean inEqualsAndHashCode;
   private String getterName;
   private boolean fullyCheckedCast;
@@ -392,6 +394,78 @@ abstract class Property_Builder {
     return inToString;
   }
 
+  /**
+   * Sets the value to be returned by {@link
+   * org.inferred.freebuilder.processor.property.Property#isWithMethodDeclared()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public org.inferred.freebuilder.processor.property.Property.Builder setWithMethodDeclared(boolean withMethodDeclared) {
+    this.withMethodDeclared = withMethodDeclared;
+    return (org.inferred.freebuilder.processor.property.Property.Builder) this;
+  }
+
+  /**
+   * Replaces the value to be returned by {@link
+   * org.inferred.freebuilder.processor.property.Property#isWithMethodDeclared()} by applying {@code mapper} to it
+   * and using the result.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mapper} is null or returns null
+   * @throws IllegalStateException if the field has not been set
+   */
+  public org.inferred.freebuilder.processor.property.Property.Builder mapWithMethodDeclared(
+      UnaryOperator<Boolean> mapper) {
+    Objects.requireNonNull(mapper);
+    return setWithMethodDeclared(mapper.apply(isWithMethodDeclared()));
+  }
+
+  /**
+   * Returns the value that will be returned by {@link
+   * org.inferred.freebuilder.processor.property.Property#isWithMethodDeclared()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean isWithMethodDeclared() {
+    return withMethodDeclared;
+  }
+
+  /**
+   * Sets the value to be returned by {@link
+   * org.inferred.freebuilder.processor.property.Property#isSetterOverridden()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public org.inferred.freebuilder.processor.property.Property.Builder setSetterOverridden(boolean setterOverridden) {
+    this.setterOverridden = setterOverridden;
+    return (org.inferred.freebuilder.processor.property.Property.Builder) this;
+  }
+
+  /**
+   * Replaces the value to be returned by {@link
+   * org.inferred.freebuilder.processor.property.Property#isSetterOverridden()} by applying {@code mapper} to it
+   * and using the result.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code mapper} is null or returns null
+   * @throws IllegalStateException if the field has not been set
+   */
+  public org.inferred.freebuilder.processor.property.Property.Builder mapSetterOverridden(
+      UnaryOperator<Boolean> mapper) {
+    Objects.requireNonNull(mapper);
+    return setSetterOverridden(mapper.apply(isSetterOverridden()));
+  }
+
+  /**
+   * Returns the value that will be returned by {@link
+   * org.inferred.freebuilder.processor.property.Property#isSetterOverridden()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean isSetterOverridden() {
+    return setterOverridden;
+  }
+
   /**
    * Sets the value to be returned by {@link
    * org.inferred.freebuilder.processor.property.Property#isInEqualsAndHashCode()}.
@@ -665,6 +739,12 @@ abstract class Property_Builder {
     if (!Objects.equals(value.isInToString(), defaults.isInToString())) {
       setInToString(value.isInToString());
     }
+    if (!Objects.equals(value.isWithMethodDeclared(), defaults.isWithMethodDeclared())) {
+      setWithMethodDeclared(value.isWithMethodDeclared());
+    }
+    if (!Objects.equals(value.isSetterOverridden(), defaults.isSetterOverridden())) {
+      setSetterOverridden(value.isSetterOverridden());
+    }
     if (!Objects.equals(value.isInEqualsAndHashCode(), defaults.isInEqualsAndHashCode())) {
       setInEqualsAndHashCode(value.isInEqualsAndHashCode());
     }
@@ -724,6 +804,12 @@ abstract class Property_Builder {
     if (template.isInToString() != defaults.isInToString()) {
       setInToString(template.isInToString());
     }
+    if (template.isWithMethodDeclared() != defaults.isWithMethodDeclared()) {
+      setWithMethodDeclared(template.isWithMethodDeclared());
+    }
+    if (template.isSetterOverridden() != defaults.isSetterOverridden()) {
+      setSetterOverridden(template.isSetterOverridden());
+    }
     if (template.isInEqualsAndHashCode() != defaults.isInEqualsAndHashCode()) {
       setInEqualsAndHashCode(template.isInEqualsAndHashCode());
     }
@@ -755,6 +841,8 @@ abstract class Property_Builder {
     allCapsName = defaults.allCapsName;
     usingBeanConvention = defaults.usingBeanConvention;
     inToString = defaults.inToString;
+    withMethodDeclared = defaults.withMethodDeclared;
+    setterOverridden = defaults.setterOverridden;
     inEqualsAndHashCode = defaults.inEqualsAndHashCode;
     getterName = defaults.getterName;
     fullyCheckedCast = defaults.fullyCheckedCast;
@@ -811,6 +899,8 @@ abstract class Property_Builder {
     private final String allCapsName;
     private final boolean usingBeanConvention;
     private final boolean inToString;
+    private final boolean withMethodDeclared;
+    private final boolean setterOverridden;
     private final boolean inEqualsAndHashCode;
     private final String getterName;
     private final boolean fullyCheckedCast;
@@ -824,6 +914,8 @@ abstract class Property_Builder {
       this.allCapsName = builder.allCapsName;
       this.usingBeanConvention = builder.usingBeanConvention;
       this.inToString = builder.inToString;
+      this.withMethodDeclared = builder.withMethodDeclared;
+      this.setterOverridden = builder.setterOverridden;
       this.inEqualsAndHashCode = builder.inEqualsAndHashCode;
       this.getterName = builder.getterName;
       this.fullyCheckedCast = builder.fullyCheckedCast;
@@ -865,6 +957,16 @@ abstract class Property_Builder {
       return inToString;
     }
 
+    @Override
+    public boolean isWithMethodDeclared() {
+      return withMethodDeclared;
+    }
+
+    @Override
+    public boolean isSetterOverridden() {
+      return setterOverridden;
+    }
+
     @Override
     public boolean isInEqualsAndHashCode() {
       return inEqualsAndHashCode;
@@ -895,6 +997,8 @@ abstract class Property_Builder {
       builder.allCapsName = allCapsName;
       builder.usingBeanConvention = usingBeanConvention;
       builder.inToString = inToString;
+      builder.withMethodDeclared = withMethodDeclared;
+      builder.setterOverridden = setterOverridden;
       builder.inEqualsAndHashCode = inEqualsAndHashCode;
       builder.getterName = getterName;
       builder.fullyCheckedCast = fullyCheckedCast;
@@ -916,6 +1020,8 @@ abstract class Property_Builder {
           && Objects.equals(allCapsName, other.allCapsName)
           && usingBeanConvention == other.usingBeanConvention
           && inToString == other.inToString
+          && withMethodDeclared == other.withMethodDeclared
+          && setterOverridden == other.setterOverridden
           && inEqualsAndHashCode == other.inEqualsAndHashCode
           && Objects.equals(getterName, other.getterName)
           && fullyCheckedCast == other.fullyCheckedCast
@@ -932,6 +1038,8 @@ abstract class Property_Builder {
           allCapsName,
           usingBeanConvention,
           inToString,
+          withMethodDeclared,
+          setterOverridden,
           inEqualsAndHashCode,
           getterName,
           fullyCheckedCast,
@@ -955,6 +1063,10 @@ abstract class Property_Builder {
           .append(usingBeanConvention)
           .append(", inToString=")
           .append(inToString)
+          .append(", withMethodDeclared=")
+          .append(withMethodDeclared)
+          .append(", setterOverridden=")
+          .append(setterOverridden)
           .append(", inEqualsAndHashCode=")
           .append(inEqualsAndHashCode)
           .append(", getterName=")
@@ -979,6 +1091,8 @@ abstract class Property_Builder {
     private final String allCapsName;
     private final boolean usingBeanConvention;
     private final boolean inToString;
+    private final boolean withMethodDeclared;
+    private final boolean setterOverridden;
     private final boolean inEqualsAndHashCode;
     private final String getterName;
     private final boolean fullyCheckedCast;
@@ -993,6 +1107,8 @@ abstract class Property_Builder {
       this.allCapsName = builder.allCapsName;
       this.usingBeanConvention = builder.usingBeanConvention;
       this.inToString = builder.inToString;
+      this.withMethodDeclared = builder.withMethodDeclared;
+      this.setterOverridden = builder.setterOverridden;
       this.inEqualsAndHashCode = builder.inEqualsAndHashCode;
       this.getterName = builder.getterName;
       this.fullyCheckedCast = builder.fullyCheckedCast;
@@ -1050,6 +1166,16 @@ abstract class Property_Builder {
       return inToString;
     }
 
+    @Override
+    public boolean isWithMethodDeclared() {
+      return withMethodDeclared;
+    }
+
+    @Override
+    public boolean isSetterOverridden() {
+      return setterOverridden;
+    }
+
     @Override
     public boolean isInEqualsAndHashCode() {
       return inEqualsAndHashCode;
@@ -1093,6 +1219,8 @@ abstract class Property_Builder {
       builder.allCapsName = allCapsName;
       builder.usingBeanConvention = usingBeanConvention;
       builder.inToString = inToString;
+      builder.withMethodDeclared = withMethodDeclared;
+      builder.setterOverridden = setterOverridden;
       builder.inEqualsAndHashCode = inEqualsAndHashCode;
       builder.getterName = getterName;
       builder.fullyCheckedCast = fullyCheckedCast;
@@ -1115,6 +1243,8 @@ abstract class Property_Builder {
           && Objects.equals(allCapsName, other.allCapsName)
           && usingBeanConvention == other.usingBeanConvention
           && inToString == other.inToString
+          && withMethodDeclared == other.withMethodDeclared
+          && setterOverridden == other.setterOverridden
           && inEqualsAndHashCode == other.inEqualsAndHashCode
           && Objects.equals(getterName, other.getterName)
           && fullyCheckedCast == other.fullyCheckedCast
@@ -1132,6 +1262,8 @@ abstract class Property_Builder {
           allCapsName,
           usingBeanConvention,
           inToString,
+          withMethodDeclared,
+          setterOverridden,
           inEqualsAndHashCode,
           getterName,
           fullyCheckedCast,
@@ -1161,6 +1293,8 @@ abstract class Property_Builder {
         result.append("usingBeanConvention=").append(usingBeanConvention).append(", ");
       }
       result.append("inToString=").append(inToString).append(", ");
+      result.append("withMethodDeclared=").append(withMethodDeclared).append(", ");
+      result.append("setterOverridden=").append(setterOverridden).append(", ");
       result.append("inEqualsAndHashCode=").append(inEqualsAndHashCode).append(", ");
       if (!_unsetProperties.contains(Property.GETTER_NAME)) {
         result.append("getterName=").append(getterName).append(", ");
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.client.rpc;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.inferred.freebuilder.FreeBuilder;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.SetMultimap;
+
+/** GWT-compatible FreeBuilder type with primitive, collection and nested buildable properties. */
+@FreeBuilder
+@GwtCompatible(serializable = true)
+public interface CollectionsGwtType extends Serializable {
+  int getCount();
+  String getLabel();
+  List<Integer> getScores();
+  Set<String> getTags();
+  Multiset<Character> getGrades();
+  Map<String, Double> getDistances();
+  SetMultimap<String, Long> getIds();
+  List<StringListGwtType> getGroups();
+
+  /** Builder of {@link CollectionsGwtType} instances. */
+  class Builder extends CollectionsGwtType_Builder { }
+}
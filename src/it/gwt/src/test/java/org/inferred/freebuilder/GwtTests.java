@@ -2,6 +2,7 @@ package org.inferred.freebuilder;
 
 import com.google.gwt.junit.tools.GWTTestSuite;
 
+import org.inferred.freebuilder.client.rpc.CollectionsTest;
 import org.inferred.freebuilder.client.rpc.MapTest;
 import org.inferred.freebuilder.client.rpc.NestedListTest;
 import org.inferred.freebuilder.client.rpc.OptionalTest;
@@ -10,6 +11,7 @@ import org.inferred.freebuilder.client.rpc.StringListTest;
 public class GwtTests extends GWTTestSuite {
 
   public GwtTests() {
+    addTest(new CollectionsTest());
     addTest(new MapTest());
     addTest(new NestedListTest());
     addTest(new OptionalTest());
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.inferred.freebuilder.client.rpc;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.junit.client.GWTTestCase;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.gwt.user.client.rpc.ServiceDefTarget;
+
+public class CollectionsTest extends GWTTestCase {
+
+    private static final int RPC_TIMEOUT = 15000;
+    private static final String MODULE_NAME = "org.inferred.freebuilder.TestServer";
+    private static final CollectionsGwtType VALUE = new CollectionsGwtType.Builder()
+            .setCount(3)
+            .setLabel("mixed")
+            .addScores(7, 3, 7)
+            .addTags("red", "green")
+            .addGrades('a', 'b', 'a')
+            .putDistances("small", 1.0)
+            .putDistances("large", 112.5)
+            .putIds("john", 1L)
+            .putIds("john", 2L)
+            .putIds("alice", 3L)
+            .addGroups(new StringListGwtType.Builder()
+                    .addNames("john", "alice"))
+            .addGroups(new StringListGwtType.Builder()
+                    .addNames("sam"))
+            .build();
+
+    private CollectionsTestServiceAsync customFieldSerializerTestService;
+
+    @Override
+    public String getModuleName() {
+        return MODULE_NAME;
+    }
+
+    @Override
+    protected void gwtSetUp() throws Exception {
+        super.gwtSetUp();
+        delayTestFinish(RPC_TIMEOUT);
+    }
+
+    public void testSerialization() {
+        CollectionsTestServiceAsync service = getServiceAsync();
+        service.echo(VALUE, new AsyncCallback<CollectionsGwtType>() {
+            @Override
+            public void onFailure(Throwable caught) {
+                throw new AssertionError(caught);
+            }
+
+            @Override
+            public void onSuccess(CollectionsGwtType result) {
+                assertEquals(VALUE, result);
+                finishTest();
+            }
+        });
+    }
+
+    private CollectionsTestServiceAsync getServiceAsync() {
+        if (customFieldSerializerTestService == null) {
+            customFieldSerializerTestService =
+                    (CollectionsTestServiceAsync) GWT.create(CollectionsTestService.class);
+            ((ServiceDefTarget) customFieldSerializerTestService)
+                    .setServiceEntryPoint(GWT.getModuleBaseURL() + "collections");
+        }
+        return customFieldSerializerTestService;
+    }
+}
@@ -0,0 +1,23 @@
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link FreeBuilder} will limit the number of elements of each collection property that the
+ * {@code toString} method of types annotated {@code @BoundedToString} includes, replacing the rest
+ * with "... (N more)", so logging a value with a huge collection stays cheap.
+ *
+ * <p>Declare an abstract {@code String toString(int maxElementsPerCollection)} method to pick a
+ * different limit for a single call; FreeBuilder implements it whether or not the type is
+ * annotated.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface BoundedToString {
+
+  /** The maximum number of elements of each collection property to include. */
+  int maxElementsPerCollection() default 100;
+}
@@ -0,0 +1,19 @@
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link FreeBuilder} will generate a {@code Columns} container alongside the builder of types
+ * annotated {@code @Columnar}, storing a bulk collection of values as one array per property
+ * rather than one object per value.
+ *
+ * <p>Primitive properties are stored in primitive arrays, so scanning a column touches only that
+ * property's memory, with no per-value object headers.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Columnar {
+}
@@ -0,0 +1,16 @@
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link FreeBuilder} will pack the boolean and enum properties of types annotated
+ * {@code @CompactLayout} into int or long bitfields in its generated value implementation,
+ * reducing the memory footprint of each instance.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface CompactLayout {
+}
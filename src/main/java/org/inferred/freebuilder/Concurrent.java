@@ -0,0 +1,20 @@
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link FreeBuilder} will generate a {@code ConcurrentBuilder} alongside the builder of types
+ * annotated {@code @Concurrent}, which many threads can add to at once without locking before a
+ * single call to {@code build()}.
+ *
+ * <p>Collection properties accumulate in lock-free concurrent collections, and the last value set
+ * wins for any other property. Values are only validated when {@code build()} copies them into a
+ * normal builder.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Concurrent {
+}
@@ -0,0 +1,17 @@
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link FreeBuilder} will generate a static {@code diff(from, to)} method on the builder of types
+ * annotated {@code @Diffable}, returning a {@code Patch} that records which properties changed
+ * and, for collection properties, which elements were added or removed. The builder's
+ * {@code applyPatch} method replays a patch through the builder's usual setters.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Diffable {
+}
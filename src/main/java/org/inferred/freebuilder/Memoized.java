@@ -0,0 +1,16 @@
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link FreeBuilder} will cache the result of non-abstract, no-args methods annotated
+ * {@code @Memoized} on the first call to each built value, returning it from every subsequent call.
+ * Partial values are never cached.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Memoized {
+}
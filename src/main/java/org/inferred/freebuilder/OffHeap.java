@@ -0,0 +1,19 @@
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link FreeBuilder} will generate an {@code OffHeapArray} alongside the builder of types
+ * annotated {@code @OffHeap}, storing values as fixed-size records in direct byte buffers,
+ * outside the garbage-collected heap.
+ *
+ * <p>Every property of the type must be a primitive, or an {@code OptionalInt},
+ * {@code OptionalLong} or {@code OptionalDouble}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface OffHeap {
+}
@@ -0,0 +1,25 @@
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link FreeBuilder} will store the optional and nullable properties of types annotated
+ * {@code @SparseLayout} in a compact array holding only the properties that are set, rather than
+ * in one field per property, reducing the memory footprint of wide types that are mostly empty.
+ *
+ * <p>Getters find a property's position in the array by counting the set properties before it,
+ * so they are slightly slower than a field read. Partial values are never stored sparsely.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface SparseLayout {
+
+  /**
+   * The minimum number of optional or nullable properties a type must have to be stored sparsely.
+   * Narrower types will use one field per property as normal.
+   */
+  int threshold() default 32;
+}
@@ -0,0 +1,20 @@
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link FreeBuilder} will generate a static {@code of} method on the builder of types annotated
+ * {@code @StaticFactory}, taking every property in getter order and calling the value constructor
+ * directly, without allocating a builder.
+ *
+ * <p>As it cannot run any custom validation added to the Builder, the method is not generated if
+ * the Builder overrides a setter or {@code build()}, or if the type has collection or nested
+ * buildable properties.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface StaticFactory {
+}
@@ -20,24 +20,48 @@ import static com.google.common.base.Objects.equal;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.transform;
 
+import static org.inferred.freebuilder.processor.BuilderMethods.addAllMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.addMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.nullableSetter;
+import static org.inferred.freebuilder.processor.BuilderMethods.putAllMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.putMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.setter;
 import static org.inferred.freebuilder.processor.GwtSupport.gwtMetadata;
+import static org.inferred.freebuilder.processor.JacksonCodec.jacksonMetadata;
+import static org.inferred.freebuilder.processor.MethodSplitter.Method.VALUE_CONSTRUCTOR;
+import static org.inferred.freebuilder.processor.StreamCollector.collectorMethod;
+import static org.inferred.freebuilder.processor.ToStringGenerator.boundedToString;
 import static org.inferred.freebuilder.processor.model.MethodFinder.methodsOn;
 import static org.inferred.freebuilder.processor.model.ModelUtils.asElement;
 import static org.inferred.freebuilder.processor.model.ModelUtils.getReturnType;
 import static org.inferred.freebuilder.processor.naming.NamingConventions.determineNamingConvention;
 
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
 import static javax.lang.model.element.ElementKind.INTERFACE;
 import static javax.lang.model.util.ElementFilter.constructorsIn;
+import static javax.lang.model.util.ElementFilter.methodsIn;
 import static javax.lang.model.util.ElementFilter.typesIn;
 import static javax.tools.Diagnostic.Kind.ERROR;
 import static javax.tools.Diagnostic.Kind.NOTE;
+import static javax.tools.Diagnostic.Kind.WARNING;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
+import org.inferred.freebuilder.BoundedToString;
+import org.inferred.freebuilder.Columnar;
+import org.inferred.freebuilder.Concurrent;
+import org.inferred.freebuilder.CompactLayout;
+import org.inferred.freebuilder.Diffable;
 import org.inferred.freebuilder.IgnoredByEquals;
+import org.inferred.freebuilder.Memoized;
 import org.inferred.freebuilder.NotInToString;
+import org.inferred.freebuilder.OffHeap;
+import org.inferred.freebuilder.SparseLayout;
+import org.inferred.freebuilder.StaticFactory;
 import org.inferred.freebuilder.processor.Datatype.StandardMethod;
 import org.inferred.freebuilder.processor.Datatype.UnderrideLevel;
 import org.inferred.freebuilder.processor.model.MethodIntrospector;
@@ -48,14 +72,18 @@ import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
 import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.Config;
 import org.inferred.freebuilder.processor.source.QualifiedName;
 import org.inferred.freebuilder.processor.source.Type;
+import org.inferred.freebuilder.processor.source.TypeClass;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -70,7 +98,9 @@ import javax.lang.model.element.TypeParameterElement;
 import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.ErrorType;
+import javax.lang.model.type.ExecutableType;
 import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.Elements;
@@ -146,7 +176,10 @@ class Analyser {
         .putAllStandardMethodUnderrides(findUnderriddenMethods(methods))
         .setHasToBuilderMethod(hasToBuilderMethod(
             builder, constructionAndExtension.isExtensible(), methods))
+        .setHasInternMethod(methods.stream().anyMatch(method -> isInternMethod(type, method)))
+        .setHasOverriddenBuildMethod(hasOverriddenBuildMethod(builder))
         .setBuilderSerializable(shouldBuilderBeSerializable(builder))
+        .setCompactLayout(type.getAnnotation(CompactLayout.class) != null)
         .setBuilder(Type.from(builder));
     if (datatypeBuilder.getBuilderFactory().isPresent()
         && !datatypeBuilder.getHasToBuilderMethod()) {
@@ -154,9 +187,50 @@ class Analyser {
           generatedBuilder.nestedType("Rebuildable").withParameters(typeParameters));
     }
     Datatype baseDatatype = datatypeBuilder.build();
+    Map<String, ExecutableElement> withMethods = findWithMethods(type, methods);
     Map<Property, PropertyCodeGenerator> generatorsByProperty = pickPropertyGenerators(
-        type, baseDatatype, builder, removeNonGetterMethods(builder, methods));
+        type, baseDatatype, builder, removeNonGetterMethods(type, builder, methods), withMethods);
+    if (baseDatatype.isCompactLayout()) {
+      BitfieldLayout layout = BitfieldLayout.of(baseDatatype, generatorsByProperty);
+      messager.printMessage(
+          NOTE,
+          layout.isEmpty()
+              ? "Compact layout: fewer than two boolean or enum properties to pack"
+              : "Compact layout: " + layout.describe(),
+          type);
+    }
+    SparseLayout sparseLayout = type.getAnnotation(SparseLayout.class);
+    if (sparseLayout != null) {
+      int sparseProperties = SparseStorage.sparseProperties(generatorsByProperty).size();
+      datatypeBuilder.setSparseLayout(sparseProperties >= sparseLayout.threshold());
+      messager.printMessage(
+          NOTE,
+          datatypeBuilder.isSparseLayout()
+              ? "Sparse layout: " + SparseStorage.of(datatypeBuilder.build(), generatorsByProperty)
+                  .describe()
+              : "Sparse layout: only " + sparseProperties + " optional properties, below the "
+                  + "threshold of " + sparseLayout.threshold(),
+          type);
+    }
+    checkMethodSizes(type, generatorsByProperty);
+    addBoundedToString(type, datatypeBuilder, generatorsByProperty, methods);
     datatypeBuilder.mergeFrom(gwtMetadata(type, baseDatatype, generatorsByProperty));
+    datatypeBuilder.mergeFrom(jacksonMetadata(
+        elements, type, asElement(builder), baseDatatype, generatorsByProperty, methods));
+    datatypeBuilder.addAllValueTypeMembers(memoizedMethods(type, baseDatatype, methods));
+    addBinaryCodec(datatypeBuilder, baseDatatype, generatorsByProperty, methods);
+    addFingerprint(datatypeBuilder, baseDatatype, generatorsByProperty, methods);
+    addBufferView(type, builder, datatypeBuilder, baseDatatype, generatorsByProperty, methods);
+    addColumnStore(type, datatypeBuilder, baseDatatype, generatorsByProperty);
+    addOffHeapStore(type, datatypeBuilder, baseDatatype, generatorsByProperty);
+    addConcurrentBuilder(type, datatypeBuilder, baseDatatype, generatorsByProperty);
+    addDiffPatch(type, datatypeBuilder, baseDatatype, generatorsByProperty);
+    if (methodsIn(asElement(builder).getEnclosedElements()).stream()
+        .noneMatch(method -> method.getSimpleName().contentEquals(StreamCollector.METHOD_NAME))) {
+      collectorMethod(baseDatatype).ifPresent(datatypeBuilder::addGeneratedBuilderMembers);
+    }
+    datatypeBuilder.setHasStaticFactoryMethod(
+        hasStaticFactoryMethod(type, baseDatatype, generatorsByProperty));
     return new GeneratedBuilder(datatypeBuilder.build(), generatorsByProperty);
   }
 
@@ -302,14 +376,421 @@ class Analyser {
           && types.isSameType(method.getReturnType(), declaredType));
   }
 
+  /** Returns whether the user's builder overrides {@code build()}. */
+  private static boolean hasOverriddenBuildMethod(DeclaredType builder) {
+    return methodsIn(asElement(builder).getEnclosedElements())
+        .stream()
+        .anyMatch(method -> method.getSimpleName().contentEquals("build")
+            && method.getParameters().isEmpty());
+  }
+
+  private boolean isInternMethod(TypeElement type, ExecutableElement method) {
+    return method.getSimpleName().contentEquals("intern")
+        && method.getModifiers().contains(Modifier.ABSTRACT)
+        && method.getParameters().isEmpty()
+        && types.isSameType(method.getReturnType(), type.asType());
+  }
+
+  /** Find any withX methods the user has declared, keyed by method name. */
+  private Map<String, ExecutableElement> findWithMethods(
+      TypeElement type, Iterable<ExecutableElement> methods) {
+    Map<String, ExecutableElement> withMethods = new LinkedHashMap<>();
+    for (ExecutableElement method : methods) {
+      if (isWithMethod(type, method)) {
+        withMethods.put(method.getSimpleName().toString(), method);
+      }
+    }
+    return withMethods;
+  }
+
+  private boolean isWithMethod(TypeElement type, ExecutableElement method) {
+    String name = method.getSimpleName().toString();
+    return name.startsWith("with")
+        && name.length() > "with".length()
+        && method.getModifiers().contains(Modifier.ABSTRACT)
+        && method.getParameters().size() == 1
+        && types.isSameType(method.getReturnType(), type.asType());
+  }
+
+  /**
+   * Returns whether the user has opted in to a static factory method taking every property, and
+   * it can be implemented without a builder. Ineligible types simply do not get one.
+   */
+  private boolean hasStaticFactoryMethod(
+      TypeElement type,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    if (type.getAnnotation(StaticFactory.class) == null
+        || generatorsByProperty.isEmpty()
+        || datatype.getHasOverriddenBuildMethod()) {
+      return false;
+    }
+    return generatorsByProperty.entrySet()
+        .stream()
+        .allMatch(entry -> entry.getValue().isValueFieldConvertible()
+            && !entry.getKey().isSetterOverridden());
+  }
+
+  private List<MemoizedMethod> memoizedMethods(
+      TypeElement type, Datatype datatype, Iterable<ExecutableElement> methods) {
+    List<MemoizedMethod> memoizedMethods = new ArrayList<>();
+    for (ExecutableElement method : methods) {
+      if (method.getAnnotation(Memoized.class) == null) {
+        continue;
+      }
+      Set<Modifier> modifiers = method.getModifiers();
+      if (modifiers.contains(Modifier.ABSTRACT)) {
+        messager.printMessage(ERROR, "@Memoized methods must not be abstract", method);
+      } else if (!method.getParameters().isEmpty()) {
+        messager.printMessage(ERROR, "@Memoized methods must not take parameters", method);
+      } else if (method.getReturnType().getKind() == TypeKind.VOID) {
+        messager.printMessage(ERROR, "@Memoized methods must return a value", method);
+      } else if (modifiers.contains(Modifier.PRIVATE)
+          || modifiers.contains(Modifier.FINAL)
+          || modifiers.contains(Modifier.STATIC)) {
+        messager.printMessage(
+            ERROR, "@Memoized methods must not be private, final or static", method);
+      } else {
+        Optional<Modifier> visibility = Stream.of(Modifier.PUBLIC, Modifier.PROTECTED)
+            .filter(modifiers::contains)
+            .findFirst();
+        Optional<QualifiedName> defaultMethodInterface = Optional.empty();
+        if (datatype.isInterfaceType() && !datatype.getRebuildableType().isPresent()) {
+          defaultMethodInterface = Optional.of(QualifiedName.of(type));
+        }
+        memoizedMethods.add(new MemoizedMethod(
+            method.getSimpleName().toString(),
+            getReturnType(type, method, types),
+            method.getThrownTypes(),
+            visibility,
+            defaultMethodInterface));
+      }
+    }
+    return memoizedMethods;
+  }
+
+  /**
+   * Implements any {@code writeTo(DataOutput)} method the user has declared, and adds the matching
+   * {@code readFrom(DataInput)} method to the builder.
+   */
+  private void addBinaryCodec(
+      Datatype.Builder datatypeBuilder,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      Iterable<ExecutableElement> methods) {
+    ExecutableElement writeMethod = null;
+    for (ExecutableElement method : methods) {
+      if (BinaryCodec.isWriteMethod(method)) {
+        writeMethod = method;
+      }
+    }
+    if (writeMethod == null) {
+      return;
+    }
+    TypeMirror ioException = elements.getTypeElement(IOException.class.getName()).asType();
+    if (writeMethod.getThrownTypes()
+        .stream()
+        .noneMatch(thrown -> types.isSubtype(ioException, thrown))) {
+      messager.printMessage(
+          ERROR, "writeTo(DataOutput) must be declared to throw IOException", writeMethod);
+      return;
+    }
+    BinaryCodec.CodecOrUnsupported result = new BinaryCodec.Resolver(elements, types)
+        .resolve(datatype, generatorsByProperty);
+    if (result.unsupported().isPresent()) {
+      Property property = result.unsupported().get();
+      messager.printMessage(
+          ERROR,
+          "writeTo(DataOutput) cannot encode property " + property.getName() + " of type "
+              + property.getType(),
+          writeMethod);
+      return;
+    }
+    BinaryCodec codec = result.codec().get();
+    datatypeBuilder.addValueTypeMembers(codec.writeMethod());
+    datatypeBuilder.addPartialTypeMembers(codec.writeMethod());
+    datatypeBuilder.addGeneratedBuilderMembers(codec.readMethod());
+  }
+
+  /** Implements any {@code long fingerprint64()} method the user has declared. */
+  private void addFingerprint(
+      Datatype.Builder datatypeBuilder,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      Iterable<ExecutableElement> methods) {
+    ExecutableElement fingerprintMethod = null;
+    for (ExecutableElement method : methods) {
+      if (Fingerprint.isFingerprintMethod(method)) {
+        fingerprintMethod = method;
+      }
+    }
+    if (fingerprintMethod == null) {
+      return;
+    }
+    Fingerprint.FingerprintOrUnsupported result = new Fingerprint.Resolver(elements, types)
+        .resolve(datatype, generatorsByProperty);
+    if (result.unsupported().isPresent()) {
+      Property property = result.unsupported().get();
+      messager.printMessage(
+          ERROR,
+          "fingerprint64() cannot hash property " + property.getName() + " of type "
+              + property.getType(),
+          fingerprintMethod);
+      return;
+    }
+    Fingerprint fingerprint = result.fingerprint().get();
+    datatypeBuilder.addValueTypeMembers(fingerprint.method());
+    datatypeBuilder.addPartialTypeMembers(fingerprint.method());
+  }
+
+  /**
+   * Implements any {@code writeTo(ByteBuffer)} method the user has declared, and adds a view
+   * reading values straight out of the buffer to the builder.
+   */
+  private void addBufferView(
+      TypeElement type,
+      DeclaredType builder,
+      Datatype.Builder datatypeBuilder,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      Iterable<ExecutableElement> methods) {
+    ExecutableElement writeMethod = null;
+    for (ExecutableElement method : methods) {
+      if (BufferView.isWriteMethod(method)) {
+        writeMethod = method;
+      }
+    }
+    if (writeMethod == null) {
+      return;
+    }
+    if (!type.getTypeParameters().isEmpty()) {
+      messager.printMessage(
+          ERROR, "writeTo(ByteBuffer) is not supported on generic types", writeMethod);
+      return;
+    }
+    if (!datatype.getBuilderFactory().isPresent()) {
+      messager.printMessage(
+          ERROR,
+          "No accessible no-args Builder constructor available to implement writeTo(ByteBuffer)",
+          writeMethod);
+      return;
+    }
+    BinaryCodec.CodecOrUnsupported result = new BinaryCodec.Resolver(elements, types)
+        .resolve(datatype, generatorsByProperty);
+    if (result.unsupported().isPresent()) {
+      Property property = result.unsupported().get();
+      messager.printMessage(
+          ERROR,
+          "writeTo(ByteBuffer) cannot encode property " + property.getName() + " of type "
+              + property.getType(),
+          writeMethod);
+      return;
+    }
+    Set<String> getterNames = generatorsByProperty.keySet()
+        .stream()
+        .map(Property::getGetterName)
+        .collect(toSet());
+    List<BufferView.ForwardedMethod> forwardedMethods = new ArrayList<>();
+    for (ExecutableElement method : methods) {
+      boolean isGetter = method.getParameters().isEmpty()
+          && getterNames.contains(method.getSimpleName().toString());
+      if (method.getModifiers().contains(Modifier.ABSTRACT)
+          && !isGetter
+          && !maybeStandardMethod(method).isPresent()
+          && !isToBuilderMethod(builder, method)
+          && !BufferView.isWriteMethod(method)) {
+        ExecutableType methodType =
+            (ExecutableType) types.asMemberOf((DeclaredType) type.asType(), method);
+        forwardedMethods.add(new BufferView.ForwardedMethod(
+            method.getSimpleName().toString(),
+            methodType.getReturnType(),
+            method.getParameters()
+                .stream()
+                .map(parameter -> parameter.getSimpleName().toString())
+                .collect(toList()),
+            methodType.getParameterTypes(),
+            methodType.getThrownTypes(),
+            Stream.of(Modifier.PUBLIC, Modifier.PROTECTED)
+                .filter(method.getModifiers()::contains)
+                .findFirst()));
+      }
+    }
+    BufferView view = new BufferView(datatype, result.codec().get(), forwardedMethods);
+    datatypeBuilder.addValueTypeMembers(view.writeMethod());
+    datatypeBuilder.addPartialTypeMembers(view.writeMethod());
+    datatypeBuilder.addGeneratedBuilderMembers(view.viewMembers());
+  }
+
+  /**
+   * Warns if the value constructor of {@code type} is estimated to be near HotSpot's limit for
+   * JIT compilation, or the JVM's limit on method size. Unlike mergeFrom, equals, hashCode and
+   * toString, the constructor cannot be split into helper methods, as it assigns final fields;
+   * clear and toBuilder are left whole too, and grow at a similar rate.
+   */
+  private void checkMethodSizes(
+      TypeElement type, Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    int size = MethodSplitter.estimate(VALUE_CONSTRUCTOR, generatorsByProperty.values());
+    if (size > MethodSplitter.MAX_METHOD_SIZE * 3 / 4) {
+      messager.printMessage(
+          WARNING,
+          "Value constructor is estimated at " + size + " bytes of bytecode, close to the JVM's "
+              + MethodSplitter.MAX_METHOD_SIZE + "-byte limit on method size; consider moving "
+              + "some of the " + generatorsByProperty.size() + " properties into nested types",
+          type);
+    } else if (size > MethodSplitter.HUGE_METHOD_LIMIT * 3 / 4) {
+      messager.printMessage(
+          WARNING,
+          "Value constructor is estimated at " + size + " bytes of bytecode, close to or above "
+              + "HotSpot's " + MethodSplitter.HUGE_METHOD_LIMIT + "-byte limit for JIT "
+              + "compilation; consider moving some of the " + generatorsByProperty.size()
+              + " properties into nested types",
+          type);
+    }
+  }
+
+  private void addBoundedToString(
+      TypeElement type,
+      Datatype.Builder datatypeBuilder,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      Set<ExecutableElement> methods) {
+    BoundedToString annotation = type.getAnnotation(BoundedToString.class);
+    boolean hasBoundedToStringMethod =
+        methods.stream().anyMatch(ToStringGenerator::isBoundedToStringMethod);
+    if (annotation == null && !hasBoundedToStringMethod) {
+      return;
+    }
+    if (annotation != null) {
+      if (annotation.maxElementsPerCollection() <= 0) {
+        messager.printMessage(
+            ERROR, "@BoundedToString maxElementsPerCollection must be positive", type);
+        return;
+      }
+      datatypeBuilder.setToStringLimit(annotation.maxElementsPerCollection());
+    }
+    Datatype datatype = datatypeBuilder.build();
+    datatypeBuilder.addValueTypeMembers(
+        boundedToString(datatype, generatorsByProperty, false, hasBoundedToStringMethod));
+    datatypeBuilder.addPartialTypeMembers(
+        boundedToString(datatype, generatorsByProperty, true, hasBoundedToStringMethod));
+  }
+
+  private void addColumnStore(
+      TypeElement type,
+      Datatype.Builder datatypeBuilder,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    if (type.getAnnotation(Columnar.class) == null) {
+      return;
+    }
+    if (!datatype.getBuilderFactory().isPresent()) {
+      messager.printMessage(
+          ERROR,
+          "No accessible no-args Builder constructor available to implement @Columnar",
+          type);
+      return;
+    }
+    TypeClass columnsType = datatype.getGeneratedBuilder()
+        .getQualifiedName()
+        .nestedType("Columns")
+        .withParameters(type.getTypeParameters());
+    datatypeBuilder.addGeneratedBuilderMembers(
+        new ColumnStore(datatype, columnsType, generatorsByProperty));
+  }
+
+  private void addOffHeapStore(
+      TypeElement type,
+      Datatype.Builder datatypeBuilder,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    if (type.getAnnotation(OffHeap.class) == null) {
+      return;
+    }
+    if (!type.getTypeParameters().isEmpty()) {
+      messager.printMessage(ERROR, "@OffHeap is not supported on generic types", type);
+      return;
+    }
+    if (!datatype.getBuilderFactory().isPresent()) {
+      messager.printMessage(
+          ERROR,
+          "No accessible no-args Builder constructor available to implement @OffHeap",
+          type);
+      return;
+    }
+    for (Property property : generatorsByProperty.keySet()) {
+      if (!OffHeapStore.isSupported(property)) {
+        messager.printMessage(
+            ERROR,
+            "@OffHeap cannot store property " + property.getName() + " of type "
+                + property.getType(),
+            type);
+        return;
+      }
+    }
+    OffHeapStore store = new OffHeapStore(datatype, generatorsByProperty);
+    messager.printMessage(NOTE, "Off-heap layout: " + store.describe(), type);
+    datatypeBuilder.addGeneratedBuilderMembers(store);
+  }
+
+  private void addConcurrentBuilder(
+      TypeElement type,
+      Datatype.Builder datatypeBuilder,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    if (type.getAnnotation(Concurrent.class) == null) {
+      return;
+    }
+    if (!datatype.getBuilderFactory().isPresent()) {
+      messager.printMessage(
+          ERROR,
+          "No accessible no-args Builder constructor available to implement @Concurrent",
+          type);
+      return;
+    }
+    TypeClass concurrentBuilderType = datatype.getGeneratedBuilder()
+        .getQualifiedName()
+        .nestedType("ConcurrentBuilder")
+        .withParameters(type.getTypeParameters());
+    datatypeBuilder.addGeneratedBuilderMembers(
+        new ConcurrentBuilder(datatype, concurrentBuilderType, generatorsByProperty));
+  }
+
+  private void addDiffPatch(
+      TypeElement type,
+      Datatype.Builder datatypeBuilder,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    if (type.getAnnotation(Diffable.class) == null) {
+      return;
+    }
+    TypeClass patchType = datatype.getGeneratedBuilder()
+        .getQualifiedName()
+        .nestedType("Patch")
+        .withParameters(type.getTypeParameters());
+    datatypeBuilder.addGeneratedBuilderMembers(
+        new DiffPatch(datatype, patchType, generatorsByProperty));
+  }
+
   private Set<ExecutableElement> removeNonGetterMethods(
-      DeclaredType builder, Iterable<ExecutableElement> methods) {
+      TypeElement type, DeclaredType builder, Iterable<ExecutableElement> methods) {
     ImmutableSet.Builder<ExecutableElement> nonUnderriddenMethods = ImmutableSet.builder();
     for (ExecutableElement method : methods) {
       boolean isAbstract = method.getModifiers().contains(Modifier.ABSTRACT);
       boolean isStandardMethod = maybeStandardMethod(method).isPresent();
       boolean isToBuilderMethod = isToBuilderMethod(builder, method);
-      if (isAbstract && !isStandardMethod && !isToBuilderMethod) {
+      boolean isWithMethod = isWithMethod(type, method);
+      boolean isInternMethod = isInternMethod(type, method);
+      boolean isWriteMethod =
+          BinaryCodec.isWriteMethod(method) || BufferView.isWriteMethod(method);
+      boolean isBoundedToStringMethod = ToStringGenerator.isBoundedToStringMethod(method);
+      boolean isFingerprintMethod = Fingerprint.isFingerprintMethod(method);
+      if (isAbstract
+          && !isStandardMethod
+          && !isToBuilderMethod
+          && !isWithMethod
+          && !isInternMethod
+          && !isWriteMethod
+          && !isBoundedToStringMethod
+          && !isFingerprintMethod) {
         nonUnderriddenMethods.add(method);
       }
     }
@@ -399,17 +880,29 @@ class Analyser {
       TypeElement type,
       Datatype datatype,
       DeclaredType builder,
-      Iterable<ExecutableElement> methods) {
+      Iterable<ExecutableElement> methods,
+      Map<String, ExecutableElement> withMethods) {
     NamingConvention namingConvention = determineNamingConvention(type, methods, messager, types);
     Optional<JacksonSupport> jacksonSupport = JacksonSupport.create(type, elements);
     Set<String> methodsInvokedInBuilderConstructor =
         getMethodsInvokedInBuilderConstructor(asElement(builder));
+    Set<String> methodsOverriddenOnBuilder = methodsIn(asElement(builder).getEnclosedElements())
+        .stream()
+        .map(method -> method.getSimpleName().toString())
+        .collect(toSet());
+    Map<String, ExecutableElement> unmatchedWithMethods = new LinkedHashMap<>(withMethods);
 
     ImmutableMap.Builder<Property, PropertyCodeGenerator> generatorsByProperty =
         ImmutableMap.builder();
     for (ExecutableElement method : methods) {
       namingConvention.getPropertyNames(type, method).ifPresent(propertyBuilder -> {
         addPropertyData(propertyBuilder, type, method, jacksonSupport);
+        addSetterData(propertyBuilder, methodsOverriddenOnBuilder);
+        ExecutableElement withMethod =
+            unmatchedWithMethods.remove("with" + propertyBuilder.getCapitalizedName());
+        if (withMethod != null) {
+          addWithMethodData(propertyBuilder, withMethod);
+        }
         Property property = propertyBuilder.build();
         Config config = new ConfigImpl(
             builder,
@@ -417,12 +910,73 @@ class Analyser {
             property,
             method,
             methodsInvokedInBuilderConstructor);
-        generatorsByProperty.put(property, createCodeGenerator(config));
+        PropertyCodeGenerator generator = createCodeGenerator(config);
+        if (withMethod != null) {
+          verifyWithMethod(withMethod, datatype, property, generator);
+        }
+        generatorsByProperty.put(property, generator);
       });
     }
+    unmatchedWithMethods.forEach((name, withMethod) -> {
+      messager.printMessage(ERROR, name + " does not match any property", withMethod);
+    });
     return generatorsByProperty.build();
   }
 
+  /** Records whether the user's builder overrides any method setting the property. */
+  private static void addSetterData(
+      Property.Builder propertyBuilder, Set<String> methodsOverriddenOnBuilder) {
+    Property property = propertyBuilder.buildPartial();
+    boolean setterOverridden = Stream.of(
+            setter(property),
+            nullableSetter(property),
+            addMethod(property),
+            addAllMethod(property),
+            putMethod(property),
+            putAllMethod(property))
+        .anyMatch(methodsOverriddenOnBuilder::contains);
+    propertyBuilder.setSetterOverridden(setterOverridden);
+  }
+
+  private void addWithMethodData(Property.Builder propertyBuilder, ExecutableElement withMethod) {
+    TypeMirror parameterType = withMethod.getParameters().get(0).asType();
+    if (types.isSameType(parameterType, propertyBuilder.getType())) {
+      propertyBuilder.setWithMethodDeclared(true);
+    } else {
+      messager.printMessage(
+          ERROR,
+          withMethod.getSimpleName() + " must take a single parameter of type "
+              + propertyBuilder.getType(),
+          withMethod);
+    }
+  }
+
+  private void verifyWithMethod(
+      ExecutableElement withMethod,
+      Datatype datatype,
+      Property property,
+      PropertyCodeGenerator generator) {
+    if (!generator.isValueFieldConvertible()) {
+      messager.printMessage(
+          ERROR,
+          withMethod.getSimpleName() + " is not supported for collection or buildable properties",
+          withMethod);
+    } else if (property.isSetterOverridden() && !datatype.getBuilderFactory().isPresent()) {
+      messager.printMessage(
+          ERROR,
+          "No accessible no-args Builder constructor available to run the overridden setter in "
+              + withMethod.getSimpleName(),
+          withMethod);
+    } else if (datatype.getHasOverriddenBuildMethod()
+        && !datatype.getBuilderFactory().isPresent()) {
+      messager.printMessage(
+          ERROR,
+          "No accessible no-args Builder constructor available to run the overridden build "
+              + "method in " + withMethod.getSimpleName(),
+          withMethod);
+    }
+  }
+
   private Set<String> getMethodsInvokedInBuilderConstructor(TypeElement builder) {
     MethodIntrospector methodIntrospector = MethodIntrospector.instance(env);
     List<ExecutableElement> constructors = constructorsIn(builder.getEnclosedElements());
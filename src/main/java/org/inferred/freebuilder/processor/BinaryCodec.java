@@ -0,0 +1,969 @@
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.EXPLICIT_TYPES;
+import static org.inferred.freebuilder.processor.model.ModelUtils.asElement;
+import static org.inferred.freebuilder.processor.model.ModelUtils.maybeDeclared;
+
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.LinkedListMultimap;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.excerpt.BinaryIo;
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.Initially;
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.QualifiedName;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.Type;
+import org.inferred.freebuilder.processor.source.TypeClass;
+import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.Variable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * A compact binary codec for a type declaring {@code writeTo(DataOutput)}, implementing that
+ * method on the value and partial types, and adding a matching {@code readFrom(DataInput)} method
+ * to the builder.
+ *
+ * <p>Each value starts with a hash of its property names and types, so a reader built against a
+ * different schema fails fast. Properties then follow in declaration order: int and long values as
+ * zig-zag varints, strings as UTF-8, enums as their ordinal, optional and nullable values behind a
+ * presence flag, and collections, maps and arrays prefixed by their size. Nested types declaring
+ * their own {@code writeTo(DataOutput)} method are written with it.
+ */
+class BinaryCodec {
+
+  static final String WRITE_METHOD = "writeTo";
+  static final String READ_METHOD = "readFrom";
+
+  /** Returns true if {@code method} is a {@code writeTo(DataOutput)} method to implement. */
+  static boolean isWriteMethod(ExecutableElement method) {
+    return method.getSimpleName().contentEquals(WRITE_METHOD)
+        && method.getModifiers().contains(Modifier.ABSTRACT)
+        && method.getReturnType().getKind() == TypeKind.VOID
+        && method.getParameters().size() == 1
+        && isNamed(method.getParameters().get(0).asType(), DataOutput.class.getName());
+  }
+
+  private final Datatype datatype;
+  private final ImmutableList<PropertyCodec> properties;
+  private final int schemaHash;
+
+  private BinaryCodec(Datatype datatype, List<PropertyCodec> properties) {
+    this.datatype = datatype;
+    this.properties = ImmutableList.copyOf(properties);
+    this.schemaHash = schemaHash("", properties);
+  }
+
+  /** Returns the codec for each property, in declaration order. */
+  ImmutableList<PropertyCodec> getProperties() {
+    return properties;
+  }
+
+  /** Returns the {@code writeTo(DataOutput)} method, for the value and partial types. */
+  Excerpt writeMethod() {
+    return new WriteMethod(properties, schemaHash);
+  }
+
+  /** Returns the {@code readFrom(DataInput)} method, for the builder. */
+  Excerpt readMethod() {
+    return new ReadMethod(datatype.getType(), datatype.getBuilder(), properties, schemaHash);
+  }
+
+  /**
+   * Works out how to encode each property of a type, reporting any that cannot be encoded.
+   */
+  static class Resolver {
+
+    private final Elements elements;
+    private final Types types;
+
+    Resolver(Elements elements, Types types) {
+      this.elements = elements;
+      this.types = types;
+    }
+
+    /**
+     * Returns a codec for every property, or the first property that cannot be encoded.
+     */
+    CodecOrUnsupported resolve(
+        Datatype datatype, Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+      List<PropertyCodec> properties = new ArrayList<>();
+      for (Map.Entry<Property, PropertyCodeGenerator> entry : generatorsByProperty.entrySet()) {
+        Property property = entry.getKey();
+        PropertyCodeGenerator generator = entry.getValue();
+        ValueCodec codec = resolve(property.getType(), true).orElse(null);
+        if (codec == null) {
+          return new CodecOrUnsupported(null, property);
+        }
+        boolean nullable =
+            generator.initialState() == Initially.OPTIONAL && !codec.tracksPresence();
+        properties.add(new PropertyCodec(property, generator, codec, nullable));
+      }
+      return new CodecOrUnsupported(new BinaryCodec(datatype, properties), null);
+    }
+
+    /**
+     * Returns a codec for {@code type}. Top-level collections may be read into any collection, as
+     * they are passed to the builder's addAll or putAll method; nested ones must be read into a
+     * matching type.
+     */
+    private Optional<ValueCodec> resolve(TypeMirror type, boolean topLevel) {
+      if (type.getKind().isPrimitive()) {
+        return Optional.of(new PrimitiveCodec(type.getKind()));
+      } else if (type.getKind() == TypeKind.ARRAY) {
+        TypeMirror component = ((ArrayType) type).getComponentType();
+        if (!isReifiable(component)) {
+          return Optional.empty();
+        }
+        return resolve(component, false).map(codec -> new ArrayCodec(component, codec));
+      }
+      DeclaredType declared = maybeDeclared(type).orElse(null);
+      if (declared == null) {
+        return Optional.empty();
+      }
+      TypeElement element = asElement(declared);
+      String name = element.getQualifiedName().toString();
+      if (isBoxed(type)) {
+        return Optional.of(new PrimitiveCodec(types.unboxedType(type).getKind()));
+      } else if (name.equals(String.class.getName())) {
+        return Optional.of(new StringCodec());
+      } else if (element.getKind() == ElementKind.ENUM) {
+        List<String> constants = element.getEnclosedElements()
+            .stream()
+            .filter(member -> member.getKind() == ElementKind.ENUM_CONSTANT)
+            .map(member -> member.getSimpleName().toString())
+            .collect(toList());
+        return Optional.of(new EnumCodec(type, constants));
+      }
+      for (OptionalType optional : OptionalType.values()) {
+        if (name.equals(optional.className)) {
+          return optional.elementType(declared, types)
+              .flatMap(elementType -> resolve(elementType, false))
+              .map(codec -> new OptionalCodec(type, optional, codec));
+        }
+      }
+      if (isNested(element)) {
+        return BuildableType.maybeBuilder(declared, elements, types)
+            .map(builder -> BuildableType.create(declared, builder, elements, types))
+            .map(buildable -> new NestedCodec(buildable.newBuilder(EXPLICIT_TYPES)));
+      }
+      Optional<DeclaredType> collection = supertype(declared, Collection.class.getName());
+      if (collection.isPresent()) {
+        Class<?> implementation;
+        if (topLevel || name.equals(List.class.getName()) || name.equals(Collection.class.getName())) {
+          implementation = ArrayList.class;
+        } else if (name.equals(Set.class.getName())) {
+          implementation = LinkedHashSet.class;
+        } else {
+          return Optional.empty();
+        }
+        TypeMirror elementType = collection.get().getTypeArguments().get(0);
+        return resolveAll(elementType)
+            .map(codecs -> new CollectionCodec(implementation, elementType, codecs.get(0)));
+      }
+      Optional<DeclaredType> map = supertype(declared, Map.class.getName());
+      if (map.isPresent() && (topLevel || name.equals(Map.class.getName()))) {
+        TypeMirror keyType = map.get().getTypeArguments().get(0);
+        TypeMirror valueType = map.get().getTypeArguments().get(1);
+        return resolveAll(keyType, valueType)
+            .map(codecs -> new MapCodec(keyType, valueType, codecs.get(0), codecs.get(1)));
+      }
+      Optional<DeclaredType> multimap =
+          supertype(declared, "com.google.common.collect.Multimap");
+      if (multimap.isPresent() && topLevel) {
+        TypeMirror keyType = multimap.get().getTypeArguments().get(0);
+        TypeMirror valueType = multimap.get().getTypeArguments().get(1);
+        return resolveAll(keyType, valueType)
+            .map(codecs -> new MultimapCodec(keyType, valueType, codecs.get(0), codecs.get(1)));
+      }
+      return Optional.empty();
+    }
+
+    private Optional<List<ValueCodec>> resolveAll(TypeMirror... typeArguments) {
+      List<ValueCodec> codecs = new ArrayList<>();
+      for (TypeMirror typeArgument : typeArguments) {
+        if (!isReifiable(typeArgument) && typeArgument.getKind() != TypeKind.DECLARED) {
+          return Optional.empty();
+        }
+        ValueCodec codec = resolve(typeArgument, false).orElse(null);
+        if (codec == null) {
+          return Optional.empty();
+        }
+        codecs.add(codec);
+      }
+      return Optional.of(codecs);
+    }
+
+    private boolean isBoxed(TypeMirror type) {
+      try {
+        types.unboxedType(type);
+        return true;
+      } catch (IllegalArgumentException e) {
+        return false;
+      }
+    }
+
+    /** Returns true if {@code element} is a FreeBuilder type declaring its own writeTo method. */
+    private boolean isNested(TypeElement element) {
+      return element.getAnnotation(FreeBuilder.class) != null
+          && ElementFilter.methodsIn(elements.getAllMembers(element))
+              .stream()
+              .anyMatch(BinaryCodec::isWriteMethod);
+    }
+
+    private Optional<DeclaredType> supertype(DeclaredType type, String qualifiedName) {
+      if (asElement(type).getQualifiedName().contentEquals(qualifiedName)) {
+        return Optional.of(type);
+      }
+      for (TypeMirror supertype : types.directSupertypes(type)) {
+        Optional<DeclaredType> result = maybeDeclared(supertype)
+            .flatMap(declared -> supertype(declared, qualifiedName));
+        if (result.isPresent()) {
+          return result;
+        }
+      }
+      return Optional.empty();
+    }
+
+    private static boolean isReifiable(TypeMirror type) {
+      if (type.getKind().isPrimitive()) {
+        return true;
+      }
+      return maybeDeclared(type)
+          .filter(declared -> declared.getTypeArguments().isEmpty())
+          .isPresent();
+    }
+  }
+
+  /** Either a codec, or the property that prevented one being created. */
+  static class CodecOrUnsupported {
+    private final BinaryCodec codec;
+    private final Property unsupported;
+
+    CodecOrUnsupported(BinaryCodec codec, Property unsupported) {
+      this.codec = codec;
+      this.unsupported = unsupported;
+    }
+
+    Optional<BinaryCodec> codec() {
+      return Optional.ofNullable(codec);
+    }
+
+    Optional<Property> unsupported() {
+      return Optional.ofNullable(unsupported);
+    }
+  }
+
+  private static boolean isNamed(TypeMirror type, String qualifiedName) {
+    return maybeDeclared(type)
+        .filter(declared -> asElement(declared).getQualifiedName().contentEquals(qualifiedName))
+        .isPresent();
+  }
+
+  /**
+   * Returns a 32-bit FNV-1a hash of {@code layout}, followed by each property's name and type,
+   * and anything else its encoding depends on, such as the constants of enums written by ordinal.
+   */
+  static int schemaHash(String layout, List<PropertyCodec> properties) {
+    StringBuilder schema = new StringBuilder(layout);
+    for (PropertyCodec property : properties) {
+      schema.append(property.property.getName())
+          .append(':')
+          .append(property.property.getType())
+          .append(property.nullable ? "?" : "");
+      property.codec.addSchema(schema);
+      schema.append(';');
+    }
+    int hash = 0x811C9DC5;
+    for (byte b : schema.toString().getBytes(StandardCharsets.UTF_8)) {
+      hash = (hash ^ (b & 0xFF)) * 0x01000193;
+    }
+    return hash;
+  }
+
+  static String hex(int value) {
+    return "0x" + Integer.toHexString(value).toUpperCase();
+  }
+
+  static class PropertyCodec extends ValueType {
+    final Property property;
+    final PropertyCodeGenerator generator;
+    final ValueCodec codec;
+    final boolean nullable;
+
+    PropertyCodec(
+        Property property, PropertyCodeGenerator generator, ValueCodec codec, boolean nullable) {
+      this.property = property;
+      this.generator = generator;
+      this.codec = codec;
+      this.nullable = nullable;
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("property", property);
+      fields.add("generator", generator);
+      fields.add("codec", codec);
+      fields.add("nullable", nullable);
+    }
+  }
+
+  private static class WriteMethod extends ValueType implements Excerpt {
+    private final ImmutableList<PropertyCodec> properties;
+    private final int schemaHash;
+
+    WriteMethod(ImmutableList<PropertyCodec> properties, int schemaHash) {
+      this.properties = properties;
+      this.schemaHash = schemaHash;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public void %s(%s out) throws %s {",
+              WRITE_METHOD, DataOutput.class, IOException.class)
+          .addLine("    out.writeInt(%s);", hex(schemaHash));
+      for (PropertyCodec property : properties) {
+        Excerpt value = Excerpts.add("%s()", property.property.getGetterName());
+        if (property.nullable || !property.codec.isSimple()) {
+          Variable variable = new Variable(property.property.getName());
+          code.addLine("    %s %s = %s;", property.property.getType(), variable, value);
+          value = variable;
+        }
+        if (property.nullable) {
+          code.addLine("    out.writeBoolean(%s != null);", value)
+              .addLine("    if (%s != null) {", value);
+          property.codec.addWrite(code, "      ", value);
+          code.addLine("    }");
+        } else {
+          property.codec.addWrite(code, "    ", value);
+        }
+      }
+      code.addLine("  }");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("properties", properties);
+      fields.add("schemaHash", schemaHash);
+    }
+  }
+
+  private static class ReadMethod extends ValueType implements Excerpt {
+    private final TypeClass type;
+    private final Type builder;
+    private final ImmutableList<PropertyCodec> properties;
+    private final int schemaHash;
+
+    ReadMethod(
+        TypeClass type, Type builder, ImmutableList<PropertyCodec> properties, int schemaHash) {
+      this.type = type;
+      this.builder = builder;
+      this.properties = properties;
+      this.schemaHash = schemaHash;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      Variable schema = new Variable("schema");
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Sets each property to the value read from {@code in}, in the format written")
+          .addLine(" * by {@code %s.%s}. As with {@code mergeFrom}, collection properties",
+              type.getSimpleName(), WRITE_METHOD)
+          .addLine(" * are added to rather than replaced.")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", builder.getSimpleName())
+          .addLine(" * @throws IOException if {@code in} cannot be read, or was written with a")
+          .addLine(" *     different set of properties")
+          .addLine(" */")
+          .addLine("public %s %s(%s in) throws %s {",
+              builder, READ_METHOD, DataInput.class, IOException.class)
+          .addLine("  int %s = in.readInt();", schema)
+          .addLine("  if (%s != %s) {", schema, hex(schemaHash))
+          .addLine("    throw new %s(\"Expected %s schema %s, got 0x\"",
+              IOException.class, type.getSimpleName(), hex(schemaHash))
+          .addLine("        + Integer.toHexString(%s).toUpperCase());", schema)
+          .addLine("  }");
+      for (PropertyCodec property : properties) {
+        if (property.nullable) {
+          code.addLine("  if (in.readBoolean()) {");
+          Excerpt value = property.codec.addRead(code, "    ");
+          code.add("    ");
+          property.generator.addSetFromResult(code, Excerpts.add("this"), value);
+          code.addLine("  } else {")
+              .add("    ");
+          property.generator.addSetFromResult(code, Excerpts.add("this"), Excerpts.add("null"));
+          code.addLine("  }");
+        } else {
+          Excerpt value = property.codec.addRead(code, "  ");
+          code.add("  ");
+          property.generator.addSetFromResult(code, Excerpts.add("this"), value);
+        }
+      }
+      code.addLine("  return (%s) this;", builder)
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("type", type);
+      fields.add("builder", builder);
+      fields.add("properties", properties);
+      fields.add("schemaHash", schemaHash);
+    }
+  }
+
+  /** Encodes values of a single type. */
+  abstract static class ValueCodec extends ValueType {
+
+    /**
+     * Adds statements writing {@code value} to {@code out}, each prefixed by {@code indent}.
+     * {@code value} may be evaluated more than once, unless the codec {@link #isSimple is simple}.
+     */
+    abstract void addWrite(SourceBuilder code, String indent, Excerpt value);
+
+    /**
+     * Adds any statements needed to read a value from {@code in}, each prefixed by
+     * {@code indent}, and returns an expression evaluating to it.
+     */
+    abstract Excerpt addRead(SourceBuilder code, String indent);
+
+    /**
+     * Appends anything the encoding depends on beyond the property's declared type to
+     * {@code schema}, so a change to it is detected as a schema mismatch when reading.
+     */
+    void addSchema(StringBuilder schema) {}
+
+    /** Returns true if the value to write is only evaluated once. */
+    boolean isSimple() {
+      return true;
+    }
+
+    /** Returns true if the codec records whether a value is present itself. */
+    boolean tracksPresence() {
+      return false;
+    }
+
+    /**
+     * Returns true if values read are of the type written, rather than some other implementation
+     * of it, so they can be returned from a getter directly.
+     */
+    boolean isExact() {
+      return false;
+    }
+  }
+
+  private static class PrimitiveCodec extends ValueCodec {
+    private final TypeKind kind;
+
+    PrimitiveCodec(TypeKind kind) {
+      this.kind = kind;
+    }
+
+    @Override
+    void addWrite(SourceBuilder code, String indent, Excerpt value) {
+      switch (kind) {
+        case INT:
+          code.addLine("%s%s.writeInt(out, %s);", indent, BinaryIo.TYPE, value);
+          break;
+
+        case LONG:
+          code.addLine("%s%s.writeLong(out, %s);", indent, BinaryIo.TYPE, value);
+          break;
+
+        default:
+          code.addLine("%sout.write%s(%s);", indent, methodSuffix(), value);
+          break;
+      }
+    }
+
+    @Override
+    Excerpt addRead(SourceBuilder code, String indent) {
+      switch (kind) {
+        case INT:
+          return Excerpts.add("%s.readInt(in)", BinaryIo.TYPE);
+
+        case LONG:
+          return Excerpts.add("%s.readLong(in)", BinaryIo.TYPE);
+
+        default:
+          return Excerpts.add("in.read%s()", methodSuffix());
+      }
+    }
+
+    @Override
+    boolean isExact() {
+      return true;
+    }
+
+    private String methodSuffix() {
+      String name = kind.name();
+      return name.charAt(0) + name.substring(1).toLowerCase();
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("kind", kind);
+    }
+  }
+
+  private static class StringCodec extends ValueCodec {
+    @Override
+    boolean isExact() {
+      return true;
+    }
+
+    @Override
+    void addWrite(SourceBuilder code, String indent, Excerpt value) {
+      code.addLine("%s%s.writeString(out, %s);", indent, BinaryIo.TYPE, value);
+    }
+
+    @Override
+    Excerpt addRead(SourceBuilder code, String indent) {
+      return Excerpts.add("%s.readString(in)", BinaryIo.TYPE);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
+  private static class EnumCodec extends ValueCodec {
+    private final TypeMirror type;
+    private final ImmutableList<String> constants;
+
+    EnumCodec(TypeMirror type, List<String> constants) {
+      this.type = type;
+      this.constants = ImmutableList.copyOf(constants);
+    }
+
+    @Override
+    void addSchema(StringBuilder schema) {
+      // Values are written by ordinal, so reordering or inserting constants changes the encoding
+      schema.append('{').append(String.join(",", constants)).append('}');
+    }
+
+    @Override
+    boolean isExact() {
+      return true;
+    }
+
+    @Override
+    void addWrite(SourceBuilder code, String indent, Excerpt value) {
+      code.addLine("%s%s.writeSize(out, %s.ordinal());", indent, BinaryIo.TYPE, value);
+    }
+
+    @Override
+    Excerpt addRead(SourceBuilder code, String indent) {
+      return Excerpts.add("%s.values()[%s.readSize(in)]", type, BinaryIo.TYPE);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("type", type.toString());
+      fields.add("constants", constants);
+    }
+  }
+
+  private static class NestedCodec extends ValueCodec {
+    private final Excerpt newBuilder;
+
+    NestedCodec(Excerpt newBuilder) {
+      this.newBuilder = newBuilder;
+    }
+
+    @Override
+    boolean isExact() {
+      return true;
+    }
+
+    @Override
+    void addWrite(SourceBuilder code, String indent, Excerpt value) {
+      code.addLine("%s%s.%s(out);", indent, value, WRITE_METHOD);
+    }
+
+    @Override
+    Excerpt addRead(SourceBuilder code, String indent) {
+      return Excerpts.add("%s.%s(in).build()", newBuilder, READ_METHOD);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("newBuilder", newBuilder);
+    }
+  }
+
+  /** The optional types a property or element may be wrapped in. */
+  enum OptionalType {
+    JAVA("java.util.Optional", "get", "empty"),
+    GUAVA("com.google.common.base.Optional", "get", "absent"),
+    INT("java.util.OptionalInt", "getAsInt", "empty"),
+    LONG("java.util.OptionalLong", "getAsLong", "empty"),
+    DOUBLE("java.util.OptionalDouble", "getAsDouble", "empty");
+
+    final String className;
+    final String getter;
+    final String empty;
+
+    OptionalType(String className, String getter, String empty) {
+      this.className = className;
+      this.getter = getter;
+      this.empty = empty;
+    }
+
+    Optional<TypeMirror> elementType(DeclaredType type, Types types) {
+      switch (this) {
+        case INT:
+          return Optional.of(types.getPrimitiveType(TypeKind.INT));
+
+        case LONG:
+          return Optional.of(types.getPrimitiveType(TypeKind.LONG));
+
+        case DOUBLE:
+          return Optional.of(types.getPrimitiveType(TypeKind.DOUBLE));
+
+        default:
+          if (type.getTypeArguments().isEmpty()) {
+            return Optional.empty();
+          }
+          return Optional.of(type.getTypeArguments().get(0));
+      }
+    }
+  }
+
+  private static class OptionalCodec extends ValueCodec {
+    private final TypeMirror type;
+    private final OptionalType optional;
+    private final ValueCodec element;
+
+    OptionalCodec(TypeMirror type, OptionalType optional, ValueCodec element) {
+      this.type = type;
+      this.optional = optional;
+      this.element = element;
+    }
+
+    @Override
+    boolean isSimple() {
+      return false;
+    }
+
+    @Override
+    boolean tracksPresence() {
+      return true;
+    }
+
+    @Override
+    boolean isExact() {
+      return element.isExact();
+    }
+
+    @Override
+    void addSchema(StringBuilder schema) {
+      element.addSchema(schema);
+    }
+
+    @Override
+    void addWrite(SourceBuilder code, String indent, Excerpt value) {
+      code.addLine("%sout.writeBoolean(%s.isPresent());", indent, value)
+          .addLine("%sif (%s.isPresent()) {", indent, value);
+      element.addWrite(code, indent + "  ", Excerpts.add("%s.%s()", value, optional.getter));
+      code.addLine("%s}", indent);
+    }
+
+    @Override
+    Excerpt addRead(SourceBuilder code, String indent) {
+      Variable result = new Variable("optional");
+      QualifiedName erasure = QualifiedName.of(asElement(maybeDeclared(type).get()));
+      code.addLine("%s%s %s = %s.%s();", indent, type, result, erasure, optional.empty)
+          .addLine("%sif (in.readBoolean()) {", indent);
+      Excerpt value = element.addRead(code, indent + "  ");
+      code.addLine("%s  %s = %s.of(%s);", indent, result, erasure, value)
+          .addLine("%s}", indent);
+      return result;
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("type", type.toString());
+      fields.add("optional", optional);
+      fields.add("element", element);
+    }
+  }
+
+  private static class ArrayCodec extends ValueCodec {
+    private final TypeMirror componentType;
+    private final ValueCodec component;
+
+    ArrayCodec(TypeMirror componentType, ValueCodec component) {
+      this.componentType = componentType;
+      this.component = component;
+    }
+
+    @Override
+    boolean isSimple() {
+      return false;
+    }
+
+    @Override
+    boolean isExact() {
+      return component.isExact();
+    }
+
+    @Override
+    void addSchema(StringBuilder schema) {
+      component.addSchema(schema);
+    }
+
+    @Override
+    void addWrite(SourceBuilder code, String indent, Excerpt value) {
+      code.addLine("%s%s.writeSize(out, %s.length);", indent, BinaryIo.TYPE, value);
+      if (componentType.getKind() == TypeKind.BYTE) {
+        code.addLine("%sout.write(%s);", indent, value);
+        return;
+      }
+      Variable element = new Variable("element");
+      code.addLine("%sfor (%s %s : %s) {", indent, componentType, element, value);
+      component.addWrite(code, indent + "  ", element);
+      code.addLine("%s}", indent);
+    }
+
+    @Override
+    Excerpt addRead(SourceBuilder code, String indent) {
+      Variable array = new Variable("array");
+      code.addLine("%s%s[] %s = new %s[%s.readSize(in)];",
+          indent, componentType, array, componentType, BinaryIo.TYPE);
+      if (componentType.getKind() == TypeKind.BYTE) {
+        code.addLine("%sin.readFully(%s);", indent, array);
+        return array;
+      }
+      Variable index = new Variable("i");
+      code.addLine("%sfor (int %s = 0; %s < %s.length; %s++) {",
+          indent, index, index, array, index);
+      Excerpt value = component.addRead(code, indent + "  ");
+      code.addLine("%s  %s[%s] = %s;", indent, array, index, value)
+          .addLine("%s}", indent);
+      return array;
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("componentType", componentType.toString());
+      fields.add("component", component);
+    }
+  }
+
+  private static class CollectionCodec extends ValueCodec {
+    private final Class<?> implementation;
+    private final TypeMirror elementType;
+    private final ValueCodec element;
+
+    CollectionCodec(Class<?> implementation, TypeMirror elementType, ValueCodec element) {
+      this.implementation = implementation;
+      this.elementType = elementType;
+      this.element = element;
+    }
+
+    @Override
+    boolean isSimple() {
+      return false;
+    }
+
+    @Override
+    void addSchema(StringBuilder schema) {
+      element.addSchema(schema);
+    }
+
+    @Override
+    void addWrite(SourceBuilder code, String indent, Excerpt value) {
+      Variable item = new Variable("element");
+      code.addLine("%s%s.writeSize(out, %s.size());", indent, BinaryIo.TYPE, value)
+          .addLine("%sfor (%s %s : %s) {", indent, elementType, item, value);
+      element.addWrite(code, indent + "  ", item);
+      code.addLine("%s}", indent);
+    }
+
+    @Override
+    Excerpt addRead(SourceBuilder code, String indent) {
+      Variable size = new Variable("size");
+      Variable result = new Variable("elements");
+      code.addLine("%sint %s = %s.readSize(in);", indent, size, BinaryIo.TYPE)
+          .addLine("%s%s<%s> %s = new %s<>();",
+              indent, implementation, elementType, result, implementation)
+          .addLine("%sfor (; %s > 0; %s--) {", indent, size, size);
+      Excerpt value = element.addRead(code, indent + "  ");
+      code.addLine("%s  %s.add(%s);", indent, result, value)
+          .addLine("%s}", indent);
+      return result;
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("implementation", implementation);
+      fields.add("elementType", elementType.toString());
+      fields.add("element", element);
+    }
+  }
+
+  private static class MapCodec extends ValueCodec {
+    private final TypeMirror keyType;
+    private final TypeMirror valueType;
+    private final ValueCodec key;
+    private final ValueCodec value;
+
+    MapCodec(TypeMirror keyType, TypeMirror valueType, ValueCodec key, ValueCodec value) {
+      this.keyType = keyType;
+      this.valueType = valueType;
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    boolean isSimple() {
+      return false;
+    }
+
+    @Override
+    void addSchema(StringBuilder schema) {
+      key.addSchema(schema);
+      value.addSchema(schema);
+    }
+
+    @Override
+    void addWrite(SourceBuilder code, String indent, Excerpt map) {
+      Variable entry = new Variable("entry");
+      code.addLine("%s%s.writeSize(out, %s.size());", indent, BinaryIo.TYPE, map)
+          .addLine("%sfor (%s<%s, %s> %s : %s.entrySet()) {",
+              indent, Map.Entry.class, keyType, valueType, entry, map);
+      key.addWrite(code, indent + "  ", Excerpts.add("%s.getKey()", entry));
+      value.addWrite(code, indent + "  ", Excerpts.add("%s.getValue()", entry));
+      code.addLine("%s}", indent);
+    }
+
+    @Override
+    Excerpt addRead(SourceBuilder code, String indent) {
+      Variable size = new Variable("size");
+      Variable result = new Variable("entries");
+      code.addLine("%sint %s = %s.readSize(in);", indent, size, BinaryIo.TYPE)
+          .addLine("%s%s<%s, %s> %s = new %s<>();",
+              indent, LinkedHashMap.class, keyType, valueType, result, LinkedHashMap.class)
+          .addLine("%sfor (; %s > 0; %s--) {", indent, size, size);
+      addReadEntry(code, indent + "  ", result, keyType, key, value);
+      code.addLine("%s}", indent);
+      return result;
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("keyType", keyType.toString());
+      fields.add("valueType", valueType.toString());
+      fields.add("key", key);
+      fields.add("value", value);
+    }
+  }
+
+  private static class MultimapCodec extends ValueCodec {
+    private final TypeMirror keyType;
+    private final TypeMirror valueType;
+    private final ValueCodec key;
+    private final ValueCodec value;
+
+    MultimapCodec(TypeMirror keyType, TypeMirror valueType, ValueCodec key, ValueCodec value) {
+      this.keyType = keyType;
+      this.valueType = valueType;
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    boolean isSimple() {
+      return false;
+    }
+
+    @Override
+    void addSchema(StringBuilder schema) {
+      key.addSchema(schema);
+      value.addSchema(schema);
+    }
+
+    @Override
+    void addWrite(SourceBuilder code, String indent, Excerpt multimap) {
+      Variable entry = new Variable("entry");
+      code.addLine("%s%s.writeSize(out, %s.size());", indent, BinaryIo.TYPE, multimap)
+          .addLine("%sfor (%s<%s, %s> %s : %s.entries()) {",
+              indent, Map.Entry.class, keyType, valueType, entry, multimap);
+      key.addWrite(code, indent + "  ", Excerpts.add("%s.getKey()", entry));
+      value.addWrite(code, indent + "  ", Excerpts.add("%s.getValue()", entry));
+      code.addLine("%s}", indent);
+    }
+
+    @Override
+    Excerpt addRead(SourceBuilder code, String indent) {
+      Variable size = new Variable("size");
+      Variable result = new Variable("entries");
+      code.addLine("%sint %s = %s.readSize(in);", indent, size, BinaryIo.TYPE)
+          .addLine("%s%s<%s, %s> %s = %s.create();",
+              indent, LinkedListMultimap.class, keyType, valueType, result,
+              LinkedListMultimap.class)
+          .addLine("%sfor (; %s > 0; %s--) {", indent, size, size);
+      addReadEntry(code, indent + "  ", result, keyType, key, value);
+      code.addLine("%s}", indent);
+      return result;
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("keyType", keyType.toString());
+      fields.add("valueType", valueType.toString());
+      fields.add("key", key);
+      fields.add("value", value);
+    }
+  }
+
+  /**
+   * Reads a key and value, in that order, and puts them into {@code map}. The key is stored in a
+   * local variable first, as reading the value may add statements of its own.
+   */
+  private static void addReadEntry(
+      SourceBuilder code,
+      String indent,
+      Excerpt map,
+      TypeMirror keyType,
+      ValueCodec key,
+      ValueCodec value) {
+    Variable keyVariable = new Variable("key");
+    Excerpt readKey = key.addRead(code, indent);
+    code.addLine("%s%s %s = %s;", indent, keyType, keyVariable, readKey);
+    Excerpt readValue = value.addRead(code, indent);
+    code.addLine("%s%s.put(%s, %s);", indent, map, keyVariable, readValue);
+  }
+}
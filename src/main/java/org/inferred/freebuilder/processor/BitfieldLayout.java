@@ -0,0 +1,252 @@
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.model.ModelUtils.maybeAsTypeElement;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.inferred.freebuilder.processor.property.DefaultProperty;
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.FieldAccess;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+
+/**
+ * Packs the boolean and small enum properties of a
+ * {@link org.inferred.freebuilder.CompactLayout @CompactLayout} type into int or long words on the
+ * generated value type.
+ *
+ * <p>Enums are stored as their ordinal, and decoded through a cached copy of their values array.
+ * Ordinals are range-checked when packed, as an enum compiled separately may since have gained
+ * constants that would not fit in its slot.
+ * Only non-null properties that take part in equals and hashCode are packed, so the words can be
+ * compared and hashed directly.
+ */
+class BitfieldLayout {
+
+  /** Enums with more constants than this are left as references. */
+  private static final int MAX_ENUM_BITS = 8;
+  private static final String ORDINAL_METHOD = "_packedOrdinal";
+
+  private static final class Slot {
+    final int word;
+    final int shift;
+    final int width;
+    final boolean isEnum;
+
+    Slot(int word, int shift, int width, boolean isEnum) {
+      this.word = word;
+      this.shift = shift;
+      this.width = width;
+      this.isEnum = isEnum;
+    }
+  }
+
+  /** A layout packing no properties. */
+  static final BitfieldLayout NONE = new BitfieldLayout(ImmutableMap.of(), false, 0);
+
+  /**
+   * Returns the layout for {@code generatorsByProperty}, which will be empty unless
+   * {@code datatype} has opted in. Fewer than two packable properties cannot save any space, so the
+   * layout will also be empty in that case.
+   */
+  static BitfieldLayout of(
+      Datatype datatype, Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    if (!datatype.isCompactLayout()) {
+      return NONE;
+    }
+    Map<Property, Integer> widths = new LinkedHashMap<>();
+    generatorsByProperty.forEach((property, generator) -> {
+      bitWidth(property, generator).ifPresent(width -> widths.put(property, width));
+    });
+    if (widths.size() < 2) {
+      return NONE;
+    }
+    int totalBits = widths.values().stream().mapToInt(Integer::intValue).sum();
+    boolean isLong = totalBits > Integer.SIZE;
+    int wordSize = isLong ? Long.SIZE : Integer.SIZE;
+    ImmutableMap.Builder<Property, Slot> slots = ImmutableMap.builder();
+    int word = 0;
+    int shift = 0;
+    for (Map.Entry<Property, Integer> entry : widths.entrySet()) {
+      int width = entry.getValue();
+      if (shift + width > wordSize) {
+        word++;
+        shift = 0;
+      }
+      boolean isEnum = entry.getKey().getType().getKind() != TypeKind.BOOLEAN;
+      slots.put(entry.getKey(), new Slot(word, shift, width, isEnum));
+      shift += width;
+    }
+    return new BitfieldLayout(slots.build(), isLong, word + 1);
+  }
+
+  private static Optional<Integer> bitWidth(Property property, PropertyCodeGenerator generator) {
+    if (!(generator instanceof DefaultProperty) || !property.isInEqualsAndHashCode()) {
+      return Optional.empty();
+    }
+    if (property.getType().getKind() == TypeKind.BOOLEAN) {
+      return Optional.of(1);
+    }
+    TypeElement element = maybeAsTypeElement(property.getType()).orElse(null);
+    if (element == null || element.getKind() != ElementKind.ENUM) {
+      return Optional.empty();
+    }
+    long constants = element.getEnclosedElements()
+        .stream()
+        .filter(member -> member.getKind() == ElementKind.ENUM_CONSTANT)
+        .count();
+    if (constants == 0) {
+      return Optional.empty();
+    }
+    int width = Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(constants - 1));
+    return (width <= MAX_ENUM_BITS) ? Optional.of(width) : Optional.empty();
+  }
+
+  private final ImmutableMap<Property, Slot> slots;
+  private final boolean isLong;
+  private final ImmutableList<FieldAccess> words;
+
+  private BitfieldLayout(ImmutableMap<Property, Slot> slots, boolean isLong, int wordCount) {
+    this.slots = slots;
+    this.isLong = isLong;
+    ImmutableList.Builder<FieldAccess> words = ImmutableList.builder();
+    for (int i = 0; i < wordCount; i++) {
+      words.add(new FieldAccess("_bits" + i));
+    }
+    this.words = words.build();
+  }
+
+  boolean isEmpty() {
+    return slots.isEmpty();
+  }
+
+  boolean isPacked(Property property) {
+    return slots.containsKey(property);
+  }
+
+  /** Returns the fields holding the packed properties. */
+  List<FieldAccess> getWords() {
+    return words;
+  }
+
+  /** Adds the packed words, and a cache of the values array of each packed enum. */
+  void addFieldDeclarations(SourceBuilder code) {
+    for (FieldAccess word : words) {
+      code.addLine("  private final %s %s;", isLong ? "long" : "int", word);
+    }
+    slots.forEach((property, slot) -> {
+      if (slot.isEnum) {
+        code.addLine("  private static final %1$s[] %2$s = %1$s.values();",
+            property.getType(), valuesField(property));
+      }
+    });
+  }
+
+  /** Adds assignments to each word from {@code values}, expressions of each property's type. */
+  void addFieldAssignments(SourceBuilder code, Function<Property, Excerpt> values) {
+    for (int i = 0; i < words.size(); i++) {
+      int word = i;
+      List<Excerpt> parts = new ArrayList<>();
+      slots.forEach((property, slot) -> {
+        if (slot.word == word) {
+          parts.add(encode(values.apply(property), slot));
+        }
+      });
+      code.addLine("    %s = %s;", words.get(i).on("this"), Excerpts.join("\n        | ", parts));
+    }
+  }
+
+  /** Adds the private method used to range-check packed enum ordinals. */
+  void addOrdinalMethod(SourceBuilder code) {
+    if (slots.values().stream().noneMatch(slot -> slot.isEnum)) {
+      return;
+    }
+    code.addLine("")
+        .addLine("  private static int %s(%s<?> value, int width) {", ORDINAL_METHOD, Enum.class)
+        .addLine("    int ordinal = value.ordinal();")
+        .addLine("    if ((ordinal >>> width) != 0) {")
+        .addLine("      throw new %s(value.getDeclaringClass().getName() + \".\" + value",
+            IllegalStateException.class)
+        .addLine("          + \" does not fit in \" + width + \" bits; the enum has gained\"")
+        .addLine("          + \" constants since this class was compiled\");")
+        .addLine("    }")
+        .addLine("    return ordinal;")
+        .addLine("  }");
+  }
+
+  /** Returns an expression decoding {@code property} within the value type. */
+  Excerpt read(Property property) {
+    Slot slot = slots.get(property);
+    FieldAccess word = words.get(slot.word);
+    String values = valuesField(property);
+    Excerpt bits = (slot.shift == 0) ? word : Excerpts.add("(%s >>> %s)", word, slot.shift);
+    if (!slot.isEnum) {
+      return Excerpts.add("(%s & %s) != 0", word, hex(1L << slot.shift));
+    } else if (isLong) {
+      return Excerpts.add("%s[(int) %s & %s]", values, bits, intHex((1 << slot.width) - 1));
+    } else {
+      return Excerpts.add("%s[%s & %s]", values, bits, intHex((1 << slot.width) - 1));
+    }
+  }
+
+  /** Returns a human-readable description of the layout, for diagnostics. */
+  String describe() {
+    StringBuilder description = new StringBuilder()
+        .append(slots.size())
+        .append(" properties packed into ")
+        .append(words.size())
+        .append(" ")
+        .append(isLong ? "long" : "int")
+        .append(words.size() == 1 ? "" : "s")
+        .append(":");
+    slots.forEach((property, slot) -> {
+      description.append(" ").append(property.getName()).append("=").append(slot.word);
+      description.append("[").append(slot.shift);
+      if (slot.width > 1) {
+        description.append("-").append(slot.shift + slot.width - 1);
+      }
+      description.append("]");
+    });
+    return description.toString();
+  }
+
+  private Excerpt encode(Excerpt value, Slot slot) {
+    if (!slot.isEnum) {
+      return Excerpts.add("(%s ? %s : 0%s)", value, hex(1L << slot.shift), isLong ? "L" : "");
+    }
+    Excerpt ordinal = Excerpts.add("%s(%s, %s)", ORDINAL_METHOD, value, slot.width);
+    if (slot.shift == 0) {
+      return ordinal;
+    } else if (isLong) {
+      return Excerpts.add("((long) %s << %s)", ordinal, slot.shift);
+    } else {
+      return Excerpts.add("(%s << %s)", ordinal, slot.shift);
+    }
+  }
+
+  private String hex(long value) {
+    return isLong ? "0x" + Long.toHexString(value).toUpperCase() + "L" : intHex((int) value);
+  }
+
+  private static String intHex(int value) {
+    return "0x" + Integer.toHexString(value).toUpperCase();
+  }
+
+  private static String valuesField(Property property) {
+    return "_" + property.getAllCapsName() + "_VALUES";
+  }
+}
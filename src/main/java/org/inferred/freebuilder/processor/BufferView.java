@@ -0,0 +1,549 @@
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.INFERRED_TYPES;
+import static org.inferred.freebuilder.processor.Datatype.UnderrideLevel.ABSENT;
+import static org.inferred.freebuilder.processor.model.ModelUtils.asElement;
+import static org.inferred.freebuilder.processor.model.ModelUtils.maybeDeclared;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.BinaryCodec.PropertyCodec;
+import org.inferred.freebuilder.processor.Datatype.StandardMethod;
+import org.inferred.freebuilder.processor.excerpt.BinaryIo;
+import org.inferred.freebuilder.processor.property.DefaultProperty;
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.QualifiedName;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.Type;
+import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.Variable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Optional;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * A fixed binary layout for a type declaring {@code writeTo(ByteBuffer)}, implementing that method
+ * on the value and partial types, and adding a {@code View} class to the builder that reads
+ * properties straight out of a buffer written by it.
+ *
+ * <p>Each value starts with its size and a hash of its property names and types, followed by a
+ * fixed-width slot per property. Primitive properties are stored in their slot; any other
+ * property's slot holds the offset of its {@link BinaryCodec binary encoding} later in the value,
+ * or -1 if it is null. A view can therefore decode any one property without touching the others.
+ */
+class BufferView {
+
+  static final String WRITE_METHOD = "writeTo";
+  static final String VIEW_METHOD = "view";
+  static final String MATERIALIZE_METHOD = "materialize";
+
+  private static final String FIELD = "_buffer";
+  private static final int HEADER_SIZE = 8;
+
+  /** Returns true if {@code method} is a {@code writeTo(ByteBuffer)} method to implement. */
+  static boolean isWriteMethod(ExecutableElement method) {
+    return method.getSimpleName().contentEquals(WRITE_METHOD)
+        && method.getModifiers().contains(Modifier.ABSTRACT)
+        && method.getReturnType().getKind() == TypeKind.VOID
+        && method.getParameters().size() == 1
+        && maybeDeclared(method.getParameters().get(0).asType())
+            .filter(type -> asElement(type).getQualifiedName()
+                .contentEquals(ByteBuffer.class.getName()))
+            .isPresent();
+  }
+
+  /** A property's slot in the fixed part of the layout. */
+  private static class Slot extends ValueType {
+    final PropertyCodec property;
+    final int offset;
+
+    Slot(PropertyCodec property, int offset) {
+      this.property = property;
+      this.offset = offset;
+    }
+
+    boolean isPrimitive() {
+      return property.property.getType().getKind().isPrimitive();
+    }
+
+    /** Returns true if the getter can return the decoded value without going through a builder. */
+    boolean isDirect() {
+      return (property.generator instanceof DefaultProperty || property.nullable)
+          && property.codec.isExact();
+    }
+
+    Excerpt getPrimitive(Excerpt buffer) {
+      switch (property.property.getType().getKind()) {
+        case BOOLEAN:
+          return Excerpts.add("%s.get(%s) != 0", buffer, offset);
+
+        case BYTE:
+          return Excerpts.add("%s.get(%s)", buffer, offset);
+
+        default:
+          return Excerpts.add("%s.get%s(%s)", buffer, primitiveSuffix(), offset);
+      }
+    }
+
+    Excerpt putPrimitive(Excerpt buffer, Excerpt start, Excerpt value) {
+      switch (property.property.getType().getKind()) {
+        case BOOLEAN:
+          return Excerpts.add("%s.put(%s + %s, (byte) (%s ? 1 : 0))", buffer, start, offset, value);
+
+        case BYTE:
+          return Excerpts.add("%s.put(%s + %s, %s)", buffer, start, offset, value);
+
+        default:
+          return Excerpts.add(
+              "%s.put%s(%s + %s, %s)", buffer, primitiveSuffix(), start, offset, value);
+      }
+    }
+
+    private String primitiveSuffix() {
+      String name = property.property.getType().getKind().name();
+      return name.charAt(0) + name.substring(1).toLowerCase();
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("property", property);
+      fields.add("offset", offset);
+    }
+  }
+
+  private final Datatype datatype;
+  private final QualifiedName viewType;
+  private final ImmutableList<Slot> slots;
+  private final int fixedSize;
+  private final int schemaHash;
+  private final ImmutableList<ForwardedMethod> forwardedMethods;
+
+  /**
+   * @param forwardedMethods any other abstract methods on the type, which the view implements by
+   *     materializing itself
+   */
+  BufferView(Datatype datatype, BinaryCodec codec, List<ForwardedMethod> forwardedMethods) {
+    this.datatype = datatype;
+    this.viewType = datatype.getGeneratedBuilder().getQualifiedName().nestedType("View");
+    ImmutableList.Builder<Slot> slots = ImmutableList.builder();
+    int offset = HEADER_SIZE;
+    for (PropertyCodec property : codec.getProperties()) {
+      slots.add(new Slot(property, offset));
+      offset += slotSize(property.property.getType().getKind());
+    }
+    this.slots = slots.build();
+    this.fixedSize = offset;
+    this.schemaHash = BinaryCodec.schemaHash("view;", codec.getProperties());
+    this.forwardedMethods = ImmutableList.copyOf(forwardedMethods);
+  }
+
+  /** Returns the {@code writeTo(ByteBuffer)} method, for the value and partial types. */
+  Excerpt writeMethod() {
+    return new WriteMethod(slots, fixedSize, schemaHash);
+  }
+
+  /** Returns the static {@code view(ByteBuffer)} method and {@code View} class, for the builder. */
+  Excerpt viewMembers() {
+    return new ViewMembers(datatype, viewType, slots, fixedSize, schemaHash, forwardedMethods);
+  }
+
+  private static int slotSize(TypeKind kind) {
+    switch (kind) {
+      case BOOLEAN:
+      case BYTE:
+        return 1;
+
+      case SHORT:
+      case CHAR:
+        return 2;
+
+      case LONG:
+      case DOUBLE:
+        return 8;
+
+      default:
+        return 4;
+    }
+  }
+
+  private static class WriteMethod extends ValueType implements Excerpt {
+    private final ImmutableList<Slot> slots;
+    private final int fixedSize;
+    private final int schemaHash;
+
+    WriteMethod(ImmutableList<Slot> slots, int fixedSize, int schemaHash) {
+      this.slots = slots;
+      this.fixedSize = fixedSize;
+      this.schemaHash = schemaHash;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      Variable bytes = new Variable("bytes");
+      Variable start = new Variable("start");
+      code.addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public void %s(%s buffer) {", WRITE_METHOD, ByteBuffer.class)
+          .addLine("    %s %s = buffer.duplicate().order(%s.BIG_ENDIAN);",
+              ByteBuffer.class, bytes, ByteOrder.class)
+          .addLine("    int %s = %s.position();", start, bytes)
+          .addLine("    if (%s.remaining() < %s) {", bytes, fixedSize)
+          .addLine("      throw new %s();", BufferOverflowException.class)
+          .addLine("    }")
+          .addLine("    %s.position(%s + %s);", bytes, start, fixedSize)
+          .addLine("    %s.putInt(%s + 4, %s);", bytes, start, BinaryCodec.hex(schemaHash));
+      for (Slot slot : slots) {
+        if (slot.isPrimitive()) {
+          Excerpt value = Excerpts.add("%s()", slot.property.property.getGetterName());
+          code.addLine("    %s;", slot.putPrimitive(bytes, start, value));
+        }
+      }
+      if (slots.stream().anyMatch(slot -> !slot.isPrimitive())) {
+        code.addLine("    %s out = %s.output(%s);", DataOutput.class, BinaryIo.TYPE, bytes)
+            .addLine("    try {");
+        for (Slot slot : slots) {
+          if (!slot.isPrimitive()) {
+            addWriteReference(code, slot, bytes, start);
+          }
+        }
+        code.addLine("    } catch (%s e) {", IOException.class)
+            .addLine("      throw new %s(e);", UncheckedIOException.class)
+            .addLine("    }");
+      }
+      code.addLine("    %s.putInt(%s, %s.position() - %s);", bytes, start, bytes, start)
+          .addLine("    buffer.position(%s.position());", bytes)
+          .addLine("  }");
+    }
+
+    private static void addWriteReference(
+        SourceBuilder code, Slot slot, Variable bytes, Variable start) {
+      PropertyCodec property = slot.property;
+      Excerpt value = Excerpts.add("%s()", property.property.getGetterName());
+      if (property.nullable || !property.codec.isSimple()) {
+        Variable variable = new Variable(property.property.getName());
+        code.addLine("      %s %s = %s;", property.property.getType(), variable, value);
+        value = variable;
+      }
+      String indent = "      ";
+      if (property.nullable) {
+        code.addLine("      if (%s == null) {", value)
+            .addLine("        %s.putInt(%s + %s, -1);", bytes, start, slot.offset)
+            .addLine("      } else {");
+        indent = "        ";
+      }
+      code.addLine("%s%s.putInt(%s + %s, %s.position() - %s);",
+          indent, bytes, start, slot.offset, bytes, start);
+      property.codec.addWrite(code, indent, value);
+      if (property.nullable) {
+        code.addLine("      }");
+      }
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("slots", slots);
+      fields.add("fixedSize", fixedSize);
+      fields.add("schemaHash", schemaHash);
+    }
+  }
+
+  private static class ViewMembers extends ValueType implements Excerpt {
+    private final Datatype datatype;
+    private final QualifiedName viewType;
+    private final ImmutableList<Slot> slots;
+    private final int fixedSize;
+    private final int schemaHash;
+    private final ImmutableList<ForwardedMethod> forwardedMethods;
+
+    ViewMembers(
+        Datatype datatype,
+        QualifiedName viewType,
+        ImmutableList<Slot> slots,
+        int fixedSize,
+        int schemaHash,
+        ImmutableList<ForwardedMethod> forwardedMethods) {
+      this.datatype = datatype;
+      this.viewType = viewType;
+      this.slots = slots;
+      this.fixedSize = fixedSize;
+      this.schemaHash = schemaHash;
+      this.forwardedMethods = forwardedMethods;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      addViewMethod(code);
+      addViewType(code);
+    }
+
+    private void addViewMethod(SourceBuilder code) {
+      Variable bytes = new Variable("bytes");
+      Variable size = new Variable("size");
+      Variable schema = new Variable("schema");
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns a view of the %s written at {@code buffer}'s position by",
+              datatype.getType().javadocLink())
+          .addLine(" * %s, and advances the position past it.",
+              datatype.getType().javadocMethodLink(WRITE_METHOD, Type.from(ByteBuffer.class)))
+          .addLine(" *")
+          .addLine(" * <p>The view shares {@code buffer}'s content, which must not change while the")
+          .addLine(" * view is in use. No property is decoded until its getter is called.")
+          .addLine(" *")
+          .addLine(" * @throws IllegalArgumentException if the data was written with a different")
+          .addLine(" *     set of properties, or is truncated")
+          .addLine(" */")
+          .addLine("public static %s %s(%s buffer) {", viewType, VIEW_METHOD, ByteBuffer.class)
+          .addLine("  %s %s = buffer.slice().order(%s.BIG_ENDIAN);",
+              ByteBuffer.class, bytes, ByteOrder.class)
+          .addLine("  int %s = %s.getInt(0);", size, bytes)
+          .addLine("  int %s = %s.getInt(4);", schema, bytes)
+          .addLine("  if (%s != %s) {", schema, BinaryCodec.hex(schemaHash))
+          .addLine("    throw new %s(\"Expected %s schema %s, got 0x\"",
+              IllegalArgumentException.class,
+              datatype.getType().getSimpleName(),
+              BinaryCodec.hex(schemaHash))
+          .addLine("        + Integer.toHexString(%s).toUpperCase());", schema)
+          .addLine("  }")
+          .addLine("  if (%s < %s || %s > %s.remaining()) {", size, fixedSize, size, bytes)
+          .addLine("    throw new %s(\"Invalid %s size \" + %s);",
+              IllegalArgumentException.class, datatype.getType().getSimpleName(), size)
+          .addLine("  }")
+          .addLine("  %s.limit(%s);", bytes, size)
+          .addLine("  buffer.position(buffer.position() + %s);", size)
+          .addLine("  return new %s(%s);", viewType, bytes)
+          .addLine("}");
+    }
+
+    private void addViewType(SourceBuilder code) {
+      Excerpt supertype = datatype.getRebuildableType()
+          .map(rebuildable -> Excerpts.add("extends %s", rebuildable))
+          .orElse(Excerpts.add(
+              datatype.isInterfaceType() ? "implements %s" : "extends %s", datatype.getType()));
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * A %s backed by the bytes written by", datatype.getType().javadocLink())
+          .addLine(" * %s.",
+              datatype.getType().javadocMethodLink(WRITE_METHOD, Type.from(ByteBuffer.class)))
+          .addLine(" *")
+          .addLine(" * <p>Each getter decodes its property from the buffer when called, so reading")
+          .addLine(" * a few properties of a large value is cheap. Use {@link #%s()} to decode",
+              MATERIALIZE_METHOD)
+          .addLine(" * every property at once.")
+          .addLine(" */")
+          .addLine("public static final class %s %s {", viewType.getSimpleName(), supertype)
+          .addLine("")
+          .addLine("  private final %s %s;", ByteBuffer.class, FIELD)
+          .addLine("")
+          .addLine("  private %s(%s %s) {", viewType.getSimpleName(), ByteBuffer.class, FIELD)
+          .addLine("    this.%1$s = %1$s;", FIELD)
+          .addLine("  }");
+      for (Slot slot : slots) {
+        addGetter(code, slot);
+      }
+      addToBuilder(code);
+      code.addLine("")
+          .addLine("  /** Returns a %s holding every property of this view. */",
+              datatype.getType().javadocLink())
+          .addLine("  public %s %s() {", datatype.getType(), MATERIALIZE_METHOD)
+          .addLine("    return toBuilder().build();")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public void %s(%s buffer) {", WRITE_METHOD, ByteBuffer.class)
+          .addLine("    buffer.put(%s.duplicate());", FIELD)
+          .addLine("  }");
+      forwardedMethods.forEach(code::add);
+      if (datatype.standardMethodUnderride(StandardMethod.EQUALS) == ABSENT) {
+        code.addLine("")
+            .addLine("  @%s", Override.class)
+            .addLine("  public boolean equals(Object obj) {")
+            .addLine("    if (!(obj instanceof %s)) {", viewType)
+            .addLine("      return false;")
+            .addLine("    }")
+            .addLine("    return %1$s().equals(((%2$s) obj).%1$s());",
+                MATERIALIZE_METHOD, viewType)
+            .addLine("  }");
+      }
+      if (datatype.standardMethodUnderride(StandardMethod.HASH_CODE) == ABSENT) {
+        code.addLine("")
+            .addLine("  @%s", Override.class)
+            .addLine("  public int hashCode() {")
+            .addLine("    return %s().hashCode();", MATERIALIZE_METHOD)
+            .addLine("  }");
+      }
+      if (datatype.standardMethodUnderride(StandardMethod.TO_STRING) == ABSENT) {
+        code.addLine("")
+            .addLine("  @%s", Override.class)
+            .addLine("  public String toString() {")
+            .addLine("    return %s().toString();", MATERIALIZE_METHOD)
+            .addLine("  }");
+      }
+      code.addLine("}");
+    }
+
+    private void addGetter(SourceBuilder code, Slot slot) {
+      Property property = slot.property.property;
+      code.addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public %s %s() {", property.getType(), property.getGetterName());
+      if (slot.isPrimitive()) {
+        code.addLine("    return %s;", slot.getPrimitive(Excerpts.add(FIELD)))
+            .addLine("  }");
+        return;
+      }
+      if (slot.property.nullable) {
+        code.addLine("    if (%s.getInt(%s) < 0) {", FIELD, slot.offset)
+            .addLine("      return null;")
+            .addLine("    }");
+      }
+      Variable cursor = new Variable("cursor");
+      code.addLine("    %s %s = %s.duplicate();", ByteBuffer.class, cursor, FIELD)
+          .addLine("    %s.position(%s.getInt(%s));", cursor, FIELD, slot.offset)
+          .addLine("    %s in = %s.input(%s);", DataInput.class, BinaryIo.TYPE, cursor)
+          .addLine("    try {");
+      Excerpt value = slot.property.codec.addRead(code, "      ");
+      if (slot.isDirect()) {
+        code.addLine("      return %s;", value);
+      } else {
+        Variable builder = new Variable("builder");
+        code.addLine("      %s %s = %s;", datatype.getBuilder(), builder, newBuilder());
+        code.add("      ");
+        slot.property.generator.addSetFromResult(code, builder, value);
+        code.addLine("      return %s.buildPartial().%s();", builder, property.getGetterName());
+      }
+      code.addLine("    } catch (%s e) {", IOException.class)
+          .addLine("      throw new %s(e);", UncheckedIOException.class)
+          .addLine("    }")
+          .addLine("  }");
+    }
+
+    private void addToBuilder(SourceBuilder code) {
+      Variable builder = new Variable("builder");
+      code.addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public %s toBuilder() {", datatype.getBuilder())
+          .addLine("    %s %s = %s;", datatype.getBuilder(), builder, newBuilder());
+      for (Slot slot : slots) {
+        if (slot.isPrimitive()) {
+          code.add("    ");
+          slot.property.generator.addSetFromResult(
+              code, builder, slot.getPrimitive(Excerpts.add(FIELD)));
+        }
+      }
+      if (slots.stream().anyMatch(slot -> !slot.isPrimitive())) {
+        Variable cursor = new Variable("cursor");
+        code.addLine("    %s %s = %s.duplicate();", ByteBuffer.class, cursor, FIELD)
+            .addLine("    %s in = %s.input(%s);", DataInput.class, BinaryIo.TYPE, cursor)
+            .addLine("    try {");
+        for (Slot slot : slots) {
+          if (slot.isPrimitive()) {
+            continue;
+          }
+          String indent = "      ";
+          if (slot.property.nullable) {
+            code.addLine("      if (%s.getInt(%s) >= 0) {", FIELD, slot.offset);
+            indent = "        ";
+          }
+          code.addLine("%s%s.position(%s.getInt(%s));", indent, cursor, FIELD, slot.offset);
+          Excerpt value = slot.property.codec.addRead(code, indent);
+          code.add(indent);
+          slot.property.generator.addSetFromResult(code, builder, value);
+          if (slot.property.nullable) {
+            code.addLine("      }");
+          }
+        }
+        code.addLine("    } catch (%s e) {", IOException.class)
+            .addLine("      throw new %s(e);", UncheckedIOException.class)
+            .addLine("    }");
+      }
+      code.addLine("    return %s;", builder)
+          .addLine("  }");
+    }
+
+    private Excerpt newBuilder() {
+      return datatype.getBuilderFactory().get().newBuilder(datatype.getBuilder(), INFERRED_TYPES);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("datatype", datatype);
+      fields.add("viewType", viewType);
+      fields.add("slots", slots);
+      fields.add("fixedSize", fixedSize);
+      fields.add("schemaHash", schemaHash);
+      fields.add("forwardedMethods", forwardedMethods);
+    }
+  }
+
+  /** Implements an abstract method of the type on the view, by materializing it first. */
+  static class ForwardedMethod extends ValueType implements Excerpt {
+
+    private final String name;
+    private final TypeMirror returnType;
+    private final ImmutableList<String> parameterNames;
+    private final ImmutableList<TypeMirror> parameterTypes;
+    private final ImmutableList<TypeMirror> thrownTypes;
+    private final Optional<Modifier> visibility;
+
+    ForwardedMethod(
+        String name,
+        TypeMirror returnType,
+        List<String> parameterNames,
+        List<? extends TypeMirror> parameterTypes,
+        List<? extends TypeMirror> thrownTypes,
+        Optional<Modifier> visibility) {
+      this.name = name;
+      this.returnType = returnType;
+      this.parameterNames = ImmutableList.copyOf(parameterNames);
+      this.parameterTypes = ImmutableList.copyOf(parameterTypes);
+      this.thrownTypes = ImmutableList.copyOf(thrownTypes);
+      this.visibility = visibility;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("  @%s", Override.class)
+          .add("  %s%s %s(", visibility.map(v -> v + " ").orElse(""), returnType, name);
+      for (int i = 0; i < parameterNames.size(); i++) {
+        code.add("%s%s %s", (i == 0) ? "" : ", ", parameterTypes.get(i), parameterNames.get(i));
+      }
+      code.add(")");
+      if (!thrownTypes.isEmpty()) {
+        code.add(" throws %s", Excerpts.join(", ", thrownTypes));
+      }
+      code.add(" {\n")
+          .add("    %s%s().%s(%s);\n",
+              (returnType.getKind() == TypeKind.VOID) ? "" : "return ",
+              MATERIALIZE_METHOD,
+              name,
+              String.join(", ", parameterNames))
+          .addLine("  }");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("name", name);
+      fields.add("returnType", returnType);
+      fields.add("parameterNames", parameterNames);
+      fields.add("parameterTypes", parameterTypes);
+      fields.add("thrownTypes", thrownTypes);
+      fields.add("visibility", visibility);
+    }
+  }
+}
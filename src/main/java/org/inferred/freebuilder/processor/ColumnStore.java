@@ -0,0 +1,426 @@
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.INFERRED_TYPES;
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.FieldAccess;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.TypeClass;
+import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.Variable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import javax.lang.model.type.TypeKind;
+
+/**
+ * A {@code Columns} container for a {@link org.inferred.freebuilder.Columnar @Columnar} type,
+ * storing a growable collection of values as one array per property.
+ *
+ * <p>Primitive properties are stored in primitive arrays. Properties whose value field can be
+ * converted to directly, like {@code Optional} properties, are stored in their value field form,
+ * so reading one back costs the same as calling the getter on a value; any others are stored as
+ * returned by their getter.
+ */
+class ColumnStore extends ValueType implements Excerpt {
+
+  private static final FieldAccess SIZE = new FieldAccess("_size");
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private enum Storage { PRIMITIVE, FIELD, OBJECT }
+
+  private static class Column extends ValueType {
+    final Property property;
+    final PropertyCodeGenerator generator;
+    final Storage storage;
+
+    Column(Property property, PropertyCodeGenerator generator) {
+      this.property = property;
+      this.generator = generator;
+      if (property.getType().getKind().isPrimitive()) {
+        storage = Storage.PRIMITIVE;
+      } else if (generator.isValueFieldConvertible()
+          && !generator.getPresenceField().isPresent()) {
+        storage = Storage.FIELD;
+      } else {
+        storage = Storage.OBJECT;
+      }
+    }
+
+    TypeKind kind() {
+      return property.getType().getKind();
+    }
+
+    FieldAccess field() {
+      return property.getField();
+    }
+
+    /** Returns the element type of the column's array. */
+    Object elementType() {
+      return (storage == Storage.PRIMITIVE) ? property.getType() : Object.class;
+    }
+
+    /** Returns an expression of the property's type, reading the column at {@code index}. */
+    Excerpt read(Excerpt index) {
+      switch (storage) {
+        case PRIMITIVE:
+          return Excerpts.add("%s[%s]", field().on("this"), index);
+
+        case FIELD:
+          Excerpt element = Excerpts.add("((%s) %s[%s])",
+              (Excerpt) generator::addValueFieldType, field().on("this"), index);
+          return code -> generator.addReadValueFragment(code, element);
+
+        default:
+          return Excerpts.add("((%s) %s[%s])", property.getType(), field().on("this"), index);
+      }
+    }
+
+    /** Returns an expression converting {@code value}, of the property's type, for storage. */
+    Excerpt convert(Excerpt value) {
+      if (storage == Storage.FIELD) {
+        return code -> generator.addConvertToValueField(code, value);
+      }
+      return value;
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("property", property);
+      fields.add("generator", generator);
+    }
+  }
+
+  private final Datatype datatype;
+  private final TypeClass columnsType;
+  private final ImmutableList<Column> columns;
+
+  ColumnStore(
+      Datatype datatype,
+      TypeClass columnsType,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    this.datatype = datatype;
+    this.columnsType = columnsType;
+    ImmutableList.Builder<Column> columns = ImmutableList.builder();
+    generatorsByProperty.forEach((property, generator) -> {
+      columns.add(new Column(property, generator));
+    });
+    this.columns = columns.build();
+  }
+
+  @Override
+  public void addTo(SourceBuilder code) {
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * A growable collection of %s values, stored as one array per property.",
+            datatype.getType().javadocLink())
+        .addLine(" *")
+        .addLine(" * <p>Values are appended from a builder or an existing value, and each property")
+        .addLine(" * can be read back by index without creating a value. Columns can be scanned as")
+        .addLine(" * streams, which split into ranges of indices when run in parallel.")
+        .addLine(" *")
+        .addLine(" * <p>Not safe for concurrent modification.")
+        .addLine(" */");
+    if (columns.stream().anyMatch(column -> column.storage != Storage.PRIMITIVE)) {
+      code.addLine("@%s(\"unchecked\")", SuppressWarnings.class);
+    }
+    code.addLine("public static final class %s {", columnsType.declaration())
+        .addLine("")
+        .addLine("  private int %s;", SIZE);
+    for (Column column : columns) {
+      code.addLine("  private %s[] %s;", column.elementType(), column.field());
+    }
+    addConstructors(code);
+    code.addLine("")
+        .addLine("  /** Returns the number of values stored. */")
+        .addLine("  public int size() {")
+        .addLine("    return %s;", SIZE)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Returns true if no values are stored. */")
+        .addLine("  public boolean isEmpty() {")
+        .addLine("    return %s == 0;", SIZE)
+        .addLine("  }");
+    addAddMethods(code);
+    addGetMethod(code);
+    for (Column column : columns) {
+      addGetter(code, column);
+    }
+    for (Column column : columns) {
+      addColumnStream(code, column);
+    }
+    code.addLine("")
+        .addLine("  /**")
+        .addLine("   * Returns the index of each value, in order. A parallel stream splits into")
+        .addLine("   * ranges of indices, so each task scans a contiguous part of each column.")
+        .addLine("   */")
+        .addLine("  public %s indices() {", IntStream.class)
+        .addLine("    return %s.range(0, %s);", IntStream.class, SIZE)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Returns each value, in order, creating a new value for each. */")
+        .addLine("  public %s<%s> stream() {", Stream.class, datatype.getType());
+    if (code.feature(LAMBDAS).isEnabled()) {
+      code.addLine("    return indices().mapToObj(this::get);");
+    } else {
+      addMappedIndices(code, "mapToObj", datatype.getType(), "get(i)");
+    }
+    code.addLine("  }");
+    addClearMethod(code);
+    addPrivateMethods(code);
+    code.addLine("}");
+  }
+
+  private void addConstructors(SourceBuilder code) {
+    code.addLine("")
+        .addLine("  /** Creates an empty container. */")
+        .addLine("  public %s() {", columnsType.getSimpleName())
+        .addLine("    this(%s);", DEFAULT_CAPACITY)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /**")
+        .addLine("   * Creates an empty container with room for {@code initialCapacity} values.")
+        .addLine("   */")
+        .addLine("  public %s(int initialCapacity) {", columnsType.getSimpleName())
+        .addLine("    if (initialCapacity < 0) {")
+        .addLine("      throw new %s(\"Negative capacity: \" + initialCapacity);",
+            IllegalArgumentException.class)
+        .addLine("    }");
+    for (Column column : columns) {
+      code.addLine("    %s = new %s[initialCapacity];", column.field(), column.elementType());
+    }
+    code.addLine("  }");
+  }
+
+  private void addAddMethods(SourceBuilder code) {
+    code.addLine("")
+        .addLine("  /** Appends {@code value}, returning this container. */")
+        .addLine("  public %s add(%s value) {", columnsType, datatype.getType());
+    if (!columns.isEmpty()) {
+      code.addLine("    ensureCapacity(%s + 1);", SIZE);
+    }
+    for (Column column : columns) {
+      Excerpt value = Excerpts.add("value.%s()", column.property.getGetterName());
+      code.addLine("    %s[%s] = %s;", column.field().on("this"), SIZE, column.convert(value));
+    }
+    code.addLine("    %s++;", SIZE)
+        .addLine("    return this;")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /**")
+        .addLine("   * Builds {@code builder} and appends the result, returning this container.")
+        .addLine("   */")
+        .addLine("  public %s add(%s builder) {", columnsType, datatype.getBuilder())
+        .addLine("    return add(builder.build());")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Appends each of {@code values}, in order, returning this container. */")
+        .addLine("  public %s addAll(%s<? extends %s> values) {",
+            columnsType, Iterable.class, datatype.getType())
+        .addLine("    for (%s value : values) {", datatype.getType())
+        .addLine("      add(value);")
+        .addLine("    }")
+        .addLine("    return this;")
+        .addLine("  }");
+  }
+
+  private void addGetMethod(SourceBuilder code) {
+    Excerpt index = Excerpts.add("index");
+    code.addLine("")
+        .addLine("  /**")
+        .addLine("   * Returns the value at {@code index}, rebuilt from its properties.")
+        .addLine("   *")
+        .addLine("   * @throws IndexOutOfBoundsException if {@code index} is negative, or not less")
+        .addLine("   *     than {@link #size()}")
+        .addLine("   */")
+        .addLine("  public %s get(int index) {", datatype.getType())
+        .addLine("    checkIndex(index);");
+    Variable builder = new Variable("builder");
+    code.addLine("    %s %s = %s;",
+        datatype.getBuilder(),
+        builder,
+        datatype.getBuilderFactory().get().newBuilder(datatype.getBuilder(), INFERRED_TYPES));
+    for (Column column : columns) {
+      code.add("    ");
+      column.generator.addSetFromResult(code, builder, column.read(index));
+    }
+    code.addLine("    return %s.build();", builder)
+        .addLine("  }");
+  }
+
+  private void addGetter(SourceBuilder code, Column column) {
+    code.addLine("")
+        .addLine("  /**")
+        .addLine("   * Returns the %s property of the value at {@code index}.",
+            column.property.getName())
+        .addLine("   *")
+        .addLine("   * @throws IndexOutOfBoundsException if {@code index} is negative, or not less")
+        .addLine("   *     than {@link #size()}")
+        .addLine("   */")
+        .addLine("  public %s %s(int index) {",
+            column.property.getType(), column.property.getGetterName())
+        .addLine("    checkIndex(index);")
+        .addLine("    return %s;", column.read(Excerpts.add("index")))
+        .addLine("  }");
+  }
+
+  private void addColumnStream(SourceBuilder code, Column column) {
+    String name = column.property.getName() + "Column";
+    code.addLine("")
+        .addLine("  /** Returns the %s property of each value, in order. */",
+            column.property.getName());
+    if (column.storage != Storage.PRIMITIVE) {
+      code.addLine("  public %s<%s> %s() {", Stream.class, column.property.getType(), name);
+      if (code.feature(LAMBDAS).isEnabled()) {
+        code.addLine("    return indices().mapToObj(this::%s);", column.property.getGetterName());
+      } else {
+        addMappedIndices(code, "mapToObj", column.property.getType(),
+            column.property.getGetterName() + "(i)");
+      }
+      code.addLine("  }");
+      return;
+    }
+    switch (column.kind()) {
+      case INT:
+        addArrayStream(code, IntStream.class, name, column);
+        break;
+
+      case LONG:
+        addArrayStream(code, LongStream.class, name, column);
+        break;
+
+      case DOUBLE:
+        addArrayStream(code, DoubleStream.class, name, column);
+        break;
+
+      case FLOAT:
+        addRangeStream(code, DoubleStream.class, "mapToDouble", double.class, name, column);
+        break;
+
+      case BOOLEAN:
+        code.addLine("  public %s<Boolean> %s() {", Stream.class, name);
+        addRangeStreamBody(code, "mapToObj", Boolean.class, column);
+        break;
+
+      default:
+        addRangeStream(code, IntStream.class, "map", int.class, name, column);
+        break;
+    }
+  }
+
+  private static void addArrayStream(
+      SourceBuilder code, Class<?> streamType, String name, Column column) {
+    code.addLine("  public %s %s() {", streamType, name)
+        .addLine("    return %s.stream(%s, 0, %s);", Arrays.class, column.field().on("this"), SIZE)
+        .addLine("  }");
+  }
+
+  private static void addRangeStream(
+      SourceBuilder code,
+      Class<?> streamType,
+      String map,
+      Class<?> resultType,
+      String name,
+      Column column) {
+    code.addLine("  public %s %s() {", streamType, name);
+    addRangeStreamBody(code, map, resultType, column);
+  }
+
+  private static void addRangeStreamBody(
+      SourceBuilder code, String map, Class<?> resultType, Column column) {
+    code.addLine("    %s[] column = %s;", column.property.getType(), column.field().on("this"));
+    if (code.feature(LAMBDAS).isEnabled()) {
+      code.addLine("    return indices().%s(i -> column[i]);", map);
+    } else {
+      addMappedIndices(code, map, resultType, "column[i]");
+    }
+    code.addLine("  }");
+  }
+
+  /**
+   * Adds a statement returning {@code indices().map(i -> expression)}, for one of the mapping
+   * methods of {@link IntStream}, using an anonymous class in place of the lambda.
+   */
+  private static void addMappedIndices(
+      SourceBuilder code, String map, Object resultType, String expression) {
+    switch (map) {
+      case "map":
+        code.addLine("    return indices().map(new %s() {", IntUnaryOperator.class)
+            .addLine("      @Override public int applyAsInt(int i) {");
+        break;
+
+      case "mapToDouble":
+        code.addLine("    return indices().mapToDouble(new %s() {", IntToDoubleFunction.class)
+            .addLine("      @Override public double applyAsDouble(int i) {");
+        break;
+
+      default:
+        code.addLine("    return indices().mapToObj(new %s<%s>() {", IntFunction.class, resultType)
+            .addLine("      @Override public %s apply(int i) {", resultType);
+        break;
+    }
+    code.addLine("        return %s;", expression)
+        .addLine("      }")
+        .addLine("    });");
+  }
+
+  private void addClearMethod(SourceBuilder code) {
+    code.addLine("")
+        .addLine("  /** Removes every value, keeping the capacity already allocated. */")
+        .addLine("  public void clear() {");
+    for (Column column : columns) {
+      if (column.storage != Storage.PRIMITIVE) {
+        code.addLine("    %s.fill(%s, 0, %s, null);",
+            Arrays.class, column.field().on("this"), SIZE);
+      }
+    }
+    code.addLine("    %s = 0;", SIZE)
+        .addLine("  }");
+  }
+
+  private void addPrivateMethods(SourceBuilder code) {
+    if (!columns.isEmpty()) {
+      FieldAccess first = columns.get(0).field();
+      code.addLine("")
+          .addLine("  private void ensureCapacity(int minCapacity) {")
+          .addLine("    int capacity = %s.length;", first.on("this"))
+          .addLine("    if (minCapacity > capacity) {")
+          .addLine("      int newCapacity = %s.max(minCapacity, capacity + (capacity >> 1) + 1);",
+              Math.class);
+      for (Column column : columns) {
+        code.addLine("      %1$s = %2$s.copyOf(%1$s, newCapacity);",
+            column.field().on("this"), Arrays.class);
+      }
+      code.addLine("    }")
+          .addLine("  }");
+    }
+    code.addLine("")
+        .addLine("  private void checkIndex(int index) {")
+        .addLine("    if (index < 0 || index >= %s) {", SIZE)
+        .addLine("      throw new %s(\"Index: \" + index + \", Size: \" + %s);",
+            IndexOutOfBoundsException.class, SIZE)
+        .addLine("    }")
+        .addLine("  }");
+  }
+
+  @Override
+  protected void addFields(FieldReceiver fields) {
+    fields.add("datatype", datatype);
+    fields.add("columnsType", columnsType);
+    fields.add("columns", columns);
+  }
+}
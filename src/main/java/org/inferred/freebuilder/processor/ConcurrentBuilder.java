@@ -0,0 +1,339 @@
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.INFERRED_TYPES;
+import static org.inferred.freebuilder.processor.BuilderMethods.addAllMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.addMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.putMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.setCountMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.setter;
+import static org.inferred.freebuilder.processor.model.ModelUtils.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.model.ModelUtils.maybeDeclared;
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Multiset;
+
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.StreamedForm;
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.FieldAccess;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.TypeClass;
+import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.Variable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * A {@code ConcurrentBuilder} for a {@link org.inferred.freebuilder.Concurrent @Concurrent} type,
+ * which many threads can add to at once before a single call to {@code build()}.
+ *
+ * <p>List and set properties accumulate in a {@link ConcurrentLinkedQueue}, multisets in a
+ * {@link ConcurrentHashMap} of {@link LongAdder} counts, maps in a {@code ConcurrentHashMap}, and
+ * multimaps in a {@code ConcurrentHashMap} of queues. Any other property is held in a volatile
+ * field, so the last value set wins. {@code build()} copies everything into a normal builder,
+ * which applies the usual checks.
+ */
+class ConcurrentBuilder extends ValueType implements Excerpt {
+
+  private static final FieldAccess UNSET = new FieldAccess("_UNSET");
+
+  private enum Storage { LAST_SET, QUEUE, COUNTS, MAP, MAP_OF_QUEUES }
+
+  private static class Field extends ValueType {
+    final Property property;
+    final PropertyCodeGenerator generator;
+    final Storage storage;
+
+    Field(Property property, PropertyCodeGenerator generator) {
+      this.property = property;
+      this.generator = generator;
+      StreamedForm form = generator.getStreamedForm();
+      if (form == StreamedForm.ARRAY) {
+        boolean isMultiset = maybeDeclared(property.getType())
+            .filter(type -> erasesToAnyOf(type, Multiset.class, ImmutableMultiset.class))
+            .isPresent();
+        storage = isMultiset ? Storage.COUNTS : Storage.QUEUE;
+      } else if (form == StreamedForm.OBJECT) {
+        storage = Storage.MAP;
+      } else if (form == StreamedForm.OBJECT_OF_ARRAYS) {
+        storage = Storage.MAP_OF_QUEUES;
+      } else {
+        storage = Storage.LAST_SET;
+      }
+    }
+
+    FieldAccess field() {
+      return property.getField();
+    }
+
+    TypeMirror type(int index) {
+      return generator.getStreamedTypes().get(index);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("property", property);
+      fields.add("generator", generator);
+    }
+  }
+
+  private final Datatype datatype;
+  private final TypeClass concurrentBuilderType;
+  private final ImmutableList<Field> fields;
+
+  ConcurrentBuilder(
+      Datatype datatype,
+      TypeClass concurrentBuilderType,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    this.datatype = datatype;
+    this.concurrentBuilderType = concurrentBuilderType;
+    ImmutableList.Builder<Field> fields = ImmutableList.builder();
+    generatorsByProperty.forEach((property, generator) -> {
+      fields.add(new Field(property, generator));
+    });
+    this.fields = fields.build();
+  }
+
+  @Override
+  public void addTo(SourceBuilder code) {
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * A thread-safe accumulator of a single %s, which many threads can add to",
+            datatype.getType().javadocLink())
+        .addLine(" * at once without locking.")
+        .addLine(" *")
+        .addLine(" * <p>Elements added by one thread keep their relative order, but elements added")
+        .addLine(" * by different threads may be interleaved arbitrarily, and map entries are kept")
+        .addLine(" * in no particular order. The last value set wins for any other property.")
+        .addLine(" * Nothing is validated until {@link #build()}.")
+        .addLine(" */")
+        .addLine("public static final class %s {", concurrentBuilderType.declaration());
+    code.addLine("");
+    if (fields.stream().anyMatch(field -> field.storage == Storage.LAST_SET)) {
+      code.addLine("  private static final Object %s = new Object();", UNSET)
+          .addLine("");
+    }
+    for (Field field : fields) {
+      addField(code, field);
+    }
+    for (Field field : fields) {
+      addMutators(code, field);
+    }
+    addBuildMethod(code);
+    code.addLine("}");
+  }
+
+  private void addField(SourceBuilder code, Field field) {
+    switch (field.storage) {
+      case QUEUE:
+        code.addLine("  private final %1$s<%2$s> %3$s = new %1$s<>();",
+            ConcurrentLinkedQueue.class, field.type(0), field.field());
+        break;
+
+      case COUNTS:
+        code.addLine("  private final %1$s<%2$s, %3$s> %4$s = new %1$s<>();",
+            ConcurrentHashMap.class, field.type(0), LongAdder.class, field.field());
+        break;
+
+      case MAP:
+        code.addLine("  private final %1$s<%2$s, %3$s> %4$s = new %1$s<>();",
+            ConcurrentHashMap.class, field.type(0), field.type(1), field.field());
+        break;
+
+      case MAP_OF_QUEUES:
+        code.addLine("  private final %1$s<%2$s, %3$s<%4$s>> %5$s = new %1$s<>();",
+            ConcurrentHashMap.class,
+            field.type(0),
+            ConcurrentLinkedQueue.class,
+            field.type(1),
+            field.field());
+        break;
+
+      default:
+        code.addLine("  private volatile Object %s = %s;", field.field(), UNSET);
+        break;
+    }
+  }
+
+  private void addMutators(SourceBuilder code, Field field) {
+    Property property = field.property;
+    Excerpt getterLink = datatype.getType().javadocNoArgMethodLink(property.getGetterName());
+    switch (field.storage) {
+      case QUEUE:
+      case COUNTS:
+        code.addLine("")
+            .addLine("  /** Adds {@code element} to %s. */", getterLink)
+            .addLine("  public %s %s(%s element) {",
+                concurrentBuilderType, addMethod(property), field.type(0));
+        if (field.storage == Storage.QUEUE) {
+          code.addLine("    %s.add(element);", field.field().on("this"));
+        } else if (code.feature(LAMBDAS).isEnabled()) {
+          code.addLine("    %s.computeIfAbsent(element, k -> new %s()).increment();",
+              field.field().on("this"), LongAdder.class);
+        } else {
+          Variable count = new Variable("count");
+          addGetOrCreate(code, field, "element", count, LongAdder.class);
+          code.addLine("    %s.increment();", count);
+        }
+        code.addLine("    return this;")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  /** Adds each element of {@code elements} to %s. */", getterLink)
+            .addLine("  public %s %s(%s<? extends %s> elements) {",
+                concurrentBuilderType, addAllMethod(property), Iterable.class, field.type(0))
+            .addLine("    for (%s element : elements) {", field.type(0))
+            .addLine("      %s(element);", addMethod(property))
+            .addLine("    }")
+            .addLine("    return this;")
+            .addLine("  }");
+        break;
+
+      case MAP:
+      case MAP_OF_QUEUES:
+        code.addLine("")
+            .addLine("  /** Associates {@code key} with {@code value} in %s. */", getterLink)
+            .addLine("  public %s %s(%s key, %s value) {",
+                concurrentBuilderType, putMethod(property), field.type(0), field.type(1));
+        if (field.storage == Storage.MAP) {
+          code.addLine("    %s.put(key, value);", field.field().on("this"));
+        } else if (code.feature(LAMBDAS).isEnabled()) {
+          code.addLine("    %s.computeIfAbsent(key, k -> new %s<>()).add(value);",
+              field.field().on("this"), ConcurrentLinkedQueue.class);
+        } else {
+          Variable values = new Variable("values");
+          addGetOrCreate(code, field, "key", values,
+              Excerpts.add("%s<%s>", ConcurrentLinkedQueue.class, field.type(1)));
+          code.addLine("    %s.add(value);", values);
+        }
+        code.addLine("    return this;")
+            .addLine("  }");
+        break;
+
+      default:
+        code.addLine("")
+            .addLine("  /** Sets the value to be returned by %s. */", getterLink)
+            .addLine("  public %s %s(%s %s) {",
+                concurrentBuilderType,
+                setter(property),
+                (Excerpt) field.generator::addSetFromResultType,
+                property.getName())
+            .addLine("    %s = %s;", field.field().on("this"), property.getName())
+            .addLine("    return this;")
+            .addLine("  }");
+        break;
+    }
+  }
+
+  /**
+   * Adds statements setting {@code local} to the value mapped to {@code key} in {@code field},
+   * first mapping a new {@code valueType} if there is none, without a lambda.
+   */
+  private static void addGetOrCreate(
+      SourceBuilder code, Field field, String key, Variable local, Object valueType) {
+    Variable created = new Variable("created");
+    code.addLine("    %s %s = %s.get(%s);", valueType, local, field.field().on("this"), key)
+        .addLine("    if (%s == null) {", local)
+        .addLine("      %s %s = new %s();", valueType, created, valueType)
+        .addLine("      %s = %s.putIfAbsent(%s, %s);",
+            local, field.field().on("this"), key, created)
+        .addLine("      if (%s == null) {", local)
+        .addLine("        %s = %s;", local, created)
+        .addLine("      }")
+        .addLine("    }");
+  }
+
+  private void addBuildMethod(SourceBuilder code) {
+    code.addLine("")
+        .addLine("  /**")
+        .addLine("   * Returns a newly-created %s based on the contents of this builder.",
+            datatype.getType().javadocLink())
+        .addLine("   *")
+        .addLine("   * <p>Elements still being added by other threads may or may not be included.")
+        .addLine("   *")
+        .addLine("   * @throws IllegalStateException if any field has not been set")
+        .addLine("   */");
+    if (fields.stream().anyMatch(field -> field.storage == Storage.LAST_SET)) {
+      code.addLine("  @%s(\"unchecked\")", SuppressWarnings.class);
+    }
+    Variable builder = new Variable("builder");
+    code.addLine("  public %s build() {", datatype.getType())
+        .addLine("    %s %s = %s;",
+            datatype.getBuilder(),
+            builder,
+            datatype.getBuilderFactory().get().newBuilder(datatype.getBuilder(), INFERRED_TYPES));
+    Variable element = new Variable("element");
+    Variable entry = new Variable("entry");
+    Variable value = new Variable("value");
+    for (Field field : fields) {
+      switch (field.storage) {
+        case QUEUE:
+          code.addLine("    for (%s %s : %s) {", field.type(0), element, field.field().on("this"))
+              .add("      ");
+          field.generator.addStreamedElement(code, builder, element);
+          code.addLine("    }");
+          break;
+
+        case COUNTS:
+          code.addLine("    for (%s.Entry<%s, %s> %s : %s.entrySet()) {",
+                  Map.class, field.type(0), LongAdder.class, entry, field.field().on("this"))
+              .addLine("      %s.%s(%s.getKey(), %s.toIntExact(%s.getValue().sum()));",
+                  builder, setCountMethod(field.property), entry, Math.class, entry)
+              .addLine("    }");
+          break;
+
+        case MAP:
+          code.addLine("    for (%s.Entry<%s, %s> %s : %s.entrySet()) {",
+                  Map.class, field.type(0), field.type(1), entry, field.field().on("this"))
+              .add("      ");
+          field.generator.addStreamedElement(code, builder,
+              Excerpts.add("%s.getKey()", entry), Excerpts.add("%s.getValue()", entry));
+          code.addLine("    }");
+          break;
+
+        case MAP_OF_QUEUES:
+          code.addLine("    for (%s.Entry<%s, %s<%s>> %s : %s.entrySet()) {",
+                  Map.class,
+                  field.type(0),
+                  ConcurrentLinkedQueue.class,
+                  field.type(1),
+                  entry,
+                  field.field().on("this"))
+              .addLine("      for (%s %s : %s.getValue()) {", field.type(1), value, entry)
+              .add("        ");
+          field.generator.addStreamedElement(
+              code, builder, Excerpts.add("%s.getKey()", entry), value);
+          code.addLine("      }")
+              .addLine("    }");
+          break;
+
+        default:
+          Variable set = new Variable(field.property.getName());
+          code.addLine("    Object %s = %s;", set, field.field().on("this"))
+              .addLine("    if (%s != %s) {", set, UNSET)
+              .add("      ");
+          field.generator.addSetFromResult(code, builder, Excerpts.add(
+              "(%s) %s", (Excerpt) field.generator::addSetFromResultType, set));
+          code.addLine("    }");
+          break;
+      }
+    }
+    code.addLine("    return %s.build();", builder)
+        .addLine("  }");
+  }
+
+  @Override
+  protected void addFields(FieldReceiver fields) {
+    fields.add("datatype", datatype);
+    fields.add("concurrentBuilderType", concurrentBuilderType);
+    fields.add("fields", this.fields);
+  }
+}
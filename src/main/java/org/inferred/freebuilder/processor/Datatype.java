@@ -125,15 +125,54 @@ public abstract class Datatype {
   /** Returns whether the builder type should be serializable. */
   public abstract boolean isBuilderSerializable();
 
+  /** Returns whether boolean and enum properties should be packed into bitfields on the value. */
+  public abstract boolean isCompactLayout();
+
+  /** Returns whether optional properties should be stored sparsely on the value. */
+  public abstract boolean isSparseLayout();
+
+  /**
+   * Returns the maximum number of elements of each collection property the generated toString
+   * method should include, or zero for no limit.
+   */
+  public abstract int getToStringLimit();
+
   /** Returns whether the value type has a toBuilder method that needs to be generated. */
   public abstract boolean getHasToBuilderMethod();
 
+  /**
+   * Returns whether the value type is annotated {@code @StaticFactory} and eligible for a generated
+   * static factory method taking every property.
+   */
+  public abstract boolean getHasStaticFactoryMethod();
+
+  /**
+   * Returns whether the user's builder overrides {@code build()}, e.g. to run cross-field checks,
+   * which generated shortcuts to a new value must then go through.
+   */
+  public abstract boolean getHasOverriddenBuildMethod();
+
+  /**
+   * Returns whether the value type has an abstract {@code intern()} method, to be implemented with
+   * a weak interner shared by all instances.
+   */
+  public abstract boolean getHasInternMethod();
+
   /** Returns a list of annotations that should be applied to the generated builder class. */
   public abstract ImmutableList<Excerpt> getGeneratedBuilderAnnotations();
 
   /** Returns a list of annotations that should be applied to the generated value class. */
   public abstract ImmutableList<Excerpt> getValueTypeAnnotations();
 
+  /** Returns a list of additional members that should be added to the generated value class. */
+  public abstract ImmutableList<Excerpt> getValueTypeMembers();
+
+  /** Returns a list of additional members that should be added to the generated partial class. */
+  public abstract ImmutableList<Excerpt> getPartialTypeMembers();
+
+  /** Returns a list of additional members that should be added to the generated builder class. */
+  public abstract ImmutableList<Excerpt> getGeneratedBuilderMembers();
+
   /** Returns the visibility of the generated value class. */
   public abstract Visibility getValueTypeVisibility();
 
@@ -150,6 +189,12 @@ public abstract class Datatype {
     public Builder() {
       super.setValueTypeVisibility(Visibility.PRIVATE);
       super.setHasToBuilderMethod(false);
+      super.setHasStaticFactoryMethod(false);
+      super.setHasOverriddenBuildMethod(false);
+      super.setHasInternMethod(false);
+      super.setCompactLayout(false);
+      super.setSparseLayout(false);
+      super.setToStringLimit(0);
     }
 
     /**
@@ -0,0 +1,619 @@
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderMethods.clearMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.setCountMethod;
+import static org.inferred.freebuilder.processor.model.ModelUtils.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.model.ModelUtils.maybeDeclared;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Multiset;
+
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.StreamedForm;
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.FieldAccess;
+import org.inferred.freebuilder.processor.source.LazyName;
+import org.inferred.freebuilder.processor.source.ObjectsExcerpts;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.TypeClass;
+import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.Variable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * A static {@code diff} method on the builder of a {@link org.inferred.freebuilder.Diffable
+ * &#64;Diffable} type, the {@code Patch} type it returns, and the {@code applyPatch} method that
+ * replays a patch on a builder.
+ *
+ * <p>Other properties are compared with {@code equals}, and the new value kept if it differs.
+ * Lists record the elements appended, unless the old list is not a prefix of the new one, in
+ * which case the whole list is replaced. Properties whose generator supports
+ * {@link PropertyCodeGenerator#addStreamedRemoval streamed removal} record the elements (or map
+ * entries) added and the elements (or keys) removed, and multisets record changed counts.
+ * Unchanged properties allocate nothing. Each delta can be read back from the patch through a
+ * public accessor, e.g. to send it elsewhere.
+ */
+class DiffPatch extends ValueType implements Excerpt {
+
+  static final String DIFF_METHOD = "diff";
+  static final String APPLY_PATCH_METHOD = "applyPatch";
+
+  private static final FieldAccess CHANGED = new FieldAccess("_changed");
+
+  private enum Delta { REPLACE, APPEND, ADD_REMOVE, COUNTS, ENTRIES, ENTRY_COLLECTIONS }
+
+  private static class Field extends ValueType {
+    final int index;
+    final Property property;
+    final PropertyCodeGenerator generator;
+    final Delta delta;
+
+    Field(int index, Property property, PropertyCodeGenerator generator) {
+      this.index = index;
+      this.property = property;
+      this.generator = generator;
+      StreamedForm form = generator.getStreamedForm();
+      if (form == StreamedForm.ARRAY) {
+        boolean isMultiset = maybeDeclared(property.getType())
+            .filter(type -> erasesToAnyOf(type, Multiset.class, ImmutableMultiset.class))
+            .isPresent();
+        if (isMultiset) {
+          delta = Delta.COUNTS;
+        } else if (generator.isStreamedRemovalSupported()) {
+          delta = Delta.ADD_REMOVE;
+        } else {
+          delta = Delta.APPEND;
+        }
+      } else if (form == StreamedForm.OBJECT) {
+        delta = Delta.ENTRIES;
+      } else if (form == StreamedForm.OBJECT_OF_ARRAYS) {
+        delta = Delta.ENTRY_COLLECTIONS;
+      } else {
+        delta = Delta.REPLACE;
+      }
+    }
+
+    /**
+     * The field holding the new value, or the elements or entries added.
+     *
+     * <p>Field names start with a lower-case prefix unique to their role, followed by the
+     * capitalized property name, so they cannot collide with each other or {@link #CHANGED}
+     * however the properties are named.
+     */
+    FieldAccess added() {
+      switch (delta) {
+        case REPLACE:
+          return new FieldAccess("_new" + property.getCapitalizedName());
+
+        case APPEND:
+        case ADD_REMOVE:
+          return new FieldAccess("_added" + property.getCapitalizedName());
+
+        default:
+          return new FieldAccess("_changed" + property.getCapitalizedName());
+      }
+    }
+
+    /** The field holding the elements or keys removed, or whether a list was cleared. */
+    FieldAccess removed() {
+      String prefix = (delta == Delta.APPEND) ? "_cleared" : "_removed";
+      return new FieldAccess(prefix + property.getCapitalizedName());
+    }
+
+    TypeMirror type(int index) {
+      return generator.getStreamedTypes().get(index);
+    }
+
+    Excerpt getter(String value) {
+      return Excerpts.add("%s.%s()", value, property.getGetterName());
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("index", index);
+      fields.add("property", property);
+      fields.add("generator", generator);
+    }
+  }
+
+  private final Datatype datatype;
+  private final TypeClass patchType;
+  private final ImmutableList<Field> fields;
+
+  DiffPatch(
+      Datatype datatype,
+      TypeClass patchType,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    this.datatype = datatype;
+    this.patchType = patchType;
+    ImmutableList.Builder<Field> fields = ImmutableList.builder();
+    int index = 0;
+    for (Map.Entry<Property, PropertyCodeGenerator> entry : generatorsByProperty.entrySet()) {
+      fields.add(new Field(index++, entry.getKey(), entry.getValue()));
+    }
+    this.fields = fields.build();
+  }
+
+  @Override
+  public void addTo(SourceBuilder code) {
+    addDiffMethod(code);
+    addApplyPatchMethod(code);
+    addPatchType(code);
+  }
+
+  private void addDiffMethod(SourceBuilder code) {
+    Variable patch = new Variable("patch");
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * Returns the changes that turn {@code from} into {@code to}, which")
+        .addLine(" * %s can replay on a builder.",
+            datatype.getBuilder().javadocMethodLink(APPLY_PATCH_METHOD, patchType)
+                .withText(APPLY_PATCH_METHOD))
+        .addLine(" *")
+        .addLine(" * <p>Unchanged properties are only compared, never copied, so the size of the")
+        .addLine(" * patch grows with the number of changed properties and elements, not the")
+        .addLine(" * size of the values.")
+        .addLine(" */")
+        .addLine("public static %s %s %s(%s from, %s to) {",
+            datatype.getType().declarationParameters(),
+            patchType,
+            DIFF_METHOD,
+            datatype.getType(),
+            datatype.getType())
+        .addLine("  %1$s %2$s = new %1$s();", patchType, patch);
+    for (Field field : fields) {
+      Excerpt from = field.getter("from");
+      Excerpt to = field.getter("to");
+      Excerpt added = field.added().on(patch);
+      Excerpt removed = field.removed().on(patch);
+      if (field.delta == Delta.REPLACE) {
+        code.addLine("  if (%s) {",
+            ObjectsExcerpts.notEquals(from, to, field.property.getType().getKind()));
+      } else {
+        code.addLine("  if (!%s.equals(%s)) {", from, to);
+      }
+      code.addLine("    %s.set(%s);", CHANGED.on(patch), field.index);
+      switch (field.delta) {
+        case APPEND:
+          code.addLine("    %s = %s(%s, %s);", added, AppendedElementsMethod.REFERENCE, from, to)
+              .addLine("    if (%s == null) {", added)
+              .addLine("      %s = true;", removed)
+              .addLine("      %s = %s;", added, to)
+              .addLine("    }");
+          break;
+
+        case ADD_REMOVE:
+          code.addLine("    %s = %s(%s, %s);", added, MissingFromMethod.REFERENCE, from, to)
+              .addLine("    %s = %s(%s, %s);", removed, MissingFromMethod.REFERENCE, to, from);
+          break;
+
+        case COUNTS:
+          code.addLine("    %s = %s(%s, %s);", added, ChangedCountsMethod.REFERENCE, from, to);
+          break;
+
+        case ENTRIES:
+          code.addLine("    %s = %s(%s, %s);", added, ChangedEntriesMethod.REFERENCE, from, to)
+              .addLine("    %s = %s(%s.keySet(), %s.keySet());",
+                  removed, MissingFromMethod.REFERENCE, to, from);
+          break;
+
+        case ENTRY_COLLECTIONS:
+          code.addLine("    %s = %s(%s.asMap(), %s.asMap());",
+                  added, ChangedEntriesMethod.REFERENCE, from, to)
+              .addLine("    %s = %s(%s.keySet(), %s.keySet());",
+                  removed, MissingFromMethod.REFERENCE, to, from);
+          break;
+
+        default:
+          code.addLine("    %s = %s;", added, to);
+          break;
+      }
+      code.addLine("  }");
+    }
+    code.addLine("  return %s;", patch)
+        .addLine("}");
+  }
+
+  private void addApplyPatchMethod(SourceBuilder code) {
+    Excerpt builder = Excerpts.add("this");
+    String patch = "patch";
+    Variable element = new Variable("element");
+    Variable entry = new Variable("entry");
+    Variable value = new Variable("value");
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * Applies {@code patch}, as returned by %s, to this builder.",
+            diffLink())
+        .addLine(" *")
+        .addLine(" * <p>If this builder holds the properties of the patch's {@code from} value,")
+        .addLine(" * it will hold those of its {@code to} value afterwards. Changes go through")
+        .addLine(" * the usual setters, so any constraints they enforce still apply.")
+        .addLine(" *")
+        .addLine(" * @return this {@code %s} object", datatype.getBuilder().getSimpleName())
+        .addLine(" * @throws NullPointerException if {@code patch} is null")
+        .addLine(" */")
+        .addLine("public %s %s(%s %s) {",
+            datatype.getBuilder(), APPLY_PATCH_METHOD, patchType, patch);
+    for (Field field : fields) {
+      Excerpt added = field.added().on(patch);
+      Excerpt removed = field.removed().on(patch);
+      code.addLine("  if (%s.get(%s)) {", CHANGED.on(patch), field.index);
+      switch (field.delta) {
+        case APPEND:
+          code.addLine("    if (%s) {", removed)
+              .addLine("      %s();", clearMethod(field.property))
+              .addLine("    }")
+              .add("    ");
+          field.generator.addSetFromResult(code, builder, added);
+          break;
+
+        case ADD_REMOVE:
+          code.addLine("    for (%s %s : %s) {", field.type(0), element, removed)
+              .add("      ");
+          field.generator.addStreamedRemoval(code, builder, element);
+          code.addLine("    }")
+              .add("    ");
+          field.generator.addSetFromResult(code, builder, added);
+          break;
+
+        case COUNTS:
+          code.addLine("    for (%s.Entry<%s, Integer> %s : %s.entrySet()) {",
+                  Map.class, field.type(0), entry, added)
+              .addLine("      %s(%s.getKey(), %s.getValue());",
+                  setCountMethod(field.property), entry, entry)
+              .addLine("    }");
+          break;
+
+        case ENTRIES:
+          code.addLine("    for (%s %s : %s) {", field.type(0), element, removed)
+              .add("      ");
+          field.generator.addStreamedRemoval(code, builder, element);
+          code.addLine("    }")
+              .add("    ");
+          field.generator.addSetFromResult(code, builder, added);
+          break;
+
+        case ENTRY_COLLECTIONS:
+          code.addLine("    for (%s %s : %s) {", field.type(0), element, removed)
+              .add("      ");
+          field.generator.addStreamedRemoval(code, builder, element);
+          code.addLine("    }")
+              .addLine("    for (%s.Entry<%s, %s<%s>> %s : %s.entrySet()) {",
+                  Map.class, field.type(0), Collection.class, field.type(1), entry, added)
+              .add("      ");
+          field.generator.addStreamedRemoval(code, builder, Excerpts.add("%s.getKey()", entry));
+          code.addLine("      for (%s %s : %s.getValue()) {", field.type(1), value, entry)
+              .add("        ");
+          field.generator.addStreamedElement(
+              code, builder, Excerpts.add("%s.getKey()", entry), value);
+          code.addLine("      }")
+              .addLine("    }");
+          break;
+
+        default:
+          code.add("    ");
+          field.generator.addSetFromResult(code, builder, added);
+          break;
+      }
+      code.addLine("  }");
+    }
+    code.addLine("  return (%s) this;", datatype.getBuilder())
+        .addLine("}");
+  }
+
+  private void addPatchType(SourceBuilder code) {
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * The changes between two %s values, returned by %s.",
+            datatype.getType().javadocLink(),
+            diffLink())
+        .addLine(" */")
+        .addLine("public static final class %s {", patchType.declaration())
+        .addLine("")
+        .addLine("  private final %1$s %2$s = new %1$s();", BitSet.class, CHANGED);
+    for (Field field : fields) {
+      switch (field.delta) {
+        case APPEND:
+          code.addLine("  private %s<%s> %s;", Collection.class, field.type(0), field.added())
+              .addLine("  private boolean %s;", field.removed());
+          break;
+
+        case ADD_REMOVE:
+          code.addLine("  private %s<%s> %s;", List.class, field.type(0), field.added())
+              .addLine("  private %s<%s> %s;", List.class, field.type(0), field.removed());
+          break;
+
+        case COUNTS:
+          code.addLine("  private %s<%s, Integer> %s;", Map.class, field.type(0), field.added());
+          break;
+
+        case ENTRIES:
+          code.addLine("  private %s<%s, %s> %s;",
+                  Map.class, field.type(0), field.type(1), field.added())
+              .addLine("  private %s<%s> %s;", List.class, field.type(0), field.removed());
+          break;
+
+        case ENTRY_COLLECTIONS:
+          code.addLine("  private %s<%s, %s<%s>> %s;",
+                  Map.class, field.type(0), Collection.class, field.type(1), field.added())
+              .addLine("  private %s<%s> %s;", List.class, field.type(0), field.removed());
+          break;
+
+        default:
+          code.addLine("  private %s %s;", field.property.getType(), field.added());
+          break;
+      }
+    }
+    code.addLine("")
+        .addLine("  private %s() {}", patchType.getSimpleName())
+        .addLine("")
+        .addLine("  /** Returns true if no property changed. */")
+        .addLine("  public boolean isEmpty() {")
+        .addLine("    return %s.isEmpty();", CHANGED)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /**")
+        .addLine("   * Returns a bitmask of the properties that changed, numbered from zero in the")
+        .addLine("   * order they are declared on %s.", datatype.getType().javadocLink())
+        .addLine("   */")
+        .addLine("  public %s changedProperties() {", BitSet.class)
+        .addLine("    return (%s) %s.clone();", BitSet.class, CHANGED)
+        .addLine("  }");
+    for (Field field : fields) {
+      addPatchAccessors(code, field);
+    }
+    code.addLine("}");
+  }
+
+  /**
+   * Adds public accessors for the delta recorded for {@code field}. Collections are returned
+   * unmodifiable, and empty if the property did not change.
+   */
+  private void addPatchAccessors(SourceBuilder code, Field field) {
+    String name = field.property.getName();
+    String capitalizedName = field.property.getCapitalizedName();
+    code.addLine("")
+        .addLine("  /** Returns true if %s changed. */", name)
+        .addLine("  public boolean is%sChanged() {", capitalizedName)
+        .addLine("    return %s.get(%s);", CHANGED, field.index)
+        .addLine("  }");
+    switch (field.delta) {
+      case APPEND:
+        addCollectionAccessor(code, field.added(), "getAdded" + capitalizedName,
+            Excerpts.add("%s<%s>", Collection.class, field.type(0)), "unmodifiableCollection",
+            "emptyList", "the elements appended to " + name
+                + ", or all its new elements if it was cleared first");
+        code.addLine("")
+            .addLine("  /** Returns true if %s was cleared before new elements were added. */",
+                name)
+            .addLine("  public boolean is%sCleared() {", capitalizedName)
+            .addLine("    return %s;", field.removed())
+            .addLine("  }");
+        break;
+
+      case ADD_REMOVE:
+        addCollectionAccessor(code, field.added(), "getAdded" + capitalizedName,
+            Excerpts.add("%s<%s>", List.class, field.type(0)), "unmodifiableList",
+            "emptyList", "the elements added to " + name);
+        addCollectionAccessor(code, field.removed(), "getRemoved" + capitalizedName,
+            Excerpts.add("%s<%s>", List.class, field.type(0)), "unmodifiableList",
+            "emptyList", "the elements removed from " + name);
+        break;
+
+      case COUNTS:
+        addCollectionAccessor(code, field.added(), "getChanged" + capitalizedName,
+            Excerpts.add("%s<%s, Integer>", Map.class, field.type(0)), "unmodifiableMap",
+            "emptyMap", "the new count of each element of " + name
+                + " whose count changed, zero if it was removed");
+        break;
+
+      case ENTRIES:
+        addCollectionAccessor(code, field.added(), "getChanged" + capitalizedName,
+            Excerpts.add("%s<%s, %s>", Map.class, field.type(0), field.type(1)),
+            "unmodifiableMap", "emptyMap", "the entries added to or changed in " + name);
+        addCollectionAccessor(code, field.removed(), "getRemoved" + capitalizedName,
+            Excerpts.add("%s<%s>", List.class, field.type(0)), "unmodifiableList",
+            "emptyList", "the keys removed from " + name);
+        break;
+
+      case ENTRY_COLLECTIONS:
+        addCollectionAccessor(code, field.added(), "getChanged" + capitalizedName,
+            Excerpts.add("%s<%s, %s<%s>>",
+                Map.class, field.type(0), Collection.class, field.type(1)),
+            "unmodifiableMap", "emptyMap", "the new values of each key of " + name
+                + " whose values changed");
+        addCollectionAccessor(code, field.removed(), "getRemoved" + capitalizedName,
+            Excerpts.add("%s<%s>", List.class, field.type(0)), "unmodifiableList",
+            "emptyList", "the keys removed from " + name);
+        break;
+
+      default:
+        code.addLine("")
+            .addLine("  /**")
+            .addLine("   * Returns the new value of %s.", name)
+            .addLine("   *")
+            .addLine("   * @throws IllegalStateException if %s did not change", name)
+            .addLine("   */")
+            .addLine("  public %s getNew%s() {", field.property.getType(), capitalizedName)
+            .addLine("    if (!%s.get(%s)) {", CHANGED, field.index)
+            .addLine("      throw new %s(\"%s did not change\");",
+                IllegalStateException.class, name)
+            .addLine("    }")
+            .addLine("    return %s;", field.added())
+            .addLine("  }");
+        break;
+    }
+  }
+
+  private static void addCollectionAccessor(
+      SourceBuilder code,
+      FieldAccess field,
+      String methodName,
+      Excerpt type,
+      String unmodifiableMethod,
+      String emptyMethod,
+      String description) {
+    code.addLine("")
+        .addLine("  /** Returns %s. */", description)
+        .addLine("  public %s %s() {", type, methodName)
+        .addLine("    if (%s == null) {", field)
+        .addLine("      return %s.%s();", Collections.class, emptyMethod)
+        .addLine("    }")
+        .addLine("    return %s.%s(%s);", Collections.class, unmodifiableMethod, field)
+        .addLine("  }");
+  }
+
+  private Excerpt diffLink() {
+    return datatype.getGeneratedBuilder()
+        .javadocMethodLink(DIFF_METHOD, datatype.getType(), datatype.getType())
+        .withText(DIFF_METHOD);
+  }
+
+  @Override
+  protected void addFields(FieldReceiver fields) {
+    fields.add("datatype", datatype);
+    fields.add("patchType", patchType);
+    fields.add("fields", this.fields);
+  }
+
+  private static class AppendedElementsMethod extends ValueType implements Excerpt {
+
+    static final LazyName REFERENCE =
+        LazyName.of("appendedElements", new AppendedElementsMethod());
+
+    private AppendedElementsMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns the elements appended to {@code from} to give {@code to}, or null")
+          .addLine(" * if {@code from} is not a prefix of {@code to}.")
+          .addLine(" */")
+          .addLine("private static <E> %s<E> %s(%s<?> from, %s<E> to) {",
+              List.class, REFERENCE, Collection.class, Collection.class)
+          .addLine("  if (to.size() < from.size()) {")
+          .addLine("    return null;")
+          .addLine("  }")
+          .addLine("  %s<E> iterator = to.iterator();", Iterator.class)
+          .addLine("  for (Object element : from) {")
+          .addLine("    if (!%s.equals(element, iterator.next())) {", Objects.class)
+          .addLine("      return null;")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("  %s<E> appended = new %s<>(to.size() - from.size());",
+              List.class, ArrayList.class)
+          .addLine("  while (iterator.hasNext()) {")
+          .addLine("    appended.add(iterator.next());")
+          .addLine("  }")
+          .addLine("  return appended;")
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
+  private static class MissingFromMethod extends ValueType implements Excerpt {
+
+    static final LazyName REFERENCE = LazyName.of("missingFrom", new MissingFromMethod());
+
+    private MissingFromMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("/** Returns the elements of {@code elements} not in {@code other}. */")
+          .addLine("private static <E> %s<E> %s(%s<?> other, %s<E> elements) {",
+              List.class, REFERENCE, Collection.class, Collection.class)
+          .addLine("  %s<E> missing = %s.emptyList();", List.class, Collections.class)
+          .addLine("  for (E element : elements) {")
+          .addLine("    if (!other.contains(element)) {")
+          .addLine("      if (missing.isEmpty()) {")
+          .addLine("        missing = new %s<>();", ArrayList.class)
+          .addLine("      }")
+          .addLine("      missing.add(element);")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("  return missing;")
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
+  private static class ChangedEntriesMethod extends ValueType implements Excerpt {
+
+    static final LazyName REFERENCE = LazyName.of("changedEntries", new ChangedEntriesMethod());
+
+    private ChangedEntriesMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("/** Returns the entries of {@code to} that are not also in {@code from}. */")
+          .addLine("private static <K, V> %s<K, V> %s(%s<?, ?> from, %s<K, V> to) {",
+              Map.class, REFERENCE, Map.class, Map.class)
+          .addLine("  %s<K, V> changed = %s.emptyMap();", Map.class, Collections.class)
+          .addLine("  for (%s.Entry<K, V> entry : to.entrySet()) {", Map.class)
+          .addLine("    if (!entry.getValue().equals(from.get(entry.getKey()))) {")
+          .addLine("      if (changed.isEmpty()) {")
+          .addLine("        changed = new %s<>();", LinkedHashMap.class)
+          .addLine("      }")
+          .addLine("      changed.put(entry.getKey(), entry.getValue());")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("  return changed;")
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
+  private static class ChangedCountsMethod extends ValueType implements Excerpt {
+
+    static final LazyName REFERENCE = LazyName.of("changedCounts", new ChangedCountsMethod());
+
+    private ChangedCountsMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("/** Returns the new count of each element whose count differs. */")
+          .addLine("private static <E> %s<E, Integer> %s(%s<E> from, %s<E> to) {",
+              Map.class, REFERENCE, Multiset.class, Multiset.class)
+          .addLine("  %s<E, Integer> changed = new %s<>();", Map.class, LinkedHashMap.class)
+          .addLine("  for (%s.Entry<E> entry : to.entrySet()) {", Multiset.class)
+          .addLine("    if (from.count(entry.getElement()) != entry.getCount()) {")
+          .addLine("      changed.put(entry.getElement(), entry.getCount());")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("  for (%s.Entry<E> entry : from.entrySet()) {", Multiset.class)
+          .addLine("    if (!to.contains(entry.getElement())) {")
+          .addLine("      changed.put(entry.getElement(), 0);")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("  return changed;")
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+}
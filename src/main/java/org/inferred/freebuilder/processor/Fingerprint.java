@@ -0,0 +1,702 @@
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.model.ModelUtils.asElement;
+import static org.inferred.freebuilder.processor.model.ModelUtils.maybeDeclared;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.BinaryCodec.OptionalType;
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.Initially;
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.LazyName;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.Variable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * A stable 64-bit hash for a type declaring {@code long fingerprint64()}, implementing that
+ * method on the value and partial types.
+ *
+ * <p>Unlike {@code hashCode}, the result depends only on the property values, not on identity
+ * hash codes or the JVM, so it can be shared between processes. Each property is fed in
+ * declaration order through an xxHash64-style round: primitives by value, strings one UTF-16
+ * code unit at a time, enums by name, optional and nullable values behind a presence flag, and
+ * collections, maps and arrays by size and then each element in iteration order. Nested
+ * FreeBuilder types declaring their own {@code fingerprint64()} method are hashed with it. The
+ * seed is a hash of the type's name and property names, so types with the same property values
+ * do not collide. No objects are allocated, except for any iterators that escape analysis cannot
+ * remove.
+ */
+class Fingerprint {
+
+  static final String METHOD = "fingerprint64";
+
+  private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME64_3 = 0x165667B19E3779F9L;
+  private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+
+  /** Returns true if {@code method} is a {@code long fingerprint64()} method to implement. */
+  static boolean isFingerprintMethod(ExecutableElement method) {
+    return method.getSimpleName().contentEquals(METHOD)
+        && method.getModifiers().contains(Modifier.ABSTRACT)
+        && method.getReturnType().getKind() == TypeKind.LONG
+        && method.getParameters().isEmpty();
+  }
+
+  private final ImmutableList<PropertyHasher> properties;
+  private final long seed;
+
+  private Fingerprint(Datatype datatype, List<PropertyHasher> properties) {
+    this.properties = ImmutableList.copyOf(properties);
+    this.seed = seed(datatype, properties);
+  }
+
+  /** Returns the {@code fingerprint64()} method, for the value and partial types. */
+  Excerpt method() {
+    return new FingerprintMethod(properties, seed);
+  }
+
+  /**
+   * Works out how to hash each property of a type, reporting any that cannot be hashed stably.
+   */
+  static class Resolver {
+
+    private final Elements elements;
+    private final Types types;
+
+    Resolver(Elements elements, Types types) {
+      this.elements = elements;
+      this.types = types;
+    }
+
+    /**
+     * Returns a fingerprint of every property, or the first property that cannot be hashed.
+     */
+    FingerprintOrUnsupported resolve(
+        Datatype datatype, Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+      List<PropertyHasher> properties = new ArrayList<>();
+      for (Map.Entry<Property, PropertyCodeGenerator> entry : generatorsByProperty.entrySet()) {
+        Property property = entry.getKey();
+        PropertyCodeGenerator generator = entry.getValue();
+        ValueHasher hasher = resolve(property.getType(), true).orElse(null);
+        if (hasher == null) {
+          return new FingerprintOrUnsupported(null, property);
+        }
+        boolean nullable =
+            generator.initialState() == Initially.OPTIONAL && !hasher.tracksPresence();
+        properties.add(new PropertyHasher(property, hasher, nullable));
+      }
+      return new FingerprintOrUnsupported(new Fingerprint(datatype, properties), null);
+    }
+
+    /**
+     * Returns a hasher for {@code type}. Top-level lists are always random-access, as the builder
+     * copies them, so they are walked by index rather than with an iterator.
+     */
+    private Optional<ValueHasher> resolve(TypeMirror type, boolean topLevel) {
+      if (type.getKind().isPrimitive()) {
+        return Optional.of(new PrimitiveHasher(type.getKind()));
+      } else if (type.getKind() == TypeKind.ARRAY) {
+        TypeMirror component = ((ArrayType) type).getComponentType();
+        return resolve(component, false).map(hasher -> new ArrayHasher(component, hasher));
+      }
+      DeclaredType declared = maybeDeclared(type).orElse(null);
+      if (declared == null) {
+        return Optional.empty();
+      }
+      TypeElement element = asElement(declared);
+      String name = element.getQualifiedName().toString();
+      if (isBoxed(type)) {
+        return Optional.of(new PrimitiveHasher(types.unboxedType(type).getKind()));
+      } else if (name.equals(String.class.getName())) {
+        return Optional.of(new StringHasher());
+      } else if (element.getKind() == ElementKind.ENUM) {
+        return Optional.of(new EnumHasher());
+      }
+      for (OptionalType optional : OptionalType.values()) {
+        if (name.equals(optional.className)) {
+          return optional.elementType(declared, types)
+              .flatMap(elementType -> resolve(elementType, false))
+              .map(hasher -> new OptionalHasher(optional, hasher));
+        }
+      }
+      if (isNested(element)) {
+        return Optional.of(new NestedHasher());
+      }
+      Optional<DeclaredType> collection = supertype(declared, Collection.class.getName());
+      if (collection.isPresent()) {
+        boolean ordered = supertype(declared, List.class.getName()).isPresent();
+        boolean indexed = topLevel
+            && (name.equals(List.class.getName())
+                || name.equals("com.google.common.collect.ImmutableList"));
+        TypeMirror elementType = collection.get().getTypeArguments().get(0);
+        return resolveAll(elementType).map(hashers ->
+            new CollectionHasher(elementType, hashers.get(0), ordered, indexed));
+      }
+      Optional<DeclaredType> map = supertype(declared, Map.class.getName());
+      if (map.isPresent()) {
+        TypeMirror keyType = map.get().getTypeArguments().get(0);
+        TypeMirror valueType = map.get().getTypeArguments().get(1);
+        return resolveAll(keyType, valueType).map(hashers -> new MapHasher(
+            keyType, valueType, hashers.get(0), hashers.get(1), false));
+      }
+      Optional<DeclaredType> multimap =
+          supertype(declared, "com.google.common.collect.Multimap");
+      if (multimap.isPresent()) {
+        // Hash asMap(), so the values of a ListMultimap stay ordered within each key
+        boolean ordered =
+            supertype(declared, "com.google.common.collect.ListMultimap").isPresent();
+        TypeMirror keyType = multimap.get().getTypeArguments().get(0);
+        TypeMirror valueType = multimap.get().getTypeArguments().get(1);
+        return resolveAll(keyType, valueType).map(hashers -> new MapHasher(
+            keyType,
+            valueType,
+            hashers.get(0),
+            new CollectionHasher(valueType, hashers.get(1), ordered, false),
+            true));
+      }
+      return Optional.empty();
+    }
+
+    private Optional<List<ValueHasher>> resolveAll(TypeMirror... typeArguments) {
+      List<ValueHasher> hashers = new ArrayList<>();
+      for (TypeMirror typeArgument : typeArguments) {
+        ValueHasher hasher = resolve(typeArgument, false).orElse(null);
+        if (hasher == null) {
+          return Optional.empty();
+        }
+        hashers.add(hasher);
+      }
+      return Optional.of(hashers);
+    }
+
+    private boolean isBoxed(TypeMirror type) {
+      try {
+        types.unboxedType(type);
+        return true;
+      } catch (IllegalArgumentException e) {
+        return false;
+      }
+    }
+
+    /** Returns true if {@code element} is a FreeBuilder type declaring its own fingerprint64. */
+    private boolean isNested(TypeElement element) {
+      return element.getAnnotation(FreeBuilder.class) != null
+          && ElementFilter.methodsIn(elements.getAllMembers(element))
+              .stream()
+              .anyMatch(Fingerprint::isFingerprintMethod);
+    }
+
+    private Optional<DeclaredType> supertype(DeclaredType type, String qualifiedName) {
+      if (asElement(type).getQualifiedName().contentEquals(qualifiedName)) {
+        return Optional.of(type);
+      }
+      for (TypeMirror supertype : types.directSupertypes(type)) {
+        Optional<DeclaredType> result = maybeDeclared(supertype)
+            .flatMap(declared -> supertype(declared, qualifiedName));
+        if (result.isPresent()) {
+          return result;
+        }
+      }
+      return Optional.empty();
+    }
+  }
+
+  /** Either a fingerprint, or the property that prevented one being created. */
+  static class FingerprintOrUnsupported {
+    private final Fingerprint fingerprint;
+    private final Property unsupported;
+
+    FingerprintOrUnsupported(Fingerprint fingerprint, Property unsupported) {
+      this.fingerprint = fingerprint;
+      this.unsupported = unsupported;
+    }
+
+    Optional<Fingerprint> fingerprint() {
+      return Optional.ofNullable(fingerprint);
+    }
+
+    Optional<Property> unsupported() {
+      return Optional.ofNullable(unsupported);
+    }
+  }
+
+  /**
+   * Returns a 64-bit FNV-1a hash of the type's qualified name, followed by each property's name.
+   */
+  private static long seed(Datatype datatype, List<PropertyHasher> properties) {
+    StringBuilder schema = new StringBuilder(datatype.getType().getQualifiedName().toString());
+    for (PropertyHasher property : properties) {
+      schema.append(';').append(property.property.getName());
+    }
+    long hash = 0xCBF29CE484222325L;
+    for (byte b : schema.toString().getBytes(StandardCharsets.UTF_8)) {
+      hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+    }
+    return hash;
+  }
+
+  private static String hex(long value) {
+    return "0x" + Long.toHexString(value).toUpperCase() + "L";
+  }
+
+  private static class PropertyHasher extends ValueType {
+    final Property property;
+    final ValueHasher hasher;
+    final boolean nullable;
+
+    PropertyHasher(Property property, ValueHasher hasher, boolean nullable) {
+      this.property = property;
+      this.hasher = hasher;
+      this.nullable = nullable;
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("property", property);
+      fields.add("hasher", hasher);
+      fields.add("nullable", nullable);
+    }
+  }
+
+  private static class FingerprintMethod extends ValueType implements Excerpt {
+    private final ImmutableList<PropertyHasher> properties;
+    private final long seed;
+
+    FingerprintMethod(ImmutableList<PropertyHasher> properties, long seed) {
+      this.properties = properties;
+      this.seed = seed;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      Variable hash = new Variable("hash");
+      code.addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public long %s() {", METHOD)
+          .addLine("    long %s = %s;", hash, hex(seed));
+      for (PropertyHasher property : properties) {
+        Excerpt value = Excerpts.add("%s()", property.property.getGetterName());
+        if (property.nullable || !property.hasher.isSimple()) {
+          Variable variable = new Variable(property.property.getName());
+          code.addLine("    %s %s = %s;", property.property.getType(), variable, value);
+          value = variable;
+        }
+        if (property.nullable) {
+          code.addLine("    %s = %s(%s, %s != null ? 1 : 0);",
+                  hash, MixMethod.REFERENCE, hash, value)
+              .addLine("    if (%s != null) {", value);
+          property.hasher.addHash(code, "      ", hash, value);
+          code.addLine("    }");
+        } else {
+          property.hasher.addHash(code, "    ", hash, value);
+        }
+      }
+      code.addLine("    return %s(%s);", FinishMethod.REFERENCE, hash)
+          .addLine("  }");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("properties", properties);
+      fields.add("seed", seed);
+    }
+  }
+
+  /** Hashes values of a single type. */
+  abstract static class ValueHasher extends ValueType {
+
+    /**
+     * Adds statements folding {@code value} into the local variable {@code hash}, each prefixed
+     * by {@code indent}. {@code value} may be evaluated more than once, unless the hasher
+     * {@link #isSimple is simple}.
+     */
+    abstract void addHash(SourceBuilder code, String indent, Excerpt hash, Excerpt value);
+
+    /** Returns true if the value to hash is only evaluated once. */
+    boolean isSimple() {
+      return true;
+    }
+
+    /** Returns true if the hasher records whether a value is present itself. */
+    boolean tracksPresence() {
+      return false;
+    }
+  }
+
+  private static class PrimitiveHasher extends ValueHasher {
+    private final TypeKind kind;
+
+    PrimitiveHasher(TypeKind kind) {
+      this.kind = kind;
+    }
+
+    @Override
+    void addHash(SourceBuilder code, String indent, Excerpt hash, Excerpt value) {
+      Excerpt bits;
+      switch (kind) {
+        case BOOLEAN:
+          bits = Excerpts.add("%s ? 1 : 0", value);
+          break;
+
+        case FLOAT:
+          bits = Excerpts.add("%s.floatToIntBits(%s)", Float.class, value);
+          break;
+
+        case DOUBLE:
+          bits = Excerpts.add("%s.doubleToLongBits(%s)", Double.class, value);
+          break;
+
+        default:
+          bits = value;
+          break;
+      }
+      code.addLine("%s%s = %s(%s, %s);", indent, hash, MixMethod.REFERENCE, hash, bits);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("kind", kind);
+    }
+  }
+
+  private static class StringHasher extends ValueHasher {
+    @Override
+    void addHash(SourceBuilder code, String indent, Excerpt hash, Excerpt value) {
+      code.addLine("%s%s = %s(%s, %s);", indent, hash, MixStringMethod.REFERENCE, hash, value);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
+  private static class EnumHasher extends ValueHasher {
+    @Override
+    void addHash(SourceBuilder code, String indent, Excerpt hash, Excerpt value) {
+      code.addLine("%s%s = %s(%s, %s.name());",
+          indent, hash, MixStringMethod.REFERENCE, hash, value);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
+  private static class NestedHasher extends ValueHasher {
+    @Override
+    void addHash(SourceBuilder code, String indent, Excerpt hash, Excerpt value) {
+      code.addLine("%s%s = %s(%s, %s.%s());",
+          indent, hash, MixMethod.REFERENCE, hash, value, METHOD);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
+  private static class OptionalHasher extends ValueHasher {
+    private final OptionalType optional;
+    private final ValueHasher element;
+
+    OptionalHasher(OptionalType optional, ValueHasher element) {
+      this.optional = optional;
+      this.element = element;
+    }
+
+    @Override
+    boolean isSimple() {
+      return false;
+    }
+
+    @Override
+    boolean tracksPresence() {
+      return true;
+    }
+
+    @Override
+    void addHash(SourceBuilder code, String indent, Excerpt hash, Excerpt value) {
+      code.addLine("%s%s = %s(%s, %s.isPresent() ? 1 : 0);",
+              indent, hash, MixMethod.REFERENCE, hash, value)
+          .addLine("%sif (%s.isPresent()) {", indent, value);
+      element.addHash(code, indent + "  ", hash, Excerpts.add("%s.%s()", value, optional.getter));
+      code.addLine("%s}", indent);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("optional", optional);
+      fields.add("element", element);
+    }
+  }
+
+  private static class ArrayHasher extends ValueHasher {
+    private final TypeMirror componentType;
+    private final ValueHasher component;
+
+    ArrayHasher(TypeMirror componentType, ValueHasher component) {
+      this.componentType = componentType;
+      this.component = component;
+    }
+
+    @Override
+    boolean isSimple() {
+      return false;
+    }
+
+    @Override
+    void addHash(SourceBuilder code, String indent, Excerpt hash, Excerpt value) {
+      Variable element = new Variable("element");
+      code.addLine("%s%s = %s(%s, %s.length);", indent, hash, MixMethod.REFERENCE, hash, value)
+          .addLine("%sfor (%s %s : %s) {", indent, componentType, element, value);
+      component.addHash(code, indent + "  ", hash, element);
+      code.addLine("%s}", indent);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("componentType", componentType.toString());
+      fields.add("component", component);
+    }
+  }
+
+  /**
+   * Hashes a collection. Lists are hashed in order; every other collection is hashed
+   * independently of iteration order, so that equal sets and multisets hash equally.
+   */
+  private static class CollectionHasher extends ValueHasher {
+    private final TypeMirror elementType;
+    private final ValueHasher element;
+    private final boolean ordered;
+    private final boolean indexed;
+
+    CollectionHasher(
+        TypeMirror elementType,
+        ValueHasher element,
+        boolean ordered,
+        boolean indexed) {
+      this.elementType = elementType;
+      this.element = element;
+      this.ordered = ordered;
+      this.indexed = indexed;
+    }
+
+    @Override
+    boolean isSimple() {
+      return false;
+    }
+
+    @Override
+    void addHash(SourceBuilder code, String indent, Excerpt hash, Excerpt value) {
+      code.addLine("%s%s = %s(%s, %s.size());", indent, hash, MixMethod.REFERENCE, hash, value);
+      Variable item = new Variable("element");
+      if (indexed) {
+        Variable index = new Variable("i");
+        code.addLine("%sfor (int %s = 0; %s < %s.size(); %s++) {",
+            indent, index, index, value, index);
+        element.addHash(code, indent + "  ", hash, Excerpts.add("%s.get(%s)", value, index));
+        code.addLine("%s}", indent);
+      } else if (ordered) {
+        code.addLine("%sfor (%s %s : %s) {", indent, elementType, item, value);
+        element.addHash(code, indent + "  ", hash, item);
+        code.addLine("%s}", indent);
+      } else {
+        addUnorderedHash(code, indent, hash, Excerpts.add("%s", elementType), item, value,
+            (elementHash, itemIndent) -> element.addHash(code, itemIndent, elementHash, item));
+      }
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("elementType", elementType.toString());
+      fields.add("element", element);
+      fields.add("ordered", ordered);
+      fields.add("indexed", indexed);
+    }
+  }
+
+  /**
+   * Hashes a map, or the {@code asMap()} view of a multimap, independently of iteration order.
+   */
+  private static class MapHasher extends ValueHasher {
+    private final TypeMirror keyType;
+    private final TypeMirror valueType;
+    private final ValueHasher key;
+    private final ValueHasher value;
+    private final boolean multimap;
+
+    MapHasher(
+        TypeMirror keyType,
+        TypeMirror valueType,
+        ValueHasher key,
+        ValueHasher value,
+        boolean multimap) {
+      this.keyType = keyType;
+      this.valueType = valueType;
+      this.key = key;
+      this.value = value;
+      this.multimap = multimap;
+    }
+
+    @Override
+    boolean isSimple() {
+      return false;
+    }
+
+    @Override
+    void addHash(SourceBuilder code, String indent, Excerpt hash, Excerpt map) {
+      Variable entry = new Variable("entry");
+      Excerpt entryType;
+      Excerpt entries;
+      if (multimap) {
+        entryType = Excerpts.add("%s<%s, %s<%s>>",
+            Map.Entry.class, keyType, Collection.class, valueType);
+        entries = Excerpts.add("%s.asMap().entrySet()", map);
+      } else {
+        entryType = Excerpts.add("%s<%s, %s>", Map.Entry.class, keyType, valueType);
+        entries = Excerpts.add("%s.entrySet()", map);
+      }
+      code.addLine("%s%s = %s(%s, %s.size());", indent, hash, MixMethod.REFERENCE, hash, map);
+      addUnorderedHash(code, indent, hash, entryType, entry, entries, (entryHash, itemIndent) -> {
+        key.addHash(code, itemIndent, entryHash, Excerpts.add("%s.getKey()", entry));
+        value.addHash(code, itemIndent, entryHash, Excerpts.add("%s.getValue()", entry));
+      });
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("keyType", keyType.toString());
+      fields.add("valueType", valueType.toString());
+      fields.add("key", key);
+      fields.add("value", value);
+      fields.add("multimap", multimap);
+    }
+  }
+
+  /**
+   * Adds a loop hashing each of {@code items} on its own and folding the sum of the results into
+   * {@code hash}, so that the order the items are iterated in does not affect the fingerprint.
+   * The sum rather than the xor is taken, so repeated items do not cancel out.
+   */
+  private static void addUnorderedHash(
+      SourceBuilder code,
+      String indent,
+      Excerpt hash,
+      Excerpt itemType,
+      Variable item,
+      Excerpt items,
+      BiConsumer<Variable, String> hashItem) {
+    Variable sum = new Variable("unorderedHash");
+    Variable itemHash = new Variable("itemHash");
+    code.addLine("%slong %s = 0;", indent, sum)
+        .addLine("%sfor (%s %s : %s) {", indent, itemType, item, items)
+        .addLine("%s  long %s = %s;", indent, itemHash, hex(PRIME64_3));
+    hashItem.accept(itemHash, indent + "  ");
+    code.addLine("%s  %s += %s(%s);", indent, sum, FinishMethod.REFERENCE, itemHash)
+        .addLine("%s}", indent)
+        .addLine("%s%s = %s(%s, %s);", indent, hash, MixMethod.REFERENCE, hash, sum);
+  }
+
+  /** One xxHash64 round, folding a 64-bit {@code value} into {@code hash}. */
+  private static class MixMethod extends ValueType implements Excerpt {
+
+    static final LazyName REFERENCE = LazyName.of("fingerprintMix", new MixMethod());
+
+    private MixMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("private static long %s(long hash, long value) {", REFERENCE)
+          .addLine("  long k = %s.rotateLeft(value * %s, 31) * %s;",
+              Long.class, hex(PRIME64_2), hex(PRIME64_1))
+          .addLine("  return %s.rotateLeft(hash ^ k, 27) * %s + %s;",
+              Long.class, hex(PRIME64_1), hex(PRIME64_4))
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
+  /** Folds the length and then each UTF-16 code unit of a string into {@code hash}. */
+  private static class MixStringMethod extends ValueType implements Excerpt {
+
+    static final LazyName REFERENCE = LazyName.of("fingerprintString", new MixStringMethod());
+
+    private MixStringMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("private static long %s(long hash, %s value) {", REFERENCE, String.class)
+          .addLine("  int length = value.length();")
+          .addLine("  hash = %s(hash, length);", MixMethod.REFERENCE)
+          .addLine("  int i = 0;")
+          .addLine("  for (; i + 4 <= length; i += 4) {")
+          .addLine("    hash = %s(hash, value.charAt(i)", MixMethod.REFERENCE)
+          .addLine("        | (long) value.charAt(i + 1) << 16")
+          .addLine("        | (long) value.charAt(i + 2) << 32")
+          .addLine("        | (long) value.charAt(i + 3) << 48);")
+          .addLine("  }")
+          .addLine("  if (i < length) {")
+          .addLine("    long tail = 0;")
+          .addLine("    for (; i < length; i++) {")
+          .addLine("      tail = tail << 16 | value.charAt(i);")
+          .addLine("    }")
+          .addLine("    hash = %s(hash, tail);", MixMethod.REFERENCE)
+          .addLine("  }")
+          .addLine("  return hash;")
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
+  /** The xxHash64 avalanche, so every input bit affects every output bit. */
+  private static class FinishMethod extends ValueType implements Excerpt {
+
+    static final LazyName REFERENCE = LazyName.of("fingerprintFinish", new FinishMethod());
+
+    private FinishMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("private static long %s(long hash) {", REFERENCE)
+          .addLine("  hash ^= hash >>> 33;")
+          .addLine("  hash *= %s;", hex(PRIME64_2))
+          .addLine("  hash ^= hash >>> 29;")
+          .addLine("  hash *= %s;", hex(PRIME64_3))
+          .addLine("  hash ^= hash >>> 32;")
+          .addLine("  return hash;")
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+}
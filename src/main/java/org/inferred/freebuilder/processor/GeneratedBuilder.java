@@ -17,13 +17,20 @@ package org.inferred.freebuilder.processor;
 
 import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.EXPLICIT_TYPES;
 import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.INFERRED_TYPES;
+import static org.inferred.freebuilder.processor.BuilderMethods.getter;
 import static org.inferred.freebuilder.processor.Datatype.UnderrideLevel.ABSENT;
 import static org.inferred.freebuilder.processor.Datatype.UnderrideLevel.FINAL;
+import static org.inferred.freebuilder.processor.MethodSplitter.Method.EQUALS;
+import static org.inferred.freebuilder.processor.MethodSplitter.Method.HASH_CODE;
+import static org.inferred.freebuilder.processor.MethodSplitter.Method.MERGE_FROM_BUILDER;
+import static org.inferred.freebuilder.processor.MethodSplitter.Method.MERGE_FROM_VALUE;
 import static org.inferred.freebuilder.processor.ToStringGenerator.addToString;
 import static org.inferred.freebuilder.processor.property.DefaultProperty.UNSET_PROPERTIES;
 import static org.inferred.freebuilder.processor.property.MergeAction.addActionsTo;
 import static org.inferred.freebuilder.processor.source.LazyName.addLazyDefinitions;
 import static org.inferred.freebuilder.processor.source.feature.GuavaLibrary.GUAVA;
+import static org.inferred.freebuilder.processor.source.feature.Instrumentation.BUILDER_COUNTERS;
+import static org.inferred.freebuilder.processor.source.feature.Instrumentation.INSTRUMENTATION;
 
 import static java.util.stream.Collectors.toSet;
 
@@ -32,10 +39,12 @@ import com.google.common.collect.ImmutableList;
 
 import org.inferred.freebuilder.FreeBuilder;
 import org.inferred.freebuilder.processor.Datatype.StandardMethod;
+import org.inferred.freebuilder.processor.excerpt.WeakInterner;
 import org.inferred.freebuilder.processor.property.MergeAction;
 import org.inferred.freebuilder.processor.property.Property;
 import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
 import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.Initially;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.StreamedForm;
 import org.inferred.freebuilder.processor.source.Excerpt;
 import org.inferred.freebuilder.processor.source.Excerpts;
 import org.inferred.freebuilder.processor.source.FieldAccess;
@@ -46,6 +55,9 @@ import org.inferred.freebuilder.processor.source.TypeClass;
 import org.inferred.freebuilder.processor.source.Variable;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
@@ -63,12 +75,16 @@ public class GeneratedBuilder extends GeneratedType {
 
   private final Datatype datatype;
   private final Map<Property, PropertyCodeGenerator> generatorsByProperty;
+  private final BitfieldLayout layout;
+  private final SparseStorage sparse;
 
   @VisibleForTesting
   public GeneratedBuilder(
       Datatype datatype, Map<Property, PropertyCodeGenerator> generatorsByProperty) {
     this.datatype = datatype;
     this.generatorsByProperty = generatorsByProperty;
+    this.layout = BitfieldLayout.of(datatype, generatorsByProperty);
+    this.sparse = SparseStorage.of(datatype, generatorsByProperty);
   }
 
   Datatype getDatatype() {
@@ -93,6 +109,15 @@ public class GeneratedBuilder extends GeneratedType {
     addBuilderTypeDeclaration(code);
     code.addLine(" {");
     addStaticFromMethod(code);
+    if (datatype.getHasStaticFactoryMethod()) {
+      addStaticFactoryMethod(code);
+    }
+    if (datatype.getHasInternMethod()) {
+      addInterner(code);
+    }
+    if (code.feature(INSTRUMENTATION).isEnabled()) {
+      addCounters(code);
+    }
     if (generatorsByProperty.values().stream().anyMatch(IS_REQUIRED)) {
       addPropertyEnum(code);
     }
@@ -104,7 +129,11 @@ public class GeneratedBuilder extends GeneratedType {
     addMergeFromBuilderMethod(code);
     addClearMethod(code);
     addBuildMethod(code);
+    if (datatype.getHasInternMethod()) {
+      addBuildInternedMethod(code);
+    }
     addBuildPartialMethod(code);
+    datatype.getGeneratedBuilderMembers().forEach(code::add);
 
     addRebuildableSuperclass(code);
     addValueType(code);
@@ -156,6 +185,83 @@ public class GeneratedBuilder extends GeneratedType {
     code.addLine("}");
   }
 
+  private void addStaticFactoryMethod(SourceBuilder code) {
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * Creates a new %s directly from its property values, without allocating",
+            datatype.getType().javadocLink())
+        .addLine(" * a builder. Values are checked as the builder's setters would check them.")
+        .addLine(" */")
+        .add("public static %s %s of(",
+            datatype.getType().declarationParameters(), datatype.getType());
+    String separator = "";
+    for (Property property : generatorsByProperty.keySet()) {
+      code.add("%s%s %s", separator, property.getType(), property.getName());
+      separator = ", ";
+    }
+    code.add(") {\n")
+        .add("  return %s(", datatype.getValueType().constructor());
+    separator = "";
+    for (Map.Entry<Property, PropertyCodeGenerator> entry : generatorsByProperty.entrySet()) {
+      code.add(separator);
+      entry.getValue().addConvertToValueField(code, Excerpts.add("%s", entry.getKey().getName()));
+      separator = ", ";
+    }
+    code.add(");\n")
+        .addLine("}");
+  }
+
+  private void addInterner(SourceBuilder code) {
+    code.addLine("")
+        .addLine("private static final %s INTERNER = new %s();",
+            WeakInterner.TYPE, WeakInterner.TYPE)
+        .addLine("")
+        .addLine("/**")
+        .addLine(" * Returns the number of distinct values currently held by {@link %s#intern()}.",
+            datatype.getType().getQualifiedName())
+        .addLine(" */")
+        .addLine("public static int internedCount() {")
+        .addLine("  return INTERNER.size();")
+        .addLine("}")
+        .addLine("")
+        .addLine("/**")
+        .addLine(" * Returns the fraction of calls to {@link %s#intern()} that returned an",
+            datatype.getType().getQualifiedName())
+        .addLine(" * existing value, or zero if it has never been called.")
+        .addLine(" */")
+        .addLine("public static double internHitRate() {")
+        .addLine("  return INTERNER.hitRate();")
+        .addLine("}");
+  }
+
+  private void addCounters(SourceBuilder code) {
+    code.addLine("")
+        .addLine("private static final %s COUNTERS = %s.forType(%s.class);",
+            BUILDER_COUNTERS, BUILDER_COUNTERS, datatype.getType().getQualifiedName())
+        .addLine("")
+        .addLine("{")
+        .addLine("  COUNTERS.recordBuilderCreated();")
+        .addLine("}");
+  }
+
+  /** Adds a statement recording {@code event} in the type's counters, if instrumented. */
+  private static void addCount(SourceBuilder code, String indent, String event) {
+    if (code.feature(INSTRUMENTATION).isEnabled()) {
+      code.addLine("%sCOUNTERS.record%s();", indent, event);
+    }
+  }
+
+  /** Adds a statement recording the collections a new value or partial copies, if any. */
+  private void addCollectionCopiesCount(SourceBuilder code) {
+    long copies = generatorsByProperty.values()
+        .stream()
+        .filter(generator -> generator.getStreamedForm() != StreamedForm.NONE)
+        .count();
+    if (code.feature(INSTRUMENTATION).isEnabled() && copies > 0) {
+      code.addLine("    COUNTERS.recordCollectionCopies(%s);", copies);
+    }
+  }
+
   private void addFieldDeclarations(SourceBuilder code) {
     code.addLine("");
     generatorsByProperty.values().forEach(generator -> generator.addBuilderFieldDeclaration(code));
@@ -183,6 +289,7 @@ public class GeneratedBuilder extends GeneratedType {
     }
     code.addLine(" */")
         .addLine("public %s build() {", datatype.getType());
+    addCount(code, "  ", "Build");
     if (hasRequiredProperties) {
       code.add(PreconditionExcerpts.checkState(
           "%1$s.isEmpty()", "Not set: %1$s", UNSET_PROPERTIES));
@@ -191,6 +298,19 @@ public class GeneratedBuilder extends GeneratedType {
         .addLine("}");
   }
 
+  private void addBuildInternedMethod(SourceBuilder code) {
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * Returns the canonical instance of the %s built by {@link #build()}.",
+            datatype.getType().javadocLink())
+        .addLine(" *")
+        .addLine(" * @see %s#intern()", datatype.getType().getQualifiedName())
+        .addLine(" */")
+        .addLine("public %s buildInterned() {", datatype.getType())
+        .addLine("  return build().intern();")
+        .addLine("}");
+  }
+
   private void addMergeFromValueMethod(SourceBuilder code) {
     code.addLine("")
         .addLine("/**")
@@ -200,9 +320,29 @@ public class GeneratedBuilder extends GeneratedType {
         .addLine(" * @return this {@code %s} object", datatype.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %s mergeFrom(%s value) {", datatype.getBuilder(), datatype.getType());
-    generatorsByProperty.values().forEach(generator -> generator.addMergeFromValue(code, "value"));
+    addCount(code, "  ", "MergeFrom");
+    List<List<Property>> chunks = chunks(MERGE_FROM_VALUE, generatorsByProperty.keySet());
+    if (chunks.size() == 1) {
+      generatorsByProperty.values().forEach(generator -> {
+        generator.addMergeFromValue(code, "value");
+      });
+    } else {
+      for (int i = 0; i < chunks.size(); i++) {
+        code.addLine("  mergeFromValueChunk%s(value);", i);
+      }
+    }
     code.addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
+    if (chunks.size() > 1) {
+      for (int i = 0; i < chunks.size(); i++) {
+        code.addLine("")
+            .addLine("private void mergeFromValueChunk%s(%s value) {", i, datatype.getType());
+        chunks.get(i).forEach(property -> {
+          generatorsByProperty.get(property).addMergeFromValue(code, "value");
+        });
+        code.addLine("}");
+      }
+    }
   }
 
   private void addMergeFromBuilderMethod(SourceBuilder code) {
@@ -214,11 +354,30 @@ public class GeneratedBuilder extends GeneratedType {
         .addLine(" * @return this {@code %s} object", datatype.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %1$s mergeFrom(%1$s template) {", datatype.getBuilder());
-    generatorsByProperty.values().forEach(generator -> {
-      generator.addMergeFromBuilder(code, "template");
-    });
+    addCount(code, "  ", "MergeFrom");
+    List<List<Property>> chunks = chunks(MERGE_FROM_BUILDER, generatorsByProperty.keySet());
+    if (chunks.size() == 1) {
+      generatorsByProperty.values().forEach(generator -> {
+        generator.addMergeFromBuilder(code, "template");
+      });
+    } else {
+      for (int i = 0; i < chunks.size(); i++) {
+        code.addLine("  mergeFromBuilderChunk%s(template);", i);
+      }
+    }
     code.addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
+    if (chunks.size() > 1) {
+      for (int i = 0; i < chunks.size(); i++) {
+        code.addLine("")
+            .addLine("private void mergeFromBuilderChunk%s(%s template) {",
+                i, datatype.getBuilder());
+        chunks.get(i).forEach(property -> {
+          generatorsByProperty.get(property).addMergeFromBuilder(code, "template");
+        });
+        code.addLine("}");
+      }
+    }
   }
 
   private Set<MergeAction> mergeActions() {
@@ -279,8 +438,9 @@ public class GeneratedBuilder extends GeneratedType {
     if (code.feature(GUAVA).isAvailable()) {
       code.addLine("@%s()", VisibleForTesting.class);
     }
-    code.addLine("public %s buildPartial() {", datatype.getType())
-        .addLine("  return %s(this);", datatype.getPartialType().constructor())
+    code.addLine("public %s buildPartial() {", datatype.getType());
+    addCount(code, "  ", "BuildPartial");
+    code.addLine("  return %s(this);", datatype.getPartialType().constructor())
         .addLine("}");
   }
 
@@ -326,12 +486,28 @@ public class GeneratedBuilder extends GeneratedType {
         datatype.getRebuildableType()
             .map(rebuildable -> extending(rebuildable, false))
             .orElse(extending(datatype.getType(), datatype.isInterfaceType())));
-    generatorsByProperty.values().forEach(generator -> generator.addValueFieldDeclaration(code));
+    generatorsByProperty.forEach((property, generator) -> {
+      if (!layout.isPacked(property) && !sparse.isSparse(property)) {
+        generator.addValueFieldDeclaration(code);
+      }
+    });
+    layout.addFieldDeclarations(code);
+    sparse.addFieldDeclarations(code);
     addValueTypeConstructor(code);
+    if (hasWithMethods() || datatype.getHasStaticFactoryMethod()) {
+      addFieldsConstructor(code, datatype.getValueType(), false);
+    }
     addValueTypeGetters(code);
+    layout.addOrdinalMethod(code);
+    sparse.addReadMethod(code);
+    datatype.getValueTypeMembers().forEach(code::add);
     if (datatype.getHasToBuilderMethod() || datatype.getRebuildableType().isPresent()) {
       addValueTypeToBuilder(code);
     }
+    addWithMethods(code, datatype.getValueType(), false);
+    if (datatype.getHasInternMethod()) {
+      addInternMethod(code);
+    }
     switch (datatype.standardMethodUnderride(StandardMethod.EQUALS)) {
       case ABSENT:
         addValueTypeEquals(code);
@@ -362,11 +538,145 @@ public class GeneratedBuilder extends GeneratedType {
             datatype.getValueType().getSimpleName(),
             datatype.getGeneratedBuilder());
     generatorsByProperty.forEach((property, generator) -> {
-      generator.addFinalFieldAssignment(code, property.getField().on("this"), "builder");
+      if (!layout.isPacked(property) && !sparse.isSparse(property)) {
+        generator.addFinalFieldAssignment(code, property.getField().on("this"), "builder");
+      }
     });
+    layout.addFieldAssignments(code, property -> property.getField().on("builder"));
+    sparse.addFieldAssignments(code, property -> property.getField().on("builder"));
+    addCollectionCopiesCount(code);
     code.addLine("  }");
   }
 
+  private static String presenceParameter(Property property) {
+    return "_" + property.getName() + "Present";
+  }
+
+  private boolean hasWithMethods() {
+    return generatorsByProperty.keySet().stream().anyMatch(Property::isWithMethodDeclared);
+  }
+
+  /**
+   * Adds a constructor taking every field directly, letting {@code withX} methods share all
+   * unchanged field values with the instance being copied, and the static factory method skip
+   * allocating a builder.
+   */
+  private void addFieldsConstructor(SourceBuilder code, TypeClass type, boolean isPartial) {
+    boolean hasRequiredProperties = generatorsByProperty.values().stream().anyMatch(IS_REQUIRED);
+    code.addLine("")
+        .add("  private %s(", type.getSimpleName());
+    String separator = "";
+    for (Map.Entry<Property, PropertyCodeGenerator> entry : generatorsByProperty.entrySet()) {
+      code.add("%s%s %s",
+          separator, (Excerpt) entry.getValue()::addValueFieldType, entry.getKey().getName());
+      if (entry.getValue().getPresenceField().isPresent()) {
+        code.add(", boolean %s", presenceParameter(entry.getKey()));
+      }
+      separator = ", ";
+    }
+    if (isPartial && hasRequiredProperties) {
+      code.add("%s%s<%s> %s",
+          separator, EnumSet.class, datatype.getPropertyEnum(), "_unsetProperties");
+    }
+    code.add(") {\n");
+    BitfieldLayout fieldsLayout = isPartial ? BitfieldLayout.NONE : layout;
+    SparseStorage fieldsStorage = isPartial ? SparseStorage.NONE : sparse;
+    generatorsByProperty.forEach((property, generator) -> {
+      if (!fieldsLayout.isPacked(property) && !fieldsStorage.isSparse(property)) {
+        code.addLine("    %s = %s;", property.getField().on("this"), property.getName());
+      }
+      generator.getPresenceField().ifPresent(presence -> {
+        code.addLine("    %s = %s;", presence.on("this"), presenceParameter(property));
+      });
+    });
+    fieldsLayout.addFieldAssignments(code, property -> Excerpts.add("%s", property.getName()));
+    fieldsStorage.addFieldAssignments(code, property -> Excerpts.add("%s", property.getName()));
+    if (isPartial && hasRequiredProperties) {
+      code.addLine("    %s = %s;", UNSET_PROPERTIES.on("this"), "_unsetProperties");
+    }
+    code.addLine("  }");
+  }
+
+  /**
+   * Adds a {@code withX} method for each property the user declared one for. Unless the user's
+   * builder overrides the property's setter, the new value is checked and stored directly;
+   * otherwise, it is passed through a fresh builder so the user's validation still runs. If the
+   * builder overrides {@code build()}, the whole copy goes through a builder instead, so the
+   * user's cross-field checks run too.
+   */
+  private void addWithMethods(SourceBuilder code, TypeClass type, boolean isPartial) {
+    boolean hasRequiredProperties = generatorsByProperty.values().stream().anyMatch(IS_REQUIRED);
+    generatorsByProperty.forEach((property, generator) -> {
+      if (!property.isWithMethodDeclared() || !generator.isValueFieldConvertible()) {
+        return;
+      }
+      Excerpt value = Excerpts.add("%s", property.getName());
+      code.addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public %s with%s(%s %s) {",
+              datatype.getType(),
+              property.getCapitalizedName(),
+              property.getType(),
+              property.getName());
+      BuilderFactory builderFactory = datatype.getBuilderFactory().orElse(null);
+      if (!isPartial && datatype.getHasOverriddenBuildMethod() && builderFactory != null) {
+        Variable builder = new Variable("builder");
+        code.addLine("    %s %s = %s;",
+                datatype.getBuilder(),
+                builder,
+                builderFactory.newBuilder(datatype.getBuilder(), INFERRED_TYPES))
+            .addLine("    %s.mergeFrom(this);", builder)
+            .add("    ");
+        generator.addSetFromResult(code, builder, value);
+        code.addLine("    return %s.build();", builder)
+            .addLine("  }");
+        return;
+      }
+      if (property.isSetterOverridden() && builderFactory != null) {
+        Variable builder = new Variable("builder");
+        code.addLine("    %s %s = %s;",
+            datatype.getBuilder(),
+            builder,
+            builderFactory.newBuilder(datatype.getBuilder(), INFERRED_TYPES));
+        code.add("    ");
+        generator.addSetFromResult(code, builder, value);
+        Variable checked = new Variable("new" + property.getCapitalizedName());
+        code.addLine("    %s %s = %s.%s();",
+            property.getType(), checked, builder, getter(property));
+        value = checked;
+      }
+      Excerpt unsetProperties = UNSET_PROPERTIES;
+      if (isPartial && generator.initialState() == Initially.REQUIRED) {
+        unsetProperties = new Variable("unsetProperties");
+        code.addLine("    %s<%s> %s = %s.clone();",
+                EnumSet.class, datatype.getPropertyEnum(), unsetProperties, UNSET_PROPERTIES)
+            .addLine("    %s.remove(%s.%s);",
+                unsetProperties, datatype.getPropertyEnum(), property.getAllCapsName());
+      }
+      code.add("    return %s(", type.constructor());
+      String separator = "";
+      for (Map.Entry<Property, PropertyCodeGenerator> entry : generatorsByProperty.entrySet()) {
+        code.add(separator);
+        if (entry.getKey().equals(property)) {
+          generator.addConvertToValueField(code, value);
+        } else if (!isPartial && layout.isPacked(entry.getKey())) {
+          code.add(layout.read(entry.getKey()));
+        } else if (!isPartial && sparse.isSparse(entry.getKey())) {
+          code.add(sparse.read(entry.getKey()));
+        } else {
+          code.add(entry.getKey().getField());
+          entry.getValue().getPresenceField().ifPresent(presence -> code.add(", %s", presence));
+        }
+        separator = ", ";
+      }
+      if (isPartial && hasRequiredProperties) {
+        code.add("%s%s", separator, unsetProperties);
+      }
+      code.add(");\n")
+          .addLine("  }");
+    });
+  }
+
   private void addValueTypeGetters(SourceBuilder code) {
     generatorsByProperty.forEach((property, generator) -> {
       code.addLine("")
@@ -375,7 +685,13 @@ public class GeneratedBuilder extends GeneratedType {
       generator.addGetterAnnotations(code);
       code.addLine("  public %s %s() {", property.getType(), property.getGetterName());
       code.add("    return ");
-      generator.addReadValueFragment(code, property.getField());
+      if (layout.isPacked(property)) {
+        generator.addReadValueFragment(code, layout.read(property));
+      } else if (sparse.isSparse(property)) {
+        generator.addReadValueFragment(code, sparse.read(property));
+      } else {
+        generator.addReadValueFragment(code, property.getField());
+      }
       code.add(";\n");
       code.addLine("  }");
     });
@@ -386,6 +702,7 @@ public class GeneratedBuilder extends GeneratedType {
     code.addLine("")
         .addLine("  @%s", Override.class)
         .addLine("  public %s toBuilder() {", datatype.getBuilder());
+    addCount(code, "    ", "ToBuilder");
     BuilderFactory builderFactory = datatype.getBuilderFactory().orElse(null);
     if (builderFactory != null) {
       Variable builder = new Variable("builder");
@@ -393,8 +710,14 @@ public class GeneratedBuilder extends GeneratedType {
           datatype.getGeneratedBuilder(),
           builder,
           builderFactory.newBuilder(datatype.getBuilder(), INFERRED_TYPES));
-      generatorsByProperty.values().forEach(generator -> {
-        generator.addAssignToBuilder(code, builder);
+      generatorsByProperty.forEach((property, generator) -> {
+        if (layout.isPacked(property)) {
+          code.addLine("    %s = %s;", property.getField().on(builder), layout.read(property));
+        } else if (sparse.isSparse(property)) {
+          code.addLine("    %s = %s;", property.getField().on(builder), sparse.read(property));
+        } else {
+          generator.addAssignToBuilder(code, builder);
+        }
       });
       if (hasRequiredProperties) {
         code.addLine("    %s.clear();", UNSET_PROPERTIES.on(builder));
@@ -406,6 +729,17 @@ public class GeneratedBuilder extends GeneratedType {
     code.addLine("  }");
   }
 
+  private void addInternMethod(SourceBuilder code) {
+    code.addLine("")
+        .addLine("  @%s", Override.class);
+    if (datatype.getType().isParameterized()) {
+      code.addLine("  @%s(\"unchecked\")", SuppressWarnings.class);
+    }
+    code.addLine("  public %s intern() {", datatype.getType())
+        .addLine("    return (%s) INTERNER.intern(this);", datatype.getType())
+        .addLine("  }");
+  }
+
   private void addValueTypeEquals(SourceBuilder code) {
     // Default implementation if no user implementation exists.
     code.addLine("")
@@ -418,22 +752,71 @@ public class GeneratedBuilder extends GeneratedType {
     List<Property> properties = generatorsByProperty.keySet()
         .stream()
         .filter(Property::isInEqualsAndHashCode)
+        .filter(property -> !layout.isPacked(property))
+        .filter(property -> !sparse.isSparse(property))
         .collect(Collectors.toList());
-    if (properties.isEmpty()) {
+    List<List<Property>> chunks = chunks(EQUALS, properties);
+    if (properties.isEmpty() && layout.isEmpty() && sparse.isEmpty()) {
       code.addLine("    return true;");
     } else {
       String prefix = "    return ";
-      for (Property property : properties) {
-        code.add(prefix);
-        code.add(ObjectsExcerpts.equals(
-            property.getField(),
-            property.getField().on("other"),
-            property.getType().getKind()));
+      for (FieldAccess word : layout.getWords()) {
+        code.add("%s%s == %s", prefix, word, word.on("other"));
+        prefix = "\n        && ";
+      }
+      for (FieldAccess word : sparse.getWords()) {
+        code.add("%s%s == %s", prefix, word, word.on("other"));
         prefix = "\n        && ";
       }
+      if (!sparse.isEmpty()) {
+        code.add("%s%s.equals(%s, %s)",
+            prefix, Arrays.class, sparse.getValues(), sparse.getValues().on("other"));
+      }
+      if (chunks.size() == 1) {
+        addFieldComparisons(code, prefix, properties);
+      } else {
+        for (int i = 0; i < chunks.size(); i++) {
+          code.add("%sequalsChunk%s(other)", prefix, i);
+          prefix = "\n        && ";
+        }
+      }
       code.add(";\n");
     }
     code.addLine("  }");
+    addEqualsChunks(code, datatype.getValueType(), chunks);
+  }
+
+  /** Adds a conjunction of comparisons of each property's fields with those of {@code other}. */
+  private void addFieldComparisons(SourceBuilder code, String prefix, List<Property> properties) {
+    for (Property property : properties) {
+      PropertyCodeGenerator generator = generatorsByProperty.get(property);
+      code.add(prefix);
+      code.add(ObjectsExcerpts.equals(
+          property.getField(),
+          property.getField().on("other"),
+          generator.getValueFieldKind()));
+      prefix = "\n        && ";
+      generator.getPresenceField().ifPresent(presence -> {
+        code.add("\n        && %s == %s", presence, presence.on("other"));
+      });
+    }
+  }
+
+  /**
+   * Adds an {@code equalsChunkN} method comparing the properties of each chunk, if the equals
+   * method of {@code type} was split.
+   */
+  private void addEqualsChunks(SourceBuilder code, TypeClass type, List<List<Property>> chunks) {
+    if (chunks.size() == 1) {
+      return;
+    }
+    for (int i = 0; i < chunks.size(); i++) {
+      code.addLine("")
+          .addLine("  private boolean equalsChunk%s(%s other) {", i, type.withWildcards());
+      addFieldComparisons(code, "    return ", chunks.get(i));
+      code.add(";\n")
+          .addLine("  }");
+    }
   }
 
   private void addValueTypeEqualsOverride(SourceBuilder code) {
@@ -447,16 +830,44 @@ public class GeneratedBuilder extends GeneratedType {
   }
 
   private void addValueTypeHashCode(SourceBuilder code) {
-    FieldAccessList fields = getFields(
-        generatorsByProperty.keySet()
-            .stream()
-            .filter(Property::isInEqualsAndHashCode)
-    );
-    code.addLine("")
-        .addLine("  @%s", Override.class)
-        .addLine("  public int hashCode() {")
-        .addLine("    return %s.hash(%s);", Objects.class, fields)
-        .addLine("  }");
+    List<List<Property>> chunks = chunks(HASH_CODE, generatorsByProperty.keySet()
+        .stream()
+        .filter(Property::isInEqualsAndHashCode)
+        .filter(property -> !layout.isPacked(property))
+        .filter(property -> !sparse.isSparse(property))
+        .collect(Collectors.toList()));
+    FieldAccessList fields = hashedFields(chunks);
+    for (FieldAccess word : layout.getWords()) {
+      fields = fields.plus(word);
+    }
+    for (FieldAccess word : sparse.getWords()) {
+      fields = fields.plus(word);
+    }
+    if (!sparse.isEmpty()) {
+      fields = fields.plus(Excerpts.add("%s.hashCode(%s)", Arrays.class, sparse.getValues()));
+    }
+    if (datatype.getHasInternMethod()) {
+      // Interned values are hashed on every lookup, so cache the hash code
+      code.addLine("")
+          .addLine("  private transient int _hashCode;")
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public int hashCode() {")
+          .addLine("    int hashCode = _hashCode;")
+          .addLine("    if (hashCode == 0) {")
+          .addLine("      hashCode = %s.hash(%s);", Objects.class, fields)
+          .addLine("      _hashCode = hashCode;")
+          .addLine("    }")
+          .addLine("    return hashCode;")
+          .addLine("  }");
+    } else {
+      code.addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public int hashCode() {")
+          .addLine("    return %s.hash(%s);", Objects.class, fields)
+          .addLine("  }");
+    }
+    addHashCodeChunks(code, chunks);
   }
 
   private void addPartialType(SourceBuilder code) {
@@ -468,8 +879,16 @@ public class GeneratedBuilder extends GeneratedType {
                 .orElse(extending(datatype.getType(), datatype.isInterfaceType())));
     addPartialFields(code);
     addPartialConstructor(code);
+    if (hasWithMethods()) {
+      addFieldsConstructor(code, datatype.getPartialType(), true);
+    }
     addPartialGetters(code);
+    datatype.getPartialTypeMembers().forEach(code::add);
     addPartialToBuilderMethod(code);
+    addWithMethods(code, datatype.getPartialType(), true);
+    if (datatype.getHasInternMethod()) {
+      addInternMethod(code);
+    }
     if (datatype.standardMethodUnderride(StandardMethod.EQUALS) != FINAL) {
       addPartialEquals(code);
     }
@@ -502,6 +921,7 @@ public class GeneratedBuilder extends GeneratedType {
       code.addLine("    %s = %s.clone();",
           UNSET_PROPERTIES.on("this"), UNSET_PROPERTIES.on("builder"));
     }
+    addCollectionCopiesCount(code);
     code.addLine("  }");
   }
 
@@ -543,6 +963,7 @@ public class GeneratedBuilder extends GeneratedType {
     code.addLine("")
         .addLine("  @%s", Override.class)
         .addLine("  public %s toBuilder() {", datatype.getBuilder());
+    addCount(code, "    ", "ToBuilder");
     Variable builder = new Variable("builder");
     if (datatype.isExtensible()) {
       code.addLine("    %s builder = new PartialBuilder%s();",
@@ -574,43 +995,73 @@ public class GeneratedBuilder extends GeneratedType {
         .stream()
         .filter(Property::isInEqualsAndHashCode)
         .collect(Collectors.toList());
+    List<List<Property>> chunks = chunks(EQUALS, properties);
     if (properties.isEmpty()) {
       code.addLine("    return true;");
     } else {
       String prefix = "    return ";
-      for (Property property : properties) {
-        code.add(prefix);
-        code.add(ObjectsExcerpts.equals(
-            property.getField(),
-            property.getField().on("other"),
-            property.getType().getKind()));
-        prefix = "\n        && ";
+      if (chunks.size() == 1) {
+        addFieldComparisons(code, prefix, properties);
+      } else {
+        for (int i = 0; i < chunks.size(); i++) {
+          code.add("%sequalsChunk%s(other)", prefix, i);
+          prefix = "\n        && ";
+        }
       }
       if (hasRequiredProperties) {
-        code.add(prefix);
+        code.add("\n        && ");
         code.add("%s.equals(%s, %s)",
             Objects.class, UNSET_PROPERTIES, UNSET_PROPERTIES.on("other"));
       }
       code.add(";\n");
     }
     code.addLine("  }");
+    addEqualsChunks(code, datatype.getPartialType(), chunks);
   }
 
   private void addPartialHashCode(SourceBuilder code) {
     code.addLine("")
         .addLine("  @%s", Override.class)
         .addLine("  public int hashCode() {");
-    FieldAccessList fields = getFields(
-        generatorsByProperty.keySet()
-            .stream()
-            .filter(Property::isInEqualsAndHashCode)
-    );
+    List<List<Property>> chunks = chunks(HASH_CODE, generatorsByProperty.keySet()
+        .stream()
+        .filter(Property::isInEqualsAndHashCode)
+        .collect(Collectors.toList()));
+    FieldAccessList fields = hashedFields(chunks);
     if (generatorsByProperty.values().stream().anyMatch(IS_REQUIRED)) {
       fields = fields.plus(UNSET_PROPERTIES);
     }
 
     code.addLine("    return %s.hash(%s);", Objects.class, fields)
         .addLine("  }");
+    addHashCodeChunks(code, chunks);
+  }
+
+  /**
+   * Returns the fields of each property to hash, or a call to each {@code hashCodeChunkN} method
+   * if the hashCode method was split.
+   */
+  private FieldAccessList hashedFields(List<List<Property>> chunks) {
+    if (chunks.size() == 1) {
+      return getFields(chunks.get(0).stream());
+    }
+    List<Excerpt> calls = new ArrayList<>();
+    for (int i = 0; i < chunks.size(); i++) {
+      calls.add(Excerpts.add("hashCodeChunk%s()", i));
+    }
+    return new FieldAccessList(calls);
+  }
+
+  private void addHashCodeChunks(SourceBuilder code, List<List<Property>> chunks) {
+    if (chunks.size() == 1) {
+      return;
+    }
+    for (int i = 0; i < chunks.size(); i++) {
+      code.addLine("")
+          .addLine("  private int hashCodeChunk%s() {", i)
+          .addLine("    return %s.hash(%s);", Objects.class, getFields(chunks.get(i).stream()))
+          .addLine("  }");
+    }
   }
 
   /** Returns an {@link Excerpt} of "implements/extends {@code type}". */
@@ -619,35 +1070,44 @@ public class GeneratedBuilder extends GeneratedType {
   }
 
   private static class FieldAccessList implements Excerpt {
-    private final List<FieldAccess> fieldAccesses;
+    private final List<Excerpt> fieldAccesses;
 
-    FieldAccessList(List<FieldAccess> fieldAccesses) {
+    FieldAccessList(List<? extends Excerpt> fieldAccesses) {
       this.fieldAccesses = ImmutableList.copyOf(fieldAccesses);
     }
 
     @Override
     public void addTo(SourceBuilder source) {
       String separator = "";
-      for (FieldAccess field : fieldAccesses) {
+      for (Excerpt field : fieldAccesses) {
         source.add(separator).add(field);
         separator = ", ";
       }
     }
 
-    public FieldAccessList plus(FieldAccess fieldAccess) {
-      return new FieldAccessList(ImmutableList.<FieldAccess>builder()
+    public FieldAccessList plus(Excerpt fieldAccess) {
+      return new FieldAccessList(ImmutableList.<Excerpt>builder()
           .addAll(fieldAccesses)
           .add(fieldAccess)
           .build());
     }
   }
 
-  private static FieldAccessList getFields(Stream<Property> properties) {
-    ImmutableList.Builder<FieldAccess> fieldAccesses = ImmutableList.builder();
-    properties.forEach(property -> fieldAccesses.add(property.getField()));
+  private FieldAccessList getFields(Stream<Property> properties) {
+    ImmutableList.Builder<Excerpt> fieldAccesses = ImmutableList.builder();
+    properties.forEach(property -> {
+      fieldAccesses.add(property.getField());
+      generatorsByProperty.get(property).getPresenceField().ifPresent(fieldAccesses::add);
+    });
     return new FieldAccessList(fieldAccesses.build());
   }
 
+  /** Returns {@code properties} split into chunks small enough to JIT-compile {@code method}. */
+  private List<List<Property>> chunks(
+      MethodSplitter.Method method, Collection<Property> properties) {
+    return MethodSplitter.chunks(method, ImmutableList.copyOf(properties), generatorsByProperty);
+  }
+
   private static final Predicate<PropertyCodeGenerator> IS_REQUIRED =
       generator -> generator.initialState() == Initially.REQUIRED;
 }
@@ -4,10 +4,13 @@ import static org.inferred.freebuilder.processor.model.ModelUtils.findAnnotation
 import static org.inferred.freebuilder.processor.model.ModelUtils.findProperty;
 
 import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import org.inferred.freebuilder.processor.Datatype.Visibility;
 import org.inferred.freebuilder.processor.property.Property;
 import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.StreamedForm;
 import org.inferred.freebuilder.processor.source.Excerpt;
 import org.inferred.freebuilder.processor.source.Excerpts;
 import org.inferred.freebuilder.processor.source.QualifiedName;
@@ -16,12 +19,16 @@ import org.inferred.freebuilder.processor.source.ValueType;
 import org.inferred.freebuilder.processor.source.Variable;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 
 class GwtSupport {
 
@@ -34,6 +41,18 @@ class GwtSupport {
   private static final QualifiedName SERIALIZATION_STREAM_WRITER =
       QualifiedName.of("com.google.gwt.user.client.rpc", "SerializationStreamWriter");
 
+  /** Boxed types, which the stream reads and writes as their primitive when never null. */
+  private static final Map<String, String> BOXED_TYPES = ImmutableMap.<String, String>builder()
+      .put(Boolean.class.getName(), "boolean")
+      .put(Byte.class.getName(), "byte")
+      .put(Character.class.getName(), "char")
+      .put(Double.class.getName(), "double")
+      .put(Float.class.getName(), "float")
+      .put(Integer.class.getName(), "int")
+      .put(Long.class.getName(), "long")
+      .put(Short.class.getName(), "short")
+      .build();
+
   public static Datatype.Builder gwtMetadata(
       TypeElement type,
       Datatype datatype,
@@ -113,6 +132,8 @@ class GwtSupport {
 
     private void addInstantiateInstance(SourceBuilder code) {
       Variable builder = new Variable("builder");
+      Variable index = new Variable("i");
+      List<Variable> elements = ImmutableList.of(new Variable("element"), new Variable("value"));
       code.addLine("")
           .addLine("  @%s", Override.class)
           .addLine("  public %s instantiateInstance(%s reader) throws %s {",
@@ -120,13 +141,16 @@ class GwtSupport {
           .addLine("    %1$s %2$s = new %1$s();", datatype.getBuilder(), builder);
       for (Property property : generatorsByProperty.keySet()) {
         Variable temporary = new Variable(property.getName());
-        if (property.getType().getKind().isPrimitive()) {
+        PropertyCodeGenerator generator = generatorsByProperty.get(property);
+        if (generator.getStreamedForm() != StreamedForm.NONE) {
+          addStreamedRead(code, property, generator, builder, index, elements);
+        } else if (property.getType().getKind().isPrimitive()) {
           code.addLine("    %s %s = reader.read%s();",
               property.getType(), temporary, withInitialCapital(property.getType()));
-          generatorsByProperty.get(property).addSetFromResult(code, builder, temporary);
+          generator.addSetFromResult(code.add("    "), builder, temporary);
         } else if (String.class.getName().equals(property.getType().toString())) {
           code.addLine("    %s %s = reader.readString();", property.getType(), temporary);
-          generatorsByProperty.get(property).addSetFromResult(code, builder, temporary);
+          generator.addSetFromResult(code.add("    "), builder, temporary);
         } else {
           code.addLine("    try {");
           if (!property.isFullyCheckedCast()) {
@@ -134,7 +158,7 @@ class GwtSupport {
           }
           code.addLine("      %1$s %2$s = (%1$s) reader.readObject();",
               property.getType(), temporary);
-          generatorsByProperty.get(property).addSetFromResult(code, builder, temporary);
+          generator.addSetFromResult(code.add("      "), builder, temporary);
           code.addLine("    } catch (%s e) {", ClassCastException.class)
               .addLine("      throw new %s(", SERIALIZATION_EXCEPTION)
               .addLine("          \"Wrong type for property '%s'\", e);", property.getName())
@@ -145,13 +169,69 @@ class GwtSupport {
           .addLine("  }");
     }
 
+    /**
+     * Adds code reading a size-prefixed run of elements, or of keys and values, straight into the
+     * builder.
+     */
+    private static void addStreamedRead(
+        SourceBuilder code,
+        Property property,
+        PropertyCodeGenerator generator,
+        Variable builder,
+        Variable index,
+        List<Variable> elements) {
+      List<TypeMirror> types = generator.getStreamedTypes();
+      boolean readsObjects = types.stream().anyMatch(type -> !streamMethodSuffix(type).isPresent());
+      Variable size = new Variable(property.getName() + "Size");
+      String indent = readsObjects ? "      " : "    ";
+      if (readsObjects) {
+        code.addLine("    try {");
+      }
+      code.addLine("%sint %s = reader.readInt();", indent, size)
+          .addLine("%sfor (int %2$s = 0; %2$s < %3$s; %2$s++) {", indent, index, size);
+      Excerpt[] values = new Excerpt[types.size()];
+      for (int i = 0; i < types.size(); i++) {
+        TypeMirror type = types.get(i);
+        if (streamMethodSuffix(type).isPresent() || isFullyChecked(type)) {
+          values[i] = readExcerpt(type);
+        } else {
+          values[i] = elements.get(i);
+          code.addLine("%s  @SuppressWarnings(\"unchecked\")", indent)
+              .addLine("%s  %s %s = %s;", indent, type, values[i], readExcerpt(type));
+        }
+      }
+      generator.addStreamedElement(code.add("%s  ", indent), builder, values);
+      code.addLine("%s}", indent);
+      if (readsObjects) {
+        code.addLine("    } catch (%s e) {", ClassCastException.class)
+            .addLine("      throw new %s(", SERIALIZATION_EXCEPTION)
+            .addLine("          \"Wrong type for property '%s'\", e);", property.getName())
+            .addLine("    }");
+      }
+    }
+
+    private static Excerpt readExcerpt(TypeMirror type) {
+      Optional<String> suffix = streamMethodSuffix(type);
+      if (suffix.isPresent()) {
+        return Excerpts.add("reader.read%s()", suffix.get());
+      }
+      return Excerpts.add("(%s) reader.readObject()", type);
+    }
+
     private void addSerializeInstance(SourceBuilder code) {
       code.addLine("")
           .addLine("  @%s", Override.class)
           .addLine("  public void serializeInstance(%s writer, %s instance)",
               SERIALIZATION_STREAM_WRITER, datatype.getValueType())
           .addLine("      throws %s {", SERIALIZATION_EXCEPTION);
+      Variable element = new Variable("element");
+      Variable entry = new Variable("entry");
       for (Property property : generatorsByProperty.keySet()) {
+        PropertyCodeGenerator generator = generatorsByProperty.get(property);
+        if (generator.getStreamedForm() != StreamedForm.NONE) {
+          addStreamedWrite(code, property, generator, element, entry);
+          continue;
+        }
         if (property.getType().getKind().isPrimitive()) {
           code.add("    writer.write%s(", withInitialCapital(property.getType()));
         } else if (String.class.getName().equals(property.getType().toString())) {
@@ -159,13 +239,45 @@ class GwtSupport {
         } else {
           code.add("    writer.writeObject(");
         }
-        generatorsByProperty.get(property)
-            .addReadValueFragment(code, property.getField().on("instance"));
-        code.add(");\n");
+        // Read through the getter, as properties may be stored across several fields
+        code.add("instance.%s());\n", property.getGetterName());
       }
       code.addLine("  }");
     }
 
+    /** Adds code writing the size of a collection property, then each element or entry. */
+    private static void addStreamedWrite(
+        SourceBuilder code,
+        Property property,
+        PropertyCodeGenerator generator,
+        Variable element,
+        Variable entry) {
+      List<TypeMirror> types = generator.getStreamedTypes();
+      Variable collection = new Variable(property.getName());
+      code.addLine("    %s %s = instance.%s();",
+              property.getType(), collection, property.getGetterName())
+          .addLine("    writer.writeInt(%s.size());", collection);
+      if (generator.getStreamedForm() == StreamedForm.ARRAY) {
+        code.addLine("    for (%s %s : %s) {", types.get(0), element, collection);
+        addWrite(code, types.get(0), element);
+      } else {
+        code.addLine("    for (%s<%s, %s> %s : %s.%s()) {",
+            Map.Entry.class,
+            types.get(0),
+            types.get(1),
+            entry,
+            collection,
+            generator.getStreamedForm() == StreamedForm.OBJECT ? "entrySet" : "entries");
+        addWrite(code, types.get(0), Excerpts.add("%s.getKey()", entry));
+        addWrite(code, types.get(1), Excerpts.add("%s.getValue()", entry));
+      }
+      code.addLine("    }");
+    }
+
+    private static void addWrite(SourceBuilder code, TypeMirror type, Excerpt value) {
+      code.addLine("      writer.write%s(%s);", streamMethodSuffix(type).orElse("Object"), value);
+    }
+
     @Override
     protected void addFields(FieldReceiver fields) {
       fields.add("datatype", datatype);
@@ -217,6 +329,26 @@ class GwtSupport {
     }
   }
 
+  /**
+   * Returns the suffix of the stream method reading and writing non-null values of {@code type}
+   * without type information, or empty if they must be read and written as objects.
+   */
+  private static Optional<String> streamMethodSuffix(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return Optional.of(withInitialCapital(type));
+    }
+    String name = type.toString();
+    if (String.class.getName().equals(name)) {
+      return Optional.of("String");
+    }
+    return Optional.ofNullable(BOXED_TYPES.get(name)).map(GwtSupport::withInitialCapital);
+  }
+
+  private static boolean isFullyChecked(TypeMirror type) {
+    return type.getKind() == TypeKind.DECLARED
+        && ((DeclaredType) type).getTypeArguments().isEmpty();
+  }
+
   private static String withInitialCapital(Object obj) {
     String s = obj.toString();
     return s.substring(0, 1).toUpperCase() + s.substring(1);
@@ -0,0 +1,933 @@
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.INFERRED_TYPES;
+import static org.inferred.freebuilder.processor.model.ModelUtils.findAnnotationMirror;
+import static org.inferred.freebuilder.processor.model.ModelUtils.findProperty;
+import static org.inferred.freebuilder.processor.model.ModelUtils.maybeAsTypeElement;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.inferred.freebuilder.processor.property.DefaultProperty;
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.StreamedForm;
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.QualifiedName;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.Variable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+
+/**
+ * Generates a Jackson deserializer that drives the builder straight from the parser's token
+ * stream, and a serializer that writes the value's properties straight from its getters, for
+ * types annotated {@code @JsonDeserialize(builder = ...)}.
+ *
+ * <p>Types carrying any other Jackson configuration are left to Jackson's reflective binding,
+ * which the generated code would otherwise have to replicate.
+ */
+class JacksonCodec {
+
+  private static final String JACKSON_PACKAGE = "com.fasterxml.jackson";
+  private static final QualifiedName JSON_DESERIALIZE =
+      QualifiedName.of("com.fasterxml.jackson.databind.annotation", "JsonDeserialize");
+  private static final QualifiedName JSON_PROPERTY =
+      QualifiedName.of("com.fasterxml.jackson.annotation", "JsonProperty");
+  private static final QualifiedName JSON_INCLUDE_INCLUDE =
+      QualifiedName.of("com.fasterxml.jackson.annotation", "JsonInclude", "Include");
+  private static final QualifiedName JSON_GENERATOR =
+      QualifiedName.of("com.fasterxml.jackson.core", "JsonGenerator");
+  private static final QualifiedName JSON_PARSER =
+      QualifiedName.of("com.fasterxml.jackson.core", "JsonParser");
+  private static final QualifiedName JSON_PROCESSING_EXCEPTION =
+      QualifiedName.of("com.fasterxml.jackson.core", "JsonProcessingException");
+  private static final QualifiedName JSON_TOKEN =
+      QualifiedName.of("com.fasterxml.jackson.core", "JsonToken");
+  private static final QualifiedName TYPE_REFERENCE =
+      QualifiedName.of("com.fasterxml.jackson.core.type", "TypeReference");
+  private static final QualifiedName WRITABLE_TYPE_ID =
+      QualifiedName.of("com.fasterxml.jackson.core.type", "WritableTypeId");
+  private static final QualifiedName DESERIALIZATION_CONFIG =
+      QualifiedName.of("com.fasterxml.jackson.databind", "DeserializationConfig");
+  private static final QualifiedName DESERIALIZATION_CONTEXT =
+      QualifiedName.of("com.fasterxml.jackson.databind", "DeserializationContext");
+  private static final QualifiedName DESERIALIZATION_FEATURE =
+      QualifiedName.of("com.fasterxml.jackson.databind", "DeserializationFeature");
+  private static final QualifiedName JAVA_TYPE =
+      QualifiedName.of("com.fasterxml.jackson.databind", "JavaType");
+  private static final QualifiedName JSON_DESERIALIZER =
+      QualifiedName.of("com.fasterxml.jackson.databind", "JsonDeserializer");
+  private static final QualifiedName JSON_MAPPING_EXCEPTION =
+      QualifiedName.of("com.fasterxml.jackson.databind", "JsonMappingException");
+  private static final QualifiedName KEY_DESERIALIZER =
+      QualifiedName.of("com.fasterxml.jackson.databind", "KeyDeserializer");
+  private static final QualifiedName MAPPER_FEATURE =
+      QualifiedName.of("com.fasterxml.jackson.databind", "MapperFeature");
+  private static final QualifiedName JSON_SERIALIZER =
+      QualifiedName.of("com.fasterxml.jackson.databind", "JsonSerializer");
+  private static final QualifiedName SERIALIZER_PROVIDER =
+      QualifiedName.of("com.fasterxml.jackson.databind", "SerializerProvider");
+  private static final QualifiedName JSON_SERIALIZE =
+      QualifiedName.of("com.fasterxml.jackson.databind.annotation", "JsonSerialize");
+  private static final QualifiedName JSON_VALUE_INSTANTIATOR =
+      QualifiedName.of("com.fasterxml.jackson.databind.annotation", "JsonValueInstantiator");
+  private static final QualifiedName RESOLVABLE_DESERIALIZER =
+      QualifiedName.of("com.fasterxml.jackson.databind.deser", "ResolvableDeserializer");
+  private static final QualifiedName VALUE_INSTANTIATOR =
+      QualifiedName.of("com.fasterxml.jackson.databind.deser", "ValueInstantiator");
+  private static final QualifiedName MISMATCHED_INPUT_EXCEPTION =
+      QualifiedName.of("com.fasterxml.jackson.databind.exc", "MismatchedInputException");
+  private static final QualifiedName TYPE_WRAPPED_DESERIALIZER =
+      QualifiedName.of("com.fasterxml.jackson.databind.deser.impl", "TypeWrappedDeserializer");
+  private static final QualifiedName STD_DESERIALIZER =
+      QualifiedName.of("com.fasterxml.jackson.databind.deser.std", "StdDeserializer");
+  private static final QualifiedName TYPE_SERIALIZER =
+      QualifiedName.of("com.fasterxml.jackson.databind.jsontype", "TypeSerializer");
+  private static final QualifiedName RESOLVABLE_SERIALIZER =
+      QualifiedName.of("com.fasterxml.jackson.databind.ser", "ResolvableSerializer");
+  private static final QualifiedName STD_SERIALIZER =
+      QualifiedName.of("com.fasterxml.jackson.databind.ser.std", "StdSerializer");
+  private static final QualifiedName TYPE_FACTORY =
+      QualifiedName.of("com.fasterxml.jackson.databind.type", "TypeFactory");
+
+  /** Types Jackson serializes as references, which {@code NON_ABSENT} omits when empty. */
+  private static final String[] REFERENCE_TYPES = {
+      "java.util.Optional",
+      "java.util.OptionalDouble",
+      "java.util.OptionalInt",
+      "java.util.OptionalLong",
+      "com.google.common.base.Optional"
+  };
+
+  /** Boxed types, whose {@code NON_DEFAULT} value is that of their primitive. */
+  private static final Map<String, TypeKind> BOXED_TYPES = ImmutableMap.<String, TypeKind>builder()
+      .put(Boolean.class.getName(), TypeKind.BOOLEAN)
+      .put(Byte.class.getName(), TypeKind.BYTE)
+      .put(Short.class.getName(), TypeKind.SHORT)
+      .put(Integer.class.getName(), TypeKind.INT)
+      .put(Long.class.getName(), TypeKind.LONG)
+      .put(Character.class.getName(), TypeKind.CHAR)
+      .put(Float.class.getName(), TypeKind.FLOAT)
+      .put(Double.class.getName(), TypeKind.DOUBLE)
+      .build();
+
+  /** Property types read and written without a call through Jackson's standard (de)serializer. */
+  private enum DirectType {
+    INT("token == %s.VALUE_NUMBER_INT", "parser.getIntValue()", "writeNumber"),
+    LONG("token == %s.VALUE_NUMBER_INT", "parser.getLongValue()", "writeNumber"),
+    DOUBLE("token == %s.VALUE_NUMBER_FLOAT", "parser.getDoubleValue()", "writeNumber"),
+    BOOLEAN("(token == %1$s.VALUE_TRUE || token == %1$s.VALUE_FALSE)",
+        "token == %s.VALUE_TRUE", "writeBoolean"),
+    STRING("token == %s.VALUE_STRING", "parser.getText()", "writeString");
+
+    private final String tokenCheck;
+    private final String read;
+    private final String write;
+
+    DirectType(String tokenCheck, String read, String write) {
+      this.tokenCheck = tokenCheck;
+      this.read = read;
+      this.write = write;
+    }
+
+    static Optional<DirectType> of(Property property, PropertyCodeGenerator generator) {
+      if (!(generator instanceof DefaultProperty)) {
+        return Optional.empty();
+      }
+      switch (property.getType().getKind()) {
+        case INT:
+          return Optional.of(INT);
+        case LONG:
+          return Optional.of(LONG);
+        case DOUBLE:
+          return Optional.of(DOUBLE);
+        case BOOLEAN:
+          return Optional.of(BOOLEAN);
+        case DECLARED:
+          return String.class.getName().equals(property.getType().toString())
+              ? Optional.of(STRING)
+              : Optional.empty();
+        default:
+          return Optional.empty();
+      }
+    }
+  }
+
+  public static Datatype.Builder jacksonMetadata(
+      Elements elements,
+      TypeElement type,
+      TypeElement builder,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      Iterable<ExecutableElement> methods) {
+    Datatype.Builder extraMetadata = new Datatype.Builder();
+    Optional<Map<Property, String>> jsonNames =
+        jsonNames(elements, type, builder, datatype, generatorsByProperty, methods);
+    if (jsonNames.isPresent()) {
+      QualifiedName generatedBuilder = datatype.getGeneratedBuilder().getQualifiedName();
+      QualifiedName deserializer = generatedBuilder.nestedType("BuilderDeserializer");
+      QualifiedName instantiator = generatedBuilder.nestedType("BuilderInstantiator");
+      QualifiedName serializer = generatedBuilder.nestedType("ValueSerializer");
+      extraMetadata.addGeneratedBuilderAnnotations(Excerpts.add(
+          "@%s(using = %s.class)%n@%s(%s.class)%n",
+          JSON_DESERIALIZE, deserializer, JSON_VALUE_INSTANTIATOR, instantiator));
+      extraMetadata.addValueTypeAnnotations(Excerpts.add(
+          "@%s(using = %s.class)%n", JSON_SERIALIZE, serializer));
+      extraMetadata.addNestedClasses(new BuilderDeserializer(
+          datatype, deserializer, generatorsByProperty, jsonNames.get()));
+      extraMetadata.addNestedClasses(new BuilderInstantiator(datatype, instantiator));
+      extraMetadata.addNestedClasses(new ValueSerializer(
+          datatype, serializer, generatorsByProperty, jsonNames.get()));
+    }
+    return extraMetadata;
+  }
+
+  /**
+   * Returns the JSON name of each property, or empty if Jackson's reflective binding must be
+   * left in charge of {@code type}. The generated code needs Jackson 2.9 or later.
+   */
+  private static Optional<Map<Property, String>> jsonNames(
+      Elements elements,
+      TypeElement type,
+      TypeElement builder,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      Iterable<ExecutableElement> methods) {
+    Optional<AnnotationMirror> jsonDeserialize = findAnnotationMirror(type, JSON_DESERIALIZE);
+    if (!jsonDeserialize.isPresent()
+        || elements.getTypeElement(MISMATCHED_INPUT_EXCEPTION.toString()) == null
+        || !hasOnlyElements(jsonDeserialize.get(), "builder")
+        || !type.getTypeParameters().isEmpty()
+        || !datatype.getBuilderFactory().isPresent()
+        || hasJacksonAnnotations(builder)
+        || supertypesHaveJacksonAnnotations(type)
+        || hasPublicFields(type)) {
+      return Optional.empty();
+    }
+    for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+      if (isJacksonAnnotation(annotation) && !isAnnotation(annotation, JSON_DESERIALIZE)) {
+        return Optional.empty();
+      }
+    }
+    for (Element member : builder.getEnclosedElements()) {
+      if (hasJacksonAnnotations(member)) {
+        return Optional.empty();
+      }
+    }
+
+    Map<String, Property> propertiesByGetter = new HashMap<>();
+    generatorsByProperty.keySet().forEach(p -> propertiesByGetter.put(p.getGetterName(), p));
+    Map<Property, String> jsonNames = new HashMap<>();
+    for (ExecutableElement method : methods) {
+      Property property = method.getParameters().isEmpty()
+          ? propertiesByGetter.get(method.getSimpleName().toString())
+          : null;
+      if (property == null) {
+        if (hasJacksonAnnotations(method) || isVisibleGetter(method)) {
+          return Optional.empty();
+        }
+        continue;
+      }
+      String jsonName = property.getName();
+      for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+        if (!isJacksonAnnotation(annotation)) {
+          continue;
+        }
+        if (!isAnnotation(annotation, JSON_PROPERTY) || !hasOnlyElements(annotation, "value")) {
+          return Optional.empty();
+        }
+        String value = findProperty(annotation, "value")
+            .map(annotationValue -> (String) annotationValue.getValue())
+            .orElse("");
+        if (!value.isEmpty()) {
+          jsonName = value;
+        }
+      }
+      jsonNames.put(property, jsonName);
+    }
+    if (jsonNames.size() != generatorsByProperty.size()) {
+      return Optional.empty();
+    }
+    return Optional.of(jsonNames);
+  }
+
+  private static boolean hasOnlyElements(AnnotationMirror annotation, String name) {
+    return annotation.getElementValues().keySet().stream()
+        .allMatch(element -> element.getSimpleName().contentEquals(name));
+  }
+
+  private static boolean supertypesHaveJacksonAnnotations(TypeElement type) {
+    List<TypeMirror> supertypes = new ArrayList<>(type.getInterfaces());
+    supertypes.add(type.getSuperclass());
+    for (TypeMirror supertype : supertypes) {
+      TypeElement element = maybeAsTypeElement(supertype).orElse(null);
+      if (element != null
+          && (hasJacksonAnnotations(element) || supertypesHaveJacksonAnnotations(element))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasJacksonAnnotations(Element element) {
+    return element.getAnnotationMirrors().stream().anyMatch(JacksonCodec::isJacksonAnnotation);
+  }
+
+  private static boolean isJacksonAnnotation(AnnotationMirror annotation) {
+    TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+    return annotationType.getQualifiedName().toString().startsWith(JACKSON_PACKAGE + ".");
+  }
+
+  private static boolean isAnnotation(AnnotationMirror annotation, QualifiedName name) {
+    return name.equals(QualifiedName.of((TypeElement) annotation.getAnnotationType().asElement()));
+  }
+
+  /** Returns true if Jackson would serialize {@code method} as a property. */
+  private static boolean isVisibleGetter(ExecutableElement method) {
+    if (!method.getModifiers().contains(Modifier.PUBLIC)
+        || method.getModifiers().contains(Modifier.STATIC)
+        || !method.getParameters().isEmpty()) {
+      return false;
+    }
+    String name = method.getSimpleName().toString();
+    TypeKind returnKind = method.getReturnType().getKind();
+    if (name.startsWith("get") && name.length() > 3) {
+      return returnKind != TypeKind.VOID;
+    }
+    return name.startsWith("is") && name.length() > 2 && returnKind == TypeKind.BOOLEAN;
+  }
+
+  private static boolean hasPublicFields(TypeElement type) {
+    for (TypeElement supertype = type; supertype != null; ) {
+      for (Element field : ElementFilter.fieldsIn(supertype.getEnclosedElements())) {
+        if (field.getModifiers().contains(Modifier.PUBLIC)
+            && !field.getModifiers().contains(Modifier.STATIC)) {
+          return true;
+        }
+      }
+      supertype = maybeAsTypeElement(supertype.getSuperclass()).orElse(null);
+    }
+    return false;
+  }
+
+  private static String fieldName(Property property, String suffix) {
+    return property.getName() + suffix;
+  }
+
+  private static final class BuilderDeserializer extends ValueType implements Excerpt {
+
+    private final Datatype datatype;
+    private final QualifiedName name;
+    private final Map<Property, PropertyCodeGenerator> generatorsByProperty;
+    private final Map<Property, String> jsonNames;
+
+    private BuilderDeserializer(
+        Datatype datatype,
+        QualifiedName name,
+        Map<Property, PropertyCodeGenerator> generatorsByProperty,
+        Map<Property, String> jsonNames) {
+      this.datatype = datatype;
+      this.name = name;
+      this.generatorsByProperty = generatorsByProperty;
+      this.jsonNames = jsonNames;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("/** Deserializes a %s straight from a JSON token stream. */",
+              datatype.getBuilder().javadocLink())
+          .addLine("public static final class %s extends %s<%s>",
+              name.getSimpleName(), STD_DESERIALIZER, datatype.getBuilder())
+          .addLine("    implements %s {", RESOLVABLE_DESERIALIZER)
+          .addLine("")
+          .addLine("  private static final long serialVersionUID = 1L;")
+          .add("  private static final %s<Object> KNOWN_PROPERTIES = %s.<Object>asList(",
+              Collection.class, Arrays.class);
+      String separator = "";
+      for (Property property : generatorsByProperty.keySet()) {
+        code.add("%s\n      \"%s\"", separator, jsonNames.get(property));
+        separator = ",";
+      }
+      code.add(");\n");
+      code.addLine("")
+          .addLine("  private boolean caseInsensitive;");
+      generatorsByProperty.forEach((property, generator) -> {
+        code.addLine("  private transient %s<Object> %s;",
+            JSON_DESERIALIZER, fieldName(property, "Deserializer"));
+        if (DirectType.of(property, generator).isPresent()) {
+          code.addLine("  private boolean %s;", fieldName(property, "Direct"));
+        }
+        switch (generator.getStreamedForm()) {
+          case ARRAY:
+            code.addLine("  private transient %s<Object> %s;",
+                JSON_DESERIALIZER, fieldName(property, "ElementDeserializer"));
+            break;
+          case OBJECT:
+          case OBJECT_OF_ARRAYS:
+            code.addLine("  private transient %s %s;",
+                    KEY_DESERIALIZER, fieldName(property, "KeyDeserializer"))
+                .addLine("  private transient %s<Object> %s;",
+                    JSON_DESERIALIZER, fieldName(property, "ValueDeserializer"));
+            break;
+          default:
+            break;
+        }
+      });
+      code.addLine("")
+          .addLine("  public %s() {", name.getSimpleName())
+          .addLine("    super(%s.class);", datatype.getBuilder())
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public boolean isCachable() {")
+          .addLine("    return true;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public %s<Object> getKnownPropertyNames() {", Collection.class)
+          .addLine("    return KNOWN_PROPERTIES;")
+          .addLine("  }");
+      addResolve(code);
+      addDeserialize(code);
+      code.addLine("")
+          .addLine("  private static Object read(")
+          .addLine("      %s parser,", JSON_PARSER)
+          .addLine("      %s ctxt,", DESERIALIZATION_CONTEXT)
+          .addLine("      %s<Object> deserializer) throws %s {",
+              JSON_DESERIALIZER, IOException.class)
+          .addLine("    if (parser.getCurrentToken() == %s.VALUE_NULL) {", JSON_TOKEN)
+          .addLine("      return deserializer.getNullValue(ctxt);")
+          .addLine("    }")
+          .addLine("    return deserializer.deserialize(parser, ctxt);")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /** Returns the known property matching {@code field}, ignoring case. */")
+          .addLine("  private static String knownPropertyName(String field) {")
+          .addLine("    for (Object name : KNOWN_PROPERTIES) {")
+          .addLine("      if (field.equalsIgnoreCase((String) name)) {")
+          .addLine("        return (String) name;")
+          .addLine("      }")
+          .addLine("    }")
+          .addLine("    return field;")
+          .addLine("  }");
+      if (hasStreamedProperties()) {
+        code.addLine("")
+            .addLine("  /**")
+            .addLine("   * Returns true if {@code deserializer} is one of Jackson's own, so the")
+            .addLine("   * tokens it would read can be streamed into the builder one at a time.")
+            .addLine("   */")
+            .addLine("  private static boolean isStreamable(%s<?> deserializer) {",
+                JSON_DESERIALIZER)
+            .addLine("    return !(deserializer instanceof %s)", TYPE_WRAPPED_DESERIALIZER)
+            .addLine("        && deserializer.getClass().getName().startsWith(\"%s.\");",
+                JACKSON_PACKAGE)
+            .addLine("  }");
+      }
+      code.addLine("}");
+    }
+
+    private boolean hasStreamedProperties() {
+      return generatorsByProperty.values().stream()
+          .anyMatch(generator -> generator.getStreamedForm() != StreamedForm.NONE);
+    }
+
+    private void addResolve(SourceBuilder code) {
+      code.addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public void resolve(%s ctxt) throws %s {",
+              DESERIALIZATION_CONTEXT, JSON_MAPPING_EXCEPTION)
+          .addLine("    %s types = ctxt.getTypeFactory();", TYPE_FACTORY)
+          .addLine("    caseInsensitive = ctxt.isEnabled(%s.ACCEPT_CASE_INSENSITIVE_PROPERTIES);",
+              MAPPER_FEATURE);
+      generatorsByProperty.forEach((property, generator) -> {
+        Excerpt deserializer = Excerpts.add("%s", fieldName(property, "Deserializer"));
+        code.add("    %s = ctxt.findRootValueDeserializer(", deserializer);
+        if (isRawType(property.getType())) {
+          code.add("types.constructType(%s.class));\n", property.getType());
+        } else {
+          code.add("\n        types.constructType(new %s<", TYPE_REFERENCE);
+          generator.addSetFromResultType(code);
+          code.add(">() {}));\n");
+        }
+        if (DirectType.of(property, generator).isPresent()) {
+          code.addLine("    %s = isDefaultDeserializer(%s);",
+              fieldName(property, "Direct"), deserializer);
+        }
+        addResolveStreamed(code, property, generator, deserializer);
+      });
+      code.addLine("  }");
+    }
+
+    private static void addResolveStreamed(
+        SourceBuilder code,
+        Property property,
+        PropertyCodeGenerator generator,
+        Excerpt deserializer) {
+      StreamedForm form = generator.getStreamedForm();
+      if (form == StreamedForm.NONE) {
+        return;
+      }
+      List<TypeMirror> types = generator.getStreamedTypes();
+      code.addLine("    if (isStreamable(%s)) {", deserializer);
+      if (form == StreamedForm.ARRAY) {
+        code.addLine("      %s = ctxt.findRootValueDeserializer(%s);",
+            fieldName(property, "ElementDeserializer"), constructType(types.get(0)));
+      } else {
+        code.addLine("      %s = ctxt.findKeyDeserializer(%s, null);",
+                fieldName(property, "KeyDeserializer"), constructType(types.get(0)))
+            .addLine("      %s = ctxt.findRootValueDeserializer(%s);",
+                fieldName(property, "ValueDeserializer"), constructType(types.get(1)));
+      }
+      code.addLine("    }");
+    }
+
+    private static Excerpt constructType(TypeMirror type) {
+      if (isRawType(type)) {
+        return Excerpts.add("types.constructType(%s.class)", type);
+      }
+      return Excerpts.add("types.constructType(new %s<%s>() {})", TYPE_REFERENCE, type);
+    }
+
+    private void addDeserialize(SourceBuilder code) {
+      Variable builder = new Variable("builder");
+      code.addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+          .addLine("  public %s deserialize(%s parser, %s ctxt)",
+              datatype.getBuilder(), JSON_PARSER, DESERIALIZATION_CONTEXT)
+          .addLine("      throws %s {", IOException.class)
+          .add("    %s %s = ", datatype.getBuilder(), builder)
+          .add(datatype.getBuilderFactory().get()
+              .newBuilder(datatype.getBuilder(), INFERRED_TYPES))
+          .add(";\n")
+          .addLine("    %s token = parser.getCurrentToken();", JSON_TOKEN)
+          .addLine("    if (token == %s.START_OBJECT) {", JSON_TOKEN)
+          .addLine("      token = parser.nextToken();")
+          .addLine("    } else if (token != %1$s.FIELD_NAME && token != %1$s.END_OBJECT) {",
+              JSON_TOKEN)
+          .addLine("      return (%s) ctxt.handleUnexpectedToken(handledType(), parser);",
+              datatype.getBuilder())
+          .addLine("    }")
+          .addLine("    for (; token == %1$s.FIELD_NAME; token = parser.nextToken()) {", JSON_TOKEN)
+          .addLine("      String field = parser.getCurrentName();")
+          .addLine("      token = parser.nextToken();")
+          .addLine("      try {")
+          .addLine("        switch (caseInsensitive ? knownPropertyName(field) : field) {");
+      generatorsByProperty.forEach((property, generator) -> {
+        code.addLine("          case \"%s\":", jsonNames.get(property));
+        Excerpt read = readExcerpt(property, generator);
+        Optional<DirectType> direct = DirectType.of(property, generator);
+        if (direct.isPresent()) {
+          code.addLine("            if (%s && %s) {",
+              fieldName(property, "Direct"),
+              Excerpts.add(direct.get().tokenCheck, JSON_TOKEN));
+          generator.addSetFromResult(
+              code.add("              "), builder, Excerpts.add(direct.get().read, JSON_TOKEN));
+          code.addLine("            } else {");
+          generator.addSetFromResult(code.add("              "), builder, read);
+          code.addLine("            }");
+        } else if (generator.getStreamedForm() != StreamedForm.NONE) {
+          addStreamedRead(code, property, generator, builder, read);
+        } else {
+          generator.addSetFromResult(code.add("            "), builder, read);
+        }
+        code.addLine("            break;");
+      });
+      code.addLine("          default:")
+          .addLine("            handleUnknownProperty(parser, ctxt, %s, field);", builder)
+          .addLine("        }")
+          .addLine("      } catch (%s | %s e) {", JSON_PROCESSING_EXCEPTION, RuntimeException.class)
+          .addLine("        if (e instanceof %s", RuntimeException.class)
+          .addLine("            && !ctxt.isEnabled(%s.WRAP_EXCEPTIONS)) {", DESERIALIZATION_FEATURE)
+          .addLine("          throw e;")
+          .addLine("        }")
+          .addLine("        throw %s.wrapWithPath(e, %s, field);", JSON_MAPPING_EXCEPTION, builder)
+          .addLine("      }")
+          .addLine("    }")
+          .addLine("    if (token != %s.END_OBJECT) {", JSON_TOKEN)
+          .addLine("      ctxt.reportWrongTokenException(")
+          .addLine("          this, %s.END_OBJECT, \"Expected the end of a JSON object\");",
+              JSON_TOKEN)
+          .addLine("    }")
+          .addLine("    return %s;", builder)
+          .addLine("  }");
+    }
+
+    /**
+     * Adds code streaming the property's elements into the builder if its JSON form is as
+     * expected, and otherwise reading its value whole.
+     */
+    private static void addStreamedRead(
+        SourceBuilder code,
+        Property property,
+        PropertyCodeGenerator generator,
+        Variable builder,
+        Excerpt read) {
+      StreamedForm form = generator.getStreamedForm();
+      List<TypeMirror> types = generator.getStreamedTypes();
+      if (form == StreamedForm.ARRAY) {
+        Excerpt elementDeserializer =
+            Excerpts.add("%s", fieldName(property, "ElementDeserializer"));
+        code.addLine("            if (%s != null && token == %s.START_ARRAY) {",
+                elementDeserializer, JSON_TOKEN)
+            .addLine("              while (parser.nextToken() != %s.END_ARRAY) {", JSON_TOKEN);
+        generator.addStreamedElement(code.add("                "), builder, Excerpts.add(
+            "(%s) read(parser, ctxt, %s)", types.get(0), elementDeserializer));
+        code.addLine("              }");
+      } else {
+        Excerpt keyDeserializer = Excerpts.add("%s", fieldName(property, "KeyDeserializer"));
+        Excerpt value = Excerpts.add(
+            "(%s) read(parser, ctxt, %s)", types.get(1), fieldName(property, "ValueDeserializer"));
+        Variable key = new Variable("key");
+        code.addLine("            if (%s != null && token == %s.START_OBJECT) {",
+                keyDeserializer, JSON_TOKEN)
+            .addLine("              while (parser.nextToken() == %s.FIELD_NAME) {", JSON_TOKEN)
+            .addLine("                %s %s =", types.get(0), key)
+            .addLine("                    (%s) %s.deserializeKey(parser.getCurrentName(), ctxt);",
+                types.get(0), keyDeserializer);
+        if (form == StreamedForm.OBJECT) {
+          code.addLine("                parser.nextToken();");
+          generator.addStreamedElement(code.add("                "), builder, key, value);
+        } else {
+          code.addLine("                if (parser.nextToken() == %s.START_ARRAY) {", JSON_TOKEN)
+              .addLine("                  while (parser.nextToken() != %s.END_ARRAY) {",
+                  JSON_TOKEN);
+          generator.addStreamedElement(code.add("                    "), builder, key, value);
+          code.addLine("                  }")
+              .addLine("                } else {");
+          generator.addStreamedElement(code.add("                  "), builder, key, value);
+          code.addLine("                }");
+        }
+        code.addLine("              }");
+      }
+      code.addLine("            } else {");
+      generator.addSetFromResult(code.add("              "), builder, read);
+      code.addLine("            }");
+    }
+
+    private static Excerpt readExcerpt(Property property, PropertyCodeGenerator generator) {
+      return code -> {
+        code.add("(");
+        if (property.getType().getKind().isPrimitive()) {
+          code.add("%s", property.getType());
+        } else {
+          generator.addSetFromResultType(code);
+        }
+        code.add(") read(parser, ctxt, %s)", fieldName(property, "Deserializer"));
+      };
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("datatype", datatype);
+      fields.add("name", name);
+      fields.add("generatorsByProperty", generatorsByProperty);
+      fields.add("jsonNames", jsonNames);
+    }
+  }
+
+  private static boolean isRawType(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return true;
+    }
+    return type.getKind() == TypeKind.DECLARED
+        && ((DeclaredType) type).getTypeArguments().isEmpty();
+  }
+
+  private static final class BuilderInstantiator extends ValueType implements Excerpt {
+
+    private final Datatype datatype;
+    private final QualifiedName name;
+
+    private BuilderInstantiator(Datatype datatype, QualifiedName name) {
+      this.datatype = datatype;
+      this.name = name;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Hands Jackson the builder produced by {@link BuilderDeserializer}, so the")
+          .addLine(" * builder-based deserializer of %s need not introspect the builder's setters.",
+              datatype.getType().javadocLink())
+          .addLine(" */")
+          .addLine("public static final class %s extends %s {",
+              name.getSimpleName(), VALUE_INSTANTIATOR)
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public String getValueTypeDesc() {")
+          .addLine("    return %s.class.getName();", datatype.getBuilder())
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public boolean canCreateUsingDelegate() {")
+          .addLine("    return true;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public %s getDelegateType(%s config) {", JAVA_TYPE, DESERIALIZATION_CONFIG)
+          .addLine("    return config.constructType(%s.class);", datatype.getBuilder())
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public Object createUsingDelegate(%s ctxt, Object delegate) {",
+              DESERIALIZATION_CONTEXT)
+          .addLine("    return delegate;")
+          .addLine("  }")
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("datatype", datatype);
+      fields.add("name", name);
+    }
+  }
+
+  private static final class ValueSerializer extends ValueType implements Excerpt {
+
+    private final Datatype datatype;
+    private final QualifiedName name;
+    private final Map<Property, PropertyCodeGenerator> generatorsByProperty;
+    private final Map<Property, String> jsonNames;
+
+    private ValueSerializer(
+        Datatype datatype,
+        QualifiedName name,
+        Map<Property, PropertyCodeGenerator> generatorsByProperty,
+        Map<Property, String> jsonNames) {
+      this.datatype = datatype;
+      this.name = name;
+      this.generatorsByProperty = generatorsByProperty;
+      this.jsonNames = jsonNames;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("/** Serializes a %s straight from its getters. */",
+              datatype.getType().javadocLink())
+          .addLine("public static final class %s extends %s<%s>",
+              name.getSimpleName(), STD_SERIALIZER, datatype.getType())
+          .addLine("    implements %s {", RESOLVABLE_SERIALIZER)
+          .addLine("")
+          .addLine("  private static final long serialVersionUID = 1L;")
+          .addLine("")
+          .addLine("  private %s inclusion;", JSON_INCLUDE_INCLUDE);
+      if (isSortable()) {
+        code.addLine("  private boolean sorted;");
+      }
+      generatorsByProperty.forEach((property, generator) -> {
+        if (DirectType.of(property, generator).isPresent()) {
+          code.addLine("  private transient %s<Object> %s;",
+                  JSON_SERIALIZER, fieldName(property, "Serializer"))
+              .addLine("  private boolean %s;", fieldName(property, "Direct"));
+        }
+      });
+      code.addLine("")
+          .addLine("  public %s() {", name.getSimpleName())
+          .addLine("    super(%s.class);", datatype.getType())
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public void resolve(%s provider) throws %s {",
+              SERIALIZER_PROVIDER, JSON_MAPPING_EXCEPTION)
+          .addLine("    inclusion = provider.getConfig()")
+          .addLine("        .getDefaultPropertyInclusion(%s.class)", datatype.getType())
+          .addLine("        .getValueInclusion();")
+          .addLine("    if (inclusion == %s.USE_DEFAULTS) {", JSON_INCLUDE_INCLUDE)
+          .addLine("      inclusion = %s.ALWAYS;", JSON_INCLUDE_INCLUDE)
+          .addLine("    }");
+      if (isSortable()) {
+        code.addLine("    sorted = provider.isEnabled(%s.SORT_PROPERTIES_ALPHABETICALLY);",
+            MAPPER_FEATURE);
+      }
+      generatorsByProperty.forEach((property, generator) -> {
+        if (DirectType.of(property, generator).isPresent()) {
+          Excerpt serializer = Excerpts.add("%s", fieldName(property, "Serializer"));
+          code.addLine("    %s = provider.findValueSerializer(%s.class, null);",
+                  serializer, property.getType())
+              .addLine("    %s = isDefaultSerializer(%s);",
+                  fieldName(property, "Direct"), serializer);
+        }
+      });
+      code.addLine("  }")
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public void serialize(%s value, %s gen, %s provider)",
+              datatype.getType(), JSON_GENERATOR, SERIALIZER_PROVIDER)
+          .addLine("      throws %s {", IOException.class)
+          .addLine("    gen.writeStartObject();");
+      addWritePropertiesCall(code);
+      code.addLine("    gen.writeEndObject();")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s", Override.class)
+          .addLine("  public void serializeWithType(")
+          .addLine("      %s value,", datatype.getType())
+          .addLine("      %s gen,", JSON_GENERATOR)
+          .addLine("      %s provider,", SERIALIZER_PROVIDER)
+          .addLine("      %s typeSerializer) throws %s {", TYPE_SERIALIZER, IOException.class)
+          .addLine("    %s typeId = typeSerializer.writeTypePrefix(", WRITABLE_TYPE_ID)
+          .addLine("        gen, typeSerializer.typeId(value, %s.START_OBJECT));", JSON_TOKEN);
+      addWritePropertiesCall(code);
+      code.addLine("    typeSerializer.writeTypeSuffix(gen, typeId);")
+          .addLine("  }");
+      addWriteProperties(code, "writeProperties", generatorsByProperty.keySet());
+      if (isSortable()) {
+        addWriteProperties(code, "writeSortedProperties", sortedProperties());
+      }
+      code.addLine("")
+          .addLine("  private static boolean include(")
+          .addLine("      %s provider,", SERIALIZER_PROVIDER)
+          .addLine("      %s inclusion,", JSON_INCLUDE_INCLUDE)
+          .addLine("      Object value,")
+          .addLine("      boolean reference,")
+          .addLine("      Object defaultValue) throws %s {", JSON_MAPPING_EXCEPTION)
+          .addLine("    if (value == null || inclusion == %s.NON_NULL) {", JSON_INCLUDE_INCLUDE)
+          .addLine("      return value != null;")
+          .addLine("    }")
+          .addLine("    if (inclusion == %s.NON_ABSENT && !reference) {", JSON_INCLUDE_INCLUDE)
+          .addLine("      return true;")
+          .addLine("    }")
+          .addLine("    if (inclusion == %s.NON_DEFAULT && value.equals(defaultValue)) {",
+              JSON_INCLUDE_INCLUDE)
+          .addLine("      return false;")
+          .addLine("    }")
+          .addLine("    return !provider.findValueSerializer(value.getClass(), null)")
+          .addLine("        .isEmpty(provider, value);")
+          .addLine("  }")
+          .addLine("}");
+    }
+
+    /**
+     * Returns true if Jackson's {@code SORT_PROPERTIES_ALPHABETICALLY} feature would change the
+     * order properties are written in.
+     */
+    private boolean isSortable() {
+      return !sortedProperties().equals(new ArrayList<>(generatorsByProperty.keySet()));
+    }
+
+    private List<Property> sortedProperties() {
+      List<Property> properties = new ArrayList<>(generatorsByProperty.keySet());
+      properties.sort(Comparator.comparing(jsonNames::get));
+      return properties;
+    }
+
+    private void addWritePropertiesCall(SourceBuilder code) {
+      if (isSortable()) {
+        code.addLine("    if (sorted) {")
+            .addLine("      writeSortedProperties(value, gen, provider);")
+            .addLine("    } else {")
+            .addLine("      writeProperties(value, gen, provider);")
+            .addLine("    }");
+      } else {
+        code.addLine("    writeProperties(value, gen, provider);");
+      }
+    }
+
+    private void addWriteProperties(
+        SourceBuilder code, String methodName, Collection<Property> properties) {
+      code.addLine("")
+          .addLine("  private void %s(", methodName)
+          .addLine("      %s value,", datatype.getType())
+          .addLine("      %s gen,", JSON_GENERATOR)
+          .addLine("      %s provider) throws %s {", SERIALIZER_PROVIDER, IOException.class)
+          .addLine("    boolean always = (inclusion == %s.ALWAYS);", JSON_INCLUDE_INCLUDE);
+      properties.forEach(property -> {
+        PropertyCodeGenerator generator = generatorsByProperty.get(property);
+        String jsonName = jsonNames.get(property);
+        Excerpt propertyValue = Excerpts.add("value.%s()", property.getGetterName());
+        code.addLine("    if (always || include(provider, inclusion, %s, %s, %s)) {",
+            propertyValue,
+            isReferenceType(property.getType()),
+            defaultValue(property.getType()).orElse("null"));
+        Optional<DirectType> direct = DirectType.of(property, generator);
+        if (direct.isPresent()) {
+          Excerpt serializer = Excerpts.add("%s", fieldName(property, "Serializer"));
+          code.addLine("      gen.writeFieldName(\"%s\");", jsonName)
+              .addLine("      if (%s) {", fieldName(property, "Direct"))
+              .addLine("        gen.%s(%s);", direct.get().write, propertyValue)
+              .addLine("      } else {")
+              .addLine("        %s.serialize(%s, gen, provider);", serializer, propertyValue)
+              .addLine("      }");
+        } else {
+          code.addLine("      provider.defaultSerializeField(\"%s\", %s, gen);",
+              jsonName, propertyValue);
+        }
+        code.addLine("    }");
+      });
+      code.addLine("  }");
+    }
+
+    /** Returns the value {@code NON_DEFAULT} omits for {@code type}, as a Java literal. */
+    private static Optional<String> defaultValue(TypeMirror type) {
+      TypeKind kind = type.getKind();
+      if (kind == TypeKind.DECLARED) {
+        kind = BOXED_TYPES.get(maybeAsTypeElement(type).get().getQualifiedName().toString());
+        if (kind == null) {
+          return Optional.empty();
+        }
+      }
+      switch (kind) {
+        case BOOLEAN:
+          return Optional.of("false");
+        case BYTE:
+          return Optional.of("(byte) 0");
+        case SHORT:
+          return Optional.of("(short) 0");
+        case INT:
+          return Optional.of("0");
+        case LONG:
+          return Optional.of("0L");
+        case CHAR:
+          return Optional.of("'\\0'");
+        case FLOAT:
+          return Optional.of("0.0f");
+        case DOUBLE:
+          return Optional.of("0.0");
+        default:
+          return Optional.empty();
+      }
+    }
+
+    private static boolean isReferenceType(TypeMirror type) {
+      if (type.getKind() != TypeKind.DECLARED) {
+        return false;
+      }
+      String name = maybeAsTypeElement(type).get().getQualifiedName().toString();
+      return Arrays.asList(REFERENCE_TYPES).contains(name);
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("datatype", datatype);
+      fields.add("name", name);
+      fields.add("generatorsByProperty", generatorsByProperty);
+      fields.add("jsonNames", jsonNames);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package org.inferred.freebuilder.processor;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.QualifiedName;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.ValueType;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Overrides a user-implemented {@link org.inferred.freebuilder.Memoized @Memoized} method on the
+ * value type, caching its result.
+ *
+ * <p>Uses double-checked locking on a volatile flag, so null results are cached, and exceptions
+ * are propagated to the caller without being cached.
+ */
+class MemoizedMethod extends ValueType implements Excerpt {
+
+  private final String name;
+  private final TypeMirror returnType;
+  private final ImmutableList<TypeMirror> thrownTypes;
+  private final Optional<Modifier> visibility;
+  private final Optional<QualifiedName> defaultMethodInterface;
+
+  /**
+   * @param defaultMethodInterface the interface declaring the method, if it is a default method
+   *     that must be invoked with {@code Interface.super.method()}
+   */
+  MemoizedMethod(
+      String name,
+      TypeMirror returnType,
+      List<? extends TypeMirror> thrownTypes,
+      Optional<Modifier> visibility,
+      Optional<QualifiedName> defaultMethodInterface) {
+    this.name = name;
+    this.returnType = returnType;
+    this.thrownTypes = ImmutableList.copyOf(thrownTypes);
+    this.visibility = visibility;
+    this.defaultMethodInterface = defaultMethodInterface;
+  }
+
+  @Override
+  public void addTo(SourceBuilder code) {
+    String field = "_" + name;
+    String flag = "_" + name + "Memoized";
+    code.addLine("")
+        .addLine("  private transient %s %s;", returnType, field)
+        .addLine("  private transient volatile boolean %s;", flag)
+        .addLine("")
+        .addLine("  @%s", Override.class)
+        .add("  %s%s %s()", visibility.map(v -> v + " ").orElse(""), returnType, name);
+    if (!thrownTypes.isEmpty()) {
+      code.add(" throws %s", Excerpts.join(", ", thrownTypes));
+    }
+    code.add(" {\n")
+        .addLine("    if (!%s) {", flag)
+        .addLine("      synchronized (this) {")
+        .addLine("        if (!%s) {", flag);
+    if (defaultMethodInterface.isPresent()) {
+      code.addLine("          %s = %s.super.%s();", field, defaultMethodInterface.get(), name);
+    } else {
+      code.addLine("          %s = super.%s();", field, name);
+    }
+    code.addLine("          %s = true;", flag)
+        .addLine("        }")
+        .addLine("      }")
+        .addLine("    }")
+        .addLine("    return %s;", field)
+        .addLine("  }");
+  }
+
+  @Override
+  protected void addFields(FieldReceiver fields) {
+    fields.add("name", name);
+    fields.add("returnType", returnType);
+    fields.add("thrownTypes", thrownTypes);
+    fields.add("visibility", visibility);
+    fields.add("defaultMethodInterface", defaultMethodInterface);
+  }
+}
@@ -0,0 +1,99 @@
+package org.inferred.freebuilder.processor;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.Initially;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the per-property statements of generated methods into private helper methods, so that
+ * the methods of very wide datatypes stay below HotSpot's limit for JIT compilation.
+ *
+ * <p>Bytecode sizes are estimated from the kind of each property, erring on the large side. Types
+ * whose methods fit comfortably within a single chunk are generated exactly as before.
+ */
+class MethodSplitter {
+
+  /** HotSpot's {@code HugeMethodLimit}: methods with more bytecode are never JIT-compiled. */
+  static final int HUGE_METHOD_LIMIT = 8000;
+
+  /** The JVM's hard limit on the bytecode size of a method. */
+  static final int MAX_METHOD_SIZE = 65535;
+
+  /** Estimated bytecode each chunk may hold, leaving headroom for estimation error. */
+  private static final int CHUNK_SIZE_LIMIT = HUGE_METHOD_LIMIT / 2;
+
+  /** Generated methods with one or more statements per property. */
+  enum Method {
+    // Calibrated against javac output, rounded up to the largest property kind measured.
+    // The second size is added for properties that may be unset, and so need extra checks.
+    VALUE_CONSTRUCTOR(11, 5),
+    MERGE_FROM_VALUE(48, 0),
+    MERGE_FROM_BUILDER(56, 0),
+    EQUALS(16, 8),
+    HASH_CODE(12, 12),
+    TO_STRING(32, 8);
+
+    private final int perProperty;
+    private final int perOptional;
+
+    Method(int perProperty, int perOptional) {
+      this.perProperty = perProperty;
+      this.perOptional = perOptional;
+    }
+
+    /** Returns the estimated bytecode size of the statements {@code generator} adds. */
+    int estimate(PropertyCodeGenerator generator) {
+      int size = perProperty;
+      if (generator.initialState() != Initially.HAS_DEFAULT
+          || generator.getPresenceField().isPresent()) {
+        size += perOptional;
+      }
+      return size;
+    }
+  }
+
+  /** Returns the estimated bytecode size of {@code method} for {@code generators}. */
+  static int estimate(Method method, Collection<PropertyCodeGenerator> generators) {
+    return generators.stream().mapToInt(method::estimate).sum();
+  }
+
+  /**
+   * Returns {@code properties} split into consecutive chunks small enough to be JIT-compiled as
+   * helper methods, or a single chunk if {@code method} needs no splitting.
+   */
+  static List<List<Property>> chunks(
+      Method method,
+      List<Property> properties,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    int total = properties.stream()
+        .mapToInt(property -> method.estimate(generatorsByProperty.get(property)))
+        .sum();
+    if (total <= CHUNK_SIZE_LIMIT) {
+      return ImmutableList.of(properties);
+    }
+    List<List<Property>> chunks = new ArrayList<>();
+    List<Property> chunk = new ArrayList<>();
+    int chunkSize = 0;
+    for (Property property : properties) {
+      int size = method.estimate(generatorsByProperty.get(property));
+      if (!chunk.isEmpty() && chunkSize + size > CHUNK_SIZE_LIMIT) {
+        chunks.add(ImmutableList.copyOf(chunk));
+        chunk.clear();
+        chunkSize = 0;
+      }
+      chunk.add(property);
+      chunkSize += size;
+    }
+    chunks.add(ImmutableList.copyOf(chunk));
+    return chunks;
+  }
+
+  private MethodSplitter() {}
+}
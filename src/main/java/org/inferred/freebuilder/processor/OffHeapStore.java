@@ -0,0 +1,532 @@
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.INFERRED_TYPES;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.Variable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * An {@code OffHeapArray} for an {@link org.inferred.freebuilder.OffHeap @OffHeap} type, storing
+ * values as fixed-size records in direct byte buffers.
+ *
+ * <p>Each record lays out the non-boolean values widest first, so every value is aligned if the
+ * record is, followed by one bit per boolean property and per optional property's presence. The
+ * stride is rounded up to the widest value. Records are little-endian, matching the native order
+ * of common hardware, and stored in chunks of at most 1GB, so an array can outgrow the 2GB limit
+ * of a single buffer.
+ */
+class OffHeapStore extends ValueType implements Excerpt {
+
+  private static final int MAX_CHUNK_BYTES = 1 << 30;
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final Map<String, TypeKind> PRIMITIVE_OPTIONALS = ImmutableMap.of(
+      "java.util.OptionalInt", TypeKind.INT,
+      "java.util.OptionalLong", TypeKind.LONG,
+      "java.util.OptionalDouble", TypeKind.DOUBLE);
+
+  /** Returns true if {@code property} can be stored in a fixed-size record. */
+  static boolean isSupported(Property property) {
+    return valueKind(property.getType()).isPresent();
+  }
+
+  private static Optional<TypeKind> valueKind(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return Optional.of(type.getKind());
+    }
+    if (type.getKind() != TypeKind.DECLARED) {
+      return Optional.empty();
+    }
+    TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+    return Optional.ofNullable(PRIMITIVE_OPTIONALS.get(element.getQualifiedName().toString()));
+  }
+
+  private static int width(TypeKind kind) {
+    switch (kind) {
+      case BYTE:
+        return 1;
+      case SHORT:
+      case CHAR:
+        return 2;
+      case INT:
+      case FLOAT:
+        return 4;
+      case LONG:
+      case DOUBLE:
+        return 8;
+      default:
+        return 0;
+    }
+  }
+
+  /** Returns the suffix of the {@link ByteBuffer} get and put methods for {@code kind}. */
+  private static String accessor(TypeKind kind) {
+    switch (kind) {
+      case BYTE:
+        return "";
+      case SHORT:
+        return "Short";
+      case CHAR:
+        return "Char";
+      case INT:
+        return "Int";
+      case FLOAT:
+        return "Float";
+      case LONG:
+        return "Long";
+      case DOUBLE:
+        return "Double";
+      default:
+        throw new IllegalArgumentException("No accessor for " + kind);
+    }
+  }
+
+  private static class Slot extends ValueType {
+    final Property property;
+    final PropertyCodeGenerator generator;
+    final TypeKind kind;
+    final boolean optional;
+    /** Byte offset of the value within the record, or -1 for boolean properties. */
+    final int offset;
+    /** Bit index of the boolean value or optional presence flag, or -1 for neither. */
+    final int flag;
+
+    Slot(
+        Property property,
+        PropertyCodeGenerator generator,
+        TypeKind kind,
+        boolean optional,
+        int offset,
+        int flag) {
+      this.property = property;
+      this.generator = generator;
+      this.kind = kind;
+      this.optional = optional;
+      this.offset = offset;
+      this.flag = flag;
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("property", property);
+      fields.add("generator", generator);
+      fields.add("kind", kind);
+      fields.add("optional", optional);
+      fields.add("offset", offset);
+      fields.add("flag", flag);
+    }
+  }
+
+  private final Datatype datatype;
+  private final ImmutableList<Slot> slots;
+  private final int flagsOffset;
+  private final int stride;
+  private final int chunkShift;
+
+  OffHeapStore(Datatype datatype, Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    this.datatype = datatype;
+    List<Property> values = new ArrayList<>();
+    generatorsByProperty.keySet().forEach(property -> {
+      if (valueKind(property.getType()).get() != TypeKind.BOOLEAN) {
+        values.add(property);
+      }
+    });
+    values.sort(Comparator.comparing(
+        (Property property) -> width(valueKind(property.getType()).get())).reversed());
+    Map<Property, Integer> offsets = new HashMap<>();
+    int offset = 0;
+    int alignment = 1;
+    for (Property property : values) {
+      int width = width(valueKind(property.getType()).get());
+      offsets.put(property, offset);
+      offset += width;
+      alignment = Math.max(alignment, width);
+    }
+    flagsOffset = offset;
+    ImmutableList.Builder<Slot> slots = ImmutableList.builder();
+    int flags = 0;
+    for (Map.Entry<Property, PropertyCodeGenerator> entry : generatorsByProperty.entrySet()) {
+      Property property = entry.getKey();
+      TypeKind kind = valueKind(property.getType()).get();
+      boolean optional = !property.getType().getKind().isPrimitive();
+      int flag = (optional || kind == TypeKind.BOOLEAN) ? flags++ : -1;
+      slots.add(new Slot(
+          property, entry.getValue(), kind, optional, offsets.getOrDefault(property, -1), flag));
+    }
+    this.slots = slots.build();
+    int size = Math.max(1, flagsOffset + (flags + 7) / 8);
+    stride = (size + alignment - 1) / alignment * alignment;
+    chunkShift = 31 - Integer.numberOfLeadingZeros(MAX_CHUNK_BYTES / stride);
+  }
+
+  /** Returns a description of the record layout, for diagnostics. */
+  String describe() {
+    StringBuilder description = new StringBuilder().append(stride).append("-byte records");
+    String separator = " (";
+    for (Slot slot : slots) {
+      description.append(separator).append(slot.property.getName()).append(" at ");
+      if (slot.offset >= 0) {
+        description.append(slot.offset);
+      }
+      if (slot.offset >= 0 && slot.flag >= 0) {
+        description.append(" with presence ");
+      }
+      if (slot.flag >= 0) {
+        description.append("bit ").append(flagsOffset + slot.flag / 8).append('.')
+            .append(slot.flag % 8);
+      }
+      separator = ", ";
+    }
+    if (!slots.isEmpty()) {
+      description.append(")");
+    }
+    return description.toString();
+  }
+
+  @Override
+  public void addTo(SourceBuilder code) {
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * A growable array of %s values, stored as %s-byte records in direct byte",
+            datatype.getType().javadocLink(), stride)
+        .addLine(" * buffers, outside the garbage-collected heap.")
+        .addLine(" *")
+        .addLine(" * <p>Use {@link #read(long, Record)} or {@link #forEach(Consumer)} to read")
+        .addLine(" * records through a reusable {@link Record} flyweight without creating a value")
+        .addLine(" * per record. Records can be copied to and from files in bulk with")
+        .addLine(" * {@link #writeTo(FileChannel)} and {@link #readFrom(FileChannel)}.")
+        .addLine(" *")
+        .addLine(" * <p>Not safe for concurrent modification.")
+        .addLine(" */")
+        .addLine("public static final class OffHeapArray {")
+        .addLine("")
+        .addLine("  /** The number of bytes used by each record. */")
+        .addLine("  public static final int STRIDE = %s;", stride)
+        .addLine("")
+        .addLine("  private static final int CHUNK_SHIFT = %s;", chunkShift)
+        .addLine("  private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;")
+        .addLine("  private static final int CHUNK_BYTES = (CHUNK_MASK + 1) * STRIDE;")
+        .addLine("")
+        .addLine("  private final int _initialBytes;")
+        .addLine("  private %s[] _chunks = new %s[0];", ByteBuffer.class, ByteBuffer.class)
+        .addLine("  private long _size;")
+        .addLine("")
+        .addLine("  /** Creates an empty array. */")
+        .addLine("  public OffHeapArray() {")
+        .addLine("    this(%s);", DEFAULT_CAPACITY)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Creates an empty array with room for {@code initialCapacity} records. */")
+        .addLine("  public OffHeapArray(int initialCapacity) {")
+        .addLine("    if (initialCapacity < 0) {")
+        .addLine("      throw new %s(\"Negative capacity: \" + initialCapacity);",
+            IllegalArgumentException.class)
+        .addLine("    }")
+        .addLine("    _initialBytes = %s.max(1, %s.min(initialCapacity, CHUNK_MASK + 1)) * STRIDE;",
+            Math.class, Math.class)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Returns the number of records stored. */")
+        .addLine("  public long size() {")
+        .addLine("    return _size;")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Returns true if no records are stored. */")
+        .addLine("  public boolean isEmpty() {")
+        .addLine("    return _size == 0;")
+        .addLine("  }");
+    addAddMethods(code);
+    addReadMethods(code);
+    addChannelMethods(code);
+    code.addLine("")
+        .addLine("  /** Removes every record, keeping the memory already allocated. */")
+        .addLine("  public void clear() {")
+        .addLine("    _size = 0;")
+        .addLine("  }");
+    addPrivateMethods(code);
+    addRecordClass(code);
+    code.addLine("}");
+  }
+
+  private void addAddMethods(SourceBuilder code) {
+    code.addLine("")
+        .addLine("  /** Appends {@code value} as a record, returning this array. */")
+        .addLine("  public OffHeapArray add(%s value) {", datatype.getType())
+        .addLine("    %s chunk = reserve(1);", ByteBuffer.class)
+        .addLine("    int offset = ((int) _size & CHUNK_MASK) * STRIDE;");
+    for (Slot slot : slots) {
+      if (slot.offset < 0) {
+        continue;
+      }
+      code.addLine("    chunk.put%s(%s, value.%s()%s);",
+          accessor(slot.kind),
+          position("offset", slot.offset),
+          slot.property.getGetterName(),
+          slot.optional ? ".orElse(0)" : "");
+    }
+    for (int flagByte = 0; flagByte * 8 < flagCount(); flagByte++) {
+      List<String> bits = new ArrayList<>();
+      for (Slot slot : slots) {
+        if (slot.flag >= 0 && slot.flag / 8 == flagByte) {
+          String test = slot.optional
+              ? "value." + slot.property.getGetterName() + "().isPresent()"
+              : "value." + slot.property.getGetterName() + "()";
+          bits.add("(" + test + " ? " + (1 << (slot.flag % 8)) + " : 0)");
+        }
+      }
+      code.add("    chunk.put(%s, (byte) (%s",
+          position("offset", flagsOffset + flagByte), bits.get(0));
+      for (String bit : bits.subList(1, bits.size())) {
+        code.add("\n        | %s", bit);
+      }
+      code.addLine("));");
+    }
+    code.addLine("    _size++;")
+        .addLine("    return this;")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /**")
+        .addLine("   * Builds {@code builder} and appends the result as a record, returning this")
+        .addLine("   * array.")
+        .addLine("   */")
+        .addLine("  public OffHeapArray add(%s builder) {", datatype.getBuilder())
+        .addLine("    return add(builder.build());")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Appends each of {@code values}, in order, returning this array. */")
+        .addLine("  public OffHeapArray addAll(%s<? extends %s> values) {",
+            Iterable.class, datatype.getType())
+        .addLine("    for (%s value : values) {", datatype.getType())
+        .addLine("      add(value);")
+        .addLine("    }")
+        .addLine("    return this;")
+        .addLine("  }");
+  }
+
+  private void addReadMethods(SourceBuilder code) {
+    code.addLine("")
+        .addLine("  /**")
+        .addLine("   * Returns the value stored at {@code index}.")
+        .addLine("   *")
+        .addLine("   * @throws IndexOutOfBoundsException if {@code index} is negative, or not less")
+        .addLine("   *     than {@link #size()}")
+        .addLine("   */")
+        .addLine("  public %s get(long index) {", datatype.getType())
+        .addLine("    return read(index, new Record()).materialize();")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /**")
+        .addLine("   * Points {@code record} at the record stored at {@code index}, returning it.")
+        .addLine("   *")
+        .addLine("   * @throws IndexOutOfBoundsException if {@code index} is negative, or not less")
+        .addLine("   *     than {@link #size()}")
+        .addLine("   */")
+        .addLine("  public Record read(long index, Record record) {")
+        .addLine("    if (index < 0 || index >= _size) {")
+        .addLine("      throw new %s(\"Index: \" + index + \", Size: \" + _size);",
+            IndexOutOfBoundsException.class)
+        .addLine("    }")
+        .addLine("    record._chunk = _chunks[(int) (index >>> CHUNK_SHIFT)];")
+        .addLine("    record._offset = ((int) index & CHUNK_MASK) * STRIDE;")
+        .addLine("    return record;")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Calls {@code action} with each record in turn, reusing one flyweight. */")
+        .addLine("  public void forEach(%s<? super Record> action) {", Consumer.class)
+        .addLine("    Record record = new Record();")
+        .addLine("    for (long index = 0; index < _size; index++) {")
+        .addLine("      action.accept(read(index, record));")
+        .addLine("    }")
+        .addLine("  }");
+  }
+
+  private void addChannelMethods(SourceBuilder code) {
+    code.addLine("")
+        .addLine("  /** Writes every record to {@code channel}, from its current position. */")
+        .addLine("  public void writeTo(%s channel) throws %s {",
+            FileChannel.class, IOException.class)
+        .addLine("    for (long start = 0; start < _size; start += CHUNK_MASK + 1) {")
+        .addLine("      %s bytes = _chunks[(int) (start >>> CHUNK_SHIFT)].duplicate();",
+            ByteBuffer.class)
+        .addLine("      bytes.clear();")
+        .addLine("      bytes.limit((int) %s.min(_size - start, CHUNK_MASK + 1) * STRIDE);",
+            Math.class)
+        .addLine("      while (bytes.hasRemaining()) {")
+        .addLine("        channel.write(bytes);")
+        .addLine("      }")
+        .addLine("    }")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /**")
+        .addLine("   * Appends the records written to {@code channel} by")
+        .addLine("   * {@link #writeTo(FileChannel)}, reading from its current position to")
+        .addLine("   * its end, and returns this array.")
+        .addLine("   *")
+        .addLine("   * @throws IOException if the remaining bytes are not a whole number of")
+        .addLine("   *     records")
+        .addLine("   */")
+        .addLine("  public OffHeapArray readFrom(%s channel) throws %s {",
+            FileChannel.class, IOException.class)
+        .addLine("    long bytes = channel.size() - channel.position();")
+        .addLine("    if (bytes %% STRIDE != 0) {")
+        .addLine("      throw new %s(\"Expected whole %s records of \" + STRIDE + \" bytes, got \"",
+            IOException.class, datatype.getType().getSimpleName())
+        .addLine("          + bytes + \" bytes\");")
+        .addLine("    }")
+        .addLine("    long remaining = bytes / STRIDE;")
+        .addLine("    while (remaining > 0) {")
+        .addLine("      int first = (int) _size & CHUNK_MASK;")
+        .addLine("      int records = (int) %s.min(remaining, CHUNK_MASK + 1 - first);", Math.class)
+        .addLine("      %s target = reserve(records).duplicate();", ByteBuffer.class)
+        .addLine("      target.clear();")
+        .addLine("      target.limit((first + records) * STRIDE);")
+        .addLine("      target.position(first * STRIDE);")
+        .addLine("      while (target.hasRemaining()) {")
+        .addLine("        if (channel.read(target) < 0) {")
+        .addLine("          throw new %s();", EOFException.class)
+        .addLine("        }")
+        .addLine("      }")
+        .addLine("      _size += records;")
+        .addLine("      remaining -= records;")
+        .addLine("    }")
+        .addLine("    return this;")
+        .addLine("  }");
+  }
+
+  private void addPrivateMethods(SourceBuilder code) {
+    code.addLine("")
+        .addLine("  /** Returns the chunk to hold the next {@code records} records, growing it. */")
+        .addLine("  private %s reserve(int records) {", ByteBuffer.class)
+        .addLine("    int chunk = (int) (_size >>> CHUNK_SHIFT);")
+        .addLine("    int required = (((int) _size & CHUNK_MASK) + records) * STRIDE;")
+        .addLine("    if (chunk == _chunks.length) {")
+        .addLine("      _chunks = %s.copyOf(_chunks, chunk + 1);", Arrays.class)
+        .addLine("    }")
+        .addLine("    %s current = _chunks[chunk];", ByteBuffer.class)
+        .addLine("    if (current == null || current.capacity() < required) {")
+        .addLine("      int capacity;")
+        .addLine("      if (current != null) {")
+        .addLine("        capacity = (int) %s.min(CHUNK_BYTES, 2L * current.capacity());",
+            Math.class)
+        .addLine("      } else if (chunk == 0) {")
+        .addLine("        capacity = _initialBytes;")
+        .addLine("      } else {")
+        .addLine("        capacity = CHUNK_BYTES;")
+        .addLine("      }")
+        .addLine("      %s grown = %s.allocateDirect(%s.max(capacity, required));",
+            ByteBuffer.class, ByteBuffer.class, Math.class)
+        .addLine("      grown.order(%s.LITTLE_ENDIAN);", ByteOrder.class)
+        .addLine("      if (current != null) {")
+        .addLine("        %s bytes = current.duplicate();", ByteBuffer.class)
+        .addLine("        bytes.clear();")
+        .addLine("        grown.put(bytes);")
+        .addLine("      }")
+        .addLine("      _chunks[chunk] = grown;")
+        .addLine("    }")
+        .addLine("    return _chunks[chunk];")
+        .addLine("  }");
+  }
+
+  private void addRecordClass(SourceBuilder code) {
+    code.addLine("")
+        .addLine("  /**")
+        .addLine("   * A reusable flyweight reading one record of an {@link OffHeapArray}.")
+        .addLine("   *")
+        .addLine("   * <p>A record stays pointed at the same memory until it is passed to")
+        .addLine("   * {@link OffHeapArray#read(long, Record)} again, so its getters return")
+        .addLine("   * different values if the array it was read from is cleared and reused.")
+        .addLine("   */")
+        .addLine("  public static final class Record {")
+        .addLine("")
+        .addLine("    private %s _chunk;", ByteBuffer.class)
+        .addLine("    private int _offset;");
+    for (Slot slot : slots) {
+      code.addLine("")
+          .addLine("    /** Returns the %s property of the record. */", slot.property.getName())
+          .addLine("    public %s %s() {", slot.property.getType(), slot.property.getGetterName());
+      addRead(code, slot);
+      code.addLine("    }");
+    }
+    Variable builder = new Variable("builder");
+    code.addLine("")
+        .addLine("    /** Returns the record as a new %s value. */",
+            datatype.getType().getSimpleName())
+        .addLine("    public %s materialize() {", datatype.getType())
+        .addLine("      %s %s = %s;",
+            datatype.getBuilder(),
+            builder,
+            datatype.getBuilderFactory().get().newBuilder(datatype.getBuilder(), INFERRED_TYPES));
+    for (Slot slot : slots) {
+      code.add("      ");
+      slot.generator.addSetFromResult(
+          code, builder, Excerpts.add("%s()", slot.property.getGetterName()));
+    }
+    code.addLine("      return %s.build();", builder)
+        .addLine("    }")
+        .addLine("")
+        .addLine("    @Override")
+        .addLine("    public String toString() {")
+        .addLine("      return materialize().toString();")
+        .addLine("    }")
+        .addLine("  }");
+  }
+
+  private void addRead(SourceBuilder code, Slot slot) {
+    String flag = "";
+    if (slot.flag >= 0) {
+      flag = String.format("(_chunk.get(%s) & %s) != 0",
+          position("_offset", flagsOffset + slot.flag / 8), 1 << (slot.flag % 8));
+    }
+    String value = (slot.kind == TypeKind.BOOLEAN) ? "" : String.format(
+        "_chunk.get%s(%s)", accessor(slot.kind), position("_offset", slot.offset));
+    if (slot.kind == TypeKind.BOOLEAN) {
+      code.addLine("      return %s;", flag);
+    } else if (!slot.optional) {
+      code.addLine("      return %s;", value);
+    } else {
+      code.addLine("      return (%s)", flag)
+          .addLine("          ? %s.of(%s)", slot.property.getType(), value)
+          .addLine("          : %s.empty();", slot.property.getType());
+    }
+  }
+
+  private int flagCount() {
+    return (int) slots.stream().filter(slot -> slot.flag >= 0).count();
+  }
+
+  private static String position(String base, int offset) {
+    return (offset == 0) ? base : base + " + " + offset;
+  }
+
+  @Override
+  protected void addFields(FieldReceiver fields) {
+    fields.add("datatype", datatype);
+    fields.add("slots", slots);
+  }
+}
@@ -17,6 +17,7 @@ package org.inferred.freebuilder.processor;
 
 import static org.inferred.freebuilder.processor.model.ModelUtils.findAnnotationMirror;
 import static org.inferred.freebuilder.processor.source.RoundEnvironments.annotatedElementsIn;
+import static org.inferred.freebuilder.processor.source.feature.RuntimeLibrary.RUNTIME;
 
 import static javax.lang.model.util.ElementFilter.typesIn;
 
@@ -30,7 +31,10 @@ import com.google.common.collect.MapMaker;
 import org.inferred.freebuilder.FreeBuilder;
 import org.inferred.freebuilder.processor.source.FilerUtils;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.EnvironmentFeatureSet;
 import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.feature.Instrumentation;
+import org.inferred.freebuilder.processor.source.feature.Lambdas;
 
 import java.io.IOException;
 import java.util.Set;
@@ -78,6 +82,11 @@ public class Processor extends AbstractProcessor {
     return ImmutableSet.of(FreeBuilder.class.getName());
   }
 
+  @Override
+  public Set<String> getSupportedOptions() {
+    return ImmutableSet.of(Lambdas.OPTION, Instrumentation.OPTION);
+  }
+
   @Override
   public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latestSupported();
@@ -92,6 +101,13 @@ public class Processor extends AbstractProcessor {
       return;
     }
     analyser = new Analyser(processingEnv, processingEnv.getMessager());
+    if (Instrumentation.isRequested(processingEnv) && features == null
+        && !new EnvironmentFeatureSet(processingEnv).get(RUNTIME).isAvailable()) {
+      processingEnv.getMessager().printMessage(
+          Kind.WARNING,
+          "-A" + Instrumentation.OPTION + " requires freebuilder-runtime on the classpath; "
+              + "generated builders will not be instrumented");
+    }
   }
 
   @Override
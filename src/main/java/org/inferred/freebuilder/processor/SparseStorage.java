@@ -0,0 +1,246 @@
+package org.inferred.freebuilder.processor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.inferred.freebuilder.processor.property.Property;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.Initially;
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.FieldAccess;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.Variable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.lang.model.type.TypeKind;
+
+/**
+ * Stores the optional and nullable properties of a
+ * {@link org.inferred.freebuilder.SparseLayout @SparseLayout} type in a single array on the
+ * generated value type, holding only the properties that are set.
+ *
+ * <p>Each sparse property is assigned a bit in a sequence of long presence words. A set property's
+ * index in the array is the number of set properties before it, found with {@link Long#bitCount}.
+ * Only properties that take part in equals and hashCode are stored sparsely, so the words and
+ * array can be compared and hashed directly.
+ */
+class SparseStorage {
+
+  private static final FieldAccess VALUES = new FieldAccess("_values");
+  private static final String READ_METHOD = "_sparseValue";
+
+  /** Storage holding no properties. */
+  static final SparseStorage NONE = new SparseStorage(ImmutableMap.of());
+
+  /** Returns the properties that would be stored sparsely, in order. */
+  static List<Property> sparseProperties(
+      Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    return generatorsByProperty.entrySet()
+        .stream()
+        .filter(entry -> isSparse(entry.getKey(), entry.getValue()))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the sparse storage for {@code generatorsByProperty}, which will be empty unless
+   * {@code datatype} uses a sparse layout.
+   */
+  static SparseStorage of(
+      Datatype datatype, Map<Property, PropertyCodeGenerator> generatorsByProperty) {
+    if (!datatype.isSparseLayout()) {
+      return NONE;
+    }
+    ImmutableMap.Builder<Property, PropertyCodeGenerator> generators = ImmutableMap.builder();
+    for (Property property : sparseProperties(generatorsByProperty)) {
+      generators.put(property, generatorsByProperty.get(property));
+    }
+    return new SparseStorage(generators.build());
+  }
+
+  /**
+   * Properties whose value field is a nullable reference, null when the property is unset, can be
+   * stored sparsely. Arrays are left out, as they are not compared by value.
+   */
+  private static boolean isSparse(Property property, PropertyCodeGenerator generator) {
+    return generator.initialState() == Initially.OPTIONAL
+        && !generator.getPresenceField().isPresent()
+        && property.isInEqualsAndHashCode()
+        && property.getType().getKind() != TypeKind.ARRAY;
+  }
+
+  private final ImmutableMap<Property, PropertyCodeGenerator> generators;
+  private final ImmutableMap<Property, Integer> bits;
+  private final ImmutableList<FieldAccess> words;
+
+  private SparseStorage(ImmutableMap<Property, PropertyCodeGenerator> generators) {
+    this.generators = generators;
+    ImmutableMap.Builder<Property, Integer> bits = ImmutableMap.builder();
+    int bit = 0;
+    for (Property property : generators.keySet()) {
+      bits.put(property, bit++);
+    }
+    this.bits = bits.build();
+    ImmutableList.Builder<FieldAccess> words = ImmutableList.builder();
+    for (int i = 0; i < (generators.size() + Long.SIZE - 1) / Long.SIZE; i++) {
+      words.add(new FieldAccess("_presence" + i));
+    }
+    this.words = words.build();
+  }
+
+  boolean isEmpty() {
+    return bits.isEmpty();
+  }
+
+  boolean isSparse(Property property) {
+    return bits.containsKey(property);
+  }
+
+  /** Returns the presence words, which with the values array hold the sparse properties. */
+  List<FieldAccess> getWords() {
+    return words;
+  }
+
+  /** Returns the array holding the values of the sparse properties that are set. */
+  FieldAccess getValues() {
+    return VALUES;
+  }
+
+  /** Adds the presence words and the values array. */
+  void addFieldDeclarations(SourceBuilder code) {
+    if (isEmpty()) {
+      return;
+    }
+    for (FieldAccess word : words) {
+      code.addLine("  private final long %s;", word);
+    }
+    code.addLine("  private final %s[] %s;", Object.class, VALUES);
+  }
+
+  /**
+   * Adds assignments to the presence words and values array from {@code values}, nullable
+   * expressions of each property's value field type.
+   */
+  void addFieldAssignments(
+      SourceBuilder code, Function<Property, Excerpt> values) {
+    if (isEmpty()) {
+      return;
+    }
+    List<Variable> presence = new ArrayList<>();
+    for (int i = 0; i < words.size(); i++) {
+      presence.add(new Variable("presence" + i));
+    }
+    for (Variable word : presence) {
+      code.addLine("    long %s = 0;", word);
+    }
+    bits.forEach((property, bit) -> {
+      code.addLine("    if (%s != null) {", values.apply(property))
+          .addLine("      %s |= %s;", presence.get(bit / Long.SIZE), mask(bit))
+          .addLine("    }");
+    });
+    Variable array = new Variable("values");
+    Variable index = new Variable("index");
+    code.addLine("    %s[] %s = new %s[%s];",
+            Object.class,
+            array,
+            Object.class,
+            Excerpts.join(" + ", presence.stream()
+                .map(word -> Excerpts.add("%s.bitCount(%s)", Long.class, word))
+                .collect(Collectors.toList())))
+        .addLine("    int %s = 0;", index);
+    bits.forEach((property, bit) -> {
+      code.addLine("    if (%s != null) {", values.apply(property))
+          .addLine("      %s[%s++] = %s;", array, index, values.apply(property))
+          .addLine("    }");
+    });
+    for (int i = 0; i < words.size(); i++) {
+      code.addLine("    %s = %s;", words.get(i).on("this"), presence.get(i));
+    }
+    code.addLine("    %s = %s;", VALUES.on("this"), array);
+  }
+
+  /** Adds the private method used to read sparse properties. */
+  void addReadMethod(SourceBuilder code) {
+    if (isEmpty()) {
+      return;
+    }
+    code.addLine("")
+        .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+        .addLine("  private <V> V %s(long presence, long bit, int offset) {", READ_METHOD)
+        .addLine("    if ((presence & bit) == 0) {")
+        .addLine("      return null;")
+        .addLine("    }")
+        .addLine("    return (V) %s[offset + %s.bitCount(presence & (bit - 1))];",
+            VALUES, Long.class)
+        .addLine("  }");
+  }
+
+  /**
+   * Returns an expression reading {@code property}'s value field within the value type, or null if
+   * the property is unset.
+   */
+  Excerpt read(Property property) {
+    int bit = bits.get(property);
+    return Excerpts.add("this.<%s>%s(%s, %s, %s)",
+        (Excerpt) generators.get(property)::addValueFieldType,
+        READ_METHOD,
+        words.get(bit / Long.SIZE),
+        mask(bit),
+        offset(bit));
+  }
+
+  /** Returns an expression that is true if {@code property} is set. */
+  Excerpt isPresent(Property property) {
+    int bit = bits.get(property);
+    return Excerpts.add("(%s & %s) != 0", words.get(bit / Long.SIZE), mask(bit));
+  }
+
+  /**
+   * Returns an expression reading {@code property} as an Object within the value type, which is
+   * only valid if {@link #isPresent} is true.
+   */
+  Excerpt readObject(Property property) {
+    int bit = bits.get(property);
+    FieldAccess word = words.get(bit / Long.SIZE);
+    Excerpt count = Excerpts.add(
+        "%s.bitCount(%s & %s)", Long.class, word, hex((1L << (bit % Long.SIZE)) - 1));
+    if (bit < Long.SIZE) {
+      return Excerpts.add("%s[%s]", VALUES, (bit == 0) ? "0" : count);
+    } else if (bit % Long.SIZE == 0) {
+      return Excerpts.add("%s[%s]", VALUES, offset(bit));
+    }
+    return Excerpts.add("%s[%s + %s]", VALUES, offset(bit), count);
+  }
+
+  /** Returns a human-readable description of the storage, for diagnostics. */
+  String describe() {
+    return bits.size() + " optional propert" + (bits.size() == 1 ? "y" : "ies")
+        + " stored sparsely, with " + words.size()
+        + " presence word" + (words.size() == 1 ? "" : "s");
+  }
+
+  private static String mask(int bit) {
+    return hex(1L << (bit % Long.SIZE));
+  }
+
+  /** Returns an expression counting the set properties in the words before {@code bit}'s. */
+  private Excerpt offset(int bit) {
+    List<FieldAccess> earlier = words.subList(0, bit / Long.SIZE);
+    if (earlier.isEmpty()) {
+      return Excerpts.add("0");
+    }
+    return Excerpts.join(" + ", earlier.stream()
+        .map(word -> Excerpts.add("%s.bitCount(%s)", Long.class, word))
+        .collect(Collectors.toList()));
+  }
+
+  private static String hex(long value) {
+    return "0x" + Long.toHexString(value).toUpperCase() + "L";
+  }
+}
@@ -0,0 +1,122 @@
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.EXPLICIT_TYPES;
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
+
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.ValueType;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * A static {@code collector} method on the builder, folding a stream into a single value.
+ *
+ * <p>Each subtask of a parallel stream accumulates into a builder of its own, and the builders are
+ * then combined with {@code mergeFrom(Builder)}, which appends collection properties in encounter
+ * order and lets later subtasks' scalar properties win, just as a sequential fold would.
+ */
+class StreamCollector extends ValueType implements Excerpt {
+
+  static final String METHOD_NAME = "collector";
+
+  /**
+   * Returns the collector method for {@code datatype}, or empty if its builder cannot be created
+   * without the user's help, or is generic.
+   */
+  static Optional<Excerpt> collectorMethod(Datatype datatype) {
+    if (!datatype.getBuilderFactory().isPresent() || datatype.getType().isParameterized()) {
+      return Optional.empty();
+    }
+    return Optional.of(new StreamCollector(datatype));
+  }
+
+  private final Datatype datatype;
+
+  private StreamCollector(Datatype datatype) {
+    this.datatype = datatype;
+  }
+
+  @Override
+  public void addTo(SourceBuilder code) {
+    String element = elementTypeVariable();
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * Returns a {@link %s} folding a stream into a %s, calling",
+            Collector.class, datatype.getType().javadocLink())
+        .addLine(" * {@code accumulator} to apply each element to a builder.")
+        .addLine(" *")
+        .addLine(" * <p>A parallel stream accumulates into one builder per subtask, so")
+        .addLine(" * {@code accumulator} need not be thread-safe; the builders are then combined")
+        .addLine(" * with %s.",
+            datatype.getBuilder().javadocMethodLink("mergeFrom", datatype.getBuilder()))
+        .addLine(" */")
+        .addLine("public static <%1$s> %2$s<%1$s, %3$s, %4$s> %5$s(",
+            element, Collector.class, datatype.getBuilder(), datatype.getType(), METHOD_NAME)
+        .addLine("    %s<? super %s, ? super %s> accumulator) {",
+            BiConsumer.class, datatype.getBuilder(), element)
+        .addLine("  return %s.of(", Collector.class);
+    Excerpt newBuilder =
+        datatype.getBuilderFactory().get().newBuilder(datatype.getBuilder(), EXPLICIT_TYPES);
+    if (code.feature(LAMBDAS).isEnabled()) {
+      code.addLine("      () -> %s,", newBuilder)
+          .addLine("      accumulator::accept,")
+          .addLine("      (left, right) -> left.mergeFrom(right),")
+          .addLine("      %s::build);", datatype.getBuilder());
+    } else {
+      addAnonymousFunctions(code, newBuilder, element);
+    }
+    code.addLine("}");
+  }
+
+  private void addAnonymousFunctions(SourceBuilder code, Excerpt newBuilder, String element) {
+    Excerpt builder = datatype.getBuilder();
+    code.addLine("      new %s<%s>() {", Supplier.class, builder)
+        .addLine("        @Override public %s get() {", builder)
+        .addLine("          return %s;", newBuilder)
+        .addLine("        }")
+        .addLine("      },")
+        .addLine("      new %s<%s, %s>() {", BiConsumer.class, builder, element)
+        .addLine("        @Override public void accept(%s builder, %s element) {", builder, element)
+        .addLine("          accumulator.accept(builder, element);")
+        .addLine("        }")
+        .addLine("      },")
+        .addLine("      new %s<%s>() {", BinaryOperator.class, builder)
+        .addLine("        @Override public %1$s apply(%1$s left, %1$s right) {", builder)
+        .addLine("          return left.mergeFrom(right);")
+        .addLine("        }")
+        .addLine("      },")
+        .addLine("      new %s<%s, %s>() {", Function.class, builder, datatype.getType())
+        .addLine("        @Override public %s apply(%s builder) {", datatype.getType(), builder)
+        .addLine("          return builder.build();")
+        .addLine("        }")
+        .addLine("      });");
+  }
+
+  /**
+   * Returns the name of the stream element type variable, avoiding the simple names of the
+   * datatype and its builder, which it would otherwise shadow.
+   */
+  private String elementTypeVariable() {
+    Set<String> typeNames = new HashSet<>();
+    typeNames.addAll(datatype.getType().getQualifiedName().getSimpleNames());
+    typeNames.addAll(datatype.getBuilder().getQualifiedName().getSimpleNames());
+    String name = "T";
+    for (int i = 2; typeNames.contains(name); i++) {
+      name = "T" + i;
+    }
+    return name;
+  }
+
+  @Override
+  protected void addFields(FieldReceiver fields) {
+    fields.add("datatype", datatype);
+  }
+}
@@ -3,30 +3,103 @@ package org.inferred.freebuilder.processor;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.getLast;
 
+import static org.inferred.freebuilder.processor.MethodSplitter.Method.TO_STRING;
+import static org.inferred.freebuilder.processor.model.ModelUtils.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.model.ModelUtils.maybeDeclared;
 import static org.inferred.freebuilder.processor.property.DefaultProperty.UNSET_PROPERTIES;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Multiset;
+
 import org.inferred.freebuilder.processor.property.Property;
 import org.inferred.freebuilder.processor.property.PropertyCodeGenerator;
 import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.Initially;
+import org.inferred.freebuilder.processor.property.PropertyCodeGenerator.StreamedForm;
 import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.LazyName;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.ValueType;
 import org.inferred.freebuilder.processor.source.Variable;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.type.TypeKind;
+
 class ToStringGenerator {
 
+  private static final String BOUNDED_TO_STRING_PARAMETER = "maxElementsPerCollection";
+
+  /**
+   * Characters allowed for each element of a collection, and each other property value, when
+   * pre-sizing the StringBuilder of a bounded toString method.
+   */
+  private static final int ESTIMATED_VALUE_LENGTH = 8;
+
+  /** Largest initial capacity a bounded toString method will give its StringBuilder. */
+  private static final int MAX_INITIAL_CAPACITY = 1 << 16;
+
+  /** Returns true if {@code method} is an abstract {@code String toString(int)} method. */
+  static boolean isBoundedToStringMethod(ExecutableElement method) {
+    return method.getSimpleName().contentEquals("toString")
+        && method.getModifiers().contains(Modifier.ABSTRACT)
+        && method.getParameters().size() == 1
+        && method.getParameters().get(0).asType().getKind() == TypeKind.INT
+        && method.getReturnType().toString().equals(String.class.getName());
+  }
+
+  /**
+   * Returns a {@code toString(int maxElementsPerCollection)} method, rendering the value as the
+   * regular toString method does, but including at most {@code maxElementsPerCollection} elements
+   * of each collection.
+   *
+   * @param isOverride whether the user's type declares the method, so it needs an
+   *     {@code @Override} annotation
+   */
+  static Excerpt boundedToString(
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      boolean forPartial,
+      boolean isOverride) {
+    return code -> addBoundedToString(
+        code, datatype, generatorsByProperty, forPartial, isOverride);
+  }
+
   /**
    * Generates a toString method using concatenation or a StringBuilder.
+   *
+   * <p>If the datatype has a {@link Datatype#getToStringLimit() toString limit}, the method
+   * delegates to the bounded toString method instead.
    */
   public static void addToString(
       SourceBuilder code,
       Datatype datatype,
       Map<Property, PropertyCodeGenerator> generatorsByProperty,
       boolean forPartial) {
+    if (datatype.getToStringLimit() > 0) {
+      code.addLine("")
+          .addLine("@%s", Override.class)
+          .addLine("public %s toString() {", String.class)
+          .addLine("  return toString(%s);", datatype.getToStringLimit())
+          .addLine("}");
+      return;
+    }
+    BitfieldLayout layout = forPartial
+        ? BitfieldLayout.NONE
+        : BitfieldLayout.of(datatype, generatorsByProperty);
+    SparseStorage sparse = forPartial
+        ? SparseStorage.NONE
+        : SparseStorage.of(datatype, generatorsByProperty);
+
     // This code is to ensure entry order is preserved.
     // Specifically this code is boiler plate from Collectors.toMap.
     // Except with a LinkedHashMap supplier.
@@ -51,17 +124,95 @@ class ToStringGenerator {
     boolean allOptional = generatorsByProperty.values().stream().allMatch(isOptional)
         && !generatorsByProperty.isEmpty();
 
+    List<List<Property>> chunks = MethodSplitter.chunks(
+        TO_STRING, ImmutableList.copyOf(generatorsByProperty.keySet()), generatorsByProperty);
+
     code.addLine("")
         .addLine("@%s", Override.class)
         .addLine("public %s toString() {", String.class);
-    if (allOptional) {
-      bodyWithBuilderAndSeparator(code, datatype, generatorsByProperty, typename);
+    if (chunks.size() > 1) {
+      bodyWithChunks(code, chunks.size(), typename);
+    } else if (allOptional) {
+      bodyWithBuilderAndSeparator(code, datatype, generatorsByProperty, sparse, typename);
     } else if (anyOptional) {
-      bodyWithBuilder(code, datatype, generatorsByProperty, typename, isOptional);
+      bodyWithBuilder(
+          code, datatype, generatorsByProperty, layout, sparse, typename, isOptional);
     } else {
-      bodyWithConcatenation(code, generatorsByProperty, typename);
+      bodyWithConcatenation(code, generatorsByProperty, layout, typename);
     }
     code.addLine("}");
+    if (chunks.size() > 1) {
+      for (int i = 0; i < chunks.size(); i++) {
+        addToStringChunk(
+            code, i, datatype, chunks.get(i), generatorsByProperty, layout, sparse, isOptional);
+      }
+    }
+  }
+
+  /**
+   * Generates the body of a toString method of a very wide datatype, which delegates to a
+   * {@code toStringChunkN} method for each chunk of properties, so that no method is too large to
+   * be JIT-compiled. The separator is tracked at runtime, as in
+   * {@link #bodyWithBuilderAndSeparator}.
+   */
+  private static void bodyWithChunks(SourceBuilder code, int numChunks, String typename) {
+    Variable result = new Variable("result");
+    Variable separator = new Variable("separator");
+
+    code.addLine("  %1$s %2$s = new %1$s(\"%3$s{\");", StringBuilder.class, result, typename)
+        .addLine("  %s %s = \"\";", String.class, separator);
+    for (int i = 0; i < numChunks - 1; i++) {
+      code.addLine("  %s = toStringChunk%s(%s, %s);", separator, i, result, separator);
+    }
+    code.addLine("  toStringChunk%s(%s, %s);", numChunks - 1, result, separator)
+        .addLine("  return %s.append(\"}\").toString();", result);
+  }
+
+  /**
+   * Generates a method appending each property of a chunk to {@code result}, returning the
+   * separator to use before the next property.
+   */
+  private static void addToStringChunk(
+      SourceBuilder code,
+      int index,
+      Datatype datatype,
+      List<Property> chunk,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      BitfieldLayout layout,
+      SparseStorage sparse,
+      Predicate<PropertyCodeGenerator> isOptional) {
+    code.addLine("")
+        .addLine("private %1$s toStringChunk%2$s(%3$s result, %1$s separator) {",
+            String.class, index, StringBuilder.class);
+    for (Property property : chunk) {
+      PropertyCodeGenerator generator = generatorsByProperty.get(property);
+      String indent = "  ";
+      if (isOptional.test(generator)) {
+        code.add("  if (");
+        if (sparse.isSparse(property)) {
+          code.add(sparse.isPresent(property));
+        } else if (generator.initialState() == Initially.OPTIONAL) {
+          generator.addToStringCondition(code);
+        } else {
+          code.add("!%s.contains(%s.%s)",
+              UNSET_PROPERTIES, datatype.getPropertyEnum(), property.getAllCapsName());
+        }
+        code.add(") {%n");
+        indent = "    ";
+      }
+      code.addLine("%sresult.append(separator).append(\"%s=\").append(%s);",
+              indent,
+              property.getName(),
+              sparse.isSparse(property)
+                  ? sparse.readObject(property)
+                  : toStringValue(property, generator, layout))
+          .addLine("%sseparator = \", \";", indent);
+      if (isOptional.test(generator)) {
+        code.addLine("  }");
+      }
+    }
+    code.addLine("  return separator;")
+        .addLine("}");
   }
 
   /**
@@ -75,13 +226,14 @@ class ToStringGenerator {
   private static void bodyWithConcatenation(
       SourceBuilder code,
       Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      BitfieldLayout layout,
       String typename) {
     code.add("  return \"%s{", typename);
     String prefix = "";
     for (Property property : generatorsByProperty.keySet()) {
       PropertyCodeGenerator generator = generatorsByProperty.get(property);
       code.add("%s%s=\" + %s + \"",
-          prefix, property.getName(), (Excerpt) generator::addToStringValue);
+          prefix, property.getName(), toStringValue(property, generator, layout));
       prefix = ", ";
     }
     code.add("}\";%n");
@@ -107,6 +259,8 @@ class ToStringGenerator {
       SourceBuilder code,
       Datatype datatype,
       Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      BitfieldLayout layout,
+      SparseStorage sparse,
       String typename,
       Predicate<PropertyCodeGenerator> isOptional) {
     Variable result = new Variable("result");
@@ -132,7 +286,9 @@ class ToStringGenerator {
           code.add(";%n  ");
         }
         code.add("if (");
-        if (generator.initialState() == Initially.OPTIONAL) {
+        if (sparse.isSparse(property)) {
+          code.add(sparse.isPresent(property));
+        } else if (generator.initialState() == Initially.OPTIONAL) {
           generator.addToStringCondition(code);
         } else {
           code.add("!%s.contains(%s.%s)",
@@ -142,7 +298,9 @@ class ToStringGenerator {
         if (prependCommas) {
           code.add(", ");
         }
-        code.add("%s=\").append(%s)", property.getName(), property.getField());
+        code.add("%s=\").append(%s)", property.getName(), sparse.isSparse(property)
+            ? sparse.readObject(property)
+            : property.getField());
         if (!prependCommas) {
           code.add(".append(\", \")");
         }
@@ -165,7 +323,8 @@ class ToStringGenerator {
         if (prependCommas) {
           code.add(", ");
         }
-        code.add("%s=\").append(%s)", property.getName(), (Excerpt) generator::addToStringValue);
+        code.add("%s=\").append(%s)",
+            property.getName(), toStringValue(property, generator, layout));
         midStringLiteral = false;
         midAppends = true;
         prependCommas = true;
@@ -180,6 +339,15 @@ class ToStringGenerator {
     code.add("}\").toString();%n", result);
   }
 
+  private static Excerpt toStringValue(
+      Property property, PropertyCodeGenerator generator, BitfieldLayout layout) {
+    if (layout.isPacked(property)) {
+      // Decoding a boolean uses an operator of lower precedence than string concatenation
+      return Excerpts.add("(%s)", layout.read(property));
+    }
+    return generator::addToStringValue;
+  }
+
   /**
    * Generates the body of a toString method that uses a StringBuilder and a separator variable.
    *
@@ -197,6 +365,7 @@ class ToStringGenerator {
       SourceBuilder code,
       Datatype datatype,
       Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      SparseStorage sparse,
       String typename) {
     Variable result = new Variable("result");
     Variable separator = new Variable("separator");
@@ -216,7 +385,9 @@ class ToStringGenerator {
           throw new RuntimeException("Internal error: unexpected default field");
 
         case OPTIONAL:
-          code.addLine("  if (%s) {", (Excerpt) generator::addToStringCondition);
+          code.addLine("  if (%s) {", sparse.isSparse(property)
+              ? sparse.isPresent(property)
+              : (Excerpt) generator::addToStringCondition);
           break;
 
         case REQUIRED:
@@ -228,8 +399,9 @@ class ToStringGenerator {
       if (property != first) {
         code.add(".append(%s)", separator);
       }
-      code.add(".append(\"%s=\").append(%s)",
-          property.getName(), (Excerpt) generator::addToStringValue);
+      code.add(".append(\"%s=\").append(%s)", property.getName(), sparse.isSparse(property)
+          ? sparse.readObject(property)
+          : (Excerpt) generator::addToStringValue);
       if (property != last) {
         code.add(";%n    %s = \", \"", separator);
       }
@@ -238,5 +410,231 @@ class ToStringGenerator {
     code.addLine("  return %s.append(\"}\").toString();", result);
   }
 
+  private static void addBoundedToString(
+      SourceBuilder code,
+      Datatype datatype,
+      Map<Property, PropertyCodeGenerator> generatorsByProperty,
+      boolean forPartial,
+      boolean isOverride) {
+    SparseStorage sparse = forPartial
+        ? SparseStorage.NONE
+        : SparseStorage.of(datatype, generatorsByProperty);
+    BitfieldLayout layout = forPartial
+        ? BitfieldLayout.NONE
+        : BitfieldLayout.of(datatype, generatorsByProperty);
+    String typename = (forPartial ? "partial " : "") + datatype.getType().getSimpleName();
+    Variable result = new Variable("result");
+    Variable separator = new Variable("separator");
+    String limit = BOUNDED_TO_STRING_PARAMETER;
+
+    int literalLength = typename.length() + 2;
+    int estimatedValues = 0;
+    List<Excerpt> collectionSizes = new ArrayList<>();
+    for (Map.Entry<Property, PropertyCodeGenerator> entry : generatorsByProperty.entrySet()) {
+      if (!entry.getKey().isInToString()) {
+        continue;
+      }
+      literalLength += entry.getKey().getName().length() + 3;
+      if (entry.getValue().getStreamedForm() == StreamedForm.NONE) {
+        estimatedValues++;
+      } else {
+        collectionSizes.add(Excerpts.add(
+            "%s.min(%s.size(), %s)", Math.class, entry.getKey().getField(), limit));
+      }
+    }
+
+    code.addLine("");
+    if (isOverride) {
+      code.addLine("@%s", Override.class);
+    }
+    code.addLine("public %s toString(int %s) {", String.class, limit)
+        .addLine("  if (%s < 0) {", limit)
+        .addLine("    throw new %s(\"Negative %s: \" + %s);",
+            IllegalArgumentException.class, limit, limit)
+        .addLine("  }");
+    if (collectionSizes.isEmpty()) {
+      code.addLine("  %1$s %2$s = new %1$s(%3$s);",
+          StringBuilder.class,
+          result,
+          Math.min(literalLength + ESTIMATED_VALUE_LENGTH * estimatedValues, MAX_INITIAL_CAPACITY));
+    } else {
+      code.add("  %1$s %2$s = new %1$s((int) %3$s.min(%4$s + %5$sL * (%6$s",
+          StringBuilder.class,
+          result,
+          Math.class,
+          literalLength,
+          ESTIMATED_VALUE_LENGTH,
+          estimatedValues);
+      for (Excerpt collectionSize : collectionSizes) {
+        code.add("%n      + %s", collectionSize);
+      }
+      code.add("), %s));%n", MAX_INITIAL_CAPACITY);
+    }
+    code.addLine("  %s.append(\"%s{\");", result, typename);
+
+    // Once an unconditional property has been written, every later property is preceded by a
+    // comma. Before that, a separator variable tracks whether an optional property was written.
+    boolean definitelyWritten = false;
+    boolean separatorDeclared = false;
+    Property last = generatorsByProperty.keySet()
+        .stream()
+        .filter(Property::isInToString)
+        .reduce((first, second) -> second)
+        .orElse(null);
+    for (Map.Entry<Property, PropertyCodeGenerator> entry : generatorsByProperty.entrySet()) {
+      Property property = entry.getKey();
+      PropertyCodeGenerator generator = entry.getValue();
+      if (!property.isInToString()) {
+        continue;
+      }
+      boolean isConditional = generator.initialState() == Initially.OPTIONAL
+          || (generator.initialState() == Initially.REQUIRED && forPartial);
+      boolean useSeparator = !definitelyWritten && (separatorDeclared || isConditional);
+      if (useSeparator && !separatorDeclared) {
+        code.addLine("  %s %s = \"\";", String.class, separator);
+        separatorDeclared = true;
+      }
+      String indent = "  ";
+      if (generator.initialState() == Initially.OPTIONAL) {
+        code.addLine("  if (%s) {", sparse.isSparse(property)
+            ? sparse.isPresent(property)
+            : (Excerpt) generator::addToStringCondition);
+        indent = "    ";
+      } else if (isConditional) {
+        code.addLine("  if (!%s.contains(%s.%s)) {",
+            UNSET_PROPERTIES, datatype.getPropertyEnum(), property.getAllCapsName());
+        indent = "    ";
+      }
+      if (useSeparator) {
+        code.addLine("%s%s.append(%s).append(\"%s=\");",
+            indent, result, separator, property.getName());
+      } else {
+        code.addLine("%s%s.append(\"%s%s=\");",
+            indent, result, definitelyWritten ? ", " : "", property.getName());
+      }
+      if (generator.getStreamedForm() == StreamedForm.NONE) {
+        Excerpt value = sparse.isSparse(property)
+            ? sparse.readObject(property)
+            : toStringValue(property, generator, layout);
+        code.addLine("%s%s.append(%s);", indent, result, value);
+      } else {
+        code.addLine("%s%s(%s, %s, %s);",
+            indent,
+            AppendBoundedMethod.REFERENCE,
+            result,
+            boundedView(property, generator),
+            limit);
+      }
+      if (useSeparator && isConditional && property != last) {
+        code.addLine("%s%s = \", \";", indent, separator);
+      }
+      if (isConditional) {
+        code.addLine("  }");
+      } else {
+        definitelyWritten = true;
+      }
+    }
+    code.addLine("  return %s.append(\"}\").toString();", result)
+        .addLine("}");
+  }
+
+  /**
+   * Returns the collection or map to render for a collection property, viewing multisets as
+   * their entries and multimaps as a map of collections, so they print as their toString would.
+   */
+  private static Excerpt boundedView(Property property, PropertyCodeGenerator generator) {
+    if (generator.getStreamedForm() == StreamedForm.OBJECT_OF_ARRAYS) {
+      return Excerpts.add("%s.asMap()", property.getField());
+    }
+    boolean isMultiset = maybeDeclared(property.getType())
+        .filter(type -> erasesToAnyOf(type, Multiset.class, ImmutableMultiset.class))
+        .isPresent();
+    if (isMultiset) {
+      return Excerpts.add("%s.entrySet()", property.getField());
+    }
+    return property.getField();
+  }
+
+  /**
+   * A static helper appending a collection or map to a StringBuilder, as its toString method
+   * would, but replacing all but the first {@code limit} elements with "... (N more)". Nested
+   * collections are bounded the same way.
+   */
+  private static class AppendBoundedMethod extends ValueType implements Excerpt {
+
+    static final LazyName REFERENCE = LazyName.of("appendBounded", new AppendBoundedMethod());
+
+    private AppendBoundedMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("private static void %s(%s result, Object value, int limit) {",
+              REFERENCE, StringBuilder.class)
+          .addLine("  if (value instanceof %s) {", Map.class)
+          .addLine("    %1$s<?, ?> map = (%1$s<?, ?>) value;", Map.class)
+          .addLine("    result.append('{');")
+          .addLine("    int count = 0;")
+          .addLine("    for (%s.Entry<?, ?> entry : map.entrySet()) {", Map.class)
+          .addLine("      if (count == limit) {")
+          .addLine("        break;")
+          .addLine("      }")
+          .addLine("      if (count++ > 0) {")
+          .addLine("        result.append(\", \");")
+          .addLine("      }")
+          .addLine("      %s(result.append(entry.getKey()).append('='), entry.getValue(), limit);",
+              REFERENCE)
+          .addLine("    }")
+          .addLine("    %s(result, count, map.size());", AppendRemainingMethod.REFERENCE)
+          .addLine("    result.append('}');")
+          .addLine("  } else if (value instanceof %s) {", Collection.class)
+          .addLine("    %1$s<?> collection = (%1$s<?>) value;", Collection.class)
+          .addLine("    result.append('[');")
+          .addLine("    int count = 0;")
+          .addLine("    for (Object element : collection) {")
+          .addLine("      if (count == limit) {")
+          .addLine("        break;")
+          .addLine("      }")
+          .addLine("      if (count++ > 0) {")
+          .addLine("        result.append(\", \");")
+          .addLine("      }")
+          .addLine("      %s(result, element, limit);", REFERENCE)
+          .addLine("    }")
+          .addLine("    %s(result, count, collection.size());", AppendRemainingMethod.REFERENCE)
+          .addLine("    result.append(']');")
+          .addLine("  } else {")
+          .addLine("    result.append(value);")
+          .addLine("  }")
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
+  private static class AppendRemainingMethod extends ValueType implements Excerpt {
+
+    static final LazyName REFERENCE = LazyName.of("appendRemaining", new AppendRemainingMethod());
+
+    private AppendRemainingMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("private static void %s(%s result, int appended, int size) {",
+              REFERENCE, StringBuilder.class)
+          .addLine("  if (appended < size) {")
+          .addLine("    if (appended > 0) {")
+          .addLine("      result.append(\", \");")
+          .addLine("    }")
+          .addLine("    result.append(\"... (\").append(size - appended).append(\" more)\");")
+          .addLine("  }")
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
   private ToStringGenerator() { }
 }
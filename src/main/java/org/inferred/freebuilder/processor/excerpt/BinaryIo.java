@@ -0,0 +1,154 @@
+package org.inferred.freebuilder.processor.excerpt;
+
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.LazyName;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.ValueType;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Excerpts defining the varint and string encodings used by generated binary codecs.
+ *
+ * <p>Sizes are written as unsigned varints, and int and long values as zig-zag varints, so small
+ * magnitudes of either sign take a single byte. Strings are written as a size followed by their
+ * UTF-8 encoding, avoiding the 64KiB limit of {@link DataOutput#writeUTF(String)}. Values can
+ * also be read from and written to a {@link ByteBuffer}, starting at its position.
+ */
+public class BinaryIo extends ValueType implements Excerpt {
+
+  public static final LazyName TYPE = LazyName.of("BinaryIo", new BinaryIo());
+
+  private BinaryIo() {}
+
+  @Override
+  public void addTo(SourceBuilder code) {
+    code.addLine("")
+        .addLine("/** Varint and string encodings shared by the binary codec methods. */")
+        .addLine("private static final class %s {", TYPE)
+        .addLine("")
+        .addLine("  static void writeSize(%s out, int size) throws %s {",
+            DataOutput.class, IOException.class)
+        .addLine("    while ((size & ~0x7F) != 0) {")
+        .addLine("      out.writeByte((size & 0x7F) | 0x80);")
+        .addLine("      size >>>= 7;")
+        .addLine("    }")
+        .addLine("    out.writeByte(size);")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  static void writeInt(%s out, int value) throws %s {",
+            DataOutput.class, IOException.class)
+        .addLine("    writeSize(out, (value << 1) ^ (value >> 31));")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  static void writeLong(%s out, long value) throws %s {",
+            DataOutput.class, IOException.class)
+        .addLine("    long bits = (value << 1) ^ (value >> 63);")
+        .addLine("    while ((bits & ~0x7FL) != 0) {")
+        .addLine("      out.writeByte((int) (bits & 0x7F) | 0x80);")
+        .addLine("      bits >>>= 7;")
+        .addLine("    }")
+        .addLine("    out.writeByte((int) bits);")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  static void writeString(%s out, String value) throws %s {",
+            DataOutput.class, IOException.class)
+        .addLine("    byte[] bytes = value.getBytes(%s.UTF_8);", StandardCharsets.class)
+        .addLine("    writeSize(out, bytes.length);")
+        .addLine("    out.write(bytes);")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  static int readSize(%s in) throws %s {", DataInput.class, IOException.class)
+        .addLine("    int size = 0;")
+        .addLine("    for (int shift = 0; shift < 32; shift += 7) {")
+        .addLine("      byte b = in.readByte();")
+        .addLine("      size |= (b & 0x7F) << shift;")
+        .addLine("      if (b >= 0) {")
+        .addLine("        if (size < 0) {")
+        .addLine("          throw new %s(\"Negative size: \" + size);", IOException.class)
+        .addLine("        }")
+        .addLine("        return size;")
+        .addLine("      }")
+        .addLine("    }")
+        .addLine("    throw new %s(\"Malformed varint\");", IOException.class)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  static int readInt(%s in) throws %s {", DataInput.class, IOException.class)
+        .addLine("    int bits = 0;")
+        .addLine("    for (int shift = 0; shift < 32; shift += 7) {")
+        .addLine("      byte b = in.readByte();")
+        .addLine("      bits |= (b & 0x7F) << shift;")
+        .addLine("      if (b >= 0) {")
+        .addLine("        return (bits >>> 1) ^ -(bits & 1);")
+        .addLine("      }")
+        .addLine("    }")
+        .addLine("    throw new %s(\"Malformed varint\");", IOException.class)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  static long readLong(%s in) throws %s {", DataInput.class, IOException.class)
+        .addLine("    long bits = 0;")
+        .addLine("    for (int shift = 0; shift < 64; shift += 7) {")
+        .addLine("      byte b = in.readByte();")
+        .addLine("      bits |= (long) (b & 0x7F) << shift;")
+        .addLine("      if (b >= 0) {")
+        .addLine("        return (bits >>> 1) ^ -(bits & 1);")
+        .addLine("      }")
+        .addLine("    }")
+        .addLine("    throw new %s(\"Malformed varint\");", IOException.class)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  static String readString(%s in) throws %s {",
+            DataInput.class, IOException.class)
+        .addLine("    byte[] bytes = new byte[readSize(in)];")
+        .addLine("    in.readFully(bytes);")
+        .addLine("    return new String(bytes, %s.UTF_8);", StandardCharsets.class)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  static %s input(%s buffer) {", DataInput.class, ByteBuffer.class)
+        .addLine("    return new %s(new %s() {", DataInputStream.class, InputStream.class)
+        .addLine("      @%s", Override.class)
+        .addLine("      public int read() {")
+        .addLine("        return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;")
+        .addLine("      }")
+        .addLine("")
+        .addLine("      @%s", Override.class)
+        .addLine("      public int read(byte[] bytes, int offset, int length) {")
+        .addLine("        if (length == 0) {")
+        .addLine("          return 0;")
+        .addLine("        } else if (!buffer.hasRemaining()) {")
+        .addLine("          return -1;")
+        .addLine("        }")
+        .addLine("        length = Math.min(length, buffer.remaining());")
+        .addLine("        buffer.get(bytes, offset, length);")
+        .addLine("        return length;")
+        .addLine("      }")
+        .addLine("    });")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  static %s output(%s buffer) {", DataOutput.class, ByteBuffer.class)
+        .addLine("    return new %s(new %s() {", DataOutputStream.class, OutputStream.class)
+        .addLine("      @%s", Override.class)
+        .addLine("      public void write(int b) {")
+        .addLine("        buffer.put((byte) b);")
+        .addLine("      }")
+        .addLine("")
+        .addLine("      @%s", Override.class)
+        .addLine("      public void write(byte[] bytes, int offset, int length) {")
+        .addLine("        buffer.put(bytes, offset, length);")
+        .addLine("      }")
+        .addLine("    });")
+        .addLine("  }")
+        .addLine("}");
+  }
+
+  @Override
+  protected void addFields(FieldReceiver fields) {}
+}
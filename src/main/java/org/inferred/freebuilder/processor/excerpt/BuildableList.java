@@ -18,6 +18,7 @@ package org.inferred.freebuilder.processor.excerpt;
 import static org.inferred.freebuilder.processor.BuildableType.PartialToBuilderMethod.TO_BUILDER_AND_MERGE;
 import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.EXPLICIT_TYPES;
 import static org.inferred.freebuilder.processor.source.feature.GuavaLibrary.GUAVA;
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
 
 import com.google.common.collect.ImmutableList;
 
@@ -175,9 +176,15 @@ public class BuildableList extends ValueType implements Excerpt {
     code.addLine("    if (values instanceof %s) {", Collection.class)
         .addLine("      int newSize = elements.size() + ((%s) values).size();", Collection.class)
         .addLine("      ((%s) elements).ensureCapacity(newSize);", ArrayList.class)
-        .addLine("    }")
-        .addLine("    values.forEach(this::addValue);")
-        .addLine("  }")
+        .addLine("    }");
+    if (code.feature(LAMBDAS).isEnabled()) {
+      code.addLine("    values.forEach(this::addValue);");
+    } else {
+      code.addLine("    for (%s value : values) {", element.type())
+          .addLine("      addValue(value);")
+          .addLine("    }");
+    }
+    code.addLine("  }")
         .addLine("}");
   }
 
@@ -4,6 +4,7 @@ import org.inferred.freebuilder.processor.source.Excerpt;
 import org.inferred.freebuilder.processor.source.LazyName;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.feature.RuntimeLibrary;
 
 import java.util.AbstractList;
 import java.util.List;
@@ -16,7 +17,10 @@ import java.util.function.Consumer;
  */
 public class CheckedList extends ValueType implements Excerpt {
 
-  public static final LazyName TYPE = LazyName.of("CheckedList", new CheckedList());
+  private static final LazyName INLINED = LazyName.of("CheckedList", new CheckedList());
+
+  /** The checked list type, shared from the runtime library if it is available. */
+  public static final Excerpt TYPE = RuntimeLibrary.sharedOr("CheckedList", INLINED);
 
   private CheckedList() {}
 
@@ -28,12 +32,12 @@ public class CheckedList extends ValueType implements Excerpt {
         .addLine(" * element validation and insertion into a random-access backing list.")
         .addLine(" */")
         .addLine("private static class %s<E> extends %s<E> implements %s {",
-            TYPE, AbstractList.class, RandomAccess.class)
+            INLINED, AbstractList.class, RandomAccess.class)
         .addLine("")
         .addLine("  private final %s<E> list;", List.class)
         .addLine("  private final %s<E> add;", Consumer.class)
         .addLine("")
-        .addLine("  %s(%s<E> list, %s<E> add) {", TYPE, List.class, Consumer.class)
+        .addLine("  %s(%s<E> list, %s<E> add) {", INLINED, List.class, Consumer.class)
         .addLine("    this.list = list;")
         .addLine("    this.add = add;")
         .addLine("  }")
@@ -1,5 +1,7 @@
 package org.inferred.freebuilder.processor.excerpt;
 
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
+
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ForwardingListMultimap;
 import com.google.common.collect.ListMultimap;
@@ -17,6 +19,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Excerpts defining a multimap implementation that delegates to a provided put method to perform
@@ -88,16 +91,43 @@ public class CheckedListMultimap extends ValueType implements Excerpt {
         .addLine("    return result;")
         .addLine("  }")
         .addLine("")
-        .addLine("  @Override public %s<V> get(%s K key) {", List.class, Jsr305.nullable())
-        .addLine("    return new %s<>(", CheckedList.TYPE)
-        .addLine("        multimap.get(key), value -> put.accept(key, value));")
-        .addLine("  }")
-        .addLine("")
-        .addLine("  @Override public %s<K, %s<V>> asMap() {", Map.class, Collection.class)
-        .addLine("    return %s.transformEntries(%s.asMap(multimap), (key, values) -> ",
-            Maps.class, Multimaps.class)
-        .addLine("        new %s<>(values, value -> put.accept(key, value)));", CheckedList.TYPE)
-        .addLine("  }")
+        .addLine("  @Override public %s<V> get(%s K key) {", List.class, Jsr305.nullable());
+    if (code.feature(LAMBDAS).isEnabled()) {
+      code.addLine("    return new %s<>(", CheckedList.TYPE)
+          .addLine("        multimap.get(key), value -> put.accept(key, value));")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %s<K, %s<V>> asMap() {", Map.class, Collection.class)
+          .addLine("    return %s.transformEntries(%s.asMap(multimap), (key, values) -> ",
+              Maps.class, Multimaps.class)
+          .addLine("        new %s<>(values, value -> put.accept(key, value)));",
+              CheckedList.TYPE);
+    } else {
+      code.addLine("    return new %s<>(multimap.get(key), new %s<V>() {",
+              CheckedList.TYPE, Consumer.class)
+          .addLine("      @Override public void accept(V value) {")
+          .addLine("        put.accept(key, value);")
+          .addLine("      }")
+          .addLine("    });")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %s<K, %s<V>> asMap() {", Map.class, Collection.class)
+          .addLine("    return %s.transformEntries(%s.asMap(multimap),",
+              Maps.class, Multimaps.class)
+          .addLine("        new %s<K, %s<V>, %s<V>>() {",
+              Maps.EntryTransformer.class, List.class, Collection.class)
+          .addLine("          @Override public %s<V> transformEntry(K key, %s<V> values) {",
+              Collection.class, List.class)
+          .addLine("            return new %s<>(values, new %s<V>() {",
+              CheckedList.TYPE, Consumer.class)
+          .addLine("              @Override public void accept(V value) {")
+          .addLine("                put.accept(key, value);")
+          .addLine("              }")
+          .addLine("            });")
+          .addLine("          }")
+          .addLine("        });");
+    }
+    code.addLine("  }")
         .addLine("}");
   }
 
@@ -4,6 +4,7 @@ import org.inferred.freebuilder.processor.source.Excerpt;
 import org.inferred.freebuilder.processor.source.LazyName;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.feature.RuntimeLibrary;
 
 import java.util.AbstractMap;
 import java.util.AbstractSet;
@@ -19,7 +20,10 @@ import java.util.function.BiConsumer;
  */
 public class CheckedMap extends ValueType implements Excerpt {
 
-  public static final LazyName TYPE = LazyName.of("CheckedMap", new CheckedMap());
+  private static final LazyName INLINED = LazyName.of("CheckedMap", new CheckedMap());
+
+  /** The checked map type, shared from the runtime library if it is available. */
+  public static final Excerpt TYPE = RuntimeLibrary.sharedOr("CheckedMap", INLINED);
 
   private static class CheckedEntry extends ValueType implements Excerpt {
 
@@ -166,12 +170,12 @@ public class CheckedMap extends ValueType implements Excerpt {
         .addLine(" * A map implementation that delegates to a provided put method")
         .addLine(" * to perform entry validation and insertion into a backing map.")
         .addLine(" */")
-        .addLine("private static class %s<K, V> extends %s<K, V> {", TYPE, AbstractMap.class)
+        .addLine("private static class %s<K, V> extends %s<K, V> {", INLINED, AbstractMap.class)
         .addLine("")
         .addLine("  private final %s<K, V> map;", Map.class)
         .addLine("  private final %s<K, V> put;", BiConsumer.class)
         .addLine("")
-        .addLine("  %s(%s<K, V> map, %s<K, V> put) {", TYPE, Map.class, BiConsumer.class)
+        .addLine("  %s(%s<K, V> map, %s<K, V> put) {", INLINED, Map.class, BiConsumer.class)
         .addLine("    this.map = map;")
         .addLine("    this.put = put;")
         .addLine("  }")
@@ -5,6 +5,7 @@ import org.inferred.freebuilder.processor.source.LazyName;
 import org.inferred.freebuilder.processor.source.PreconditionExcerpts;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.feature.RuntimeLibrary;
 
 import java.util.AbstractSet;
 import java.util.Comparator;
@@ -19,9 +20,12 @@ import java.util.function.Consumer;
  */
 public class CheckedNavigableSet extends ValueType implements Excerpt {
 
-  public static final LazyName TYPE =
+  private static final LazyName INLINED =
       LazyName.of("CheckedNavigableSet", new CheckedNavigableSet());
 
+  /** The checked navigable set type, shared from the runtime library if it is available. */
+  public static final Excerpt TYPE = RuntimeLibrary.sharedOr("CheckedNavigableSet", INLINED);
+
   private CheckedNavigableSet() {}
 
   @Override
@@ -32,7 +36,7 @@ public class CheckedNavigableSet extends ValueType implements Excerpt {
         .addLine(" * to perform element validation and insertion into a backing set.")
         .addLine(" */")
         .addLine("private static class %s<E> extends %s<E> implements %s<E> {",
-            TYPE, AbstractSet.class, NavigableSet.class)
+            INLINED, AbstractSet.class, NavigableSet.class)
         .addLine("")
         .addLine("  private final %s<E> set;", NavigableSet.class)
         .addLine("  private final %s<E> add;", Consumer.class)
@@ -42,7 +46,7 @@ public class CheckedNavigableSet extends ValueType implements Excerpt {
         .addLine("  private final boolean toInclusive;")
         .addLine("")
         .addLine("  %s(%s<E> set, %s<E> add) {",
-            TYPE, NavigableSet.class, Consumer.class)
+            INLINED, NavigableSet.class, Consumer.class)
         .addLine("    this.set = set;")
         .addLine("    this.add = add;")
         .addLine("    this.fromElement = null;")
@@ -51,7 +55,7 @@ public class CheckedNavigableSet extends ValueType implements Excerpt {
         .addLine("    this.toInclusive = false;")
         .addLine("  }")
         .addLine("")
-        .addLine("  %s(", TYPE)
+        .addLine("  %s(", INLINED)
         .addLine("      %s<E> set,", NavigableSet.class)
         .addLine("      %s<E> add,", Consumer.class)
         .addLine("      E fromElement,")
@@ -123,7 +127,7 @@ public class CheckedNavigableSet extends ValueType implements Excerpt {
         .addLine("")
         .addLine("  @Override public %s<E> descendingSet() {", NavigableSet.class)
         .addLine("    %s<E> descendingSet = set.descendingSet();", NavigableSet.class)
-        .addLine("    return new %s(", TYPE)
+        .addLine("    return new %s(", INLINED)
         .addLine("        descendingSet, add, toElement, toInclusive, fromElement, fromInclusive);")
         .addLine("  }")
         .addLine("")
@@ -140,7 +144,7 @@ public class CheckedNavigableSet extends ValueType implements Excerpt {
         .addLine("    %s.requireNonNull(toElement);", Objects.class)
         .addLine("    %s<E> subSet = set.subSet(", NavigableSet.class)
         .addLine("        fromElement, fromInclusive, toElement, toInclusive);")
-        .addLine("    return new %s<>(", TYPE)
+        .addLine("    return new %s<>(", INLINED)
         .addLine("        subSet, add, fromElement, fromInclusive, toElement, toInclusive);")
         .addLine("  }")
         .addLine("")
@@ -150,7 +154,7 @@ public class CheckedNavigableSet extends ValueType implements Excerpt {
         .addLine("    %s.requireNonNull(toElement);", Objects.class)
         .addLine("    %s<E> headSet = set.headSet(toElement, inclusive);",
             NavigableSet.class)
-        .addLine("    return new %s<>(", TYPE)
+        .addLine("    return new %s<>(", INLINED)
         .addLine("        headSet, add, fromElement, fromInclusive, toElement, inclusive);")
         .addLine("  }")
         .addLine("")
@@ -160,7 +164,7 @@ public class CheckedNavigableSet extends ValueType implements Excerpt {
         .addLine("    %s.requireNonNull(fromElement);", Objects.class)
         .addLine("    %s<E> tailSet = set.tailSet(fromElement, inclusive);",
             NavigableSet.class)
-        .addLine("    return new %s<>(", TYPE)
+        .addLine("    return new %s<>(", INLINED)
         .addLine("        tailSet, add, fromElement, inclusive, toElement, toInclusive);")
         .addLine("  }")
         .addLine("}");
@@ -174,21 +178,21 @@ public class CheckedNavigableSet extends ValueType implements Excerpt {
         .addLine("    %s.requireNonNull(toElement);", Objects.class)
         .addLine("    %s<E> subSet = set.subSet(fromElement, true, toElement, false);",
             NavigableSet.class)
-        .addLine("    return new %s<>(", TYPE)
+        .addLine("    return new %s<>(", INLINED)
         .addLine("        subSet, add, fromElement, true, toElement, false);")
         .addLine("  }")
         .addLine("")
         .addLine("  @Override public %s<E> headSet(E toElement) {", NavigableSet.class)
         .addLine("    %s.requireNonNull(toElement);", Objects.class)
         .addLine("    %s<E> headSet = set.headSet(toElement, false);", NavigableSet.class)
-        .addLine("    return new %s<>(", TYPE)
+        .addLine("    return new %s<>(", INLINED)
         .addLine("        headSet, add, fromElement, fromInclusive, toElement, false);")
         .addLine("  }")
         .addLine("")
         .addLine("  @Override public %s<E> tailSet(E fromElement) {", NavigableSet.class)
         .addLine("    %s.requireNonNull(fromElement);", Objects.class)
         .addLine("    %s<E> tailSet = set.tailSet(fromElement, true);", NavigableSet.class)
-        .addLine("    return new %s<>(", TYPE)
+        .addLine("    return new %s<>(", INLINED)
         .addLine("        tailSet, add, fromElement, true, toElement, toInclusive);")
         .addLine("  }");
   }
@@ -4,6 +4,7 @@ import org.inferred.freebuilder.processor.source.Excerpt;
 import org.inferred.freebuilder.processor.source.LazyName;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.ValueType;
+import org.inferred.freebuilder.processor.source.feature.RuntimeLibrary;
 
 import java.util.AbstractSet;
 import java.util.Iterator;
@@ -16,7 +17,10 @@ import java.util.function.Consumer;
  */
 public class CheckedSet extends ValueType implements Excerpt {
 
-  public static final LazyName TYPE = LazyName.of("CheckedSet", new CheckedSet());
+  private static final LazyName INLINED = LazyName.of("CheckedSet", new CheckedSet());
+
+  /** The checked set type, shared from the runtime library if it is available. */
+  public static final Excerpt TYPE = RuntimeLibrary.sharedOr("CheckedSet", INLINED);
 
   private CheckedSet() {}
 
@@ -27,12 +31,12 @@ public class CheckedSet extends ValueType implements Excerpt {
         .addLine(" * A set implementation that delegates to a provided add method")
         .addLine(" * to perform element validation and insertion into a backing set.")
         .addLine(" */")
-        .addLine("private static class %s<E> extends %s<E> {", TYPE, AbstractSet.class)
+        .addLine("private static class %s<E> extends %s<E> {", INLINED, AbstractSet.class)
         .addLine("")
         .addLine("  private final %s<E> set;", Set.class)
         .addLine("  private final %s<E> add;", Consumer.class)
         .addLine("")
-        .addLine("  %s(%s<E> set, %s<E> add) {", TYPE, Set.class, Consumer.class)
+        .addLine("  %s(%s<E> set, %s<E> add) {", INLINED, Set.class, Consumer.class)
         .addLine("    this.set = set;")
         .addLine("    this.add = add;")
         .addLine("  }")
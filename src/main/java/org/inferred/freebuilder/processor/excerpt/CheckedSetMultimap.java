@@ -1,5 +1,7 @@
 package org.inferred.freebuilder.processor.excerpt;
 
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
+
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ForwardingSetMultimap;
 import com.google.common.collect.Maps;
@@ -17,6 +19,7 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Excerpts defining a multimap implementation that delegates to a provided put method to perform
@@ -86,17 +89,43 @@ public class CheckedSetMultimap extends ValueType implements Excerpt {
         .addLine("    return result;")
         .addLine("  }")
         .addLine("")
-        .addLine("  @Override public %s<V> get(%s K key) {", Set.class, Jsr305.nullable())
-        .addLine("    return new %s<>(", CheckedSet.TYPE)
-        .addLine("        multimap.get(key), value -> put.accept(key, value));")
-        .addLine("  }")
-        .addLine("")
-        .addLine("  @Override public %s<K, %s<V>> asMap() {", Map.class, Collection.class)
-        .addLine("    return %s.transformEntries(%s.asMap(multimap), (key, values) -> ",
-            Maps.class, Multimaps.class)
-        .addLine("        (%s<V>) new %s<>(", Collection.class, CheckedSet.TYPE)
-        .addLine("            values, value -> put.accept(key, value)));")
-        .addLine("  }")
+        .addLine("  @Override public %s<V> get(%s K key) {", Set.class, Jsr305.nullable());
+    if (code.feature(LAMBDAS).isEnabled()) {
+      code.addLine("    return new %s<>(", CheckedSet.TYPE)
+          .addLine("        multimap.get(key), value -> put.accept(key, value));")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %s<K, %s<V>> asMap() {", Map.class, Collection.class)
+          .addLine("    return %s.transformEntries(%s.asMap(multimap), (key, values) -> ",
+              Maps.class, Multimaps.class)
+          .addLine("        (%s<V>) new %s<>(", Collection.class, CheckedSet.TYPE)
+          .addLine("            values, value -> put.accept(key, value)));");
+    } else {
+      code.addLine("    return new %s<>(multimap.get(key), new %s<V>() {",
+              CheckedSet.TYPE, Consumer.class)
+          .addLine("      @Override public void accept(V value) {")
+          .addLine("        put.accept(key, value);")
+          .addLine("      }")
+          .addLine("    });")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %s<K, %s<V>> asMap() {", Map.class, Collection.class)
+          .addLine("    return %s.transformEntries(%s.asMap(multimap),",
+              Maps.class, Multimaps.class)
+          .addLine("        new %s<K, %s<V>, %s<V>>() {",
+              Maps.EntryTransformer.class, Set.class, Collection.class)
+          .addLine("          @Override public %s<V> transformEntry(K key, %s<V> values) {",
+              Collection.class, Set.class)
+          .addLine("            return new %s<>(values, new %s<V>() {",
+              CheckedSet.TYPE, Consumer.class)
+          .addLine("              @Override public void accept(V value) {")
+          .addLine("                put.accept(key, value);")
+          .addLine("              }")
+          .addLine("            });")
+          .addLine("          }")
+          .addLine("        });");
+    }
+    code.addLine("  }")
         .addLine("}");
   }
 
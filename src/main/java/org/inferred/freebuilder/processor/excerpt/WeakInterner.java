@@ -0,0 +1,104 @@
+package org.inferred.freebuilder.processor.excerpt;
+
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.LazyName;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.ValueType;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Excerpts defining a weak, concurrent interner, which returns a canonical instance for each
+ * distinct value while allowing unused instances to be garbage-collected.
+ */
+public class WeakInterner extends ValueType implements Excerpt {
+
+  public static final LazyName TYPE = LazyName.of("WeakInterner", new WeakInterner());
+
+  private WeakInterner() {}
+
+  @Override
+  public void addTo(SourceBuilder code) {
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * A weak, concurrent interner, which returns a canonical instance for each")
+        .addLine(" * distinct value while allowing unused instances to be garbage-collected.")
+        .addLine(" */")
+        .addLine("private static class %s {", TYPE)
+        .addLine("")
+        .addLine("  private final %s<Key, Key> pool = new %s<>();",
+            ConcurrentHashMap.class, ConcurrentHashMap.class)
+        .addLine("  private final %s<Object> queue = new %s<>();",
+            ReferenceQueue.class, ReferenceQueue.class)
+        .addLine("  private final %1$s requests = new %1$s();", LongAdder.class)
+        .addLine("  private final %1$s hits = new %1$s();", LongAdder.class)
+        .addLine("")
+        .addLine("  Object intern(Object value) {")
+        .addLine("    requests.increment();")
+        .addLine("    expungeStaleEntries();")
+        .addLine("    Key key = new Key(value, queue);")
+        .addLine("    while (true) {")
+        .addLine("      Key existing = pool.putIfAbsent(key, key);")
+        .addLine("      if (existing == null) {")
+        .addLine("        return value;")
+        .addLine("      }")
+        .addLine("      Object interned = existing.get();")
+        .addLine("      if (interned != null) {")
+        .addLine("        hits.increment();")
+        .addLine("        return interned;")
+        .addLine("      }")
+        .addLine("      pool.remove(existing, existing);")
+        .addLine("    }")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  int size() {")
+        .addLine("    expungeStaleEntries();")
+        .addLine("    return pool.size();")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  double hitRate() {")
+        .addLine("    long requestCount = requests.sum();")
+        .addLine("    return (requestCount == 0) ? 0.0 : (double) hits.sum() / requestCount;")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  private void expungeStaleEntries() {")
+        .addLine("    for (%s<?> stale = queue.poll(); stale != null; stale = queue.poll()) {",
+            Reference.class)
+        .addLine("      pool.remove(stale);")
+        .addLine("    }")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Compares equal to another key if both referents are equal. */")
+        .addLine("  private static class Key extends %s<Object> {", WeakReference.class)
+        .addLine("")
+        .addLine("    private final int hashCode;")
+        .addLine("")
+        .addLine("    Key(Object referent, %s<Object> queue) {", ReferenceQueue.class)
+        .addLine("      super(referent, queue);")
+        .addLine("      this.hashCode = referent.hashCode();")
+        .addLine("    }")
+        .addLine("")
+        .addLine("    @Override public int hashCode() {")
+        .addLine("      return hashCode;")
+        .addLine("    }")
+        .addLine("")
+        .addLine("    @Override public boolean equals(Object obj) {")
+        .addLine("      if (obj == this) {")
+        .addLine("        return true;")
+        .addLine("      } else if (!(obj instanceof Key)) {")
+        .addLine("        return false;")
+        .addLine("      }")
+        .addLine("      Object referent = get();")
+        .addLine("      return referent != null && referent.equals(((Key) obj).get());")
+        .addLine("    }")
+        .addLine("  }")
+        .addLine("}");
+  }
+
+  @Override
+  protected void addFields(FieldReceiver fields) {}
+}
@@ -27,6 +27,7 @@ import org.inferred.freebuilder.processor.source.Excerpt;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.Type;
 import org.inferred.freebuilder.processor.source.Variable;
+import org.inferred.freebuilder.processor.source.feature.Lambdas;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -37,6 +38,8 @@ import java.util.Set;
 import java.util.Spliterator;
 import java.util.function.Consumer;
 import java.util.stream.BaseStream;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
@@ -85,6 +88,7 @@ class BuildableListProperty extends PropertyCodeGenerator {
           needsSafeVarargs,
           overridesValueInstanceVarargsAddMethod,
           overridesBuilderVarargsAddMethod,
+          elementType,
           element));
     }
 
@@ -117,6 +121,7 @@ class BuildableListProperty extends PropertyCodeGenerator {
   private final boolean needsSafeVarargs;
   private final boolean overridesValueInstanceVarargsAddMethod;
   private final boolean overridesBuilderVarargsAddMethod;
+  private final TypeMirror elementType;
   private final BuildableType element;
 
   private BuildableListProperty(
@@ -125,20 +130,21 @@ class BuildableListProperty extends PropertyCodeGenerator {
       boolean needsSafeVarargs,
       boolean overridesValueInstanceVarargsAddMethod,
       boolean overridesBuilderVarargsAddMethod,
+      TypeMirror elementType,
       BuildableType element) {
     super(datatype, property);
     this.needsSafeVarargs = needsSafeVarargs;
     this.overridesValueInstanceVarargsAddMethod = overridesValueInstanceVarargsAddMethod;
     this.overridesBuilderVarargsAddMethod = overridesBuilderVarargsAddMethod;
+    this.elementType = elementType;
     this.element = element;
   }
 
   @Override
-  public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s<%s> %s;",
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s<%s>",
         code.feature(GUAVA).isAvailable() ? ImmutableList.class : List.class,
-        element.type(),
-        property.getField());
+        element.type());
   }
 
   @Override
@@ -295,7 +301,8 @@ class BuildableListProperty extends PropertyCodeGenerator {
         .addLine("      %s.ensureCapacity((int) %s);", property.getField(), newSize)
         .addLine("    }")
         .addLine("  }")
-        .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
+        .addLine("  %s", Lambdas.forEachRemaining(
+            "elements", element.type(), addMethod(property)))
         .addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
@@ -316,7 +323,8 @@ class BuildableListProperty extends PropertyCodeGenerator {
         .addLine("      %s.ensureCapacity((int) %s);", property.getField(), newSize)
         .addLine("    }")
         .addLine("  }")
-        .addLine("  elementBuilders.forEachRemaining(this::%s);", addMethod(property))
+        .addLine("  %s", Lambdas.forEachRemaining(
+            "elementBuilders", element.builderType(), addMethod(property)))
         .addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
@@ -353,6 +361,12 @@ class BuildableListProperty extends PropertyCodeGenerator {
     addJavadocForAddingMultipleValues(code);
     code.addLine("public %s %s(%s<? extends %s, ?> elements) {",
             datatype.getBuilder(), addAllMethod(property), BaseStream.class, element.type())
+        .addLine("  if (elements.isParallel()) {")
+        .addLine("    return %s(%s.stream(elements.spliterator(), true)",
+            addAllMethod(property), StreamSupport.class)
+        .addLine("        .collect(%s.toList())", Collectors.class)
+        .addLine("        .spliterator());")
+        .addLine("  }")
         .addLine("  return %s(elements.spliterator());", addAllMethod(property))
         .addLine("}");
   }
@@ -365,6 +379,12 @@ class BuildableListProperty extends PropertyCodeGenerator {
             addAllBuildersOfMethod(property),
             BaseStream.class,
             element.builderType())
+        .addLine("  if (elementBuilders.isParallel()) {")
+        .addLine("    return %s(%s.stream(elementBuilders.spliterator(), true)",
+            addAllBuildersOfMethod(property), StreamSupport.class)
+        .addLine("        .collect(%s.toList())", Collectors.class)
+        .addLine("        .spliterator());")
+        .addLine("  }")
         .addLine("  return %s(elementBuilders.spliterator());", addAllBuildersOfMethod(property))
         .addLine("}");
   }
@@ -468,6 +488,26 @@ class BuildableListProperty extends PropertyCodeGenerator {
     code.addLine("%s.%s(%s);", builder, addAllMethod(property), variable);
   }
 
+  @Override
+  public void addSetFromResultType(SourceBuilder code) {
+    code.add("%s<? extends %s>", Iterable.class, element.type());
+  }
+
+  @Override
+  public StreamedForm getStreamedForm() {
+    return StreamedForm.ARRAY;
+  }
+
+  @Override
+  public List<TypeMirror> getStreamedTypes() {
+    return ImmutableList.of(elementType);
+  }
+
+  @Override
+  public void addStreamedElement(SourceBuilder code, Excerpt builder, Excerpt... values) {
+    code.addLine("%s.%s(%s);", builder, addMethod(property), values[0]);
+  }
+
   @Override
   public void addClearField(SourceBuilder code) {
     code.addLine("%s();", clearMethod(property));
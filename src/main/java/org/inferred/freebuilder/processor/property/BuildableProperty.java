@@ -94,8 +94,8 @@ class BuildableProperty extends PropertyCodeGenerator {
   }
 
   @Override
-  public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s %s;", property.getType(), property.getField());
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s", property.getType());
   }
 
   @Override
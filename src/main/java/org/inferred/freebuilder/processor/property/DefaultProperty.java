@@ -115,8 +115,8 @@ public class DefaultProperty extends PropertyCodeGenerator {
   }
 
   @Override
-  public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s %s;", property.getType(), property.getField());
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s", property.getType());
   }
 
   @Override
@@ -283,6 +283,20 @@ public class DefaultProperty extends PropertyCodeGenerator {
     return ImmutableSet.of(hasDefault ? skippingDefaults() : skippingUnsetProperties());
   }
 
+  @Override
+  public boolean isValueFieldConvertible() {
+    return true;
+  }
+
+  @Override
+  public void addConvertToValueField(SourceBuilder code, Excerpt value) {
+    if (kind.isPrimitive()) {
+      code.add("%s", value);
+    } else {
+      code.add("%s.requireNonNull(%s)", Objects.class, value);
+    }
+  }
+
   @Override
   public void addSetFromResult(SourceBuilder code, Excerpt builder, Excerpt variable) {
     code.addLine("%s.%s(%s);", builder, setter(property), variable);
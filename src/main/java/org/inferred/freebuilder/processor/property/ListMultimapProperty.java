@@ -32,6 +32,7 @@ import static org.inferred.freebuilder.processor.source.FunctionalType.consumer;
 import static org.inferred.freebuilder.processor.source.FunctionalType.functionalTypeAcceptedByMethod;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
@@ -47,8 +48,10 @@ import org.inferred.freebuilder.processor.source.Excerpt;
 import org.inferred.freebuilder.processor.source.FunctionalType;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.Variable;
+import org.inferred.freebuilder.processor.source.feature.Lambdas;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
@@ -149,9 +152,8 @@ class ListMultimapProperty extends PropertyCodeGenerator {
   }
 
   @Override
-  public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s<%s, %s> %s;",
-        ImmutableListMultimap.class, keyType, valueType, property.getField());
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s<%s, %s>", ImmutableListMultimap.class, keyType, valueType);
   }
 
   @Override
@@ -343,11 +345,11 @@ class ListMultimapProperty extends PropertyCodeGenerator {
             mutator(property),
             mutatorType.getFunctionalInterface());
     if (overridesPutMethod) {
-      code.addLine("  mutator.%s(new %s<>(%s, this::%s));",
+      code.addLine("  mutator.%s(new %s<>(%s, %s));",
           mutatorType.getMethodName(),
           CheckedListMultimap.TYPE,
           property.getField(),
-          putMethod(property));
+          Lambdas.biConsumer(putMethod(property), keyType, valueType));
     } else {
       code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
               putMethod(property))
@@ -420,6 +422,36 @@ class ListMultimapProperty extends PropertyCodeGenerator {
     code.addLine("%s.%s(%s);", builder, putAllMethod(property), variable);
   }
 
+  @Override
+  public void addSetFromResultType(SourceBuilder code) {
+    code.add("%s<? extends %s, ? extends %s>", Multimap.class, keyType, valueType);
+  }
+
+  @Override
+  public StreamedForm getStreamedForm() {
+    return StreamedForm.OBJECT_OF_ARRAYS;
+  }
+
+  @Override
+  public List<TypeMirror> getStreamedTypes() {
+    return ImmutableList.of(keyType, valueType);
+  }
+
+  @Override
+  public void addStreamedElement(SourceBuilder code, Excerpt builder, Excerpt... values) {
+    code.addLine("%s.%s(%s, %s);", builder, putMethod(property), values[0], values[1]);
+  }
+
+  @Override
+  public boolean isStreamedRemovalSupported() {
+    return true;
+  }
+
+  @Override
+  public void addStreamedRemoval(SourceBuilder code, Excerpt builder, Excerpt value) {
+    code.addLine("%s.%s(%s);", builder, removeAllMethod(property), value);
+  }
+
   @Override
   public void addClearField(SourceBuilder code) {
     code.addLine("%s.clear();", property.getField());
@@ -30,6 +30,8 @@ import static org.inferred.freebuilder.processor.property.MergeAction.appendingT
 import static org.inferred.freebuilder.processor.source.FunctionalType.consumer;
 import static org.inferred.freebuilder.processor.source.FunctionalType.functionalTypeAcceptedByMethod;
 import static org.inferred.freebuilder.processor.source.feature.GuavaLibrary.GUAVA;
+import static org.inferred.freebuilder.processor.source.feature.RuntimeLibrary.RUNTIME;
+import static org.inferred.freebuilder.processor.source.feature.RuntimeLibrary.UNMODIFIABLE_COLLECTIONS;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
@@ -46,6 +48,7 @@ import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.Type;
 import org.inferred.freebuilder.processor.source.ValueType;
 import org.inferred.freebuilder.processor.source.Variable;
+import org.inferred.freebuilder.processor.source.feature.Lambdas;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
@@ -58,6 +61,8 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.stream.BaseStream;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
@@ -158,11 +163,10 @@ class ListProperty extends PropertyCodeGenerator {
   }
 
   @Override
-  public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s<%s> %s;",
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s<%s>",
         code.feature(GUAVA).isAvailable() ? ImmutableList.class : List.class,
-        elementType,
-        property.getField());
+        elementType);
   }
 
   @Override
@@ -283,7 +287,8 @@ class ListProperty extends PropertyCodeGenerator {
     code.add(".ensureCapacity(%s.size() + (int) elementsSize);%n", property.getField())
         .addLine("    }")
         .addLine("  }")
-        .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
+        .addLine("  %s", Lambdas.forEachRemaining(
+            "elements", elementType, addMethod(property)))
         .addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
@@ -307,6 +312,12 @@ class ListProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             BaseStream.class,
             elementType)
+        .addLine("  if (elements.isParallel()) {")
+        .addLine("    return %s(%s.stream(elements.spliterator(), true)",
+            addAllMethod(property), StreamSupport.class)
+        .addLine("        .collect(%s.toList())", Collectors.class)
+        .addLine("        .spliterator());")
+        .addLine("  }")
         .addLine("  return %s(elements.spliterator());", addAllMethod(property))
         .addLine("}");
   }
@@ -347,8 +358,11 @@ class ListProperty extends PropertyCodeGenerator {
           .addLine("  }");
     }
     if (overridesAddMethod) {
-      code.addLine("  mutator.%s(new %s<>(%s, this::%s));",
-          mutatorType.getMethodName(), CheckedList.TYPE, property.getField(), addMethod(property));
+      code.addLine("  mutator.%s(new %s<>(%s, %s));",
+          mutatorType.getMethodName(),
+          CheckedList.TYPE,
+          property.getField(),
+          Lambdas.consumer(addMethod(property), elementType));
     } else {
       code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
               addMethod(property))
@@ -402,6 +416,8 @@ class ListProperty extends PropertyCodeGenerator {
     Excerpt immutableListMethod;
     if (code.feature(GUAVA).isAvailable()) {
       immutableListMethod = Excerpts.add("%s.copyOf", ImmutableList.class);
+    } else if (code.feature(RUNTIME).isAvailable()) {
+      immutableListMethod = Excerpts.add("%s.listCopyOf", UNMODIFIABLE_COLLECTIONS);
     } else {
       immutableListMethod = ImmutableListMethod.REFERENCE;
     }
@@ -452,6 +468,26 @@ class ListProperty extends PropertyCodeGenerator {
     code.addLine("%s.%s(%s);", builder, addAllMethod(property), variable);
   }
 
+  @Override
+  public void addSetFromResultType(SourceBuilder code) {
+    code.add("%s<? extends %s>", Iterable.class, elementType);
+  }
+
+  @Override
+  public StreamedForm getStreamedForm() {
+    return StreamedForm.ARRAY;
+  }
+
+  @Override
+  public List<TypeMirror> getStreamedTypes() {
+    return ImmutableList.of(elementType);
+  }
+
+  @Override
+  public void addStreamedElement(SourceBuilder code, Excerpt builder, Excerpt... values) {
+    code.addLine("%s.%s(%s);", builder, addMethod(property), values[0]);
+  }
+
   @Override
   public void addClearField(SourceBuilder code) {
     code.addLine("%s();", clearMethod(property));
@@ -30,7 +30,10 @@ import static org.inferred.freebuilder.processor.property.MergeAction.appendingT
 import static org.inferred.freebuilder.processor.source.FunctionalType.consumer;
 import static org.inferred.freebuilder.processor.source.FunctionalType.functionalTypeAcceptedByMethod;
 import static org.inferred.freebuilder.processor.source.feature.GuavaLibrary.GUAVA;
+import static org.inferred.freebuilder.processor.source.feature.RuntimeLibrary.RUNTIME;
+import static org.inferred.freebuilder.processor.source.feature.RuntimeLibrary.UNMODIFIABLE_COLLECTIONS;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
@@ -45,10 +48,12 @@ import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.Type;
 import org.inferred.freebuilder.processor.source.ValueType;
 import org.inferred.freebuilder.processor.source.Variable;
+import org.inferred.freebuilder.processor.source.feature.Lambdas;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -145,12 +150,11 @@ class MapProperty extends PropertyCodeGenerator {
   }
 
   @Override
-  public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s<%s, %s> %s;",
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s<%s, %s>",
         (code.feature(GUAVA).isAvailable()) ? ImmutableMap.class : Map.class,
         keyType,
-        valueType,
-        property.getField());
+        valueType);
   }
 
   @Override
@@ -277,8 +281,11 @@ class MapProperty extends PropertyCodeGenerator {
             mutator(property),
             mutatorType.getFunctionalInterface());
     if (overridesPutMethod) {
-      code.addLine("  mutator.%s(new %s<>(%s, this::%s));",
-          mutatorType.getMethodName(), CheckedMap.TYPE, property.getField(), putMethod(property));
+      code.addLine("  mutator.%s(new %s<>(%s, %s));",
+          mutatorType.getMethodName(),
+          CheckedMap.TYPE,
+          property.getField(),
+          Lambdas.biConsumer(putMethod(property), keyType, valueType));
     } else {
       code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
               putMethod(property))
@@ -319,6 +326,8 @@ class MapProperty extends PropertyCodeGenerator {
     Excerpt immutableMapMethod;
     if (code.feature(GUAVA).isAvailable()) {
       immutableMapMethod = Excerpts.add("%s.copyOf", ImmutableMap.class);
+    } else if (code.feature(RUNTIME).isAvailable()) {
+      immutableMapMethod = Excerpts.add("%s.mapCopyOf", UNMODIFIABLE_COLLECTIONS);
     } else {
       immutableMapMethod = ImmutableMapMethod.REFERENCE;
     }
@@ -351,6 +360,36 @@ class MapProperty extends PropertyCodeGenerator {
     code.addLine("%s.%s(%s);", builder, putAllMethod(property), variable);
   }
 
+  @Override
+  public void addSetFromResultType(SourceBuilder code) {
+    code.add("%s<? extends %s, ? extends %s>", Map.class, keyType, valueType);
+  }
+
+  @Override
+  public StreamedForm getStreamedForm() {
+    return StreamedForm.OBJECT;
+  }
+
+  @Override
+  public List<TypeMirror> getStreamedTypes() {
+    return ImmutableList.of(keyType, valueType);
+  }
+
+  @Override
+  public void addStreamedElement(SourceBuilder code, Excerpt builder, Excerpt... values) {
+    code.addLine("%s.%s(%s, %s);", builder, putMethod(property), values[0], values[1]);
+  }
+
+  @Override
+  public boolean isStreamedRemovalSupported() {
+    return true;
+  }
+
+  @Override
+  public void addStreamedRemoval(SourceBuilder code, Excerpt builder, Excerpt value) {
+    code.addLine("%s.%s(%s);", builder, removeMethod(property), value);
+  }
+
   @Override
   public void addClearField(SourceBuilder code) {
     code.addLine("%s.clear();", property.getField());
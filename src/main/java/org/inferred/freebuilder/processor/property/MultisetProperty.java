@@ -31,8 +31,10 @@ import static org.inferred.freebuilder.processor.model.ModelUtils.upperBound;
 import static org.inferred.freebuilder.processor.property.MergeAction.appendingToCollections;
 import static org.inferred.freebuilder.processor.source.FunctionalType.consumer;
 import static org.inferred.freebuilder.processor.source.FunctionalType.functionalTypeAcceptedByMethod;
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultiset;
@@ -47,12 +49,18 @@ import org.inferred.freebuilder.processor.source.FunctionalType;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.Type;
 import org.inferred.freebuilder.processor.source.Variable;
+import org.inferred.freebuilder.processor.source.feature.Lambdas;
 
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.BaseStream;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
@@ -154,9 +162,8 @@ class MultisetProperty extends PropertyCodeGenerator {
   }
 
   @Override
-  public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s<%s> %s;",
-        ImmutableMultiset.class, elementType, property.getField());
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s<%s>", ImmutableMultiset.class, elementType);
   }
 
   @Override
@@ -240,11 +247,19 @@ class MultisetProperty extends PropertyCodeGenerator {
             datatype.getBuilder(),
             addAllMethod(property),
             Spliterator.class,
-            elementType)
-        .addLine("  elements.forEachRemaining(element -> {")
-        .addLine("    %s(element, 1);", addCopiesMethod(property))
-        .addLine("  });")
-        .addLine("  return (%s) this;", datatype.getBuilder())
+            elementType);
+    if (code.feature(LAMBDAS).isEnabled()) {
+      code.addLine("  elements.forEachRemaining(element -> {")
+          .addLine("    %s(element, 1);", addCopiesMethod(property))
+          .addLine("  });");
+    } else {
+      code.addLine("  %s<? extends %s> iterator = %s.iterator(elements);",
+              Iterator.class, elementType, Spliterators.class)
+          .addLine("  while (iterator.hasNext()) {")
+          .addLine("    %s(iterator.next(), 1);", addCopiesMethod(property))
+          .addLine("  }");
+    }
+    code.addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
 
@@ -255,6 +270,12 @@ class MultisetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             BaseStream.class,
             elementType)
+        .addLine("  if (elements.isParallel()) {")
+        .addLine("    return %s(%s.stream(elements.spliterator(), true)",
+            addAllMethod(property), StreamSupport.class)
+        .addLine("        .collect(%s.toList())", Collectors.class)
+        .addLine("        .spliterator());")
+        .addLine("  }")
         .addLine("  return %s(elements.spliterator());", addAllMethod(property))
         .addLine("}");
   }
@@ -325,11 +346,11 @@ class MultisetProperty extends PropertyCodeGenerator {
             mutator(property),
             mutatorType.getFunctionalInterface());
     if (overridesSetCountMethod) {
-      code.addLine("  mutator.%s(new %s<>(%s, this::%s));",
+      code.addLine("  mutator.%s(new %s<>(%s, %s));",
           mutatorType.getMethodName(),
           CheckedMultiset.TYPE,
           property.getField(),
-          setCountMethod(property));
+          Lambdas.biConsumer(setCountMethod(property), elementType, Integer.class));
     } else {
       code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
               setCountMethod(property))
@@ -423,6 +444,26 @@ class MultisetProperty extends PropertyCodeGenerator {
     code.addLine("%s.%s(%s);", builder, addAllMethod(property), variable);
   }
 
+  @Override
+  public void addSetFromResultType(SourceBuilder code) {
+    code.add("%s<? extends %s>", Iterable.class, elementType);
+  }
+
+  @Override
+  public StreamedForm getStreamedForm() {
+    return StreamedForm.ARRAY;
+  }
+
+  @Override
+  public List<TypeMirror> getStreamedTypes() {
+    return ImmutableList.of(elementType);
+  }
+
+  @Override
+  public void addStreamedElement(SourceBuilder code, Excerpt builder, Excerpt... values) {
+    code.addLine("%s.%s(%s);", builder, addMethod(property), values[0]);
+  }
+
   @Override
   public void addClearField(SourceBuilder code) {
     code.addLine("%s.clear();", property.getField());
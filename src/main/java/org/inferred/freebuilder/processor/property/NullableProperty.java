@@ -103,6 +103,11 @@ class NullableProperty extends PropertyCodeGenerator {
     code.add("private final %s %s;%n", property.getType(), property.getField());
   }
 
+  @Override
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s", property.getType());
+  }
+
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
     addGetterAnnotations(code);
@@ -219,6 +224,16 @@ class NullableProperty extends PropertyCodeGenerator {
     }
   }
 
+  @Override
+  public boolean isValueFieldConvertible() {
+    return true;
+  }
+
+  @Override
+  public void addConvertToValueField(SourceBuilder code, Excerpt value) {
+    code.add("%s", value);
+  }
+
   @Override
   public void addSetFromResult(SourceBuilder code, Excerpt builder, Excerpt variable) {
     code.addLine("%s.%s(%s);", builder, setter(property), variable);
@@ -27,6 +27,7 @@ import static org.inferred.freebuilder.processor.model.ModelUtils.upperBound;
 import static org.inferred.freebuilder.processor.property.MergeAction.skippingEmptyOptionals;
 import static org.inferred.freebuilder.processor.source.FunctionalType.functionalTypeAcceptedByMethod;
 import static org.inferred.freebuilder.processor.source.FunctionalType.unaryOperator;
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
@@ -68,16 +69,9 @@ class OptionalProperty extends PropertyCodeGenerator {
         // turning a null into an empty (absent) optional as that is the de facto standard
         // now. (If the mapper type *can* return null, of course.)
         if (mapperType.canReturnNull()) {
-          code.addLine("%s.requireNonNull(mapper);", Objects.class)
-              .addLine("  %s old%s = %s();",
-                  property.getType(), property.getCapitalizedName(), getter(property))
-              .addLine("  if (old%s.isPresent()) {", property.getCapitalizedName())
-              .addLine("     %s(mapper.%s(old%s.get()));",
-                  nullableSetter(property),
-                  mapperType.getMethodName(),
-                  property.getCapitalizedName())
-              .addLine("  }")
-              .addLine("  return (%s) this;", datatype.getBuilder());
+          addMapperCall(code, datatype, mapperType, property, nullableSetter(property));
+        } else if (!code.feature(LAMBDAS).isEnabled()) {
+          addMapperCall(code, datatype, mapperType, property, setter(property));
         } else {
           code.addLine("  return %s(%s().transform(mapper::%s));",
               setter(property), getter(property), mapperType.getMethodName());
@@ -90,6 +84,11 @@ class OptionalProperty extends PropertyCodeGenerator {
             .addLine("  %s(%s.get());", method, value)
             .addLine("}");
       }
+
+      @Override
+      protected void addOrNull(SourceBuilder code, Excerpt value) {
+        code.add("%s.orNull()", value);
+      }
     },
     JAVA8(QualifiedName.of(Optional.class), "empty", "ofNullable") {
       @Override
@@ -98,9 +97,14 @@ class OptionalProperty extends PropertyCodeGenerator {
           Datatype datatype,
           FunctionalType mapperType,
           Property property) {
+        boolean isUnaryOperator = mapperType.getFunctionalInterface().getQualifiedName()
+            .equals(QualifiedName.of(UnaryOperator.class));
+        if (!isUnaryOperator && !code.feature(LAMBDAS).isEnabled()) {
+          addMapperCall(code, datatype, mapperType, property, nullableSetter(property));
+          return;
+        }
         code.add("  return %s(%s().map(mapper", setter(property), getter(property));
-        if (!mapperType.getFunctionalInterface().getQualifiedName()
-            .equals(QualifiedName.of(UnaryOperator.class))) {
+        if (!isUnaryOperator) {
           code.add("::%s", mapperType.getMethodName());
         }
         code.add("));%n");
@@ -108,8 +112,17 @@ class OptionalProperty extends PropertyCodeGenerator {
 
       @Override
       protected void invokeIfPresent(SourceBuilder code, String value, String method) {
+        if (!code.feature(LAMBDAS).isEnabled()) {
+          GUAVA.invokeIfPresent(code, value, method);
+          return;
+        }
         code.addLine("%s.ifPresent(this::%s);", value, method);
       }
+
+      @Override
+      protected void addOrNull(SourceBuilder code, Excerpt value) {
+        code.add("%s.orElse(null)", value);
+      }
     };
 
     private final QualifiedName cls;
@@ -128,6 +141,26 @@ class OptionalProperty extends PropertyCodeGenerator {
         FunctionalType mapperType,
         Property property);
     protected abstract void invokeIfPresent(SourceBuilder code, String value, String method);
+    protected abstract void addOrNull(SourceBuilder code, Excerpt value);
+
+    /** Applies {@code mapper} to the current value, if any, without a method reference. */
+    private static void addMapperCall(
+        SourceBuilder code,
+        Datatype datatype,
+        FunctionalType mapperType,
+        Property property,
+        String setter) {
+      code.addLine("%s.requireNonNull(mapper);", Objects.class)
+          .addLine("  %s old%s = %s();",
+              property.getType(), property.getCapitalizedName(), getter(property))
+          .addLine("  if (old%s.isPresent()) {", property.getCapitalizedName())
+          .addLine("     %s(mapper.%s(old%s.get()));",
+              setter,
+              mapperType.getMethodName(),
+              property.getCapitalizedName())
+          .addLine("  }")
+          .addLine("  return (%s) this;", datatype.getBuilder());
+    }
   }
 
   static class Factory implements PropertyCodeGenerator.Factory {
@@ -202,6 +235,11 @@ class OptionalProperty extends PropertyCodeGenerator {
         .addLine("private final %s %s;", elementType, property.getField());
   }
 
+  @Override
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s", elementType);
+  }
+
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
     code.addLine("// Store a nullable object instead of an Optional. Escape analysis then")
@@ -371,11 +409,26 @@ class OptionalProperty extends PropertyCodeGenerator {
     code.add("%s.%s(%s)", optional.cls, optional.ofNullable, finalField);
   }
 
+  @Override
+  public boolean isValueFieldConvertible() {
+    return true;
+  }
+
+  @Override
+  public void addConvertToValueField(SourceBuilder code, Excerpt value) {
+    optional.addOrNull(code, value);
+  }
+
   @Override
   public void addSetFromResult(SourceBuilder code, Excerpt builder, Excerpt variable) {
     code.addLine("%s.%s(%s);", builder, setter(property), variable);
   }
 
+  @Override
+  public void addSetFromResultType(SourceBuilder code) {
+    code.add("%s<? extends %s>", optional.cls, elementType);
+  }
+
   @Override
   public void addClearField(SourceBuilder code) {
     Optional<Variable> defaults = Declarations.freshBuilder(code, datatype);
@@ -14,6 +14,7 @@ import static org.inferred.freebuilder.processor.source.FunctionalType.functiona
 import static org.inferred.freebuilder.processor.source.FunctionalType.isAssignable;
 import static org.inferred.freebuilder.processor.source.FunctionalType.primitiveUnaryOperator;
 import static org.inferred.freebuilder.processor.source.FunctionalType.unaryOperator;
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
@@ -22,6 +23,7 @@ import org.inferred.freebuilder.processor.Datatype;
 import org.inferred.freebuilder.processor.Declarations;
 import org.inferred.freebuilder.processor.model.MethodIntrospector;
 import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.FieldAccess;
 import org.inferred.freebuilder.processor.source.FunctionalType;
 import org.inferred.freebuilder.processor.source.QualifiedName;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
@@ -46,6 +48,9 @@ import javax.tools.Diagnostic.Kind;
 /**
  * This property class handles the primitive optional fields, including
  * {@link OptionalDouble}, {@link OptionalLong}, and {@link OptionalInt}.
+ *
+ * <p>The builder and value types store the raw primitive, which is zero if the property is unset,
+ * alongside a flag recording whether it is set. Optional instances are only created by getters.
  */
 public class PrimitiveOptionalProperty extends PropertyCodeGenerator {
   static class Factory implements PropertyCodeGenerator.Factory {
@@ -160,12 +165,39 @@ public class PrimitiveOptionalProperty extends PropertyCodeGenerator {
 
   @Override
   public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s %s;", optional.type, property.getField());
+    code.addLine("// Store a primitive instead of an %s. Escape analysis then", optional.type)
+        .addLine("// allows the JVM to optimize away the %s objects created by our",
+            optional.type)
+        .addLine("// getter method.")
+        .addLine("private final %s %s;", optional.primitiveType, property.getField())
+        .addLine("private final boolean %s;", presenceField());
+  }
+
+  @Override
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s", optional.primitiveType);
+  }
+
+  @Override
+  public TypeKind getValueFieldKind() {
+    return optional.primitiveKind;
+  }
+
+  @Override
+  public Optional<FieldAccess> getPresenceField() {
+    return Optional.of(presenceField());
+  }
+
+  private FieldAccess presenceField() {
+    return new FieldAccess("_" + property.getName() + "Present");
   }
 
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
-    code.addLine("private %1$s %2$s = %1$s.empty();", optional.type, property.getField());
+    code.addLine("// Store a primitive instead of an %s, so setting the property", optional.type)
+        .addLine("// does not allocate.")
+        .addLine("private %s %s;", optional.primitiveType, property.getField())
+        .addLine("private boolean %s;", presenceField());
   }
 
   @Override
@@ -188,7 +220,8 @@ public class PrimitiveOptionalProperty extends PropertyCodeGenerator {
         .addLine(" */")
         .addLine("public %s %s(%s %s) {",
             datatype.getBuilder(), setter(property), optional.primitiveType, property.getName())
-        .addLine("  %s = %s.of(%s);", property.getField(), optional.type, property.getName())
+        .addLine("  %s = %s;", property.getField(), property.getName())
+        .addLine("  %s = true;", presenceField())
         .addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
@@ -231,23 +264,22 @@ public class PrimitiveOptionalProperty extends PropertyCodeGenerator {
         .addLine("public %s %s(%s mapper) {",
             datatype.getBuilder(), mapper(property), mapperType.getFunctionalInterface())
         .addLine("  %s.requireNonNull(mapper);", Objects.class);
-    Variable value = new Variable("value");
+    code.addLine("  if (%s) {", presenceField());
     if (mapperType.canReturnNull()) {
       Variable result = new Variable("result");
-      code.addLine("  %s.ifPresent(%s -> {", property.getField(), value)
-          .addLine("    %s %s = mapper.%s(%s);",
-              wrap(optional.primitiveType), result, mapperType.getMethodName(), value)
+      code.addLine("    %s %s = mapper.%s(%s);",
+              wrap(optional.primitiveType), result, mapperType.getMethodName(), property.getField())
           .addLine("    if (%s != null) {", result)
           .addLine("      %s(%s);", setter(property), result)
           .addLine("    } else {")
           .addLine("      %s();", clearMethod(property))
-          .addLine("    }")
-          .addLine("  });");
+          .addLine("    }");
     } else {
-      code.addLine("  %1$s.ifPresent(%2$s -> %3$s(mapper.%4$s(%2$s)));",
-              property.getField(), value, setter(property), mapperType.getMethodName());
+      code.addLine("    %s(mapper.%s(%s));",
+          setter(property), mapperType.getMethodName(), property.getField());
     }
-    code.addLine("  return (%s) this;", datatype.getBuilder())
+    code.addLine("  }")
+        .addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
 
@@ -278,7 +310,8 @@ public class PrimitiveOptionalProperty extends PropertyCodeGenerator {
         .addLine(" * @return this {@code %s} object", datatype.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %s %s() {", datatype.getBuilder(), clearMethod(property))
-        .addLine("  %s = %s.empty();", property.getField(), optional.type)
+        .addLine("  %s = 0;", property.getField())
+        .addLine("  %s = false;", presenceField())
         .addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
@@ -290,28 +323,42 @@ public class PrimitiveOptionalProperty extends PropertyCodeGenerator {
             datatype.getType().javadocNoArgMethodLink(property.getGetterName()))
         .addLine(" */")
         .addLine("public %s %s() {", property.getType(), getter(property))
-        .addLine("  return %s;", property.getField())
+        .add("  return ");
+    addReadValueFragment(code, property.getField());
+    code.add(";\n")
         .addLine("}");
   }
 
   @Override
   public void addFinalFieldAssignment(SourceBuilder code, Excerpt finalField, String builder) {
-    code.addLine("%s = %s;", finalField, property.getField().on(builder));
+    code.addLine("%s = %s;", finalField, property.getField().on(builder))
+        .addLine("%s = %s;", presenceField().on("this"), presenceField().on(builder));
   }
 
   @Override
   public void addAssignToBuilder(SourceBuilder code, Variable builder) {
-    code.addLine("%s = %s;", property.getField().on(builder), property.getField());
+    code.addLine("%s = %s;", property.getField().on(builder), property.getField())
+        .addLine("%s = %s;", presenceField().on(builder), presenceField());
   }
 
   @Override
   public void addMergeFromValue(SourceBuilder code, String value) {
-    code.addLine("%s.%s().ifPresent(this::%s);", value, property.getGetterName(), setter(property));
+    addSetIfPresent(code, value + "." + property.getGetterName() + "()");
   }
 
   @Override
   public void addMergeFromBuilder(SourceBuilder code, String builder) {
-    code.addLine("%s.%s().ifPresent(this::%s);", builder, getter(property), setter(property));
+    addSetIfPresent(code, builder + "." + getter(property) + "()");
+  }
+
+  private void addSetIfPresent(SourceBuilder code, String propertyValue) {
+    if (code.feature(LAMBDAS).isEnabled()) {
+      code.addLine("%s.ifPresent(this::%s);", propertyValue, setter(property));
+    } else {
+      code.addLine("if (%s.isPresent()) {", propertyValue)
+          .addLine("  %s(%s.%s());", setter(property), propertyValue, optional.getter)
+          .addLine("}");
+    }
   }
 
   @Override
@@ -319,6 +366,22 @@ public class PrimitiveOptionalProperty extends PropertyCodeGenerator {
     return ImmutableSet.of(skippingEmptyOptionals());
   }
 
+  @Override
+  public void addReadValueFragment(SourceBuilder code, Excerpt finalField) {
+    code.add("%s ? %s.of(%s) : %s.empty()",
+        presenceField(), optional.type, finalField, optional.type);
+  }
+
+  @Override
+  public boolean isValueFieldConvertible() {
+    return true;
+  }
+
+  @Override
+  public void addConvertToValueField(SourceBuilder code, Excerpt value) {
+    code.add("%1$s.orElse(0), %1$s.isPresent()", value);
+  }
+
   @Override
   public void addSetFromResult(SourceBuilder code, Excerpt builder, Excerpt variable) {
     code.addLine("%s.%s(%s);", builder, setter(property), variable);
@@ -328,19 +391,21 @@ public class PrimitiveOptionalProperty extends PropertyCodeGenerator {
   public void addClearField(SourceBuilder code) {
     Optional<Variable> defaults = Declarations.freshBuilder(code, datatype);
     if (defaults.isPresent()) {
-      code.addLine("%s = %s;", property.getField(), property.getField().on(defaults.get()));
+      code.addLine("%s = %s;", property.getField(), property.getField().on(defaults.get()))
+          .addLine("%s = %s;", presenceField(), presenceField().on(defaults.get()));
     } else {
-      code.addLine("%s = %s.empty();", property.getField(), optional.type);
+      code.addLine("%s = 0;", property.getField())
+          .addLine("%s = false;", presenceField());
     }
   }
 
   @Override
   public void addToStringCondition(SourceBuilder code) {
-    code.add("%s.isPresent()", property.getField());
+    code.add("%s", presenceField());
   }
 
   @Override
   public void addToStringValue(SourceBuilder code) {
-    code.add("%s.%s()", property.getField(), optional.getter);
+    code.add("%s", property.getField());
   }
 }
@@ -41,6 +41,15 @@ public abstract class Property {
   /** Returns true if the field is to appear in the toString. */
   public abstract boolean isInToString();
 
+  /** Returns true if the user has declared a {@code withX} method for this property. */
+  public abstract boolean isWithMethodDeclared();
+
+  /**
+   * Returns true if the user's Builder overrides a method setting this property, e.g. to add
+   * validation that copies made without the builder must not bypass.
+   */
+  public abstract boolean isSetterOverridden();
+
   /** Returns true if the field is to be used in equals and hashCode. */
   public abstract boolean isInEqualsAndHashCode();
 
@@ -71,6 +80,8 @@ public abstract class Property {
     public Builder() {
       setInEqualsAndHashCode(true);
       setInToString(true);
+      setWithMethodDeclared(false);
+      setSetterOverridden(false);
     }
   }
 }
@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableMap;
 
 import org.inferred.freebuilder.processor.Datatype;
 import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.FieldAccess;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.Variable;
 
@@ -37,6 +38,8 @@ import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 
@@ -135,7 +138,27 @@ public abstract class PropertyCodeGenerator {
   }
 
   /** Add the field declaration for the property to the value's source code. */
-  public abstract void addValueFieldDeclaration(SourceBuilder code);
+  public void addValueFieldDeclaration(SourceBuilder code) {
+    code.addLine("private final %s %s;", (Excerpt) this::addValueFieldType, property.getField());
+  }
+
+  /** Add the type of the value's field for the property to the source code. */
+  public abstract void addValueFieldType(SourceBuilder code);
+
+  /** Returns the kind of the value's field for the property, used to compare it in equals. */
+  public TypeKind getValueFieldKind() {
+    return property.getType().getKind();
+  }
+
+  /**
+   * Returns the boolean field recording whether the property is set on the value type, if the
+   * value's field cannot represent an unset property by itself (e.g. because it is primitive).
+   *
+   * <p>The presence field is compared, hashed and copied alongside the value's field.
+   */
+  public Optional<FieldAccess> getPresenceField() {
+    return Optional.empty();
+  }
 
   /** Add the field declaration for the property to the builder's source code. */
   public abstract void addBuilderFieldDeclaration(SourceBuilder code);
@@ -173,9 +196,101 @@ public abstract class PropertyCodeGenerator {
     code.add("%s", finalField);
   }
 
+  /**
+   * Returns true if {@link #addConvertToValueField} can convert a new property value straight to
+   * the value's field type, so a {@code withX} method need not go through a builder.
+   */
+  public boolean isValueFieldConvertible() {
+    return false;
+  }
+
+  /**
+   * Adds a fragment converting {@code value}, an expression of the property's type, to the value's
+   * field type, applying the same checks as the builder's setter. If the property has a
+   * {@link #getPresenceField() presence field}, the fragment must be followed by a second,
+   * comma-separated fragment giving its value. {@code value} may be evaluated more than once, so
+   * callers must pass a variable rather than, e.g., a getter call.
+   *
+   * @throws UnsupportedOperationException if {@link #isValueFieldConvertible()} is false
+   */
+  public void addConvertToValueField(
+      @SuppressWarnings("unused") SourceBuilder code,
+      @SuppressWarnings("unused") Excerpt value) {
+    throw new UnsupportedOperationException();
+  }
+
   /** Adds a set call for the property from a function result to the builder's source code. */
   public abstract void addSetFromResult(SourceBuilder code, Excerpt builder, Excerpt variable);
 
+  /** Adds the parameter type of the builder method called by {@link #addSetFromResult}. */
+  public void addSetFromResultType(SourceBuilder code) {
+    code.add("%s", property.getType());
+  }
+
+  /** The JSON form from which a property can be added to the builder one element at a time. */
+  public enum StreamedForm {
+
+    /** The property must be read as a single value. */
+    NONE,
+
+    /** A JSON array, each element of which is added with {@link #addStreamedElement}. */
+    ARRAY,
+
+    /** A JSON object, each key and value of which are added with {@link #addStreamedElement}. */
+    OBJECT,
+
+    /** A JSON object of arrays, each key of which is added with every value in its array. */
+    OBJECT_OF_ARRAYS
+  }
+
+  /** Returns the JSON form the property can be streamed into the builder from. */
+  public StreamedForm getStreamedForm() {
+    return StreamedForm.NONE;
+  }
+
+  /**
+   * Returns the element type, or key and value types, passed to {@link #addStreamedElement}.
+   *
+   * @throws UnsupportedOperationException if {@link #getStreamedForm()} is {@code NONE}
+   */
+  public List<TypeMirror> getStreamedTypes() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Adds a statement adding a single element, or key and value, to the property on
+   * {@code builder}, without an intermediate collection.
+   *
+   * @throws UnsupportedOperationException if {@link #getStreamedForm()} is {@code NONE}
+   */
+  public void addStreamedElement(
+      @SuppressWarnings("unused") SourceBuilder code,
+      @SuppressWarnings("unused") Excerpt builder,
+      @SuppressWarnings("unused") Excerpt... values) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns true if {@link #addStreamedRemoval} can undo {@link #addStreamedElement} one element,
+   * or one key, at a time.
+   */
+  public boolean isStreamedRemovalSupported() {
+    return false;
+  }
+
+  /**
+   * Adds a statement removing a single element from the property on {@code builder}, or, if the
+   * property is streamed as a JSON object, every value associated with the key {@code value}.
+   *
+   * @throws UnsupportedOperationException if {@link #isStreamedRemovalSupported()} is false
+   */
+  public void addStreamedRemoval(
+      @SuppressWarnings("unused") SourceBuilder code,
+      @SuppressWarnings("unused") Excerpt builder,
+      @SuppressWarnings("unused") Excerpt value) {
+    throw new UnsupportedOperationException();
+  }
+
   /** Adds a clear call for the property given a template builder to the builder's source code. */
   public abstract void addClearField(SourceBuilder code);
 
@@ -32,6 +32,7 @@ import static org.inferred.freebuilder.processor.source.FunctionalType.consumer;
 import static org.inferred.freebuilder.processor.source.FunctionalType.functionalTypeAcceptedByMethod;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.LinkedHashMultimap;
@@ -46,8 +47,10 @@ import org.inferred.freebuilder.processor.source.Excerpt;
 import org.inferred.freebuilder.processor.source.FunctionalType;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.Variable;
+import org.inferred.freebuilder.processor.source.feature.Lambdas;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
@@ -143,9 +146,8 @@ class SetMultimapProperty extends PropertyCodeGenerator {
   }
 
   @Override
-  public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s<%s, %s> %s;",
-        ImmutableSetMultimap.class, keyType, valueType, property.getField());
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s<%s, %s>", ImmutableSetMultimap.class, keyType, valueType);
   }
 
   @Override
@@ -342,11 +344,11 @@ class SetMultimapProperty extends PropertyCodeGenerator {
             mutator(property),
             mutatorType.getFunctionalInterface());
     if (overridesPutMethod) {
-      code.addLine("  mutator.%s(new %s<>(%s, this::%s));",
+      code.addLine("  mutator.%s(new %s<>(%s, %s));",
           mutatorType.getMethodName(),
           CheckedSetMultimap.TYPE,
           property.getField(),
-          putMethod(property));
+          Lambdas.biConsumer(putMethod(property), keyType, valueType));
     } else {
       code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
               putMethod(property))
@@ -419,6 +421,36 @@ class SetMultimapProperty extends PropertyCodeGenerator {
     code.addLine("%s.%s(%s);", builder, putAllMethod(property), variable);
   }
 
+  @Override
+  public void addSetFromResultType(SourceBuilder code) {
+    code.add("%s<? extends %s, ? extends %s>", Multimap.class, keyType, valueType);
+  }
+
+  @Override
+  public StreamedForm getStreamedForm() {
+    return StreamedForm.OBJECT_OF_ARRAYS;
+  }
+
+  @Override
+  public List<TypeMirror> getStreamedTypes() {
+    return ImmutableList.of(keyType, valueType);
+  }
+
+  @Override
+  public void addStreamedElement(SourceBuilder code, Excerpt builder, Excerpt... values) {
+    code.addLine("%s.%s(%s, %s);", builder, putMethod(property), values[0], values[1]);
+  }
+
+  @Override
+  public boolean isStreamedRemovalSupported() {
+    return true;
+  }
+
+  @Override
+  public void addStreamedRemoval(SourceBuilder code, Excerpt builder, Excerpt value) {
+    code.addLine("%s.%s(%s);", builder, removeAllMethod(property), value);
+  }
+
   @Override
   public void addClearField(SourceBuilder code) {
     code.addLine("%s.clear();", property.getField());
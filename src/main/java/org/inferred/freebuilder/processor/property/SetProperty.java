@@ -31,7 +31,11 @@ import static org.inferred.freebuilder.processor.property.MergeAction.appendingT
 import static org.inferred.freebuilder.processor.source.FunctionalType.consumer;
 import static org.inferred.freebuilder.processor.source.FunctionalType.functionalTypeAcceptedByMethod;
 import static org.inferred.freebuilder.processor.source.feature.GuavaLibrary.GUAVA;
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
+import static org.inferred.freebuilder.processor.source.feature.RuntimeLibrary.RUNTIME;
+import static org.inferred.freebuilder.processor.source.feature.RuntimeLibrary.UNMODIFIABLE_COLLECTIONS;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 import org.inferred.freebuilder.processor.Datatype;
@@ -45,15 +49,19 @@ import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.Type;
 import org.inferred.freebuilder.processor.source.ValueType;
 import org.inferred.freebuilder.processor.source.Variable;
+import org.inferred.freebuilder.processor.source.feature.Lambdas;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.stream.BaseStream;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
@@ -151,11 +159,10 @@ class SetProperty extends PropertyCodeGenerator {
   }
 
   @Override
-  public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s<%s> %s;",
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s<%s>",
           code.feature(GUAVA).isAvailable() ? ImmutableSet.class : Set.class,
-          elementType,
-          property.getField());
+          elementType);
   }
 
   @Override
@@ -264,7 +271,8 @@ class SetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             Spliterator.class,
             elementType)
-        .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
+        .addLine("  %s", Lambdas.forEachRemaining(
+            "elements", elementType, addMethod(property)))
         .addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
@@ -276,6 +284,12 @@ class SetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             BaseStream.class,
             elementType)
+        .addLine("  if (elements.isParallel()) {")
+        .addLine("    return %s(%s.stream(elements.spliterator(), true)",
+            addAllMethod(property), StreamSupport.class)
+        .addLine("        .collect(%s.toList())", Collectors.class)
+        .addLine("        .spliterator());")
+        .addLine("  }")
         .addLine("  return %s(elements.spliterator());", addAllMethod(property))
         .addLine("}");
   }
@@ -287,9 +301,15 @@ class SetProperty extends PropertyCodeGenerator {
             datatype.getBuilder(),
             addAllMethod(property),
             Iterable.class,
-            elementType)
-        .addLine("  elements.forEach(this::%s);", addMethod(property))
-        .addLine("  return (%s) this;", datatype.getBuilder())
+            elementType);
+    if (code.feature(LAMBDAS).isEnabled()) {
+      code.addLine("  elements.forEach(this::%s);", addMethod(property));
+    } else {
+      code.addLine("  for (%s element : elements) {", elementType)
+          .addLine("    %s(element);", addMethod(property))
+          .addLine("  }");
+    }
+    code.addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
 
@@ -359,12 +379,12 @@ class SetProperty extends PropertyCodeGenerator {
           .addLine("  }");
     }
     if (overridesAddMethod) {
-      code.addLine("  mutator.%s(new %s<%s>(%s, this::%s));",
+      code.addLine("  mutator.%s(new %s<%s>(%s, %s));",
           mutatorType.getMethodName(),
           CheckedSet.TYPE,
           elementType,
           property.getField(),
-          addMethod(property));
+          Lambdas.consumer(addMethod(property), elementType));
     } else {
       code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
               addMethod(property))
@@ -418,6 +438,8 @@ class SetProperty extends PropertyCodeGenerator {
     Excerpt immutableSetMethod;
     if (code.feature(GUAVA).isAvailable()) {
       immutableSetMethod = Excerpts.add("%s.copyOf", ImmutableSet.class);
+    } else if (code.feature(RUNTIME).isAvailable()) {
+      immutableSetMethod = Excerpts.add("%s.setCopyOf", UNMODIFIABLE_COLLECTIONS);
     } else {
       immutableSetMethod = ImmutableSetMethod.REFERENCE;
     }
@@ -468,6 +490,36 @@ class SetProperty extends PropertyCodeGenerator {
     code.addLine("%s.%s(%s);", builder, addAllMethod(property), variable);
   }
 
+  @Override
+  public void addSetFromResultType(SourceBuilder code) {
+    code.add("%s<? extends %s>", Iterable.class, elementType);
+  }
+
+  @Override
+  public StreamedForm getStreamedForm() {
+    return StreamedForm.ARRAY;
+  }
+
+  @Override
+  public List<TypeMirror> getStreamedTypes() {
+    return ImmutableList.of(elementType);
+  }
+
+  @Override
+  public void addStreamedElement(SourceBuilder code, Excerpt builder, Excerpt... values) {
+    code.addLine("%s.%s(%s);", builder, addMethod(property), values[0]);
+  }
+
+  @Override
+  public boolean isStreamedRemovalSupported() {
+    return true;
+  }
+
+  @Override
+  public void addStreamedRemoval(SourceBuilder code, Excerpt builder, Excerpt value) {
+    code.addLine("%s.%s(%s);", builder, removeMethod(property), value);
+  }
+
   @Override
   public void addClearField(SourceBuilder code) {
     code.addLine("%s();", clearMethod(property));
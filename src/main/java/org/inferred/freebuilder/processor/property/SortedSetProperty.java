@@ -32,7 +32,9 @@ import static org.inferred.freebuilder.processor.property.MergeAction.appendingT
 import static org.inferred.freebuilder.processor.source.FunctionalType.consumer;
 import static org.inferred.freebuilder.processor.source.FunctionalType.functionalTypeAcceptedByMethod;
 import static org.inferred.freebuilder.processor.source.feature.GuavaLibrary.GUAVA;
+import static org.inferred.freebuilder.processor.source.feature.Lambdas.LAMBDAS;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 
@@ -40,15 +42,20 @@ import org.inferred.freebuilder.processor.Datatype;
 import org.inferred.freebuilder.processor.Declarations;
 import org.inferred.freebuilder.processor.excerpt.CheckedNavigableSet;
 import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.Excerpts;
+import org.inferred.freebuilder.processor.source.FieldAccess;
 import org.inferred.freebuilder.processor.source.FunctionalType;
 import org.inferred.freebuilder.processor.source.PreconditionExcerpts;
 import org.inferred.freebuilder.processor.source.SourceBuilder;
 import org.inferred.freebuilder.processor.source.Type;
 import org.inferred.freebuilder.processor.source.Variable;
+import org.inferred.freebuilder.processor.source.feature.Lambdas;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Optional;
@@ -57,6 +64,8 @@ import java.util.SortedSet;
 import java.util.Spliterator;
 import java.util.TreeSet;
 import java.util.stream.BaseStream;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
@@ -154,16 +163,28 @@ class SortedSetProperty extends PropertyCodeGenerator {
   }
 
   @Override
-  public void addValueFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %s<%s> %s;",
+  public void addValueFieldType(SourceBuilder code) {
+    code.add("%s<%s>",
         code.feature(GUAVA).isAvailable() ? ImmutableSortedSet.class : SortedSet.class,
-        elementType,
-        property.getField());
+        elementType);
   }
 
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
     code.addLine("private %s<%s> %s = null;", NavigableSet.class, elementType, property.getField());
+    if (code.feature(GUAVA).isAvailable()) {
+      code.addLine("// Elements added since the set was last read, in insertion order. Sorted and")
+          .addLine("// deduplicated in one pass when the set is next read or built.")
+          .addLine("private %s<%s> %s = null;", ArrayList.class, elementType, pendingField());
+    }
+  }
+
+  /**
+   * Returns the builder field buffering unsorted additions. Only used when Guava is available, as
+   * the sort-once build relies on {@link ImmutableSortedSet.Builder}.
+   */
+  private FieldAccess pendingField() {
+    return new FieldAccess("_" + property.getName() + "Pending");
   }
 
   @Override
@@ -239,11 +260,25 @@ class SortedSetProperty extends PropertyCodeGenerator {
             datatype.getBuilder(),
             addMethod(property),
             unboxedType.orElse(elementType));
-    addConvertToTreeSet(code);
-    if (unboxedType.isPresent()) {
-      code.addLine("  %s.add(element);", property.getField());
+    Excerpt checkedElement = unboxedType.isPresent()
+        ? Excerpts.add("element")
+        : Excerpts.add("%s.requireNonNull(element)", Objects.class);
+    if (code.feature(GUAVA).isAvailable()) {
+      code.addLine("  if (%s instanceof %s) {", property.getField(), TreeSet.class)
+          .addLine("    %s.add(%s);", property.getField(), checkedElement)
+          .addLine("  } else {")
+          .addLine("    if (%s == null) {", property.getField())
+          .addLine("      // Use default comparator")
+          .addLine("      %s = %s.of();", property.getField(), ImmutableSortedSet.class)
+          .addLine("    }")
+          .addLine("    if (%s == null) {", pendingField())
+          .addLine("      %s = new %s<>();", pendingField(), ArrayList.class)
+          .addLine("    }")
+          .addLine("    %s.add(%s);", pendingField(), checkedElement)
+          .addLine("  }");
     } else {
-      code.addLine("  %s.add(%s.requireNonNull(element));", property.getField(), Objects.class);
+      addConvertToTreeSet(code);
+      code.addLine("  %s.add(%s);", property.getField(), checkedElement);
     }
     code.addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
@@ -256,7 +291,11 @@ class SortedSetProperty extends PropertyCodeGenerator {
     if (code.feature(GUAVA).isAvailable()) {
       code.addLine("  } else if (%s instanceof %s) {",
               property.getField(), ImmutableSortedSet.class)
-          .addLine("    %1$s = new %2$s<>(%1$s);", property.getField(), TreeSet.class);
+          .addLine("    %1$s = new %2$s<>(%1$s);", property.getField(), TreeSet.class)
+          .addLine("  }")
+          .addLine("  if (%s != null) {", pendingField())
+          .addLine("    %s.addAll(%s);", property.getField(), pendingField())
+          .addLine("    %s = null;", pendingField());
     }
     code.addLine("  }");
   }
@@ -311,7 +350,8 @@ class SortedSetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             Spliterator.class,
             elementType)
-        .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
+        .addLine("  %s", Lambdas.forEachRemaining(
+            "elements", elementType, addMethod(property)))
         .addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
@@ -323,6 +363,13 @@ class SortedSetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             BaseStream.class,
             elementType)
+        .addLine("  if (elements.isParallel()) {")
+        .addLine("    return %s(%s.stream(elements.spliterator(), true)",
+            addAllMethod(property), StreamSupport.class)
+        .addLine("        .unordered()")
+        .addLine("        .collect(%s.toList())", Collectors.class)
+        .addLine("        .spliterator());")
+        .addLine("  }")
         .addLine("  return %s(elements.spliterator());", addAllMethod(property))
         .addLine("}");
   }
@@ -334,9 +381,15 @@ class SortedSetProperty extends PropertyCodeGenerator {
             datatype.getBuilder(),
             addAllMethod(property),
             Iterable.class,
-            elementType)
-        .addLine("  elements.forEach(this::%s);", addMethod(property))
-        .addLine("  return (%s) this;", datatype.getBuilder())
+            elementType);
+    if (code.feature(LAMBDAS).isEnabled()) {
+      code.addLine("  elements.forEach(this::%s);", addMethod(property));
+    } else {
+      code.addLine("  for (%s element : elements) {", elementType)
+          .addLine("    %s(element);", addMethod(property))
+          .addLine("  }");
+    }
+    code.addLine("  return (%s) this;", datatype.getBuilder())
         .addLine("}");
   }
 
@@ -400,12 +453,12 @@ class SortedSetProperty extends PropertyCodeGenerator {
             mutatorType.getFunctionalInterface());
     addConvertToTreeSet(code);
     if (overridesAddMethod) {
-      code.addLine("  mutator.%s(new %s<%s>(%s, this::%s));",
+      code.addLine("  mutator.%s(new %s<%s>(%s, %s));",
           mutatorType.getMethodName(),
           CheckedNavigableSet.TYPE,
           elementType,
           property.getField(),
-          addMethod(property));
+          Lambdas.consumer(addMethod(property), elementType));
     } else {
       code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
               addMethod(property))
@@ -425,7 +478,8 @@ class SortedSetProperty extends PropertyCodeGenerator {
         .addLine(" */")
         .addLine("public %s %s() {", datatype.getBuilder(), clearMethod(property));
     if (code.feature(GUAVA).isAvailable()) {
-      code.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableSortedSet.class)
+      code.addLine("  %s = null;", pendingField())
+          .addLine("  if (%s instanceof %s) {", property.getField(), ImmutableSortedSet.class)
           .addLine("    if (%s.isEmpty()) {", property.getField())
           .addLine("       // Do nothing")
           .addLine("    } else if (%s.comparator() != null) {", property.getField())
@@ -462,6 +516,15 @@ class SortedSetProperty extends PropertyCodeGenerator {
     if (code.feature(GUAVA).isAvailable()) {
       code.addLine("  %s = %s.of();",
               finalField, ImmutableSortedSet.class)
+          .addLine("} else if (%s != null) {", pendingField().on(builder))
+          .addLine("  %s = new %s<%s>(%s.comparator())",
+              finalField,
+              ImmutableSortedSet.Builder.class,
+              elementType,
+              property.getField().on(builder))
+          .addLine("      .addAll(%s)", property.getField().on(builder))
+          .addLine("      .addAll(%s)", pendingField().on(builder))
+          .addLine("      .build();")
           .addLine("} else if (%s instanceof %s) {",
               property.getField().on(builder), ImmutableSortedSet.class)
           .addLine("  %s = (%s<%s>) %s;",
@@ -497,6 +560,7 @@ class SortedSetProperty extends PropertyCodeGenerator {
           .addLine("          || (%s instanceof %s ",
               property.getField(), ImmutableSortedSet.class)
           .addLine("              && %s.isEmpty()", property.getField())
+          .addLine("              && %s == null", pendingField())
           .addLine("              && %s.equals(%s.comparator(), %s.%s().comparator())))) {",
               Objects.class, property.getField(), value, property.getGetterName())
           .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
@@ -520,6 +584,13 @@ class SortedSetProperty extends PropertyCodeGenerator {
     code.addLine("if (%s != null) {", property.getField().on(base))
         .addLine("  %s(%s);", addAllMethod(property), property.getField().on(base))
         .addLine("}");
+    if (code.feature(GUAVA).isAvailable()) {
+      // Skip merging a builder's pending elements into itself: it is a no-op, and would append to
+      // the list while iterating it
+      code.addLine("if (%s != null && %s != this) {", pendingField().on(base), base)
+          .addLine("  %s(%s);", addAllMethod(property), pendingField().on(base))
+          .addLine("}");
+    }
   }
 
   @Override
@@ -532,6 +603,36 @@ class SortedSetProperty extends PropertyCodeGenerator {
     code.addLine("%s.%s(%s);", builder, addAllMethod(property), variable);
   }
 
+  @Override
+  public void addSetFromResultType(SourceBuilder code) {
+    code.add("%s<? extends %s>", Iterable.class, elementType);
+  }
+
+  @Override
+  public StreamedForm getStreamedForm() {
+    return StreamedForm.ARRAY;
+  }
+
+  @Override
+  public List<TypeMirror> getStreamedTypes() {
+    return ImmutableList.of(elementType);
+  }
+
+  @Override
+  public void addStreamedElement(SourceBuilder code, Excerpt builder, Excerpt... values) {
+    code.addLine("%s.%s(%s);", builder, addMethod(property), values[0]);
+  }
+
+  @Override
+  public boolean isStreamedRemovalSupported() {
+    return true;
+  }
+
+  @Override
+  public void addStreamedRemoval(SourceBuilder code, Excerpt builder, Excerpt value) {
+    code.addLine("%s.%s(%s);", builder, removeMethod(property), value);
+  }
+
   @Override
   public void addClearField(SourceBuilder code) {
     code.addLine("%s();", clearMethod(property));
@@ -0,0 +1,69 @@
+package org.inferred.freebuilder.processor.source.feature;
+
+import org.inferred.freebuilder.processor.source.QualifiedName;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+
+import javax.annotation.processing.ProcessingEnvironment;
+
+/**
+ * Whether generated builders count how they are used. Disabled by default in tests.
+ *
+ * <p>Passing {@code -Afreebuilder.instrument=true} to javac, with the freebuilder-runtime library
+ * on the classpath, makes each generated builder record builders created, builds, partial
+ * builds, {@code toBuilder} and {@code mergeFrom} calls, and collection copies in per-type
+ * counters, readable from the runtime's registry or over JMX. Without the option, no
+ * instrumentation code is generated at all.
+ */
+public enum Instrumentation implements Feature<Instrumentation> {
+
+  DISABLED("No instrumentation"), ENABLED("Instrumentation");
+
+  /** Processor option that instruments generated code when set to {@code true}. */
+  public static final String OPTION = "freebuilder.instrument";
+
+  /**
+   * Constant to pass to {@link SourceBuilder#feature(FeatureType)} to get the current status of
+   * {@link Instrumentation}.
+   */
+  public static final FeatureType<Instrumentation> INSTRUMENTATION =
+      new FeatureType<Instrumentation>() {
+
+        @Override
+        protected Instrumentation testDefault(FeatureSet features) {
+          return DISABLED;
+        }
+
+        @Override
+        protected Instrumentation forEnvironment(ProcessingEnvironment env, FeatureSet features) {
+          if (!isRequested(env)) {
+            return DISABLED;
+          }
+          RuntimeLibrary runtime = RuntimeLibrary.RUNTIME.forEnvironment(env, features);
+          return runtime.isAvailable() ? ENABLED : DISABLED;
+        }
+      };
+
+  /** Per-type counters of the freebuilder-runtime library. */
+  public static final QualifiedName BUILDER_COUNTERS =
+      QualifiedName.of(RuntimeLibrary.PACKAGE, "BuilderCounters");
+
+  /** Returns whether instrumentation was requested with {@link #OPTION}. */
+  public static boolean isRequested(ProcessingEnvironment env) {
+    return "true".equalsIgnoreCase(env.getOptions().get(OPTION));
+  }
+
+  private final String humanReadableFormat;
+
+  Instrumentation(String humanReadableFormat) {
+    this.humanReadableFormat = humanReadableFormat;
+  }
+
+  public boolean isEnabled() {
+    return this != DISABLED;
+  }
+
+  @Override
+  public String toString() {
+    return humanReadableFormat;
+  }
+}
@@ -0,0 +1,134 @@
+package org.inferred.freebuilder.processor.source.feature;
+
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+
+import java.util.Iterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import javax.annotation.processing.ProcessingEnvironment;
+
+/**
+ * Whether generated code may use lambdas and method references. Enabled by default in tests.
+ *
+ * <p>Each lambda or method reference bootstraps through {@code LambdaMetafactory} the first time
+ * it is used, spinning a hidden class at runtime. Passing {@code -Afreebuilder.lambdas=false} to
+ * javac generates plain loops and anonymous classes instead, which are compiled ahead of time and
+ * cost nothing until loaded, for applications where startup time matters.
+ */
+public enum Lambdas implements Feature<Lambdas> {
+
+  ENABLED("Lambdas"), DISABLED("No lambdas");
+
+  /** Processor option that disables lambdas in generated code when set to {@code false}. */
+  public static final String OPTION = "freebuilder.lambdas";
+
+  /**
+   * Constant to pass to {@link SourceBuilder#feature(FeatureType)} to get the current status of
+   * {@link Lambdas}.
+   */
+  public static final FeatureType<Lambdas> LAMBDAS = new FeatureType<Lambdas>() {
+
+    @Override
+    protected Lambdas testDefault(FeatureSet features) {
+      return ENABLED;
+    }
+
+    @Override
+    protected Lambdas forEnvironment(ProcessingEnvironment env, FeatureSet features) {
+      String option = env.getOptions().get(OPTION);
+      return "false".equalsIgnoreCase(option) ? DISABLED : ENABLED;
+    }
+  };
+
+  private final String humanReadableFormat;
+
+  Lambdas(String humanReadableFormat) {
+    this.humanReadableFormat = humanReadableFormat;
+  }
+
+  public boolean isEnabled() {
+    return this != DISABLED;
+  }
+
+  /**
+   * Excerpt for a {@link Consumer} of {@code elementType} that calls {@code method} on the
+   * enclosing instance: a method reference if lambdas are enabled, or an anonymous class if not.
+   */
+  public static Excerpt consumer(String method, Object elementType) {
+    return new MethodReference(method, Consumer.class, elementType);
+  }
+
+  /**
+   * Excerpt for a {@link BiConsumer} of {@code keyType} and {@code valueType} that calls
+   * {@code method} on the enclosing instance: a method reference if lambdas are enabled, or an
+   * anonymous class if not.
+   */
+  public static Excerpt biConsumer(String method, Object keyType, Object valueType) {
+    return new MethodReference(method, BiConsumer.class, keyType, valueType);
+  }
+
+  /**
+   * Excerpt of statements calling {@code method} on the enclosing instance with each remaining
+   * element of {@code spliterator}: {@code forEachRemaining} if lambdas are enabled, or an
+   * iterator loop if not.
+   */
+  public static Excerpt forEachRemaining(Object spliterator, Object elementType, String method) {
+    return source -> {
+      if (source.feature(LAMBDAS).isEnabled()) {
+        source.add("%s.forEachRemaining(this::%s);", spliterator, method);
+      } else {
+        source.add("%s<? extends %s> iterator = %s.iterator(%s);%n",
+                Iterator.class, elementType, Spliterators.class, spliterator)
+            .add("while (iterator.hasNext()) {%n")
+            .add("  %s(iterator.next());%n", method)
+            .add("}");
+      }
+    };
+  }
+
+  private static class MethodReference implements Excerpt {
+
+    private static final String[][] PARAMETER_NAMES = {{"element"}, {"key", "value"}};
+
+    private final String method;
+    private final Class<?> functionalInterface;
+    private final Object[] parameterTypes;
+
+    MethodReference(String method, Class<?> functionalInterface, Object... parameterTypes) {
+      this.method = method;
+      this.functionalInterface = functionalInterface;
+      this.parameterTypes = parameterTypes;
+    }
+
+    @Override
+    public void addTo(SourceBuilder source) {
+      if (source.feature(LAMBDAS).isEnabled()) {
+        source.add("this::%s", method);
+        return;
+      }
+      String[] names = PARAMETER_NAMES[parameterTypes.length - 1];
+      source.add("new %s<", functionalInterface);
+      for (int i = 0; i < parameterTypes.length; i++) {
+        source.add("%s%s", (i == 0) ? "" : ", ", parameterTypes[i]);
+      }
+      source.add(">() {%n  @%s public void accept(", Override.class);
+      for (int i = 0; i < parameterTypes.length; i++) {
+        source.add("%s%s %s", (i == 0) ? "" : ", ", parameterTypes[i], names[i]);
+      }
+      source.add(") {%n    %s(%s);%n  }%n}", method, String.join(", ", names));
+    }
+
+    @Override
+    public String toString() {
+      return "this::" + method;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return humanReadableFormat;
+  }
+}
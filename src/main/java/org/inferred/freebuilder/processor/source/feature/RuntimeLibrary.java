@@ -0,0 +1,101 @@
+package org.inferred.freebuilder.processor.source.feature;
+
+import org.inferred.freebuilder.processor.source.Excerpt;
+import org.inferred.freebuilder.processor.source.QualifiedName;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.util.Elements;
+
+/**
+ * Whether the freebuilder-runtime library is available or not. Defaults to {@link #UNAVAILABLE}
+ * in tests.
+ *
+ * <p>When it is on the compile classpath, generated code references the runtime's shared helper
+ * classes instead of emitting a private copy of each helper into every generated builder.
+ */
+public enum RuntimeLibrary implements Feature<RuntimeLibrary> {
+
+  AVAILABLE("FreeBuilder runtime"), UNAVAILABLE("No FreeBuilder runtime");
+
+  /** Package of the freebuilder-runtime library. */
+  public static final String PACKAGE = "org.inferred.freebuilder.runtime";
+
+  /**
+   * Constant to pass to {@link SourceBuilder#feature(FeatureType)} to get the current status of
+   * {@link RuntimeLibrary}.
+   */
+  public static final FeatureType<RuntimeLibrary> RUNTIME = new FeatureType<RuntimeLibrary>() {
+
+    @Override
+    protected RuntimeLibrary testDefault(FeatureSet features) {
+      return UNAVAILABLE;
+    }
+
+    @Override
+    protected RuntimeLibrary forEnvironment(ProcessingEnvironment env, FeatureSet features) {
+      return hasType(env.getElementUtils(), UNMODIFIABLE_COLLECTIONS) ? AVAILABLE : UNAVAILABLE;
+    }
+  };
+
+  /** Static factories for unmodifiable copies of lists, sets and maps. */
+  public static final QualifiedName UNMODIFIABLE_COLLECTIONS =
+      QualifiedName.of(PACKAGE, "UnmodifiableCollections");
+
+  /**
+   * Excerpt naming the runtime library's {@code simpleName} class if the library is available, or
+   * {@code inlined}, a private copy of the same helper, if not.
+   */
+  public static Excerpt sharedOr(String simpleName, Excerpt inlined) {
+    return new SharedOrInlined(QualifiedName.of(PACKAGE, simpleName), inlined);
+  }
+
+  private static class SharedOrInlined implements Excerpt {
+
+    private final QualifiedName shared;
+    private final Excerpt inlined;
+
+    SharedOrInlined(QualifiedName shared, Excerpt inlined) {
+      this.shared = shared;
+      this.inlined = inlined;
+    }
+
+    @Override
+    public void addTo(SourceBuilder source) {
+      if (source.feature(RUNTIME).isAvailable()) {
+        source.add("%s", shared);
+      } else {
+        source.add(inlined);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return shared.getSimpleName();
+    }
+  }
+
+  private final String humanReadableFormat;
+
+  RuntimeLibrary(String humanReadableFormat) {
+    this.humanReadableFormat = humanReadableFormat;
+  }
+
+  public boolean isAvailable() {
+    return this != UNAVAILABLE;
+  }
+
+  @Override
+  public String toString() {
+    return humanReadableFormat;
+  }
+
+  private static boolean hasType(Elements elements, QualifiedName type) {
+    try {
+      return elements.getTypeElement(type.toString()) != null;
+    } catch (RuntimeException e) {
+      // Work around Eclipse bug
+      return false;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.inferred.freebuilder.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The {@link BuilderCounters} of every instrumented FreeBuilder type loaded so far.
+ *
+ * <p>Each type's counters are also registered with the platform MBean server, under
+ * {@code org.inferred.freebuilder:type=BuilderCounters,name=<type>}, so they can be watched with
+ * any JMX client, such as JConsole or VisualVM.
+ */
+public final class BuilderCounterRegistry {
+
+  /** Domain of the JMX object names the counters are registered under. */
+  public static final String JMX_DOMAIN = "org.inferred.freebuilder";
+
+  private static final ConcurrentMap<String, BuilderCounters> COUNTERS_BY_TYPE =
+      new ConcurrentHashMap<>();
+
+  /** Returns the counters of {@code type}, if it is instrumented and has been loaded. */
+  public static Optional<BuilderCounters> get(Class<?> type) {
+    return Optional.ofNullable(COUNTERS_BY_TYPE.get(type.getName()));
+  }
+
+  /** Returns the counters of every instrumented type loaded so far. */
+  public static Collection<BuilderCounters> all() {
+    return Collections.unmodifiableCollection(COUNTERS_BY_TYPE.values());
+  }
+
+  /** Resets the counters of every instrumented type to zero. */
+  public static void resetAll() {
+    COUNTERS_BY_TYPE.values().forEach(BuilderCounters::reset);
+  }
+
+  static BuilderCounters register(Class<?> type) {
+    String typeName = type.getName();
+    BuilderCounters counters = new BuilderCounters(typeName);
+    BuilderCounters existing = COUNTERS_BY_TYPE.putIfAbsent(typeName, counters);
+    if (existing != null) {
+      // The same type loaded by another class loader shares its counters.
+      return existing;
+    }
+    try {
+      ObjectName name = new ObjectName(
+          JMX_DOMAIN + ":type=BuilderCounters,name=" + ObjectName.quote(typeName));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(counters, name);
+    } catch (JMException | SecurityException e) {
+      // JMX is a convenience; the counters remain available from this registry.
+    }
+    return counters;
+  }
+
+  private BuilderCounterRegistry() {}
+}
@@ -0,0 +1,109 @@
+package org.inferred.freebuilder.runtime;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Usage counters for one FreeBuilder type, incremented by builders generated with
+ * {@code -Afreebuilder.instrument=true}.
+ *
+ * <p>Each counter is a {@link LongAdder}, so instrumented builders stay cheap to use from many
+ * threads at once. Obtain instances from {@link BuilderCounterRegistry}.
+ */
+public final class BuilderCounters implements BuilderCountersMXBean {
+
+  private final String typeName;
+  private final LongAdder buildersCreated = new LongAdder();
+  private final LongAdder builds = new LongAdder();
+  private final LongAdder partialBuilds = new LongAdder();
+  private final LongAdder toBuilderCalls = new LongAdder();
+  private final LongAdder mergeFromCalls = new LongAdder();
+  private final LongAdder collectionCopies = new LongAdder();
+
+  BuilderCounters(String typeName) {
+    this.typeName = typeName;
+  }
+
+  /** Returns the counters of {@code type}, registering them on first use. For generated code. */
+  public static BuilderCounters forType(Class<?> type) {
+    return BuilderCounterRegistry.register(type);
+  }
+
+  public void recordBuilderCreated() {
+    buildersCreated.increment();
+  }
+
+  public void recordBuild() {
+    builds.increment();
+  }
+
+  public void recordBuildPartial() {
+    partialBuilds.increment();
+  }
+
+  public void recordToBuilder() {
+    toBuilderCalls.increment();
+  }
+
+  public void recordMergeFrom() {
+    mergeFromCalls.increment();
+  }
+
+  public void recordCollectionCopies(int copies) {
+    collectionCopies.add(copies);
+  }
+
+  @Override
+  public String getTypeName() {
+    return typeName;
+  }
+
+  @Override
+  public long getBuildersCreated() {
+    return buildersCreated.sum();
+  }
+
+  @Override
+  public long getBuilds() {
+    return builds.sum();
+  }
+
+  @Override
+  public long getPartialBuilds() {
+    return partialBuilds.sum();
+  }
+
+  @Override
+  public long getToBuilderCalls() {
+    return toBuilderCalls.sum();
+  }
+
+  @Override
+  public long getMergeFromCalls() {
+    return mergeFromCalls.sum();
+  }
+
+  @Override
+  public long getCollectionCopies() {
+    return collectionCopies.sum();
+  }
+
+  @Override
+  public void reset() {
+    buildersCreated.reset();
+    builds.reset();
+    partialBuilds.reset();
+    toBuilderCalls.reset();
+    mergeFromCalls.reset();
+    collectionCopies.reset();
+  }
+
+  @Override
+  public String toString() {
+    return typeName + "{buildersCreated=" + getBuildersCreated()
+        + ", builds=" + getBuilds()
+        + ", partialBuilds=" + getPartialBuilds()
+        + ", toBuilderCalls=" + getToBuilderCalls()
+        + ", mergeFromCalls=" + getMergeFromCalls()
+        + ", collectionCopies=" + getCollectionCopies() + "}";
+  }
+}
@@ -0,0 +1,32 @@
+package org.inferred.freebuilder.runtime;
+
+/**
+ * JMX view of the {@link BuilderCounters} of one FreeBuilder type, registered under
+ * {@code org.inferred.freebuilder:type=BuilderCounters,name=<type>}.
+ */
+public interface BuilderCountersMXBean {
+
+  /** Returns the qualified name of the instrumented type. */
+  String getTypeName();
+
+  /** Returns the number of builders created, including those created by {@code toBuilder()}. */
+  long getBuildersCreated();
+
+  /** Returns the number of calls to {@code build()}. */
+  long getBuilds();
+
+  /** Returns the number of calls to {@code buildPartial()}. */
+  long getPartialBuilds();
+
+  /** Returns the number of calls to {@code toBuilder()} on values and partials. */
+  long getToBuilderCalls();
+
+  /** Returns the number of calls to either {@code mergeFrom} method. */
+  long getMergeFromCalls();
+
+  /** Returns the number of collection properties copied into new values and partials. */
+  long getCollectionCopies();
+
+  /** Resets every counter to zero. */
+  void reset();
+}
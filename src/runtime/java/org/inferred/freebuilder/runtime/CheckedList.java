@@ -0,0 +1,58 @@
+package org.inferred.freebuilder.runtime;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * A list implementation that delegates to a provided add method to perform element validation and
+ * insertion into a random-access backing list.
+ *
+ * <p>For use by generated code only; this API may change without notice.
+ */
+public class CheckedList<E> extends AbstractList<E> implements RandomAccess {
+
+  private final List<E> list;
+  private final Consumer<E> add;
+
+  public CheckedList(List<E> list, Consumer<E> add) {
+    this.list = list;
+    this.add = add;
+  }
+
+  @Override public int size() {
+    return list.size();
+  }
+
+  @Override public E get(int index) {
+    return list.get(index);
+  }
+
+  @Override public E set(int index, E element) {
+    add.accept(element);
+    return list.set(index, list.remove(list.size() - 1));
+  }
+
+  @Override public void add(int index, E element) {
+    // Append to the end of the list with add, then move the inserted element
+    // to the desired location.
+    int endIndex = list.size();
+    add.accept(element);
+    if (index != endIndex) {
+      list.add(index, list.remove(endIndex));
+    }
+  }
+
+  @Override public E remove(int index) {
+    return list.remove(index);
+  }
+
+  @Override public void clear() {
+    list.clear();
+  }
+
+  @Override protected void removeRange(int fromIndex, int toIndex) {
+    list.subList(fromIndex, toIndex).clear();
+  }
+}
@@ -0,0 +1,140 @@
+package org.inferred.freebuilder.runtime;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A map implementation that delegates to a provided put method to perform entry validation and
+ * insertion into a backing map.
+ *
+ * <p>For use by generated code only; this API may change without notice.
+ */
+public class CheckedMap<K, V> extends AbstractMap<K, V> {
+
+  private final Map<K, V> map;
+  private final BiConsumer<K, V> put;
+
+  public CheckedMap(Map<K, V> map, BiConsumer<K, V> put) {
+    this.map = map;
+    this.put = put;
+  }
+
+  @Override public V get(Object key) {
+    return map.get(key);
+  }
+
+  @Override public boolean containsKey(Object key) {
+    return map.containsKey(key);
+  }
+
+  @Override public V put(K key, V value) {
+    V oldValue = map.get(key);
+    put.accept(key, value);
+    return oldValue;
+  }
+
+  @Override public V remove(Object key) {
+    return map.remove(key);
+  }
+
+  @Override public void clear() {
+    map.clear();
+  }
+
+  @Override public Set<Map.Entry<K, V>> entrySet() {
+    return new CheckedEntrySet<>(map.entrySet(), put);
+  }
+
+  private static class CheckedEntry<K, V> implements Map.Entry<K, V> {
+
+    private final Map.Entry<K, V> entry;
+    private final BiConsumer<K, V> put;
+
+    CheckedEntry(Map.Entry<K, V> entry, BiConsumer<K, V> put) {
+      this.entry = entry;
+      this.put = put;
+    }
+
+    @Override public K getKey() {
+      return entry.getKey();
+    }
+
+    @Override public V getValue() {
+      return entry.getValue();
+    }
+
+    @Override public V setValue(V value) {
+      Objects.requireNonNull(value);
+      V oldValue = entry.getValue();
+      put.accept(entry.getKey(), value);
+      return oldValue;
+    }
+
+    @Override public boolean equals(Object o) {
+      return entry.equals(o);
+    }
+
+    @Override public int hashCode() {
+      return entry.hashCode();
+    }
+  }
+
+  private static class CheckedEntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+
+    private final Iterator<Map.Entry<K, V>> iterator;
+    private final BiConsumer<K, V> put;
+
+    CheckedEntryIterator(Iterator<Map.Entry<K, V>> iterator, BiConsumer<K, V> put) {
+      this.iterator = iterator;
+      this.put = put;
+    }
+
+    @Override public boolean hasNext() {
+      return iterator.hasNext();
+    }
+
+    @Override public Map.Entry<K, V> next() {
+      return new CheckedEntry<K, V>(iterator.next(), put);
+    }
+
+    @Override public void remove() {
+      iterator.remove();
+    }
+  }
+
+  private static class CheckedEntrySet<K, V> extends AbstractSet<Map.Entry<K, V>> {
+
+    private final Set<Map.Entry<K, V>> set;
+    private final BiConsumer<K, V> put;
+
+    CheckedEntrySet(Set<Map.Entry<K, V>> set, BiConsumer<K, V> put) {
+      this.set = set;
+      this.put = put;
+    }
+
+    @Override public int size() {
+      return set.size();
+    }
+
+    @Override public Iterator<Map.Entry<K, V>> iterator() {
+      return new CheckedEntryIterator<K, V>(set.iterator(), put);
+    }
+
+    @Override public boolean contains(Object o) {
+      return set.contains(o);
+    }
+
+    @Override public boolean remove(Object o) {
+      return set.remove(o);
+    }
+
+    @Override public void clear() {
+      set.clear();
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package org.inferred.freebuilder.runtime;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A navigable set implementation that delegates to a provided add method to perform element
+ * validation and insertion into a backing set.
+ *
+ * <p>For use by generated code only; this API may change without notice.
+ */
+public class CheckedNavigableSet<E> extends AbstractSet<E> implements NavigableSet<E> {
+
+  private final NavigableSet<E> set;
+  private final Consumer<E> add;
+  private final E fromElement;
+  private final boolean fromInclusive;
+  private final E toElement;
+  private final boolean toInclusive;
+
+  public CheckedNavigableSet(NavigableSet<E> set, Consumer<E> add) {
+    this(set, add, null, false, null, false);
+  }
+
+  private CheckedNavigableSet(
+      NavigableSet<E> set,
+      Consumer<E> add,
+      E fromElement,
+      boolean fromInclusive,
+      E toElement,
+      boolean toInclusive) {
+    this.set = set;
+    this.add = add;
+    this.fromElement = fromElement;
+    this.fromInclusive = fromInclusive;
+    this.toElement = toElement;
+    this.toInclusive = toInclusive;
+  }
+
+  @Override public Iterator<E> iterator() {
+    return set.iterator();
+  }
+
+  @Override public int size() {
+    return set.size();
+  }
+
+  @Override public boolean contains(Object e) {
+    return set.contains(e);
+  }
+
+  @Override public boolean add(E e) {
+    if (fromElement != null || toElement != null) {
+      checkInRange(e);
+    }
+    if (!set.contains(e)) {
+      add.accept(e);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  private void checkInRange(E e) {
+    Comparator<? super E> comparator = set.comparator();
+    if (comparator == null) {
+      @SuppressWarnings("unchecked")
+      Comparable<? super E> lowerBound = (Comparable<? super E>) fromElement;
+      @SuppressWarnings("unchecked")
+      Comparable<? super E> upperBound = (Comparable<? super E>) toElement;
+      if (lowerBound != null && lowerBound.compareTo(e) > (fromInclusive ? 0 : -1)) {
+        throw new IllegalArgumentException(String.format("element must be %s %s (got %s)",
+            (fromInclusive ? "at least" : "greater than"), lowerBound, e));
+      }
+      if (upperBound != null && upperBound.compareTo(e) < (toInclusive ? 0 : 1)) {
+        throw new IllegalArgumentException(String.format("element must be %s %s (got %s)",
+            (toInclusive ? "at most" : "less than"), upperBound, e));
+      }
+    } else {
+      if (fromElement != null && comparator.compare(fromElement, e) > (fromInclusive ? 0 : -1)) {
+        throw new IllegalArgumentException(String.format(
+            "element must be %s %s (got %s) using comparator %s",
+            (fromInclusive ? "at least" : "greater than"), fromElement, e, comparator));
+      }
+      if (toElement != null && comparator.compare(toElement, e) < (toInclusive ? 0 : 1)) {
+        throw new IllegalArgumentException(String.format(
+            "element must be %s %s (got %s) using comparator %s",
+            (toInclusive ? "at most" : "less than"), toElement, e, comparator));
+      }
+    }
+  }
+
+  @Override public boolean remove(Object e) {
+    return set.remove(e);
+  }
+
+  @Override public Comparator<? super E> comparator() {
+    return set.comparator();
+  }
+
+  @Override public NavigableSet<E> subSet(E fromElement, E toElement) {
+    return subSet(fromElement, true, toElement, false);
+  }
+
+  @Override public NavigableSet<E> headSet(E toElement) {
+    return headSet(toElement, false);
+  }
+
+  @Override public NavigableSet<E> tailSet(E fromElement) {
+    return tailSet(fromElement, true);
+  }
+
+  @Override public E first() {
+    return set.first();
+  }
+
+  @Override public E last() {
+    return set.last();
+  }
+
+  @Override public E lower(E element) {
+    return set.lower(element);
+  }
+
+  @Override public E floor(E element) {
+    return set.floor(element);
+  }
+
+  @Override public E ceiling(E element) {
+    return set.ceiling(element);
+  }
+
+  @Override public E higher(E element) {
+    return set.higher(element);
+  }
+
+  @Override public E pollFirst() {
+    return set.pollFirst();
+  }
+
+  @Override public E pollLast() {
+    return set.pollLast();
+  }
+
+  @Override public NavigableSet<E> descendingSet() {
+    NavigableSet<E> descendingSet = set.descendingSet();
+    return new CheckedNavigableSet<>(
+        descendingSet, add, toElement, toInclusive, fromElement, fromInclusive);
+  }
+
+  @Override public Iterator<E> descendingIterator() {
+    return set.descendingIterator();
+  }
+
+  @Override public NavigableSet<E> subSet(
+      E fromElement,
+      boolean fromInclusive,
+      E toElement,
+      boolean toInclusive) {
+    Objects.requireNonNull(fromElement);
+    Objects.requireNonNull(toElement);
+    NavigableSet<E> subSet = set.subSet(fromElement, fromInclusive, toElement, toInclusive);
+    return new CheckedNavigableSet<>(
+        subSet, add, fromElement, fromInclusive, toElement, toInclusive);
+  }
+
+  @Override public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+    Objects.requireNonNull(toElement);
+    NavigableSet<E> headSet = set.headSet(toElement, inclusive);
+    return new CheckedNavigableSet<>(
+        headSet, add, fromElement, fromInclusive, toElement, inclusive);
+  }
+
+  @Override public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+    Objects.requireNonNull(fromElement);
+    NavigableSet<E> tailSet = set.tailSet(fromElement, inclusive);
+    return new CheckedNavigableSet<>(
+        tailSet, add, fromElement, inclusive, toElement, toInclusive);
+  }
+}
@@ -0,0 +1,48 @@
+package org.inferred.freebuilder.runtime;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A set implementation that delegates to a provided add method to perform element validation and
+ * insertion into a backing set.
+ *
+ * <p>For use by generated code only; this API may change without notice.
+ */
+public class CheckedSet<E> extends AbstractSet<E> {
+
+  private final Set<E> set;
+  private final Consumer<E> add;
+
+  public CheckedSet(Set<E> set, Consumer<E> add) {
+    this.set = set;
+    this.add = add;
+  }
+
+  @Override public Iterator<E> iterator() {
+    return set.iterator();
+  }
+
+  @Override public int size() {
+    return set.size();
+  }
+
+  @Override public boolean contains(Object e) {
+    return set.contains(e);
+  }
+
+  @Override public boolean add(E e) {
+    if (!set.contains(e)) {
+      add.accept(e);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  @Override public boolean remove(Object e) {
+    return set.remove(e);
+  }
+}
@@ -0,0 +1,58 @@
+package org.inferred.freebuilder.runtime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unmodifiable copies of the collections held by FreeBuilder-generated builders, used by
+ * generated value types when Guava is not available.
+ *
+ * <p>For use by generated code only; this API may change without notice.
+ */
+public final class UnmodifiableCollections {
+
+  /** Returns an unmodifiable copy of {@code elements}. */
+  @SuppressWarnings("unchecked")
+  public static <E> List<E> listCopyOf(List<E> elements) {
+    switch (elements.size()) {
+    case 0:
+      return Collections.emptyList();
+    case 1:
+      return Collections.singletonList(elements.get(0));
+    default:
+      return (List<E>) (List<?>) Collections.unmodifiableList(Arrays.asList(elements.toArray()));
+    }
+  }
+
+  /** Returns an unmodifiable, order-preserving copy of {@code elements}. */
+  public static <E> Set<E> setCopyOf(Set<E> elements) {
+    switch (elements.size()) {
+    case 0:
+      return Collections.emptySet();
+    case 1:
+      return Collections.singleton(elements.iterator().next());
+    default:
+      return Collections.unmodifiableSet(new LinkedHashSet<>(elements));
+    }
+  }
+
+  /** Returns an unmodifiable, order-preserving copy of {@code entries}. */
+  public static <K, V> Map<K, V> mapCopyOf(Map<K, V> entries) {
+    switch (entries.size()) {
+    case 0:
+      return Collections.emptyMap();
+    case 1:
+      Map.Entry<K, V> entry = entries.entrySet().iterator().next();
+      return Collections.singletonMap(entry.getKey(), entry.getValue());
+    default:
+      return Collections.unmodifiableMap(new LinkedHashMap<>(entries));
+    }
+  }
+
+  private UnmodifiableCollections() {}
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.source.feature.GuavaLibrary.GUAVA;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.SetMultimap;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/** Behavioral tests for user-declared {@code writeTo(DataOutput)} methods. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class BinaryCodecTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder ITEM_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface Item {")
+      .addLine("  String getName();")
+      .addLine("")
+      .addLine("  void writeTo(%s out) throws %s;", DataOutput.class, IOException.class)
+      .addLine("")
+      .addLine("  class Builder extends Item_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testRoundTrip() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ITEM_TYPE)
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("  int getAge();")
+            .addLine("  long getId();")
+            .addLine("  double getScore();")
+            .addLine("  boolean isActive();")
+            .addLine("  %s getUnit();", TimeUnit.class)
+            .addLine("  byte[] getData();")
+            .addLine("  %s<String> getNickname();", Optional.class)
+            .addLine("  %s getRank();", OptionalInt.class)
+            .addLine("  @%s String getTitle();", Nullable.class)
+            .addLine("  %s<Integer> getScores();", List.class)
+            .addLine("  %s<String> getTags();", Set.class)
+            .addLine("  %s<String> getLabels();", SortedSet.class)
+            .addLine("  %s<String, %s<Long>> getGroups();", Map.class, List.class)
+            .addLine("  Item getItem();")
+            .addLine("  %s<Item> getItems();", List.class)
+            .addLine("")
+            .addLine("  void writeTo(%s out) throws %s;", DataOutput.class, IOException.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addImport("com.example.Item")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .setAge(-40)")
+            .addLine("    .setId(Long.MAX_VALUE)")
+            .addLine("    .setScore(1.5)")
+            .addLine("    .setActive(true)")
+            .addLine("    .setUnit(%s.SECONDS)", TimeUnit.class)
+            .addLine("    .setData(new byte[] { 1, 2, 3 })")
+            .addLine("    .setNickname(\"freddy\")")
+            .addLine("    .setRank(3)")
+            .addLine("    .setTitle(\"Dr\")")
+            .addLine("    .addScores(1, 2, 3)")
+            .addLine("    .addTags(\"b\", \"a\")")
+            .addLine("    .addLabels(\"y\", \"x\")")
+            .addLine("    .putGroups(\"x\", %s.asList(1L, 2L))", Arrays.class)
+            .addLine("    .setItem(new Item.Builder().setName(\"a\").build())")
+            .addLine("    .addItems(new Item.Builder().setName(\"b\").build())")
+            .addLine("    .addItems(new Item.Builder().setName(\"c\").build())")
+            .addLine("    .build();")
+            .addLine("%1$s bytes = new %1$s();", ByteArrayOutputStream.class)
+            .addLine("value.writeTo(new %s(bytes));", DataOutputStream.class)
+            .addLine("DataType copy = new DataType.Builder()")
+            .addLine("    .readFrom(new %s(new %s(bytes.toByteArray())))",
+                DataInputStream.class, ByteArrayInputStream.class)
+            .addLine("    .build();")
+            .addLine("assertEquals(value.getName(), copy.getName());")
+            .addLine("assertEquals(value.getAge(), copy.getAge());")
+            .addLine("assertEquals(value.getId(), copy.getId());")
+            .addLine("assertEquals(value.getScore(), copy.getScore(), 0.0);")
+            .addLine("assertTrue(copy.isActive());")
+            .addLine("assertEquals(value.getUnit(), copy.getUnit());")
+            .addLine("assertArrayEquals(value.getData(), copy.getData());")
+            .addLine("assertEquals(value.getNickname(), copy.getNickname());")
+            .addLine("assertEquals(value.getRank(), copy.getRank());")
+            .addLine("assertEquals(\"Dr\", copy.getTitle());")
+            .addLine("assertEquals(value.getScores(), copy.getScores());")
+            .addLine("assertEquals(value.getTags(), copy.getTags());")
+            .addLine("assertEquals(\"[b, a]\", copy.getTags().toString());")
+            .addLine("assertEquals(value.getLabels(), copy.getLabels());")
+            .addLine("assertEquals(value.getGroups(), copy.getGroups());")
+            .addLine("assertEquals(value.getItem(), copy.getItem());")
+            .addLine("assertEquals(value.getItems(), copy.getItems());")
+            .addLine("")
+            .addLine("DataType untitled = new DataType.Builder()")
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .setActive(false)")
+            .addLine("    .setTitle(null)")
+            .addLine("    .build();")
+            .addLine("bytes.reset();")
+            .addLine("untitled.writeTo(new %s(bytes));", DataOutputStream.class)
+            .addLine("DataType untitledCopy = new DataType.Builder()")
+            .addLine("    .readFrom(new %s(new %s(bytes.toByteArray())))",
+                DataInputStream.class, ByteArrayInputStream.class)
+            .addLine("    .build();")
+            .addLine("assertFalse(untitledCopy.isActive());")
+            .addLine("assertNull(untitledCopy.getTitle());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGuavaCollections() {
+    assumeTrue("Guava available", features.get(GUAVA).isAvailable());
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getBag();", Multiset.class)
+            .addLine("  %s<String, Integer> getGroups();", ListMultimap.class)
+            .addLine("  %s<String, Integer> getLabels();", SetMultimap.class)
+            .addLine("  %s<String> getNames();", ImmutableList.class)
+            .addLine("")
+            .addLine("  void writeTo(%s out) throws %s;", DataOutput.class, IOException.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addBag(\"a\", \"b\", \"a\")")
+            .addLine("    .putGroups(\"x\", 2)")
+            .addLine("    .putGroups(\"x\", 1)")
+            .addLine("    .putGroups(\"y\", 2)")
+            .addLine("    .putLabels(\"p\", 3)")
+            .addLine("    .putLabels(\"p\", 4)")
+            .addLine("    .addNames(\"fred\", \"bob\")")
+            .addLine("    .build();")
+            .addLine("%1$s bytes = new %1$s();", ByteArrayOutputStream.class)
+            .addLine("value.writeTo(new %s(bytes));", DataOutputStream.class)
+            .addLine("DataType copy = new DataType.Builder()")
+            .addLine("    .readFrom(new %s(new %s(bytes.toByteArray())))",
+                DataInputStream.class, ByteArrayInputStream.class)
+            .addLine("    .build();")
+            .addLine("assertEquals(value, copy);")
+            .addLine("assertEquals(2, copy.getBag().count(\"a\"));")
+            .addLine("assertEquals(%s.asList(2, 1), copy.getGroups().get(\"x\"));", Arrays.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testNestedType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ITEM_TYPE)
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  Item getItem();")
+            .addLine("  %s<Item> getItems();", List.class)
+            .addLine("")
+            .addLine("  void writeTo(%s out) throws %s;", DataOutput.class, IOException.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addImport("com.example.Item")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setItem(new Item.Builder().setName(\"a\").build())")
+            .addLine("    .addItems(new Item.Builder().setName(\"b\").build())")
+            .addLine("    .build();")
+            .addLine("%1$s bytes = new %1$s();", ByteArrayOutputStream.class)
+            .addLine("value.writeTo(new %s(bytes));", DataOutputStream.class)
+            .addLine("DataType copy = new DataType.Builder()")
+            .addLine("    .readFrom(new %s(new %s(bytes.toByteArray())))",
+                DataInputStream.class, ByteArrayInputStream.class)
+            .addLine("    .build();")
+            .addLine("assertEquals(value, copy);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testSchemaMismatchIsAnIOException() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  void writeTo(%s out) throws %s;", DataOutput.class, IOException.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("byte[] bytes = { 0, 0, 0, 0, 0 };")
+            .addLine("new DataType.Builder()")
+            .addLine("    .readFrom(new %s(new %s(bytes)));",
+                DataInputStream.class, ByteArrayInputStream.class)
+            .build());
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Expected DataType schema 0x");
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testSchemaIncludesEnumConstants() {
+    // Enums are written by ordinal, so reordering the constants must change the schema hash
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  enum Color { RED, GREEN }")
+            .addLine("")
+            .addLine("  Color getColor();")
+            .addLine("")
+            .addLine("  void writeTo(%s out) throws %s;", DataOutput.class, IOException.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setColor(DataType.Color.GREEN)")
+            .addLine("    .build();")
+            .addLine("%1$s bytes = new %1$s();", ByteArrayOutputStream.class)
+            .addLine("value.writeTo(new %s(bytes));", DataOutputStream.class)
+            .addLine("int hash = 0x811C9DC5;")
+            .addLine("for (byte b : \"color:com.example.DataType.Color{RED,GREEN};\".getBytes()) {")
+            .addLine("  hash = (hash ^ (b & 0xFF)) * 0x01000193;")
+            .addLine("}")
+            .addLine("assertEquals(hash, new %s(new %s(bytes.toByteArray())).readInt());",
+                DataInputStream.class, ByteArrayInputStream.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testUnsupportedPropertyIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  Object getThing();")
+            .addLine("")
+            .addLine("  void writeTo(%s out) throws %s;", DataOutput.class, IOException.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("writeTo(DataOutput) cannot encode property thing of type java.lang.Object")
+            .inFile("/com/example/DataType.java")
+            .onLine(9));
+  }
+
+  @Test
+  public void testMissingIOExceptionIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  void writeTo(%s out);", DataOutput.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("writeTo(DataOutput) must be declared to throw IOException")
+            .inFile("/com/example/DataType.java")
+            .onLine(9));
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
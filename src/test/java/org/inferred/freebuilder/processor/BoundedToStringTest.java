@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.BoundedToString;
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/** Behavioral tests for {@link BoundedToString} types and {@code toString(int)} methods. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class BoundedToStringTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder BOUNDED_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s(maxElementsPerCollection = 2)", BoundedToString.class)
+      .addLine("public interface DataType {")
+      .addLine("  String getName();")
+      .addLine("  %s<String> getNote();", Optional.class)
+      .addLine("  %s<Integer> getIds();", List.class)
+      .addLine("  %s<String> getTags();", Set.class)
+      .addLine("  %s<String, %s<Integer>> getGroups();", Map.class, List.class)
+      .addLine("")
+      .addLine("  String toString(int maxElementsPerCollection);")
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testDefaultToStringIsBounded() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(BOUNDED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"n\")")
+            .addLine("    .addAllIds(%s.range(0, 1000000).boxed())", IntStream.class)
+            .addLine("    .addTags(\"a\", \"b\")")
+            .addLine("    .putGroups(\"x\", %s.asList(1, 2, 3))", Arrays.class)
+            .addLine("    .putGroups(\"y\", %s.asList())", Arrays.class)
+            .addLine("    .putGroups(\"z\", %s.asList(4))", Arrays.class)
+            .addLine("    .build();")
+            .addLine("assertEquals(\"DataType{name=n, ids=[0, 1, ... (999998 more)], \"")
+            .addLine("    + \"tags=[a, b], groups={x=[1, 2, ... (1 more)], y=[], ... (1 more)}}\",")
+            .addLine("    value.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testExplicitLimit() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(BOUNDED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"n\")")
+            .addLine("    .setNote(\"m\")")
+            .addLine("    .addIds(1, 2, 3)")
+            .addLine("    .build();")
+            .addLine("assertEquals(")
+            .addLine("    \"DataType{name=n, note=m, ids=[... (3 more)], tags=[], groups={}}\",")
+            .addLine("    value.toString(0));")
+            .addLine("assertEquals(")
+            .addLine("    \"DataType{name=n, note=m, ids=[1, 2, 3], tags=[], groups={}}\",")
+            .addLine("    value.toString(3));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPartial() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(BOUNDED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addIds(1, 2, 3)")
+            .addLine("    .buildPartial();")
+            .addLine("assertEquals(")
+            .addLine("    \"partial DataType{ids=[1, 2, ... (1 more)], tags=[], groups={}}\",")
+            .addLine("    value.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testNegativeLimit() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Negative maxElementsPerCollection: -1");
+    behaviorTester
+        .with(new Processor(features))
+        .with(BOUNDED_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder().setName(\"n\").build().toString(-1);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testToStringMethodWithoutAnnotation() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  int getCount();")
+            .addLine("  %s<String> getItems();", List.class)
+            .addLine("")
+            .addLine("  String toString(int maxElementsPerCollection);")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setCount(4)")
+            .addLine("    .addItems(\"a\", \"b\", \"c\")")
+            .addLine("    .build();")
+            .addLine("assertEquals(\"DataType{count=4, items=[a, b, c]}\", value.toString());")
+            .addLine("assertEquals(\"DataType{count=4, items=[a, ... (2 more)]}\",")
+            .addLine("    value.toString(1));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testNonPositiveLimitIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s(maxElementsPerCollection = 0)", BoundedToString.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("@BoundedToString maxElementsPerCollection must be positive")
+            .inFile("/com/example/DataType.java")
+            .onLine(4));
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/** Behavioral tests for user-declared {@code writeTo(ByteBuffer)} methods and their views. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class BufferViewTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder ORDER_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface DataType {")
+      .addLine("  long getId();")
+      .addLine("  boolean isUrgent();")
+      .addLine("  double getPrice();")
+      .addLine("  String getCustomer();")
+      .addLine("  @%s String getNote();", Nullable.class)
+      .addLine("  %s getUnit();", TimeUnit.class)
+      .addLine("  %s<String> getCoupon();", Optional.class)
+      .addLine("  %s<String> getTags();", List.class)
+      .addLine("")
+      .addLine("  DataType withId(long id);")
+      .addLine("  void writeTo(%s buffer);", ByteBuffer.class)
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testViewReadsEachProperty() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setId(1L << 40)")
+            .addLine("    .setUrgent(true)")
+            .addLine("    .setPrice(9.5)")
+            .addLine("    .setCustomer(\"fred\")")
+            .addLine("    .setUnit(%s.HOURS)", TimeUnit.class)
+            .addLine("    .setCoupon(\"SAVE\")")
+            .addLine("    .addTags(\"a\", \"b\")")
+            .addLine("    .build();")
+            .addLine("%1$s buffer = %1$s.allocateDirect(1024);", ByteBuffer.class)
+            .addLine("value.writeTo(buffer);")
+            .addLine("buffer.flip();")
+            .addLine("DataType view = DataType.Builder.view(buffer);")
+            .addLine("assertFalse(buffer.hasRemaining());")
+            .addLine("assertEquals(1L << 40, view.getId());")
+            .addLine("assertTrue(view.isUrgent());")
+            .addLine("assertEquals(9.5, view.getPrice(), 0.0);")
+            .addLine("assertEquals(\"fred\", view.getCustomer());")
+            .addLine("assertNull(view.getNote());")
+            .addLine("assertEquals(%s.HOURS, view.getUnit());", TimeUnit.class)
+            .addLine("assertEquals(%s.of(\"SAVE\"), view.getCoupon());", Optional.class)
+            .addLine("assertThat(view.getTags()).containsExactly(\"a\", \"b\").inOrder();")
+            .addLine("assertEquals(value.toString(), view.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMaterializeAndToBuilder() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setId(1)")
+            .addLine("    .setUrgent(false)")
+            .addLine("    .setPrice(0)")
+            .addLine("    .setCustomer(\"fred\")")
+            .addLine("    .setNote(\"fragile\")")
+            .addLine("    .setUnit(%s.DAYS)", TimeUnit.class)
+            .addLine("    .build();")
+            .addLine("%1$s buffer = %1$s.allocate(1024);", ByteBuffer.class)
+            .addLine("value.writeTo(buffer);")
+            .addLine("buffer.flip();")
+            .addLine("DataType_Builder.View view = DataType.Builder.view(buffer);")
+            .addLine("assertEquals(value, view.materialize());")
+            .addLine("assertEquals(value.withId(2), view.withId(2));")
+            .addLine("assertEquals(value, DataType.Builder.from(view).build());")
+            .addLine("buffer.rewind();")
+            .addLine("assertEquals(view, DataType.Builder.view(buffer));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testViewsOfConsecutiveValues() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("%1$s buffer = %1$s.allocate(4096);", ByteBuffer.class)
+            .addLine("for (int i = 0; i < 10; i++) {")
+            .addLine("  new DataType.Builder()")
+            .addLine("      .setId(i)")
+            .addLine("      .setUrgent(i %% 2 == 0)")
+            .addLine("      .setPrice(i)")
+            .addLine("      .setCustomer(\"customer\" + i)")
+            .addLine("      .setUnit(%s.SECONDS)", TimeUnit.class)
+            .addLine("      .build()")
+            .addLine("      .writeTo(buffer);")
+            .addLine("}")
+            .addLine("buffer.flip();")
+            .addLine("for (int i = 0; i < 10; i++) {")
+            .addLine("  DataType view = DataType.Builder.view(buffer);")
+            .addLine("  assertEquals(i, view.getId());")
+            .addLine("  assertEquals(\"customer\" + i, view.getCustomer());")
+            .addLine("}")
+            .addLine("assertFalse(buffer.hasRemaining());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testViewCanBeWrittenWithoutDecoding() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setId(1)")
+            .addLine("    .setUrgent(false)")
+            .addLine("    .setPrice(0)")
+            .addLine("    .setCustomer(\"fred\")")
+            .addLine("    .setUnit(%s.DAYS)", TimeUnit.class)
+            .addLine("    .addTags(\"a\")")
+            .addLine("    .build();")
+            .addLine("%1$s buffer = %1$s.allocate(1024);", ByteBuffer.class)
+            .addLine("value.writeTo(buffer);")
+            .addLine("buffer.flip();")
+            .addLine("%1$s copy = %1$s.allocate(1024);", ByteBuffer.class)
+            .addLine("DataType.Builder.view(buffer).writeTo(copy);")
+            .addLine("assertEquals(buffer.limit(), copy.position());")
+            .addLine("copy.flip();")
+            .addLine("assertEquals(value, DataType.Builder.view(copy).materialize());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testSchemaMismatchIsAnIllegalArgumentException() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("%1$s buffer = %1$s.allocate(16);", ByteBuffer.class)
+            .addLine("buffer.putInt(16).putInt(0);")
+            .addLine("buffer.flip();")
+            .addLine("DataType.Builder.view(buffer);")
+            .build());
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Expected DataType schema 0x");
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testBufferTooSmall() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setId(1)")
+            .addLine("    .setUrgent(false)")
+            .addLine("    .setPrice(0)")
+            .addLine("    .setCustomer(\"fred\")")
+            .addLine("    .setUnit(%s.DAYS)", TimeUnit.class)
+            .addLine("    .build();")
+            .addLine("%1$s buffer = %1$s.allocate(8);", ByteBuffer.class)
+            .addLine("try {")
+            .addLine("  value.writeTo(buffer);")
+            .addLine("} finally {")
+            .addLine("  assertEquals(0, buffer.position());")
+            .addLine("}")
+            .build());
+    thrown.expect(BufferOverflowException.class);
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testGenericTypeIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType<T> {")
+            .addLine("  T getItem();")
+            .addLine("")
+            .addLine("  void writeTo(%s buffer);", ByteBuffer.class)
+            .addLine("")
+            .addLine("  class Builder<T> extends DataType_Builder<T> {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("writeTo(ByteBuffer) is not supported on generic types")
+            .inFile("/com/example/DataType.java")
+            .onLine(9));
+  }
+
+  @Test
+  public void testUnsupportedPropertyIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  Object getThing();")
+            .addLine("")
+            .addLine("  void writeTo(%s buffer);", ByteBuffer.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("writeTo(ByteBuffer) cannot encode property thing of type java.lang.Object")
+            .inFile("/com/example/DataType.java")
+            .onLine(9));
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType")
+        .addImport("com.example.DataType_Builder");
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.Columnar;
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+/** Behavioral tests for {@code Columns} containers generated for {@link Columnar} types. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class ColumnarTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder TRADE_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s", Columnar.class)
+      .addLine("public interface DataType {")
+      .addLine("  long getId();")
+      .addLine("  boolean isUrgent();")
+      .addLine("  double getPrice();")
+      .addLine("  short getLots();")
+      .addLine("  String getVenue();")
+      .addLine("  @%s String getNote();", Nullable.class)
+      .addLine("  %s<String> getTrader();", Optional.class)
+      .addLine("  %s<String> getTags();", List.class)
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testIndexedGetters() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TRADE_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder.Columns columns = new DataType.Builder.Columns();")
+            .addLine("columns.add(new DataType.Builder()")
+            .addLine("    .setId(1)")
+            .addLine("    .setUrgent(true)")
+            .addLine("    .setPrice(9.5)")
+            .addLine("    .setLots((short) 3)")
+            .addLine("    .setVenue(\"LSE\")")
+            .addLine("    .setTrader(\"fred\")")
+            .addLine("    .addTags(\"a\", \"b\"));")
+            .addLine("columns.add(new DataType.Builder()")
+            .addLine("    .setId(2)")
+            .addLine("    .setUrgent(false)")
+            .addLine("    .setPrice(1.5)")
+            .addLine("    .setLots((short) 4)")
+            .addLine("    .setVenue(\"NYSE\")")
+            .addLine("    .setNote(\"late\")")
+            .addLine("    .build());")
+            .addLine("assertEquals(2, columns.size());")
+            .addLine("assertEquals(1, columns.getId(0));")
+            .addLine("assertTrue(columns.isUrgent(0));")
+            .addLine("assertEquals(1.5, columns.getPrice(1), 0.0);")
+            .addLine("assertEquals(4, columns.getLots(1));")
+            .addLine("assertEquals(\"LSE\", columns.getVenue(0));")
+            .addLine("assertNull(columns.getNote(0));")
+            .addLine("assertEquals(\"late\", columns.getNote(1));")
+            .addLine("assertEquals(%s.of(\"fred\"), columns.getTrader(0));", Optional.class)
+            .addLine("assertEquals(%s.empty(), columns.getTrader(1));", Optional.class)
+            .addLine("assertThat(columns.getTags(0)).containsExactly(\"a\", \"b\").inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGetRebuildsValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TRADE_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setId(1)")
+            .addLine("    .setUrgent(true)")
+            .addLine("    .setPrice(9.5)")
+            .addLine("    .setLots((short) 3)")
+            .addLine("    .setVenue(\"LSE\")")
+            .addLine("    .setNote(\"late\")")
+            .addLine("    .setTrader(\"fred\")")
+            .addLine("    .addTags(\"a\")")
+            .addLine("    .build();")
+            .addLine("DataType.Builder.Columns columns = new DataType.Builder.Columns(0)")
+            .addLine("    .addAll(%s.asList(value, value));", Arrays.class)
+            .addLine("assertEquals(value, columns.get(1));")
+            .addLine("assertThat(columns.stream().toArray())")
+            .addLine("    .asList()")
+            .addLine("    .containsExactly(value, value);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testColumnScans() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TRADE_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder.Columns columns = new DataType.Builder.Columns(1);")
+            .addLine("for (int i = 0; i < 1000; i++) {")
+            .addLine("  columns.add(new DataType.Builder()")
+            .addLine("      .setId(i)")
+            .addLine("      .setUrgent(i %% 4 == 0)")
+            .addLine("      .setPrice(i * 0.5)")
+            .addLine("      .setLots((short) (i %% 10))")
+            .addLine("      .setVenue(i %% 2 == 0 ? \"LSE\" : \"NYSE\"));")
+            .addLine("}")
+            .addLine("assertEquals(499500L, columns.idColumn().sum());")
+            .addLine("assertEquals(499500L, columns.idColumn().parallel().sum());")
+            .addLine("assertEquals(499.5, columns.priceColumn().max().getAsDouble(), 0.0);")
+            .addLine("assertEquals(9, columns.lotsColumn().max().getAsInt());")
+            .addLine("assertEquals(250, columns.urgentColumn().filter(urgent -> urgent).count());")
+            .addLine("assertEquals(500, columns.venueColumn().filter(\"LSE\"::equals).count());")
+            .addLine("assertEquals(124500L, columns.indices()")
+            .addLine("    .parallel()")
+            .addLine("    .filter(columns::isUrgent)")
+            .addLine("    .mapToLong(columns::getId)")
+            .addLine("    .sum());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testClear() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TRADE_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder.Columns columns = new DataType.Builder.Columns();")
+            .addLine("columns.add(new DataType.Builder()")
+            .addLine("    .setId(1)")
+            .addLine("    .setUrgent(true)")
+            .addLine("    .setPrice(9.5)")
+            .addLine("    .setLots((short) 3)")
+            .addLine("    .setVenue(\"LSE\"));")
+            .addLine("columns.clear();")
+            .addLine("assertTrue(columns.isEmpty());")
+            .addLine("assertEquals(0, columns.venueColumn().count());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testIndexOutOfBounds() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TRADE_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder.Columns columns = new DataType.Builder.Columns();")
+            .addLine("columns.add(new DataType.Builder()")
+            .addLine("    .setId(1)")
+            .addLine("    .setUrgent(true)")
+            .addLine("    .setPrice(9.5)")
+            .addLine("    .setLots((short) 3)")
+            .addLine("    .setVenue(\"LSE\"));")
+            .addLine("columns.getId(1);")
+            .build());
+    thrown.expect(IndexOutOfBoundsException.class);
+    thrown.expectMessage("Index: 1, Size: 1");
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testGenericType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Columnar.class)
+            .addLine("public interface DataType<K, V extends Comparable<V>> {")
+            .addLine("  K getKey();")
+            .addLine("  %s<V> getValue();", Optional.class)
+            .addLine("")
+            .addLine("  class Builder<K, V extends Comparable<V>>")
+            .addLine("      extends DataType_Builder<K, V> {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType.Builder.Columns<String, Integer> columns =")
+            .addLine("    new DataType.Builder.Columns<>();")
+            .addLine("columns.add(new DataType.Builder<String, Integer>()")
+            .addLine("    .setKey(\"a\")")
+            .addLine("    .setValue(3));")
+            .addLine("assertEquals(\"a\", columns.getKey(0));")
+            .addLine("assertEquals(%s.of(3), columns.getValue(0));", Optional.class)
+            .addLine("assertEquals(%s.of(3), columns.get(0).getValue());", Optional.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMissingBuilderConstructorIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Columnar.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {")
+            .addLine("    private Builder() {}")
+            .addLine("  }")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage(
+                "No accessible no-args Builder constructor available to implement @Columnar")
+            .inFile("/com/example/DataType.java")
+            .onLine(7));
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.CompactLayout;
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.IgnoredByEquals;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/** Behavioral tests for {@link CompactLayout} types. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class CompactLayoutTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder COMPACT_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s", CompactLayout.class)
+      .addLine("public interface DataType {")
+      .addLine("  String getName();")
+      .addLine("  boolean isEnabled();")
+      .addLine("  %s getUnit();", TimeUnit.class)
+      .addLine("  boolean isVisible();")
+      .addLine("  @%s boolean isCached();", IgnoredByEquals.class)
+      .addLine("")
+      .addLine("  DataType withUnit(%s unit);", TimeUnit.class)
+      .addLine("  Builder toBuilder();")
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {")
+      .addLine("    public Builder() {")
+      .addLine("      setVisible(true);")
+      .addLine("    }")
+      .addLine("  }")
+      .addLine("}");
+
+  @Test
+  public void testGettersAndToString() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(COMPACT_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .setEnabled(true)")
+            .addLine("    .setUnit(%s.DAYS)", TimeUnit.class)
+            .addLine("    .setCached(true)")
+            .addLine("    .build();")
+            .addLine("assertEquals(\"fred\", value.getName());")
+            .addLine("assertTrue(value.isEnabled());")
+            .addLine("assertEquals(%s.DAYS, value.getUnit());", TimeUnit.class)
+            .addLine("assertTrue(value.isVisible());")
+            .addLine("assertTrue(value.isCached());")
+            .addLine("assertEquals(\"DataType{name=fred, enabled=true, unit=DAYS, \"")
+            .addLine("    + \"visible=true, cached=true}\", value.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEqualsAndHashCode() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(COMPACT_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .setEnabled(true)")
+            .addLine("    .setUnit(%s.DAYS)", TimeUnit.class)
+            .addLine("    .setCached(true)")
+            .addLine("    .build();")
+            .addLine("DataType uncached = value.toBuilder().setCached(false).build();")
+            .addLine("assertEquals(value, uncached);")
+            .addLine("assertEquals(value.hashCode(), uncached.hashCode());")
+            .addLine("assertFalse(value.equals(value.toBuilder().setVisible(false).build()));")
+            .addLine("assertFalse(value.equals(value.withUnit(%s.HOURS)));", TimeUnit.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testWithMethodKeepsPackedProperties() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(COMPACT_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .setEnabled(true)")
+            .addLine("    .setUnit(%s.DAYS)", TimeUnit.class)
+            .addLine("    .build()")
+            .addLine("    .withUnit(%s.NANOSECONDS);", TimeUnit.class)
+            .addLine("assertTrue(value.isEnabled());")
+            .addLine("assertEquals(%s.NANOSECONDS, value.getUnit());", TimeUnit.class)
+            .addLine("assertTrue(value.isVisible());")
+            .addLine("assertFalse(value.isCached());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPackedIntoSingleField() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(COMPACT_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .setEnabled(true)")
+            .addLine("    .setUnit(%s.DAYS)", TimeUnit.class)
+            .addLine("    .build();")
+            .addLine("%s<String> fields = %s.stream(value.getClass().getDeclaredFields())",
+                List.class, Arrays.class)
+            .addLine("    .filter(field -> !%s.isStatic(field.getModifiers()))", Modifier.class)
+            .addLine("    .map(field -> field.getType() + \" \" + field.getName())")
+            .addLine("    .sorted()")
+            .addLine("    .collect(%s.toList());", Collectors.class)
+            .addLine("assertEquals(%s.asList(", Arrays.class)
+            .addLine("    \"boolean cached\",")
+            .addLine("    \"class java.lang.String name\",")
+            .addLine("    \"int _bits0\"), fields);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPartialsAreNotPacked() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(COMPACT_TYPE)
+        .with(testBuilder()
+            .addLine("DataType partial = new DataType.Builder().setEnabled(true).buildPartial();")
+            .addLine("assertTrue(partial.isEnabled());")
+            .addLine("assertEquals(\"partial DataType{enabled=true, visible=true}\",")
+            .addLine("    partial.toString());")
+            .addLine("%s field = partial.getClass().getDeclaredField(\"enabled\");", Field.class)
+            .addLine("assertEquals(boolean.class, field.getType());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testWideTypeUsesLongs() {
+    SourceBuilder wideType = SourceBuilder.forTesting()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("@%s", CompactLayout.class)
+        .addLine("public interface DataType {");
+    for (int i = 0; i < 40; i++) {
+      wideType.addLine("  boolean isFlag%s();", i);
+    }
+    wideType
+        .addLine("")
+        .addLine("  class Builder extends DataType_Builder {")
+        .addLine("    public Builder() {");
+    for (int i = 0; i < 40; i++) {
+      wideType.addLine("      setFlag%s(false);", i);
+    }
+    wideType
+        .addLine("    }")
+        .addLine("  }")
+        .addLine("}");
+    behaviorTester
+        .with(new Processor(features))
+        .with(wideType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setFlag0(true)")
+            .addLine("    .setFlag33(true)")
+            .addLine("    .setFlag39(true)")
+            .addLine("    .build();")
+            .addLine("assertTrue(value.isFlag0());")
+            .addLine("assertFalse(value.isFlag1());")
+            .addLine("assertTrue(value.isFlag33());")
+            .addLine("assertFalse(value.isFlag38());")
+            .addLine("assertTrue(value.isFlag39());")
+            .addLine("assertEquals(value, new DataType.Builder().mergeFrom(value).build());")
+            .addLine("%s bits = value.getClass().getDeclaredField(\"_bits0\");", Field.class)
+            .addLine("assertEquals(long.class, bits.getType());")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.source.feature.GuavaLibrary.GUAVA;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multiset;
+
+import org.inferred.freebuilder.Concurrent;
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/** Behavioral tests for {@code ConcurrentBuilder}s generated for {@link Concurrent} types. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class ConcurrentBuilderTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder ORDER_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s", Concurrent.class)
+      .addLine("public interface DataType {")
+      .addLine("  int getCount();")
+      .addLine("  String getName();")
+      .addLine("  %s<String> getNote();", Optional.class)
+      .addLine("  %s<Integer> getIds();", List.class)
+      .addLine("  %s<String> getTags();", Set.class)
+      .addLine("  %s<String, Long> getTotals();", Map.class)
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testSingleThreaded() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder.ConcurrentBuilder()")
+            .addLine("    .setCount(1)")
+            .addLine("    .setName(\"a\")")
+            .addLine("    .setName(\"b\")")
+            .addLine("    .addIds(3)")
+            .addLine("    .addAllIds(%s.asList(1, 2))", Arrays.class)
+            .addLine("    .addTags(\"x\")")
+            .addLine("    .addTags(\"x\")")
+            .addLine("    .putTotals(\"k\", 5L)")
+            .addLine("    .build();")
+            .addLine("assertEquals(new DataType.Builder()")
+            .addLine("    .setCount(1)")
+            .addLine("    .setName(\"b\")")
+            .addLine("    .addIds(3, 1, 2)")
+            .addLine("    .addTags(\"x\")")
+            .addLine("    .putTotals(\"k\", 5L)")
+            .addLine("    .build(), value);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testManyThreads() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder.ConcurrentBuilder builder =")
+            .addLine("    new DataType.Builder.ConcurrentBuilder().setName(\"n\");")
+            .addLine("%s executor = %s.newFixedThreadPool(4);",
+                ExecutorService.class, Executors.class)
+            .addLine("for (int t = 0; t < 4; t++) {")
+            .addLine("  int thread = t;")
+            .addLine("  executor.execute(() -> {")
+            .addLine("    for (int i = 0; i < 1000; i++) {")
+            .addLine("      builder.setCount(thread)")
+            .addLine("          .addIds(thread * 1000 + i)")
+            .addLine("          .addTags(\"t\" + (i %% 10))")
+            .addLine("          .putTotals(\"k\" + thread, (long) i);")
+            .addLine("    }")
+            .addLine("  });")
+            .addLine("}")
+            .addLine("executor.shutdown();")
+            .addLine("assertTrue(executor.awaitTermination(1, %s.MINUTES));", TimeUnit.class)
+            .addLine("DataType value = builder.build();")
+            .addLine("assertThat(value.getCount()).isIn(%s.asList(0, 1, 2, 3));",
+                Arrays.class)
+            .addLine("assertThat(value.getIds()).hasSize(4000);")
+            .addLine("for (int t = 0; t < 4; t++) {")
+            .addLine("  int thread = t;")
+            .addLine("  assertThat(value.getIds().stream().filter(id -> id / 1000 == thread)")
+            .addLine("          .toArray())")
+            .addLine("      .asList()")
+            .addLine("      .isInOrder();")
+            .addLine("  assertEquals(Long.valueOf(999), value.getTotals().get(\"k\" + t));")
+            .addLine("}")
+            .addLine("assertThat(value.getTags()).hasSize(10);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMultisetAndMultimap() {
+    assumeTrue("Guava available", features.get(GUAVA).isAvailable());
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Concurrent.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getBag();", Multiset.class)
+            .addLine("  %s<String, Integer> getGroups();", ListMultimap.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder.ConcurrentBuilder()")
+            .addLine("    .addBag(\"a\")")
+            .addLine("    .addAllBag(%s.asList(\"b\", \"a\"))", Arrays.class)
+            .addLine("    .putGroups(\"x\", 1)")
+            .addLine("    .putGroups(\"y\", 3)")
+            .addLine("    .putGroups(\"x\", 2)")
+            .addLine("    .build();")
+            .addLine("assertEquals(2, value.getBag().count(\"a\"));")
+            .addLine("assertEquals(1, value.getBag().count(\"b\"));")
+            .addLine("assertThat(value.getGroups().get(\"x\")).containsExactly(1, 2).inOrder();")
+            .addLine("assertThat(value.getGroups().get(\"y\")).containsExactly(3);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuildChecksRequiredProperties() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Not set: [count]");
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder.ConcurrentBuilder().setName(\"n\").build();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMissingBuilderConstructorIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Concurrent.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {")
+            .addLine("    private Builder() {}")
+            .addLine("  }")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage(
+                "No accessible no-args Builder constructor available to implement @Concurrent")
+            .inFile("/com/example/DataType.java")
+            .onLine(7));
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
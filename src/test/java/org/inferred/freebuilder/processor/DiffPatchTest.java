@@ -0,0 +1,362 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.source.feature.GuavaLibrary.GUAVA;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.SetMultimap;
+
+import org.inferred.freebuilder.Diffable;
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/** Behavioral tests for {@code diff} and {@code applyPatch} methods of {@link Diffable} types. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class DiffPatchTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder DATA_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s", Diffable.class)
+      .addLine("public interface DataType {")
+      .addLine("  int getCount();")
+      .addLine("  String getName();")
+      .addLine("  %s<String> getNote();", Optional.class)
+      .addLine("  %s<Integer> getIds();", List.class)
+      .addLine("  %s<String> getTags();", Set.class)
+      .addLine("  %s<String, Long> getTotals();", Map.class)
+      .addLine("")
+      .addLine("  DataType.Builder toBuilder();")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  private static final String BASE_VALUE = "new DataType.Builder()"
+      + ".setCount(1)"
+      + ".setName(\"a\")"
+      + ".addIds(1, 2)"
+      + ".addTags(\"x\", \"y\")"
+      + ".putTotals(\"k\", 5L)"
+      + ".build()";
+
+  @Test
+  public void testEqualValuesGiveEmptyPatch() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DATA_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = %s;", BASE_VALUE)
+            .addLine("DataType.Builder.Patch patch =")
+            .addLine("    DataType.Builder.diff(value, value.toBuilder().build());")
+            .addLine("assertTrue(patch.isEmpty());")
+            .addLine("assertTrue(patch.changedProperties().isEmpty());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testChangedPropertiesBitmask() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DATA_TYPE)
+        .with(testBuilder()
+            .addLine("DataType from = %s;", BASE_VALUE)
+            .addLine("DataType to = from.toBuilder().setName(\"b\").addIds(3).build();")
+            .addLine("%s expected = new %s();", BitSet.class, BitSet.class)
+            .addLine("expected.set(1);")
+            .addLine("expected.set(3);")
+            .addLine("assertEquals(expected, DataType.Builder.diff(from, to).changedProperties());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testApplyPatch() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DATA_TYPE)
+        .with(testBuilder()
+            .addLine("DataType from = %s;", BASE_VALUE)
+            .addLine("DataType to = from.toBuilder()")
+            .addLine("    .setCount(2)")
+            .addLine("    .setNote(\"hello\")")
+            .addLine("    .addIds(3)")
+            .addLine("    .removeTags(\"x\")")
+            .addLine("    .addTags(\"z\")")
+            .addLine("    .removeTotals(\"k\")")
+            .addLine("    .putTotals(\"j\", 6L)")
+            .addLine("    .build();")
+            .addLine("DataType.Builder.Patch patch = DataType.Builder.diff(from, to);")
+            .addLine("assertEquals(to, from.toBuilder().applyPatch(patch).build());")
+            .addLine("DataType.Builder.Patch reverse = DataType.Builder.diff(to, from);")
+            .addLine("assertEquals(from, to.toBuilder().applyPatch(reverse).build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPatchAccessors() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DATA_TYPE)
+        .with(testBuilder()
+            .addLine("DataType from = %s;", BASE_VALUE)
+            .addLine("DataType to = from.toBuilder()")
+            .addLine("    .setCount(2)")
+            .addLine("    .addIds(3)")
+            .addLine("    .removeTags(\"x\")")
+            .addLine("    .addTags(\"z\")")
+            .addLine("    .putTotals(\"k\", 6L)")
+            .addLine("    .build();")
+            .addLine("DataType.Builder.Patch patch = DataType.Builder.diff(from, to);")
+            .addLine("assertTrue(patch.isCountChanged());")
+            .addLine("assertEquals(2, patch.getNewCount());")
+            .addLine("assertFalse(patch.isNameChanged());")
+            .addLine("assertEquals(%s.asList(3), new %s<>(patch.getAddedIds()));",
+                Arrays.class, ArrayList.class)
+            .addLine("assertFalse(patch.isIdsCleared());")
+            .addLine("assertEquals(%s.asList(\"z\"), patch.getAddedTags());", Arrays.class)
+            .addLine("assertEquals(%s.asList(\"x\"), patch.getRemovedTags());", Arrays.class)
+            .addLine("assertEquals(%s.singletonMap(\"k\", 6L), patch.getChangedTotals());",
+                Collections.class)
+            .addLine("assertTrue(patch.getRemovedTotals().isEmpty());")
+            .addLine("DataType.Builder.Patch rewrite = DataType.Builder.diff(")
+            .addLine("    from, from.toBuilder().clearIds().addIds(2, 1).build());")
+            .addLine("assertTrue(rewrite.isIdsCleared());")
+            .addLine("assertEquals(%s.asList(2, 1), new %s<>(rewrite.getAddedIds()));",
+                Arrays.class, ArrayList.class)
+            .addLine("assertTrue(rewrite.getAddedTags().isEmpty());")
+            .addLine("rewrite.getNewName();")
+            .build());
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("name did not change");
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testRewrittenListIsReplaced() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DATA_TYPE)
+        .with(testBuilder()
+            .addLine("DataType from = %s;", BASE_VALUE)
+            .addLine("DataType to = from.toBuilder().clearIds().addIds(2, 1, 0).build();")
+            .addLine("DataType.Builder.Patch patch = DataType.Builder.diff(from, to);")
+            .addLine("assertEquals(to, from.toBuilder().applyPatch(patch).build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testApplyPatchUsesSetters() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Builder is frozen");
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Diffable.class)
+            .addLine("public interface DataType {")
+            .addLine("  int getCount();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {")
+            .addLine("    boolean frozen;")
+            .addLine("")
+            .addLine("    @Override public Builder setCount(int count) {")
+            .addLine("      if (frozen) {")
+            .addLine("        throw new IllegalStateException(\"Builder is frozen\");")
+            .addLine("      }")
+            .addLine("      return super.setCount(count);")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType.Builder.Patch patch = DataType.Builder.diff(")
+            .addLine("    new DataType.Builder().setCount(1).build(),")
+            .addLine("    new DataType.Builder().setCount(2).build());")
+            .addLine("DataType.Builder builder = new DataType.Builder().setCount(1);")
+            .addLine("builder.frozen = true;")
+            .addLine("builder.applyPatch(patch);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMultisetAndMultimaps() {
+    assumeTrue("Guava available", features.get(GUAVA).isAvailable());
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Diffable.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getBag();", Multiset.class)
+            .addLine("  %s<String, Integer> getGroups();", ListMultimap.class)
+            .addLine("  %s<String, Integer> getLabels();", SetMultimap.class)
+            .addLine("")
+            .addLine("  DataType.Builder toBuilder();")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType from = new DataType.Builder()")
+            .addLine("    .addBag(\"a\", \"a\", \"b\")")
+            .addLine("    .putGroups(\"x\", 1)")
+            .addLine("    .putGroups(\"x\", 2)")
+            .addLine("    .putGroups(\"y\", 3)")
+            .addLine("    .putLabels(\"p\", 4)")
+            .addLine("    .build();")
+            .addLine("DataType to = from.toBuilder()")
+            .addLine("    .setCountOfBag(\"a\", 1)")
+            .addLine("    .setCountOfBag(\"b\", 0)")
+            .addLine("    .addBag(\"c\")")
+            .addLine("    .removeGroups(\"x\", 1)")
+            .addLine("    .putGroups(\"x\", 1)")
+            .addLine("    .removeAllGroups(\"y\")")
+            .addLine("    .putLabels(\"p\", 5)")
+            .addLine("    .build();")
+            .addLine("DataType.Builder.Patch patch = DataType.Builder.diff(from, to);")
+            .addLine("assertEquals(to, from.toBuilder().applyPatch(patch).build());")
+            .addLine("assertEquals(Integer.valueOf(0), patch.getChangedBag().get(\"b\"));")
+            .addLine("assertEquals(%s.asList(\"y\"), patch.getRemovedGroups());", Arrays.class)
+            .addLine("assertEquals(%s.of(4, 5),", ImmutableSet.class)
+            .addLine("    %s.copyOf(patch.getChangedLabels().get(\"p\")));", ImmutableSet.class)
+            .addLine("DataType.Builder.Patch reverse = DataType.Builder.diff(to, from);")
+            .addLine("assertEquals(from, to.toBuilder().applyPatch(reverse).build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPropertyNamesMatchingPatchFieldSuffixes() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Diffable.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getTags();", Set.class)
+            .addLine("  %s<String> getTagsRemoved();", Set.class)
+            .addLine("  %s<String> getIds();", List.class)
+            .addLine("  boolean getIdsCleared();")
+            .addLine("  String getNewName();")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  DataType.Builder toBuilder();")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType from = new DataType.Builder()")
+            .addLine("    .addTags(\"a\")")
+            .addLine("    .addTagsRemoved(\"b\")")
+            .addLine("    .addIds(\"c\")")
+            .addLine("    .setIdsCleared(false)")
+            .addLine("    .setNewName(\"d\")")
+            .addLine("    .setName(\"e\")")
+            .addLine("    .build();")
+            .addLine("DataType to = from.toBuilder()")
+            .addLine("    .removeTags(\"a\")")
+            .addLine("    .addTags(\"f\")")
+            .addLine("    .removeTagsRemoved(\"b\")")
+            .addLine("    .clearIds()")
+            .addLine("    .addIds(\"g\")")
+            .addLine("    .setIdsCleared(true)")
+            .addLine("    .setNewName(\"h\")")
+            .addLine("    .setName(\"i\")")
+            .addLine("    .build();")
+            .addLine("DataType.Builder.Patch patch = DataType.Builder.diff(from, to);")
+            .addLine("assertEquals(to, from.toBuilder().applyPatch(patch).build());")
+            .addLine("DataType.Builder.Patch reverse = DataType.Builder.diff(to, from);")
+            .addLine("assertEquals(from, to.toBuilder().applyPatch(reverse).build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGenericType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Diffable.class)
+            .addLine("public interface DataType<T> {")
+            .addLine("  T getItem();")
+            .addLine("  %s<T> getItems();", List.class)
+            .addLine("")
+            .addLine("  class Builder<T> extends DataType_Builder<T> {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType<String> from = new DataType.Builder<String>()")
+            .addLine("    .setItem(\"a\")")
+            .addLine("    .addItems(\"b\")")
+            .addLine("    .build();")
+            .addLine("DataType<String> to = new DataType.Builder<String>()")
+            .addLine("    .setItem(\"c\")")
+            .addLine("    .addItems(\"b\", \"d\")")
+            .addLine("    .build();")
+            .addLine("DataType.Builder.Patch<String> patch = DataType.Builder.diff(from, to);")
+            .addLine("assertEquals(to, new DataType.Builder<String>()")
+            .addLine("    .mergeFrom(from)")
+            .addLine("    .applyPatch(patch)")
+            .addLine("    .build());")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -6,6 +6,9 @@ import com.google.common.collect.ImmutableList;
 
 import org.inferred.freebuilder.processor.source.feature.FeatureSet;
 import org.inferred.freebuilder.processor.source.feature.GuavaLibrary;
+import org.inferred.freebuilder.processor.source.feature.Instrumentation;
+import org.inferred.freebuilder.processor.source.feature.Lambdas;
+import org.inferred.freebuilder.processor.source.feature.RuntimeLibrary;
 import org.inferred.freebuilder.processor.source.feature.StaticFeatureSet;
 
 import java.util.List;
@@ -15,11 +18,19 @@ public final class FeatureSets {
   /** For tests valid in any environment. */
   public static final List<FeatureSet> ALL = ImmutableList.of(
       new StaticFeatureSet(JAVA_8),
-      new StaticFeatureSet(JAVA_8, GuavaLibrary.AVAILABLE));
+      new StaticFeatureSet(JAVA_8, GuavaLibrary.AVAILABLE),
+      new StaticFeatureSet(JAVA_8, GuavaLibrary.AVAILABLE, Lambdas.DISABLED),
+      new StaticFeatureSet(JAVA_8, RuntimeLibrary.AVAILABLE));
 
   /** For tests using Guava types. */
   public static final List<FeatureSet> WITH_GUAVA = ImmutableList.of(
       new StaticFeatureSet(JAVA_8, GuavaLibrary.AVAILABLE));
 
+  /** For tests of instrumented builders, which need the runtime library. */
+  public static final List<FeatureSet> INSTRUMENTED = ImmutableList.of(
+      new StaticFeatureSet(JAVA_8, RuntimeLibrary.AVAILABLE, Instrumentation.ENABLED),
+      new StaticFeatureSet(
+          JAVA_8, GuavaLibrary.AVAILABLE, RuntimeLibrary.AVAILABLE, Instrumentation.ENABLED));
+
   private FeatureSets() {}
 }
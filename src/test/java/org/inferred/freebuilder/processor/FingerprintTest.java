@@ -0,0 +1,313 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/** Behavioral and hash-quality tests for user-declared {@code fingerprint64()} methods. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class FingerprintTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder DATA_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface DataType {")
+      .addLine("  int getId();")
+      .addLine("  String getName();")
+      .addLine("  %s getUnit();", TimeUnit.class)
+      .addLine("  %s<String> getTags();", List.class)
+      .addLine("")
+      .addLine("  long fingerprint64();")
+      .addLine("")
+      .addLine("  DataType.Builder toBuilder();")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  private static final String BASE_VALUE = "new DataType.Builder()"
+      + ".setId(42)"
+      + ".setName(\"fred\")"
+      + ".setUnit(TimeUnit.SECONDS)"
+      + ".addTags(\"a\", \"b\")"
+      + ".build()";
+
+  @Test
+  public void testEqualValuesHaveEqualFingerprints() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DATA_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = %s;", BASE_VALUE)
+            .addLine("DataType copy = value.toBuilder().build();")
+            .addLine("assertEquals(value.fingerprint64(), copy.fingerprint64());")
+            .addLine("assertEquals(value.fingerprint64(),")
+            .addLine("    value.toBuilder().buildPartial().fingerprint64());")
+            .addLine("assertNotEquals(value.fingerprint64(),")
+            .addLine("    value.toBuilder().setId(43).build().fingerprint64());")
+            .addLine("assertNotEquals(value.fingerprint64(),")
+            .addLine("    value.toBuilder().setUnit(TimeUnit.MINUTES).build().fingerprint64());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFingerprintIsStableAcrossRuns() {
+    // Pinned so that any change to the hash function, which would invalidate persisted
+    // fingerprints, is caught here rather than in production.
+    behaviorTester
+        .with(new Processor(features))
+        .with(DATA_TYPE)
+        .with(testBuilder()
+            .addLine("assertEquals(0xda6f05fb06eb9d6cL, %s.fingerprint64());", BASE_VALUE)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testNoCollisionsAndFullAvalanche() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DATA_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .setName(\"\")")
+            .addLine("    .setUnit(TimeUnit.SECONDS);")
+            .addLine("%s<Long> seen = new %s<>();", Set.class, HashSet.class)
+            .addLine("long flippedBits = 0;")
+            .addLine("for (int i = 0; i < 100000; i++) {")
+            .addLine("  long hash = builder.setId(i).build().fingerprint64();")
+            .addLine("  long neighbour = builder.setId(i ^ 1).build().fingerprint64();")
+            .addLine("  assertTrue(seen.add(hash));")
+            .addLine("  flippedBits += Long.bitCount(hash ^ neighbour);")
+            .addLine("}")
+            .addLine("double averageFlipped = flippedBits / 100000.0;")
+            .addLine("assertTrue(\"Average \" + averageFlipped,")
+            .addLine("    averageFlipped > 31.5 && averageFlipped < 32.5);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testListOrderAndElementBoundariesAreHashed() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DATA_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = %s;", BASE_VALUE)
+            .addLine("DataType reversed =")
+            .addLine("    value.toBuilder().clearTags().addTags(\"b\", \"a\").build();")
+            .addLine("DataType joined = value.toBuilder().clearTags().addTags(\"ab\").build();")
+            .addLine("assertNotEquals(value.fingerprint64(), reversed.fingerprint64());")
+            .addLine("assertNotEquals(value.fingerprint64(), joined.fingerprint64());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEqualSetsAndMapsHaveEqualFingerprintsWhateverTheirOrder() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getTags();", Set.class)
+            .addLine("  %s<String, %s<Integer>> getScores();", Map.class, Set.class)
+            .addLine("")
+            .addLine("  long fingerprint64();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("%s<Integer> low = new %s<>();", Set.class, LinkedHashSet.class)
+            .addLine("low.add(1);")
+            .addLine("low.add(2);")
+            .addLine("%s<Integer> high = new %s<>();", Set.class, LinkedHashSet.class)
+            .addLine("high.add(200);")
+            .addLine("high.add(100);")
+            .addLine("%s<Integer> reversedLow = new %s<>();", Set.class, LinkedHashSet.class)
+            .addLine("reversedLow.add(2);")
+            .addLine("reversedLow.add(1);")
+            .addLine("DataType a = new DataType.Builder()")
+            .addLine("    .addTags(\"a\", \"b\", \"c\")")
+            .addLine("    .putScores(\"x\", low)")
+            .addLine("    .putScores(\"y\", high)")
+            .addLine("    .build();")
+            .addLine("DataType b = new DataType.Builder()")
+            .addLine("    .addTags(\"c\", \"a\", \"b\")")
+            .addLine("    .putScores(\"y\", high)")
+            .addLine("    .putScores(\"x\", reversedLow)")
+            .addLine("    .build();")
+            .addLine("assertEquals(a, b);")
+            .addLine("assertEquals(a.fingerprint64(), b.fingerprint64());")
+            .addLine("DataType fewerTags =")
+            .addLine("    new DataType.Builder().mergeFrom(b).removeTags(\"c\").build();")
+            .addLine("DataType otherScores =")
+            .addLine("    new DataType.Builder().mergeFrom(b).putScores(\"x\", high).build();")
+            .addLine("assertNotEquals(a.fingerprint64(), fewerTags.fingerprint64());")
+            .addLine("assertNotEquals(a.fingerprint64(), otherScores.fingerprint64());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testNestedValuesAreHashedRecursively() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  Item getItem();")
+            .addLine("  %s<Item> getItems();", List.class)
+            .addLine("")
+            .addLine("  long fingerprint64();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("")
+            .addLine("  @%s", FreeBuilder.class)
+            .addLine("  interface Item {")
+            .addLine("    int getId();")
+            .addLine("")
+            .addLine("    long fingerprint64();")
+            .addLine("")
+            .addLine("    class Builder extends DataType_Item_Builder {}")
+            .addLine("  }")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType.Item one = new DataType.Item.Builder().setId(1).build();")
+            .addLine("DataType.Item two = new DataType.Item.Builder().setId(2).build();")
+            .addLine("DataType a = new DataType.Builder().setItem(one).addItems(two).build();")
+            .addLine("DataType b = new DataType.Builder().setItem(two).addItems(two).build();")
+            .addLine("DataType c = new DataType.Builder().setItem(one).addItems(one).build();")
+            .addLine("assertNotEquals(a.fingerprint64(), b.fingerprint64());")
+            .addLine("assertNotEquals(a.fingerprint64(), c.fingerprint64());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testUnsetPropertiesDifferFromEmptyValues() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  @%s String getNickname();", Nullable.class)
+            .addLine("  %s<String> getTitle();", Optional.class)
+            .addLine("")
+            .addLine("  long fingerprint64();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("long unset = new DataType.Builder().build().fingerprint64();")
+            .addLine("assertNotEquals(unset,")
+            .addLine("    new DataType.Builder().setNickname(\"\").build().fingerprint64());")
+            .addLine("assertNotEquals(unset,")
+            .addLine("    new DataType.Builder().setTitle(\"\").build().fingerprint64());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFingerprintDoesNotAllocate() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DATA_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = %s;", BASE_VALUE)
+            .addLine("Object bean = %s.getThreadMXBean();", ManagementFactory.class)
+            .addLine("if (bean instanceof com.sun.management.ThreadMXBean) {")
+            .addLine("  com.sun.management.ThreadMXBean threads =")
+            .addLine("      (com.sun.management.ThreadMXBean) bean;")
+            .addLine("  long threadId = Thread.currentThread().getId();")
+            .addLine("  long sum = 0;")
+            .addLine("  for (int i = 0; i < 100000; i++) {")
+            .addLine("    sum += value.fingerprint64();")
+            .addLine("  }")
+            .addLine("  long before = threads.getThreadAllocatedBytes(threadId);")
+            .addLine("  for (int i = 0; i < 100000; i++) {")
+            .addLine("    sum += value.fingerprint64();")
+            .addLine("  }")
+            .addLine("  long allocated = threads.getThreadAllocatedBytes(threadId) - before;")
+            .addLine("  assertTrue(\"Allocated \" + allocated + \" bytes\", allocated < 100000);")
+            .addLine("  assertNotEquals(1, sum);")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testUnsupportedPropertyType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  Object getThing();")
+            .addLine("")
+            .addLine("  long fingerprint64();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("fingerprint64() cannot hash property thing of type java.lang.Object")
+            .inFile("/com/example/DataType.java")
+            .onLine(7));
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType")
+        .addImport(TimeUnit.class);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/** Behavioral tests for builders generated with {@code -Afreebuilder.instrument=true}. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class InstrumentationTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.INSTRUMENTED;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface DataType {")
+      .addLine("  String getName();")
+      .addLine("  %s<String> getItems();", List.class)
+      .addLine("  %s<String, Integer> getCounts();", Map.class)
+      .addLine("")
+      .addLine("  Builder toBuilder();")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testCounters() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TYPE)
+        .with(testBuilder()
+            .addLine("BuilderCounterRegistry.resetAll();")
+            .addLine("DataType value = new DataType.Builder().setName(\"a\").build();")
+            .addLine("DataType copy = value.toBuilder().addItems(\"x\").build();")
+            .addLine("new DataType.Builder().mergeFrom(copy).setName(\"b\").buildPartial();")
+            .addLine("BuilderCounters counters = BuilderCounterRegistry.get(DataType.class).get();")
+            .addLine("assertEquals(\"com.example.DataType\", counters.getTypeName());")
+            .addLine("// mergeFrom creates a builder of its own to compare defaults against")
+            .addLine("assertEquals(4, counters.getBuildersCreated());")
+            .addLine("assertEquals(2, counters.getBuilds());")
+            .addLine("assertEquals(1, counters.getPartialBuilds());")
+            .addLine("assertEquals(1, counters.getToBuilderCalls());")
+            .addLine("assertEquals(1, counters.getMergeFromCalls());")
+            .addLine("assertEquals(6, counters.getCollectionCopies());")
+            .addLine("counters.reset();")
+            .addLine("assertEquals(0, counters.getBuilds());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCountersRegisteredWithJmx() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TYPE)
+        .with(testBuilder()
+            .addImport("java.lang.management.ManagementFactory")
+            .addImport("javax.management.MBeanServer")
+            .addImport("javax.management.ObjectName")
+            .addLine("BuilderCounterRegistry.resetAll();")
+            .addLine("new DataType.Builder().setName(\"a\").build();")
+            .addLine("MBeanServer server = ManagementFactory.getPlatformMBeanServer();")
+            .addLine("ObjectName name = new ObjectName(")
+            .addLine("    \"org.inferred.freebuilder:type=BuilderCounters,\"")
+            .addLine("        + \"name=\\\"com.example.DataType\\\"\");")
+            .addLine("assertEquals(1L, server.getAttribute(name, \"Builds\"));")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType")
+        .addImport("org.inferred.freebuilder.runtime.BuilderCounterRegistry")
+        .addImport("org.inferred.freebuilder.runtime.BuilderCounters");
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.List;
+
+/** Behavioral tests for user-declared {@code intern()} methods. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class InternMethodTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder INTERNED_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface DataType {")
+      .addLine("  String getName();")
+      .addLine("  %s<String> getTags();", List.class)
+      .addLine("")
+      .addLine("  DataType intern();")
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testInternReturnsCanonicalInstance() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType a = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .addTags(\"a\")")
+            .addLine("    .build();")
+            .addLine("DataType b = DataType.Builder.from(a).build();")
+            .addLine("DataType c = new DataType.Builder().setName(\"bob\").build();")
+            .addLine("assertNotSame(a, b);")
+            .addLine("assertSame(a, a.intern());")
+            .addLine("assertSame(a, b.intern());")
+            .addLine("assertSame(c, c.intern());")
+            .addLine("assertEquals(\"DataType{name=fred, tags=[a]}\", b.intern().toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuildInterned() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder().setName(\"alice\");")
+            .addLine("DataType a = builder.buildInterned();")
+            .addLine("assertSame(a, builder.buildInterned());")
+            .addLine("assertSame(a, builder.build().intern());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMetrics() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  int getId();")
+            .addLine("")
+            .addLine("  DataType intern();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("assertEquals(0, DataType.Builder.internedCount());")
+            .addLine("assertEquals(0.0, DataType.Builder.internHitRate(), 0.0);")
+            .addLine("DataType a = new DataType.Builder().setId(1).buildInterned();")
+            .addLine("DataType b = new DataType.Builder().setId(1).buildInterned();")
+            .addLine("DataType c = new DataType.Builder().setId(2).buildInterned();")
+            .addLine("DataType d = new DataType.Builder().setId(2).buildInterned();")
+            .addLine("assertEquals(2, DataType.Builder.internedCount());")
+            .addLine("assertEquals(0.5, DataType.Builder.internHitRate(), 0.0);")
+            .addLine("assertSame(a, b);")
+            .addLine("assertSame(c, d);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPartialsAreNotMergedWithValues() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().setName(\"carol\").build();")
+            .addLine("DataType partial = new DataType.Builder().setName(\"carol\").buildPartial();")
+            .addLine("assertSame(value, value.intern());")
+            .addLine("assertSame(partial, partial.intern());")
+            .addLine("assertSame(partial, new DataType.Builder()")
+            .addLine("    .setName(\"carol\")")
+            .addLine("    .buildPartial()")
+            .addLine("    .intern());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGenericType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType<T> {")
+            .addLine("  T getItem();")
+            .addLine("")
+            .addLine("  DataType<T> intern();")
+            .addLine("")
+            .addLine("  class Builder<T> extends DataType_Builder<T> {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType<String> a = new DataType.Builder<String>().setItem(\"a\").build();")
+            .addLine("DataType<String> b = new DataType.Builder<String>().setItem(\"a\").build();")
+            .addLine("assertSame(a.intern(), b.intern());")
+            .addLine("assertEquals(a.hashCode(), b.hashCode());")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
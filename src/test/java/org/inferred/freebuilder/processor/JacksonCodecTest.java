@@ -0,0 +1,340 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.source.Quotes.escapeJava;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+/** Behavioral tests for the generated Jackson serializer and deserializer. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class JacksonCodecTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder ORDER_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("import " + JsonProperty.class.getName() + ";")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s(builder = DataType.Builder.class)", JsonDeserialize.class)
+      .addLine("public interface DataType {")
+      .addLine("  @%s", FreeBuilder.class)
+      .addLine("  @%s(builder = Item.Builder.class)", JsonDeserialize.class)
+      .addLine("  interface Item {")
+      .addLine("    String getName();")
+      .addLine("    int getPrice();")
+      .addLine("")
+      .addLine("    class Builder extends DataType_Item_Builder {}")
+      .addLine("  }")
+      .addLine("")
+      .addLine("  @JsonProperty(\"id\") long getOrderId();")
+      .addLine("  boolean isUrgent();")
+      .addLine("  String getCustomer();")
+      .addLine("  @%s String getNote();", Nullable.class)
+      .addLine("  %s<String> getCoupon();", Optional.class)
+      .addLine("  %s<String> getTags();", List.class)
+      .addLine("  %s<String, Integer> getCounts();", Map.class)
+      .addLine("  %s<Item> getItems();", List.class)
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testRoundTrip() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setOrderId(12)")
+            .addLine("    .setUrgent(true)")
+            .addLine("    .setCustomer(\"fred\")")
+            .addLine("    .setCoupon(\"SAVE\")")
+            .addLine("    .addTags(\"a\", \"b\")")
+            .addLine("    .putCounts(\"x\", 3)")
+            .addLine("    .addItems(new DataType.Item.Builder()")
+            .addLine("        .setName(\"candy\")")
+            .addLine("        .setPrice(15)")
+            .addLine("        .build())")
+            .addLine("    .build();")
+            .addLine("%1$s mapper = new %1$s().registerModule(new %2$s());",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("String json = mapper.writeValueAsString(value);")
+            .addLine("assertThat(json).isEqualTo(\"%s\");", escapeJava("{\"id\":12,\"urgent\":true,"
+                + "\"customer\":\"fred\",\"note\":null,\"coupon\":\"SAVE\",\"tags\":[\"a\",\"b\"],"
+                + "\"counts\":{\"x\":3},\"items\":[{\"name\":\"candy\",\"price\":15}]}"))
+            .addLine("assertEquals(value, mapper.readValue(json, DataType.class));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testSerializationInclusion() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setOrderId(12)")
+            .addLine("    .setUrgent(true)")
+            .addLine("    .setCustomer(\"\")")
+            .addLine("    .build();")
+            .addLine("%1$s mapper = new %1$s().registerModule(new %2$s())",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("    .setSerializationInclusion(%s.NON_NULL);", JsonInclude.Include.class)
+            .addLine("assertThat(mapper.writeValueAsString(value)).isEqualTo(\"%s\");",
+                escapeJava("{\"id\":12,\"urgent\":true,\"customer\":\"\",\"coupon\":null,"
+                    + "\"tags\":[],\"counts\":{},\"items\":[]}"))
+            .addLine("mapper = new %1$s().registerModule(new %2$s())",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("    .setSerializationInclusion(%s.NON_ABSENT);", JsonInclude.Include.class)
+            .addLine("assertThat(mapper.writeValueAsString(value)).isEqualTo(\"%s\");",
+                escapeJava("{\"id\":12,\"urgent\":true,\"customer\":\"\","
+                    + "\"tags\":[],\"counts\":{},\"items\":[]}"))
+            .addLine("mapper = new %1$s().registerModule(new %2$s())",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("    .setSerializationInclusion(%s.NON_EMPTY);", JsonInclude.Include.class)
+            .addLine("assertThat(mapper.writeValueAsString(value)).isEqualTo(\"%s\");",
+                escapeJava("{\"id\":12,\"urgent\":true}"))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCollectionsStreamedIntoBuilder() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("%1$s mapper = new %1$s().registerModule(new %2$s());",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("StringBuilder json = new StringBuilder(\"{\\\"tags\\\":[\");")
+            .addLine("for (int i = 0; i < 10000; i++) {")
+            .addLine("  json.append(i == 0 ? \"\" : \",\").append('\"').append(i).append('\"');")
+            .addLine("}")
+            .addLine("json.append(\"%s\");", escapeJava("],\"counts\":{\"x\":1,\"y\":2},"
+                + "\"items\":[{\"name\":\"candy\",\"price\":15},{\"name\":\"gum\",\"price\":3}]}"))
+            .addLine("DataType.Builder builder =")
+            .addLine("    mapper.readValue(json.toString(), DataType.Builder.class);")
+            .addLine("assertThat(builder.getTags()).hasSize(10000);")
+            .addLine("assertEquals(\"9999\", builder.getTags().get(9999));")
+            .addLine("assertThat(builder.getCounts())")
+            .addLine("    .containsExactly(\"x\", 1, \"y\", 2).inOrder();")
+            .addLine("assertThat(builder.buildPartial().getItems()).containsExactly(")
+            .addLine("    new DataType.Item.Builder().setName(\"candy\").setPrice(15).build(),")
+            .addLine("    new DataType.Item.Builder().setName(\"gum\").setPrice(3).build())")
+            .addLine("    .inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testSingleCollectionValueReadWhole() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("%1$s mapper = new %1$s().registerModule(new %2$s())",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("    .enable(%s.ACCEPT_SINGLE_VALUE_AS_ARRAY);", DeserializationFeature.class)
+            .addLine("DataType.Builder builder =")
+            .addLine("    mapper.readValue(\"%s\", DataType.Builder.class);",
+                escapeJava("{\"tags\":\"a\"}"))
+            .addLine("assertThat(builder.getTags()).containsExactly(\"a\");")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuilderDeserializedDirectly() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("%1$s mapper = new %1$s().registerModule(new %2$s());",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("DataType.Builder builder =")
+            .addLine("    mapper.readValue(\"%s\", DataType.Builder.class);", escapeJava(
+                "{\"customer\":\"fred\",\"id\":\"7\",\"urgent\":false,\"note\":null}"))
+            .addLine("assertEquals(7, builder.getOrderId());")
+            .addLine("assertEquals(\"fred\", builder.getCustomer());")
+            .addLine("assertFalse(builder.isUrgent());")
+            .addLine("assertNull(builder.getNote());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testUnknownPropertyIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("%1$s mapper = new %1$s().registerModule(new %2$s());",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("mapper.readValue(\"%s\", DataType.class);",
+                escapeJava("{\"id\":1,\"bogus\":[1,2]}"))
+            .build());
+    thrown.expect(UnrecognizedPropertyException.class);
+    thrown.expectMessage("Unrecognized field \"bogus\"");
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testUnknownPropertyIgnoredIfConfigured() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("%1$s mapper = new %1$s().registerModule(new %2$s())",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("    .disable(%s.FAIL_ON_UNKNOWN_PROPERTIES);", DeserializationFeature.class)
+            .addLine("DataType value = mapper.readValue(\"%s\", DataType.class);", escapeJava(
+                "{\"bogus\":{\"a\":[1]},\"id\":1,\"urgent\":true,\"customer\":\"fred\"}"))
+            .addLine("assertEquals(\"fred\", value.getCustomer());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPropertiesSortedAlphabeticallyIfConfigured() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setOrderId(12)")
+            .addLine("    .setUrgent(true)")
+            .addLine("    .setCustomer(\"fred\")")
+            .addLine("    .addTags(\"a\")")
+            .addLine("    .build();")
+            .addLine("%1$s mapper = new %1$s().registerModule(new %2$s())",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("    .configure(%s.SORT_PROPERTIES_ALPHABETICALLY, true);",
+                MapperFeature.class)
+            .addLine("String json = mapper.writeValueAsString(value);")
+            .addLine("assertThat(json).isEqualTo(\"%s\");", escapeJava("{\"counts\":{},"
+                + "\"coupon\":null,\"customer\":\"fred\",\"id\":12,\"items\":[],\"note\":null,"
+                + "\"tags\":[\"a\"],\"urgent\":true}"))
+            .addLine("assertEquals(value, mapper.readValue(json, DataType.class));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCaseInsensitivePropertiesIfConfigured() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("%1$s mapper = new %1$s().registerModule(new %2$s())",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("    .configure(%s.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true);",
+                MapperFeature.class)
+            .addLine("DataType.Builder builder =")
+            .addLine("    mapper.readValue(\"%s\", DataType.Builder.class);",
+                escapeJava("{\"ID\":3,\"Customer\":\"fred\",\"TAGS\":[\"a\"]}"))
+            .addLine("assertEquals(3, builder.getOrderId());")
+            .addLine("assertEquals(\"fred\", builder.getCustomer());")
+            .addLine("assertThat(builder.getTags()).containsExactly(\"a\");")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testNonObjectIsMismatchedInput() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ORDER_TYPE)
+        .with(testBuilder()
+            .addLine("%1$s mapper = new %1$s().registerModule(new %2$s());",
+                ObjectMapper.class, Jdk8Module.class)
+            .addLine("mapper.readValue(\"%s\", DataType.class);", escapeJava("\"fred\""))
+            .build());
+    thrown.expect(MismatchedInputException.class);
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testOtherJacksonAnnotationsUseReflectiveBinding() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s(builder = DataType.Builder.class)", JsonDeserialize.class)
+            .addLine("public interface DataType {")
+            .addLine("  int getPropertyA();")
+            .addLine("")
+            .addLine("  @%s(ignoreUnknown = true)", JsonIgnoreProperties.class)
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("%1$s mapper = new %1$s();", ObjectMapper.class)
+            .addLine("DataType value = mapper.readValue(\"%s\", DataType.class);",
+                escapeJava("{\"propertyA\":3,\"bogus\":1}"))
+            .addLine("assertEquals(3, value.getPropertyA());")
+            .addLine("assertThat(mapper.writeValueAsString(value)).isEqualTo(\"%s\");",
+                escapeJava("{\"propertyA\":3}"))
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
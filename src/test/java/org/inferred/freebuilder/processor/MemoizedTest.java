@@ -0,0 +1,250 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.Memoized;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Behavioral tests for {@link Memoized} methods. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class MemoizedTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testCachesResultOnValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  %1$s CALLS = new %1$s();", AtomicInteger.class)
+            .addLine("")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  @%s default String getGreeting() {", Memoized.class)
+            .addLine("    CALLS.incrementAndGet();")
+            .addLine("    return \"Hello, \" + getName();")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().setName(\"fred\").build();")
+            .addLine("int calls = DataType.CALLS.get();")
+            .addLine("assertEquals(\"Hello, fred\", value.getGreeting());")
+            .addLine("assertEquals(\"Hello, fred\", value.getGreeting());")
+            .addLine("assertEquals(calls + 1, DataType.CALLS.get());")
+            .addLine("assertEquals(\"DataType{name=fred}\", value.toString());")
+            .addLine("assertEquals(new DataType.Builder().setName(\"fred\").build(), value);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCachesNullResult() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  %1$s CALLS = new %1$s();", AtomicInteger.class)
+            .addLine("")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  @%s default String getNothing() {", Memoized.class)
+            .addLine("    CALLS.incrementAndGet();")
+            .addLine("    return null;")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().setName(\"fred\").build();")
+            .addLine("int calls = DataType.CALLS.get();")
+            .addLine("assertNull(value.getNothing());")
+            .addLine("assertNull(value.getNothing());")
+            .addLine("assertEquals(calls + 1, DataType.CALLS.get());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testDoesNotCacheExceptions() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  static final %1$s CALLS = new %1$s();", AtomicInteger.class)
+            .addLine("")
+            .addLine("  public abstract int getX();")
+            .addLine("")
+            .addLine("  @%s protected long square() throws Exception {", Memoized.class)
+            .addLine("    if (CALLS.incrementAndGet() == 1) {")
+            .addLine("      throw new Exception(\"first call\");")
+            .addLine("    }")
+            .addLine("    return (long) getX() * getX();")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().setX(3).build();")
+            .addLine("try {")
+            .addLine("  value.square();")
+            .addLine("  fail(\"Expected exception\");")
+            .addLine("} catch (Exception expected) { }")
+            .addLine("assertEquals(9, value.square());")
+            .addLine("assertEquals(9, value.square());")
+            .addLine("assertEquals(2, DataType.CALLS.get());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testDoesNotCacheOnPartial() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  %1$s CALLS = new %1$s();", AtomicInteger.class)
+            .addLine("")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  @%s default String getGreeting() {", Memoized.class)
+            .addLine("    CALLS.incrementAndGet();")
+            .addLine("    return \"Hello, \" + getName();")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType partial = new DataType.Builder().setName(\"fred\").buildPartial();")
+            .addLine("int calls = DataType.CALLS.get();")
+            .addLine("assertEquals(\"Hello, fred\", partial.getGreeting());")
+            .addLine("assertEquals(\"Hello, fred\", partial.getGreeting());")
+            .addLine("assertEquals(calls + 2, DataType.CALLS.get());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGenericTypeWithToBuilder() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType<T> {")
+            .addLine("  %s<T> getItems();", List.class)
+            .addLine("")
+            .addLine("  @%s default T getFirst() {", Memoized.class)
+            .addLine("    return getItems().get(0);")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  Builder<T> toBuilder();")
+            .addLine("  class Builder<T> extends DataType_Builder<T> {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType<String> value = new DataType.Builder<String>()")
+            .addLine("    .addItems(\"a\", \"b\")")
+            .addLine("    .build();")
+            .addLine("assertEquals(\"a\", value.getFirst());")
+            .addLine("DataType<String> copy = value.toBuilder().clearItems().addItems(\"b\").build();")
+            .addLine("assertEquals(\"b\", copy.getFirst());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAbstractMethodIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  @%s String getName();", Memoized.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("@Memoized methods must not be abstract")
+            .inFile("/com/example/DataType.java")
+            .onLine(8));
+  }
+
+  @Test
+  public void testMethodWithParametersIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  @%s default String greet(String greeting) {", Memoized.class)
+            .addLine("    return greeting + \", \" + getName();")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("@Memoized methods must not take parameters")
+            .inFile("/com/example/DataType.java")
+            .onLine(10));
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
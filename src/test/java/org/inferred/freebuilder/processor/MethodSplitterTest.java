@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+/** Behavioral tests for datatypes wide enough to have their generated methods split. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class MethodSplitterTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final int WIDE_TYPE_GROUPS = 100;
+
+  /** A datatype with an int, String, list and optional property in each group. */
+  private static SourceBuilder wideType() {
+    SourceBuilder code = SourceBuilder.forTesting()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public interface DataType {");
+    for (int i = 0; i < WIDE_TYPE_GROUPS; i++) {
+      code.addLine("  int getCount%s();", i)
+          .addLine("  String getName%s();", i)
+          .addLine("  %s<String> getItems%s();", List.class, i)
+          .addLine("  @%s String getNote%s();", Nullable.class, i);
+    }
+    return code
+        .addLine("")
+        .addLine("  DataType.Builder toBuilder();")
+        .addLine("  class Builder extends DataType_Builder {}")
+        .addLine("}");
+  }
+
+  private static String wideValue() {
+    StringBuilder value = new StringBuilder("new DataType.Builder()");
+    for (int i = 0; i < WIDE_TYPE_GROUPS; i++) {
+      value.append(String.format(
+          "%n    .setCount%1$s(%1$s).setName%1$s(\"n%1$s\").addItems%1$s(\"i%1$s\")", i));
+      if (i % 2 == 0) {
+        value.append(String.format(".setNote%1$s(\"x%1$s\")", i));
+      }
+    }
+    return value.append("\n    .build()").toString();
+  }
+
+  @Test
+  public void testEqualsAndHashCode() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(wideType())
+        .with(testBuilder()
+            .addLine("DataType value = %s;", wideValue())
+            .addLine("DataType copy = value.toBuilder().build();")
+            .addLine("assertEquals(value, copy);")
+            .addLine("assertEquals(value.hashCode(), copy.hashCode());")
+            .addLine("assertNotEquals(value, value.toBuilder().setName99(\"changed\").build());")
+            .addLine("assertNotEquals(value, value.toBuilder().setNote1(\"set\").build());")
+            .addLine("assertEquals(value.toBuilder().buildPartial(),")
+            .addLine("    copy.toBuilder().buildPartial());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(wideType())
+        .with(testBuilder()
+            .addLine("DataType value = %s;", wideValue())
+            .addLine("assertEquals(value, new DataType.Builder().mergeFrom(value).build());")
+            .addLine("DataType.Builder builder = value.toBuilder();")
+            .addLine("assertEquals(value, new DataType.Builder().mergeFrom(builder).build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testToString() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(wideType())
+        .with(testBuilder()
+            .addLine("String string = %s.toString();", wideValue())
+            .addLine("assertTrue(string, string.startsWith(")
+            .addLine("    \"DataType{count0=0, name0=n0, items0=[i0], note0=x0, count1=1, \"")
+            .addLine("        + \"name1=n1, items1=[i1], count2=2\"));")
+            .addLine("assertTrue(string, string.endsWith(")
+            .addLine("    \"count99=99, name99=n99, items99=[i99]}\"));")
+            .addLine("String partial =")
+            .addLine("    new DataType.Builder().setCount1(1).buildPartial().toString();")
+            .addLine("assertTrue(partial, partial.startsWith(")
+            .addLine("    \"partial DataType{items0=[], count1=1, items1=[], items2=[]\"));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMethodsAreSplitIntoChunks() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(wideType())
+        .with(testBuilder()
+            .addLine("Class<?> builder = Class.forName(\"com.example.DataType_Builder\");")
+            .addLine("Class<?> value = Class.forName(\"com.example.DataType_Builder$Value\");")
+            .addLine("builder.getDeclaredMethod(\"mergeFromValueChunk1\", DataType.class);")
+            .addLine("builder.getDeclaredMethod(")
+            .addLine("    \"mergeFromBuilderChunk1\", DataType.Builder.class);")
+            .addLine("value.getDeclaredMethod(\"equalsChunk1\", value);")
+            .addLine("value.getDeclaredMethod(\"hashCodeChunk1\");")
+            .addLine("value.getDeclaredMethod(")
+            .addLine("    \"toStringChunk1\", StringBuilder.class, String.class);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testOrdinaryTypeIsNotSplit() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  int getCount();")
+            .addLine("  %s<String> getName();", Optional.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("Class<?> builder = Class.forName(\"com.example.DataType_Builder\");")
+            .addLine("for (java.lang.reflect.Method method : builder.getDeclaredMethods()) {")
+            .addLine("  assertFalse(method.getName(), method.getName().contains(\"Chunk\"));")
+            .addLine("}")
+            .build())
+        .compiles()
+        .withNoWarnings()
+        .allTestsPass();
+  }
+
+  @Test
+  public void testWarningForVeryWideType() {
+    SourceBuilder code = SourceBuilder.forTesting()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public interface DataType {");
+    for (int i = 0; i < 700; i++) {
+      code.addLine("  int getCount%s();", i);
+    }
+    code.addLine("")
+        .addLine("  class Builder extends DataType_Builder {}")
+        .addLine("}");
+    behaviorTester
+        .with(new Processor(features))
+        .with(code)
+        .compiles()
+        .withWarningThat(warning -> warning
+            .hasMessage("Value constructor is estimated at 11200 bytes of bytecode, close to or "
+                + "above HotSpot's 8000-byte limit for JIT compilation; consider moving some of "
+                + "the 700 properties into nested types")
+            .inFile("/com/example/DataType.java")
+            .onLine(4));
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.OffHeap;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Random;
+
+/** Behavioral tests for {@code OffHeapArray}s generated for {@link OffHeap} types. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class OffHeapTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder TICK_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s", OffHeap.class)
+      .addLine("public interface DataType {")
+      .addLine("  long getId();")
+      .addLine("  boolean isUrgent();")
+      .addLine("  double getPrice();")
+      .addLine("  char getGrade();")
+      .addLine("  short getLots();")
+      .addLine("  byte getVenue();")
+      .addLine("  float getRatio();")
+      .addLine("  int getCount();")
+      .addLine("  %s getRank();", OptionalInt.class)
+      .addLine("  %s getParent();", OptionalLong.class)
+      .addLine("  %s getScore();", OptionalDouble.class)
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testGetMatchesOnHeapValues() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TICK_TYPE)
+        .with(withRandomValues()
+            .addLine("assertEquals(values.size(), array.size());")
+            .addLine("for (int i = 0; i < values.size(); i++) {")
+            .addLine("  assertEquals(values.get(i), array.get(i));")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testRecordMatchesOnHeapValues() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TICK_TYPE)
+        .with(withRandomValues()
+            .addLine("DataType.Builder.OffHeapArray.Record record =")
+            .addLine("    new DataType.Builder.OffHeapArray.Record();")
+            .addLine("for (int i = 0; i < values.size(); i++) {")
+            .addLine("  DataType value = values.get(i);")
+            .addLine("  assertSame(record, array.read(i, record));")
+            .addLine("  assertEquals(value.getId(), record.getId());")
+            .addLine("  assertEquals(value.isUrgent(), record.isUrgent());")
+            .addLine("  assertEquals(value.getPrice(), record.getPrice(), 0.0);")
+            .addLine("  assertEquals(value.getGrade(), record.getGrade());")
+            .addLine("  assertEquals(value.getLots(), record.getLots());")
+            .addLine("  assertEquals(value.getVenue(), record.getVenue());")
+            .addLine("  assertEquals(value.getRatio(), record.getRatio(), 0.0f);")
+            .addLine("  assertEquals(value.getCount(), record.getCount());")
+            .addLine("  assertEquals(value.getRank(), record.getRank());")
+            .addLine("  assertEquals(value.getParent(), record.getParent());")
+            .addLine("  assertEquals(value.getScore(), record.getScore());")
+            .addLine("  assertEquals(value, record.materialize());")
+            .addLine("}")
+            .addLine("long[] total = { 0 };")
+            .addLine("array.forEach(each -> total[0] += each.getCount());")
+            .addLine("assertEquals(values.stream().mapToLong(DataType::getCount).sum(), total[0]);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFileChannelRoundTrip() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TICK_TYPE)
+        .with(withRandomValues()
+            .addLine("%s file = %s.createTempFile(\"records\", \".bin\");", Path.class, Files.class)
+            .addLine("try (%1$s channel = %1$s.open(file, %2$s.WRITE)) {",
+                FileChannel.class, StandardOpenOption.class)
+            .addLine("  array.writeTo(channel);")
+            .addLine("}")
+            .addLine("assertEquals(values.size() * DataType.Builder.OffHeapArray.STRIDE,")
+            .addLine("    %s.size(file));", Files.class)
+            .addLine("DataType.Builder.OffHeapArray copy = new DataType.Builder.OffHeapArray();")
+            .addLine("try (%1$s channel = %1$s.open(file)) {", FileChannel.class)
+            .addLine("  copy.readFrom(channel);")
+            .addLine("}")
+            .addLine("assertEquals(values.size(), copy.size());")
+            .addLine("for (int i = 0; i < values.size(); i++) {")
+            .addLine("  assertEquals(values.get(i), copy.get(i));")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPartialRecordIsAnIOException() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TICK_TYPE)
+        .with(testBuilder()
+            .addLine("%s file = %s.createTempFile(\"records\", \".bin\");", Path.class, Files.class)
+            .addLine("%s.write(file, new byte[DataType.Builder.OffHeapArray.STRIDE + 1]);",
+                Files.class)
+            .addLine("try (%1$s channel = %1$s.open(file)) {", FileChannel.class)
+            .addLine("  new DataType.Builder.OffHeapArray().readFrom(channel);")
+            .addLine("}")
+            .build());
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Expected whole DataType records of ");
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testIndexOutOfBounds() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TICK_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder.OffHeapArray().get(0);")
+            .build());
+    thrown.expect(IndexOutOfBoundsException.class);
+    thrown.expectMessage("Index: 0, Size: 0");
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testReferencePropertyIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", OffHeap.class)
+            .addLine("public interface DataType {")
+            .addLine("  long getId();")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("@OffHeap cannot store property name of type java.lang.String")
+            .inFile("/com/example/DataType.java")
+            .onLine(7));
+  }
+
+  @Test
+  public void testGenericTypeIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", OffHeap.class)
+            .addLine("public interface DataType<T> {")
+            .addLine("  long getId();")
+            .addLine("")
+            .addLine("  class Builder<T> extends DataType_Builder<T> {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("@OffHeap is not supported on generic types")
+            .inFile("/com/example/DataType.java")
+            .onLine(7));
+  }
+
+  /** Returns a test that starts by adding the same 1000 random values to values and array. */
+  private static TestBuilder withRandomValues() {
+    return testBuilder()
+        .addLine("%1$s<DataType> values = new %1$s<>();", ArrayList.class)
+        .addLine("DataType.Builder.OffHeapArray array = new DataType.Builder.OffHeapArray(1);")
+        .addLine("%1$s random = new %1$s(4);", Random.class)
+        .addLine("for (int i = 0; i < 1000; i++) {")
+        .addLine("  DataType.Builder builder = new DataType.Builder()")
+        .addLine("      .setId(random.nextLong())")
+        .addLine("      .setUrgent(random.nextBoolean())")
+        .addLine("      .setPrice(random.nextDouble())")
+        .addLine("      .setGrade((char) random.nextInt())")
+        .addLine("      .setLots((short) random.nextInt())")
+        .addLine("      .setVenue((byte) random.nextInt())")
+        .addLine("      .setRatio(random.nextFloat())")
+        .addLine("      .setCount(random.nextInt());")
+        .addLine("  if (random.nextBoolean()) {")
+        .addLine("    builder.setRank(random.nextInt());")
+        .addLine("  }")
+        .addLine("  if (random.nextBoolean()) {")
+        .addLine("    builder.setParent(random.nextLong());")
+        .addLine("  }")
+        .addLine("  if (random.nextBoolean()) {")
+        .addLine("    builder.setScore(random.nextDouble());")
+        .addLine("  }")
+        .addLine("  values.add(builder.build());")
+        .addLine("  array.add(builder);")
+        .addLine("}");
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.SparseLayout;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+/** Behavioral tests for {@link SparseLayout} types. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class SparseLayoutTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder SPARSE_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s(threshold = 3)", SparseLayout.class)
+      .addLine("public interface DataType {")
+      .addLine("  String getName();")
+      .addLine("  %s<String> getNickname();", Optional.class)
+      .addLine("  @%s Integer getAge();", Nullable.class)
+      .addLine("  %s<Integer> getScore();", Optional.class)
+      .addLine("")
+      .addLine("  DataType withNickname(%s<String> nickname);", Optional.class)
+      .addLine("  DataType withAge(Integer age);")
+      .addLine("  Builder toBuilder();")
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testGettersAndToString() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SPARSE_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .setAge(40)")
+            .addLine("    .setScore(7)")
+            .addLine("    .build();")
+            .addLine("assertEquals(\"fred\", value.getName());")
+            .addLine("assertEquals(%s.empty(), value.getNickname());", Optional.class)
+            .addLine("assertEquals((Integer) 40, value.getAge());")
+            .addLine("assertEquals(%s.of(7), value.getScore());", Optional.class)
+            .addLine("assertEquals(\"DataType{name=fred, age=40, score=7}\", value.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEqualsAndHashCode() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SPARSE_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .setNickname(\"freddy\")")
+            .addLine("    .build();")
+            .addLine("DataType copy = value.toBuilder().build();")
+            .addLine("assertEquals(value, copy);")
+            .addLine("assertEquals(value.hashCode(), copy.hashCode());")
+            .addLine("assertFalse(value.equals(value.withAge(40)));")
+            .addLine("assertFalse(value.equals(value.toBuilder().setScore(1).build()));")
+            .addLine("assertFalse(value.equals(value.toBuilder().setNickname(\"fr\").build()));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testWithMethodsKeepSparseProperties() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SPARSE_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .setAge(40)")
+            .addLine("    .setScore(7)")
+            .addLine("    .build()")
+            .addLine("    .withNickname(%s.of(\"freddy\"))", Optional.class)
+            .addLine("    .withAge(null);")
+            .addLine("assertEquals(%s.of(\"freddy\"), value.getNickname());", Optional.class)
+            .addLine("assertNull(value.getAge());")
+            .addLine("assertEquals(%s.of(7), value.getScore());", Optional.class)
+            .addLine("assertEquals(\"DataType{name=fred, nickname=freddy, score=7}\",")
+            .addLine("    value.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testOnlySetPropertiesAreStored() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SPARSE_TYPE)
+        .with(testBuilder()
+            .addLine("%s values = DataType.Builder.class.getClassLoader()", Field.class)
+            .addLine("    .loadClass(\"com.example.DataType_Builder$Value\")")
+            .addLine("    .getDeclaredField(\"_values\");")
+            .addLine("values.setAccessible(true);")
+            .addLine("DataType.Builder builder = new DataType.Builder().setName(\"fred\");")
+            .addLine("assertEquals(0, ((Object[]) values.get(builder.build())).length);")
+            .addLine("builder.setScore(7);")
+            .addLine("assertEquals(1, ((Object[]) values.get(builder.build())).length);")
+            .addLine("builder.setNickname(\"freddy\").setAge(40);")
+            .addLine("assertEquals(3, ((Object[]) values.get(builder.build())).length);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPartialsAreNotSparse() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SPARSE_TYPE)
+        .with(testBuilder()
+            .addLine("DataType partial = new DataType.Builder().setAge(40).buildPartial();")
+            .addLine("assertEquals((Integer) 40, partial.getAge());")
+            .addLine("assertEquals(\"partial DataType{age=40}\", partial.toString());")
+            .addLine("%s field = partial.getClass().getDeclaredField(\"age\");", Field.class)
+            .addLine("assertEquals(Integer.class, field.getType());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBelowThresholdIsNotSparse() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", SparseLayout.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getNickname();", Optional.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().setNickname(\"freddy\").build();")
+            .addLine("%s field = value.getClass().getDeclaredField(\"nickname\");", Field.class)
+            .addLine("assertEquals(String.class, field.getType());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testWideTypeUsesSeveralPresenceWords() {
+    SourceBuilder wideType = SourceBuilder.forTesting()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("@%s", SparseLayout.class)
+        .addLine("public interface DataType {");
+    for (int i = 0; i < 70; i++) {
+      wideType.addLine("  %s<String> getItem%s();", Optional.class, i);
+    }
+    wideType
+        .addLine("")
+        .addLine("  DataType withItem66(%s<String> item66);", Optional.class)
+        .addLine("")
+        .addLine("  class Builder extends DataType_Builder {}")
+        .addLine("}");
+    behaviorTester
+        .with(new Processor(features))
+        .with(wideType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setItem0(\"a\")")
+            .addLine("    .setItem63(\"b\")")
+            .addLine("    .setItem64(\"c\")")
+            .addLine("    .setItem69(\"d\")")
+            .addLine("    .build();")
+            .addLine("assertEquals(%s.of(\"a\"), value.getItem0());", Optional.class)
+            .addLine("assertEquals(%s.empty(), value.getItem1());", Optional.class)
+            .addLine("assertEquals(%s.of(\"b\"), value.getItem63());", Optional.class)
+            .addLine("assertEquals(%s.of(\"c\"), value.getItem64());", Optional.class)
+            .addLine("assertEquals(%s.of(\"d\"), value.getItem69());", Optional.class)
+            .addLine("assertEquals(\"DataType{item0=a, item63=b, item64=c, item69=d}\",")
+            .addLine("    value.toString());")
+            .addLine("DataType copy = value.withItem66(%s.of(\"e\"));", Optional.class)
+            .addLine("assertEquals(%s.of(\"e\"), copy.getItem66());", Optional.class)
+            .addLine("assertEquals(%s.of(\"d\"), copy.getItem69());", Optional.class)
+            .addLine("assertEquals(value, new DataType.Builder().mergeFrom(value).build());")
+            .addLine("value.getClass().getDeclaredField(\"_presence1\");")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.StaticFactory;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/** Behavioral tests for static {@code of} factory methods on {@code @StaticFactory} types. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class StaticFactoryMethodTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testMatchesBuiltValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", StaticFactory.class)
+            .addLine("public interface DataType {")
+            .addLine("  int getX();")
+            .addLine("  String getLabel();")
+            .addLine("  %s<String> getNote();", Optional.class)
+            .addLine("")
+            .addLine("  static DataType of(int x, String label, %s<String> note) {",
+                Optional.class)
+            .addLine("    return DataType_Builder.of(x, label, note);")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = DataType.of(3, \"fred\", %s.of(\"n\"));", Optional.class)
+            .addLine("DataType expected = new DataType.Builder()")
+            .addLine("    .setX(3)")
+            .addLine("    .setLabel(\"fred\")")
+            .addLine("    .setNote(\"n\")")
+            .addLine("    .build();")
+            .addLine("assertEquals(expected, value);")
+            .addLine("assertEquals(\"DataType{x=3, label=fred, note=n}\", value.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testRejectsNull() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", StaticFactory.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getLabel();")
+            .addLine("")
+            .addLine("  static DataType of(String label) {")
+            .addLine("    return DataType_Builder.of(label);")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("try {")
+            .addLine("  DataType.of(null);")
+            .addLine("  fail(\"Expected NPE\");")
+            .addLine("} catch (NullPointerException expected) { }")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGenericType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", StaticFactory.class)
+            .addLine("public interface DataType<K, V> {")
+            .addLine("  K getKey();")
+            .addLine("  V getValue();")
+            .addLine("")
+            .addLine("  static <K, V> DataType<K, V> of(K key, V value) {")
+            .addLine("    return DataType_Builder.of(key, value);")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  class Builder<K, V> extends DataType_Builder<K, V> {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType<String, Integer> value = DataType.of(\"a\", 1);")
+            .addLine("assertEquals(\"DataType{key=a, value=1}\", value.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testNotGeneratedWithoutAnnotation() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getTags();", List.class)
+            .addLine("  int getCount();")
+            .addLine("")
+            .addLine("  static DataType of(%s<String> tags, int count) {", List.class)
+            .addLine("    return new Builder().addAllTags(tags).setCount(count).build();")
+            .addLine("  }")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = DataType.of(%s.asList(\"a\"), 2);", Arrays.class)
+            .addLine("assertEquals(\"DataType{tags=[a], count=2}\", value.toString());")
+            .addLine("Class<?> generatedBuilder = DataType.Builder.class.getSuperclass();")
+            .addLine("for (%s method : generatedBuilder.getDeclaredMethods()) {", Method.class)
+            .addLine("  assertFalse(method.getName().equals(\"of\"));")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testOverriddenSetterSkipsFactory() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", StaticFactory.class)
+            .addLine("public interface DataType {")
+            .addLine("  int getX();")
+            .addLine("  int getY();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {")
+            .addLine("    @Override public Builder setY(int y) {")
+            .addLine("      if (y < 0) {")
+            .addLine("        throw new IllegalArgumentException();")
+            .addLine("      }")
+            .addLine("      return super.setY(y);")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("Class<?> generatedBuilder = DataType.Builder.class.getSuperclass();")
+            .addLine("for (%s method : generatedBuilder.getDeclaredMethods()) {", Method.class)
+            .addLine("  assertFalse(method.getName().equals(\"of\"));")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testOverriddenBuildMethodSkipsFactory() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", StaticFactory.class)
+            .addLine("public interface DataType {")
+            .addLine("  int getMin();")
+            .addLine("  int getMax();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {")
+            .addLine("    @Override public DataType build() {")
+            .addLine("      DataType value = super.build();")
+            .addLine("      if (value.getMin() > value.getMax()) {")
+            .addLine("        throw new IllegalStateException();")
+            .addLine("      }")
+            .addLine("      return value;")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("Class<?> generatedBuilder = DataType.Builder.class.getSuperclass();")
+            .addLine("for (%s method : generatedBuilder.getDeclaredMethods()) {", Method.class)
+            .addLine("  assertFalse(method.getName().equals(\"of\"));")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCollectionPropertySkipsFactory() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", StaticFactory.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getTags();", List.class)
+            .addLine("  int getCount();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("Class<?> generatedBuilder = DataType.Builder.class.getSuperclass();")
+            .addLine("for (%s method : generatedBuilder.getDeclaredMethods()) {", Method.class)
+            .addLine("  assertFalse(method.getName().equals(\"of\"));")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/** Behavioral tests for the generated static {@code collector} method. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class StreamCollectorTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Shared public BehaviorTester behaviorTester;
+
+  private static final SourceBuilder TOTALS_TYPE = SourceBuilder.forTesting()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface DataType {")
+      .addLine("  %s<Integer> getItems();", List.class)
+      .addLine("  %s<Integer, String> getNames();", Map.class)
+      .addLine("  int getLast();")
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}");
+
+  @Test
+  public void testSequentialStream() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TOTALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = %s.range(0, 5).boxed()", IntStream.class)
+            .addLine("    .collect(DataType.Builder.collector((builder, i) -> builder")
+            .addLine("        .addItems(i)")
+            .addLine("        .putNames(i, \"n\" + i)")
+            .addLine("        .setLast(i)));")
+            .addLine("assertThat(value.getItems()).containsExactly(0, 1, 2, 3, 4).inOrder();")
+            .addLine("assertThat(value.getNames()).containsEntry(3, \"n3\");")
+            .addLine("assertEquals(4, value.getLast());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testParallelStreamMatchesSequentialFold() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(TOTALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = %s.range(0, 100000).parallel().boxed()", IntStream.class)
+            .addLine("    .collect(DataType.Builder.collector((builder, i) -> builder")
+            .addLine("        .addItems(i)")
+            .addLine("        .putNames(i, \"n\" + i)")
+            .addLine("        .setLast(i)));")
+            .addLine("assertEquals(100000, value.getItems().size());")
+            .addLine("for (int i = 0; i < 100000; i++) {")
+            .addLine("  assertEquals(i, (int) value.getItems().get(i));")
+            .addLine("}")
+            .addLine("assertEquals(100000, value.getNames().size());")
+            .addLine("assertEquals(99999, value.getLast());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testUserDeclaredCollectorMethodKept() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  int getX();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {")
+            .addLine("    public static String collector() {")
+            .addLine("      return \"mine\";")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("assertEquals(\"mine\", DataType.Builder.collector());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testDatatypeNamedT() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface T {")
+            .addLine("  int getLast();")
+            .addLine("")
+            .addLine("  class Builder extends T_Builder {}")
+            .addLine("}"))
+        .with(new TestBuilder()
+            .addImport("com.example.T")
+            .addLine("T value = %s.range(0, 5).boxed()", IntStream.class)
+            .addLine("    .collect(T.Builder.collector((builder, i) -> builder.setLast(i)));")
+            .addLine("assertEquals(4, value.getLast());")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2014 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.source.SourceBuilder;
+import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.source.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.source.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+/** Behavioral tests for user-declared {@code withX} methods. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class WithMethodTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testReplacesPropertyAndKeepsOthers() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("  int getAge();")
+            .addLine("  %s<String> getTags();", List.class)
+            .addLine("")
+            .addLine("  DataType withName(String name);")
+            .addLine("  DataType withAge(int age);")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .setAge(40)")
+            .addLine("    .addTags(\"a\", \"b\")")
+            .addLine("    .build();")
+            .addLine("DataType copy = value.withName(\"bob\").withAge(41);")
+            .addLine("assertEquals(\"DataType{name=bob, age=41, tags=[a, b]}\", copy.toString());")
+            .addLine("assertSame(value.getTags(), copy.getTags());")
+            .addLine("assertEquals(\"fred\", value.getName());")
+            .addLine("assertEquals(40, value.getAge());")
+            .addLine("assertEquals(value, copy.withName(\"fred\").withAge(40));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testRejectsNull() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  DataType withName(String name);")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().setName(\"fred\").build();")
+            .addLine("try {")
+            .addLine("  value.withName(null);")
+            .addLine("  fail(\"Expected NPE\");")
+            .addLine("} catch (NullPointerException expected) { }")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testOptionalAndNullableProperties() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getNickname();", Optional.class)
+            .addLine("  @%s String getTitle();", Nullable.class)
+            .addLine("")
+            .addLine("  DataType withNickname(%s<String> nickname);", Optional.class)
+            .addLine("  DataType withTitle(String title);")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().build()")
+            .addLine("    .withNickname(%s.of(\"fred\"))", Optional.class)
+            .addLine("    .withTitle(\"Dr\");")
+            .addLine("assertEquals(\"DataType{nickname=fred, title=Dr}\", value.toString());")
+            .addLine("value = value.withNickname(%s.empty()).withTitle(null);", Optional.class)
+            .addLine("assertEquals(\"DataType{}\", value.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testRunsOverriddenSetter() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("  int getAge();")
+            .addLine("")
+            .addLine("  DataType withName(String name);")
+            .addLine("  DataType withAge(int age);")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {")
+            .addLine("    @Override public Builder setName(String name) {")
+            .addLine("      return super.setName(name.trim());")
+            .addLine("    }")
+            .addLine("")
+            .addLine("    @Override public Builder setAge(int age) {")
+            .addLine("      if (age < 0) {")
+            .addLine("        throw new IllegalArgumentException(\"age must be non-negative\");")
+            .addLine("      }")
+            .addLine("      return super.setAge(age);")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(\"fred\")")
+            .addLine("    .setAge(40)")
+            .addLine("    .build();")
+            .addLine("assertEquals(\"bob\", value.withName(\"  bob \").getName());")
+            .addLine("value.withAge(-1);")
+            .build());
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("age must be non-negative");
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testRunsOverriddenBuildMethod() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  int getMin();")
+            .addLine("  int getMax();")
+            .addLine("")
+            .addLine("  DataType withMin(int min);")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {")
+            .addLine("    @Override public DataType build() {")
+            .addLine("      DataType value = super.build();")
+            .addLine("      if (value.getMin() > value.getMax()) {")
+            .addLine("        throw new IllegalStateException(\"min must not exceed max\");")
+            .addLine("      }")
+            .addLine("      return value;")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setMin(1)")
+            .addLine("    .setMax(10)")
+            .addLine("    .build();")
+            .addLine("assertEquals(5, value.withMin(5).getMin());")
+            .addLine("value.withMin(11);")
+            .build());
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("min must not exceed max");
+    behaviorTester.runTest();
+  }
+
+  @Test
+  public void testOverriddenSetterWithoutNoArgsBuilderConstructorIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  DataType withName(String name);")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {")
+            .addLine("    Builder(String name) {")
+            .addLine("      setName(name);")
+            .addLine("    }")
+            .addLine("")
+            .addLine("    @Override public Builder setName(String name) {")
+            .addLine("      return super.setName(name.trim());")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("No accessible no-args Builder constructor available to run the "
+                + "overridden setter in withName")
+            .inFile("/com/example/DataType.java")
+            .onLine(9));
+  }
+
+  @Test
+  public void testOverriddenBuildMethodWithoutNoArgsBuilderConstructorIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  DataType withName(String name);")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {")
+            .addLine("    Builder(String name) {")
+            .addLine("      setName(name);")
+            .addLine("    }")
+            .addLine("")
+            .addLine("    @Override public DataType build() {")
+            .addLine("      return super.build();")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("No accessible no-args Builder constructor available to run the "
+                + "overridden build method in withName")
+            .inFile("/com/example/DataType.java")
+            .onLine(9));
+  }
+
+  @Test
+  public void testPartial() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("  int getAge();")
+            .addLine("")
+            .addLine("  DataType withAge(int age);")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType partial = new DataType.Builder().setName(\"fred\").buildPartial();")
+            .addLine("DataType copy = partial.withAge(40);")
+            .addLine("assertEquals(\"partial DataType{name=fred}\", partial.toString());")
+            .addLine("assertEquals(\"partial DataType{name=fred, age=40}\", copy.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGenericType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType<T> {")
+            .addLine("  T getItem();")
+            .addLine("")
+            .addLine("  DataType<T> withItem(T item);")
+            .addLine("")
+            .addLine("  class Builder<T> extends DataType_Builder<T> {}")
+            .addLine("}"))
+        .with(testBuilder()
+            .addLine("DataType<String> value = new DataType.Builder<String>()")
+            .addLine("    .setItem(\"a\")")
+            .addLine("    .build()")
+            .addLine("    .withItem(\"b\");")
+            .addLine("assertEquals(\"b\", value.getItem());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testUnknownPropertyIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("")
+            .addLine("  DataType withAge(int age);")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("withAge does not match any property")
+            .inFile("/com/example/DataType.java")
+            .onLine(9));
+  }
+
+  @Test
+  public void testCollectionPropertyIsAnError() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SourceBuilder.forTesting()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getTags();", List.class)
+            .addLine("")
+            .addLine("  DataType withTags(%s<String> tags);", List.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}"))
+        .failsToCompile()
+        .withErrorThat(error -> error
+            .hasMessage("withTags is not supported for collection or buildable properties")
+            .inFile("/com/example/DataType.java")
+            .onLine(10));
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
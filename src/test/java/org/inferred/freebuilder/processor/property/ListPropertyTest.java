@@ -247,6 +247,35 @@ public class ListPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testAddAllParallelStream() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addAllItems(Stream.of(%s).parallel())", elements.examples(0, 1, 2, 3))
+            .addLine("    .build();")
+            .addLine("assertThat(value.%s).containsExactly(%s).inOrder();",
+                convention.get(), elements.examples(0, 1, 2, 3))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddAllParallelStream_null() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("new DataType.Builder()")
+            .addLine("    .addAllItems(Stream.of(%s, (%s) null).parallel());",
+                elements.example(0), elements.type())
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testAddAllIntStream() {
     assumeTrue(elements == INTEGERS);
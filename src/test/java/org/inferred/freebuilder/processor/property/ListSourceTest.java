@@ -32,6 +32,7 @@ import org.inferred.freebuilder.processor.model.GenericTypeElementImpl.GenericTy
 import org.inferred.freebuilder.processor.source.FunctionalType;
 import org.inferred.freebuilder.processor.source.QualifiedName;
 import org.inferred.freebuilder.processor.source.feature.GuavaLibrary;
+import org.inferred.freebuilder.processor.source.feature.RuntimeLibrary;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -57,6 +58,8 @@ public class ListSourceTest {
         "import java.util.Spliterator;",
         "import java.util.function.Consumer;",
         "import java.util.stream.BaseStream;",
+        "import java.util.stream.Collectors;",
+        "import java.util.stream.StreamSupport;",
         "",
         "/** Auto-generated superclass of {@link Person.Builder}, derived from the API of "
             + "{@link Person}. */",
@@ -126,6 +129,11 @@ public class ListSourceTest {
         "   * @throws NullPointerException if {@code elements} is null or contains a null element",
         "   */",
         "  public Person.Builder addAllName(BaseStream<? extends String, ?> elements) {",
+        "    if (elements.isParallel()) {",
+        "      return addAllName(StreamSupport.stream(elements.spliterator(), true)",
+        "          .collect(Collectors.toList())",
+        "          .spliterator());",
+        "    }",
         "    return addAllName(elements.spliterator());",
         "  }",
         "",
@@ -227,6 +235,11 @@ public class ListSourceTest {
         "   * @throws NullPointerException if {@code elements} is null or contains a null element",
         "   */",
         "  public Person.Builder addAllAge(BaseStream<? extends Integer, ?> elements) {",
+        "    if (elements.isParallel()) {",
+        "      return addAllAge(StreamSupport.stream(elements.spliterator(), true)",
+        "          .collect(Collectors.toList())",
+        "          .spliterator());",
+        "    }",
         "    return addAllAge(elements.spliterator());",
         "  }",
         "",
@@ -461,6 +474,426 @@ public class ListSourceTest {
         "}");
   }
 
+  @Test
+  public void test_runtimeLibrary() {
+    assertThat(builder()).given(RuntimeLibrary.AVAILABLE).generates(
+        "// Autogenerated code. Do not modify.",
+        "package com.example;",
+        "",
+        "import com.example.Person;",
+        "import java.util.ArrayList;",
+        "import java.util.Arrays;",
+        "import java.util.Collection;",
+        "import java.util.Collections;",
+        "import java.util.List;",
+        "import java.util.Objects;",
+        "import java.util.Spliterator;",
+        "import java.util.function.Consumer;",
+        "import java.util.stream.BaseStream;",
+        "import java.util.stream.Collectors;",
+        "import java.util.stream.StreamSupport;",
+        "import org.inferred.freebuilder.runtime.UnmodifiableCollections;",
+        "",
+        "/** Auto-generated superclass of {@link Person.Builder}, derived from the API of "
+            + "{@link Person}. */",
+        "abstract class Person_Builder {",
+        "",
+        "  /**",
+        "   * Creates a new builder using {@code value} as a template.",
+        "   *",
+        "   * <p>If {@code value} is a partial, the builder will return more partials.",
+        "   */",
+        "  public static Person.Builder from(Person value) {",
+        "    if (value instanceof Rebuildable) {",
+        "      return ((Rebuildable) value).toBuilder();",
+        "    } else {",
+        "      return new Person.Builder().mergeFrom(value);",
+        "    }",
+        "  }",
+        "",
+        "  private final ArrayList<String> name = new ArrayList<>();",
+        "  private final ArrayList<Integer> age = new ArrayList<>();",
+        "",
+        "  /**",
+        "   * Adds {@code element} to the list to be returned from {@link Person#name()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code element} is null",
+        "   */",
+        "  public Person.Builder addName(String element) {",
+        "    name.add(Objects.requireNonNull(element));",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from "
+            + "{@link Person#name()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a null element",
+        "   */",
+        "  public Person.Builder addName(String... elements) {",
+        "    return addAllName(Arrays.asList(elements));",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from "
+            + "{@link Person#name()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a null element",
+        "   */",
+        "  public Person.Builder addAllName(Spliterator<? extends String> elements) {",
+        "    if ((elements.characteristics() & Spliterator.SIZED) != 0) {",
+        "      long elementsSize = elements.estimateSize();",
+        "      if (elementsSize > 0 && elementsSize <= Integer.MAX_VALUE) {",
+        "        name.ensureCapacity(name.size() + (int) elementsSize);",
+        "      }",
+        "    }",
+        "    elements.forEachRemaining(this::addName);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from "
+            + "{@link Person#name()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a null element",
+        "   */",
+        "  public Person.Builder addAllName(BaseStream<? extends String, ?> elements) {",
+        "    if (elements.isParallel()) {",
+        "      return addAllName(StreamSupport.stream(elements.spliterator(), true)",
+        "          .collect(Collectors.toList())",
+        "          .spliterator());",
+        "    }",
+        "    return addAllName(elements.spliterator());",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from "
+            + "{@link Person#name()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a null element",
+        "   */",
+        "  public Person.Builder addAllName(Iterable<? extends String> elements) {",
+        "    return addAllName(elements.spliterator());",
+        "  }",
+        "",
+        "  /**",
+        "   * Applies {@code mutator} to the list to be returned from {@link Person#name()}.",
+        "   *",
+        "   * <p>This method mutates the list in-place. {@code mutator} is a void consumer, so any "
+            + "value",
+        "   * returned from a lambda will be ignored. Take care not to call pure functions, like "
+            + "{@link",
+        "   * Collection#stream()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code mutator} is null",
+        "   */",
+        "  public Person.Builder mutateName(Consumer<? super List<String>> mutator) {",
+        "    // If addName is overridden, this method will be updated to delegate to it",
+        "    mutator.accept(name);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Clears the list to be returned from {@link Person#name()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder clearName() {",
+        "    name.clear();",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns an unmodifiable view of the list that will be returned by "
+            + "{@link Person#name()}.",
+        "   * Changes to this builder will be reflected in the view.",
+        "   */",
+        "  public List<String> name() {",
+        "    return Collections.unmodifiableList(name);",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds {@code element} to the list to be returned from {@link Person#age()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder addAge(int element) {",
+        "    age.add(element);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from "
+            + "{@link Person#age()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder addAge(int... elements) {",
+        "    age.ensureCapacity(age.size() + elements.length);",
+        "    for (int element : elements) {",
+        "      addAge(element);",
+        "    }",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from "
+            + "{@link Person#age()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a null element",
+        "   */",
+        "  public Person.Builder addAllAge(Spliterator<? extends Integer> elements) {",
+        "    if ((elements.characteristics() & Spliterator.SIZED) != 0) {",
+        "      long elementsSize = elements.estimateSize();",
+        "      if (elementsSize > 0 && elementsSize <= Integer.MAX_VALUE) {",
+        "        age.ensureCapacity(age.size() + (int) elementsSize);",
+        "      }",
+        "    }",
+        "    elements.forEachRemaining(this::addAge);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from "
+            + "{@link Person#age()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a null element",
+        "   */",
+        "  public Person.Builder addAllAge(BaseStream<? extends Integer, ?> elements) {",
+        "    if (elements.isParallel()) {",
+        "      return addAllAge(StreamSupport.stream(elements.spliterator(), true)",
+        "          .collect(Collectors.toList())",
+        "          .spliterator());",
+        "    }",
+        "    return addAllAge(elements.spliterator());",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from "
+            + "{@link Person#age()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a null element",
+        "   */",
+        "  public Person.Builder addAllAge(Iterable<? extends Integer> elements) {",
+        "    return addAllAge(elements.spliterator());",
+        "  }",
+        "",
+        "  /**",
+        "   * Applies {@code mutator} to the list to be returned from {@link Person#age()}.",
+        "   *",
+        "   * <p>This method mutates the list in-place. {@code mutator} is a void consumer, so any "
+            + "value",
+        "   * returned from a lambda will be ignored. Take care not to call pure functions, like "
+            + "{@link",
+        "   * Collection#stream()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code mutator} is null",
+        "   */",
+        "  public Person.Builder mutateAge(Consumer<? super List<Integer>> mutator) {",
+        "    // If addAge is overridden, this method will be updated to delegate to it",
+        "    mutator.accept(age);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Clears the list to be returned from {@link Person#age()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder clearAge() {",
+        "    age.clear();",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns an unmodifiable view of the list that will be returned by "
+            + "{@link Person#age()}. Changes",
+        "   * to this builder will be reflected in the view.",
+        "   */",
+        "  public List<Integer> age() {",
+        "    return Collections.unmodifiableList(age);",
+        "  }",
+        "",
+        "  /**",
+        "   * Copies values from {@code value}, appending to collections.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder mergeFrom(Person value) {",
+        "    addAllName(value.name());",
+        "    addAllAge(value.age());",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Copies values from {@code template}, appending to collections.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
+        "    Person_Builder base = template;",
+        "    addAllName(base.name);",
+        "    addAllAge(base.age);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Resets the state of this builder.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder clear() {",
+        "    clearName();",
+        "    clearAge();",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /** Returns a newly-created {@link Person} based on the contents of this "
+            + "{@code Builder}. */",
+        "  public Person build() {",
+        "    return new Value(this);",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns a newly-created partial {@link Person} for use in unit tests. "
+            + "State checking will not",
+        "   * be performed.",
+        "   *",
+        "   * <p>The builder returned by {@link Person.Builder#from(Person)} will propagate the "
+            + "partial",
+        "   * status of its input, overriding {@link Person.Builder#build() build()} to return "
+            + "another",
+        "   * partial. This allows for robust tests of modify-rebuild code.",
+        "   *",
+        "   * <p>Partials should only ever be used in tests. "
+            + "They permit writing robust test cases that won't",
+        "   * fail if this type gains more application-level constraints "
+            + "(e.g. new required fields) in",
+        "   * future. If you require partially complete values in production code, "
+            + "consider using a Builder.",
+        "   */",
+        "  public Person buildPartial() {",
+        "    return new Partial(this);",
+        "  }",
+        "",
+        "  private abstract static class Rebuildable extends Person {",
+        "    public abstract Person.Builder toBuilder();",
+        "  }",
+        "",
+        "  private static final class Value extends Rebuildable {",
+        "    private final List<String> name;",
+        "    private final List<Integer> age;",
+        "",
+        "    private Value(Person_Builder builder) {",
+        "      this.name = UnmodifiableCollections.listCopyOf(builder.name);",
+        "      this.age = UnmodifiableCollections.listCopyOf(builder.age);",
+        "    }",
+        "",
+        "    @Override",
+        "    public List<String> name() {",
+        "      return name;",
+        "    }",
+        "",
+        "    @Override",
+        "    public List<Integer> age() {",
+        "      return age;",
+        "    }",
+        "",
+        "    @Override",
+        "    public Person.Builder toBuilder() {",
+        "      Person_Builder builder = new Person.Builder();",
+        "      builder.name.addAll(name);",
+        "      builder.age.addAll(age);",
+        "      return (Person.Builder) builder;",
+        "    }",
+        "",
+        "    @Override",
+        "    public boolean equals(Object obj) {",
+        "      if (!(obj instanceof Value)) {",
+        "        return false;",
+        "      }",
+        "      Value other = (Value) obj;",
+        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "    }",
+        "",
+        "    @Override",
+        "    public int hashCode() {",
+        "      return Objects.hash(name, age);",
+        "    }",
+        "",
+        "    @Override",
+        "    public String toString() {",
+        "      return \"Person{name=\" + name + \", age=\" + age + \"}\";",
+        "    }",
+        "  }",
+        "",
+        "  private static final class Partial extends Rebuildable {",
+        "    private final List<String> name;",
+        "    private final List<Integer> age;",
+        "",
+        "    Partial(Person_Builder builder) {",
+        "      this.name = UnmodifiableCollections.listCopyOf(builder.name);",
+        "      this.age = UnmodifiableCollections.listCopyOf(builder.age);",
+        "    }",
+        "",
+        "    @Override",
+        "    public List<String> name() {",
+        "      return name;",
+        "    }",
+        "",
+        "    @Override",
+        "    public List<Integer> age() {",
+        "      return age;",
+        "    }",
+        "",
+        "    private static class PartialBuilder extends Person.Builder {",
+        "      @Override",
+        "      public Person build() {",
+        "        return buildPartial();",
+        "      }",
+        "    }",
+        "",
+        "    @Override",
+        "    public Person.Builder toBuilder() {",
+        "      Person_Builder builder = new PartialBuilder();",
+        "      builder.name.addAll(name);",
+        "      builder.age.addAll(age);",
+        "      return (Person.Builder) builder;",
+        "    }",
+        "",
+        "    @Override",
+        "    public boolean equals(Object obj) {",
+        "      if (!(obj instanceof Partial)) {",
+        "        return false;",
+        "      }",
+        "      Partial other = (Partial) obj;",
+        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "    }",
+        "",
+        "    @Override",
+        "    public int hashCode() {",
+        "      return Objects.hash(name, age);",
+        "    }",
+        "",
+        "    @Override",
+        "    public String toString() {",
+        "      return \"partial Person{name=\" + name + \", age=\" + age + \"}\";",
+        "    }",
+        "  }",
+        "}");
+  }
+
   @Test
   public void test_guava() {
     assertThat(builder()).given(GuavaLibrary.AVAILABLE).generates(
@@ -480,6 +913,8 @@ public class ListSourceTest {
         "import java.util.Spliterator;",
         "import java.util.function.Consumer;",
         "import java.util.stream.BaseStream;",
+        "import java.util.stream.Collectors;",
+        "import java.util.stream.StreamSupport;",
         "",
         "/** Auto-generated superclass of {@link Person.Builder}, "
             + "derived from the API of {@link Person}. */",
@@ -555,6 +990,11 @@ public class ListSourceTest {
         "   * @throws NullPointerException if {@code elements} is null or contains a null element",
         "   */",
         "  public Person.Builder addAllName(BaseStream<? extends String, ?> elements) {",
+        "    if (elements.isParallel()) {",
+        "      return addAllName(StreamSupport.stream(elements.spliterator(), true)",
+        "          .collect(Collectors.toList())",
+        "          .spliterator());",
+        "    }",
         "    return addAllName(elements.spliterator());",
         "  }",
         "",
@@ -668,6 +1108,11 @@ public class ListSourceTest {
         "   * @throws NullPointerException if {@code elements} is null or contains a null element",
         "   */",
         "  public Person.Builder addAllAge(BaseStream<? extends Integer, ?> elements) {",
+        "    if (elements.isParallel()) {",
+        "      return addAllAge(StreamSupport.stream(elements.spliterator(), true)",
+        "          .collect(Collectors.toList())",
+        "          .spliterator());",
+        "    }",
         "    return addAllAge(elements.spliterator());",
         "  }",
         "",
@@ -610,6 +610,37 @@ public class PrimitiveOptionalPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testPartialEquality() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(datatype)
+        .with(testBuilder()
+            .addLine("new %s()", EqualsTester.class)
+            .addLine("    .addEqualityGroup(")
+            .addLine("        DataType.builder().buildPartial(),")
+            .addLine("        DataType.builder()")
+            .addLine("            .%s(%s)", convention.set("item"), optional.example(0))
+            .addLine("            .clearItem()")
+            .addLine("            .buildPartial())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        DataType.builder()")
+            .addLine("            .%s(%s)", convention.set("item"), optional.example(0))
+            .addLine("            .buildPartial(),")
+            .addLine("        DataType.builder()")
+            .addLine("            .%s(%s)", convention.set("item"), optional.example(0))
+            .addLine("            .buildPartial()")
+            .addLine("            .toBuilder()")
+            .addLine("            .buildPartial())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        DataType.builder()")
+            .addLine("            .%s(%s)", convention.set("item"), optional.example(1))
+            .addLine("            .buildPartial())")
+            .addLine("    .testEquals();")
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testValueToString() {
     behaviorTester
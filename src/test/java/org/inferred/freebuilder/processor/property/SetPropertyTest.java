@@ -341,6 +341,21 @@ public class SetPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testAddAllParallelStream() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(setPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addAllItems(Stream.of(%s).parallel())", elements.examples(1, 0, 1))
+            .addLine("    .build();")
+            .addLine("assertThat(value.%s).containsExactly(%s).inOrder();",
+                convention.get(), elements.examples(set.inOrder(1, 0)))
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testAddAllIntStream() {
     assumeTrue(elements == ElementFactory.INTEGERS);
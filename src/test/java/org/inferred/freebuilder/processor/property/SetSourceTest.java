@@ -55,6 +55,8 @@ public class SetSourceTest {
         "import java.util.Spliterator;",
         "import java.util.function.Consumer;",
         "import java.util.stream.BaseStream;",
+        "import java.util.stream.Collectors;",
+        "import java.util.stream.StreamSupport;",
         "",
         "/** Auto-generated superclass of {@link Person.Builder}, "
             + "derived from the API of {@link Person}. */",
@@ -123,6 +125,11 @@ public class SetSourceTest {
         "   * @throws NullPointerException if {@code elements} is null or contains a null element",
         "   */",
         "  public Person.Builder addAllName(BaseStream<? extends String, ?> elements) {",
+        "    if (elements.isParallel()) {",
+        "      return addAllName(StreamSupport.stream(elements.spliterator(), true)",
+        "          .collect(Collectors.toList())",
+        "          .spliterator());",
+        "    }",
         "    return addAllName(elements.spliterator());",
         "  }",
         "",
@@ -368,6 +375,8 @@ public class SetSourceTest {
         "import java.util.Spliterator;",
         "import java.util.function.Consumer;",
         "import java.util.stream.BaseStream;",
+        "import java.util.stream.Collectors;",
+        "import java.util.stream.StreamSupport;",
         "",
         "/** Auto-generated superclass of {@link Person.Builder}, "
             + "derived from the API of {@link Person}. */",
@@ -440,6 +449,11 @@ public class SetSourceTest {
         "   * @throws NullPointerException if {@code elements} is null or contains a null element",
         "   */",
         "  public Person.Builder addAllName(BaseStream<? extends String, ?> elements) {",
+        "    if (elements.isParallel()) {",
+        "      return addAllName(StreamSupport.stream(elements.spliterator(), true)",
+        "          .collect(Collectors.toList())",
+        "          .spliterator());",
+        "    }",
         "    return addAllName(elements.spliterator());",
         "  }",
         "",
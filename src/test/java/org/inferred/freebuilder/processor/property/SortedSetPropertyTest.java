@@ -268,6 +268,67 @@ public class SortedSetPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testMergeFromSelf() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(datatype)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .addItems(\"11\", \"3\", \"222\");")
+            .addLine("builder.mergeFrom(builder);")
+            .addLine("assertThat(builder.build().items())")
+            .addLine("    .containsExactly(\"11\", \"222\", \"3\").inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuilderGetterReflectsElementsAddedAfterwards() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(datatype)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .addItems(\"11\", \"3\");")
+            .addLine("%s<String> view = builder.items();", SortedSet.class)
+            .addLine("builder.addItems(\"222\");")
+            .addLine("assertThat(view).containsExactly(\"11\", \"222\", \"3\").inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBulkAddRetainsFirstOfEquivalentElements() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(datatype)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setComparatorForItems(NATURAL_ORDER)")
+            .addLine("    .addItems(\"3\", \"011\", \"03\", \"11\", \"222\")")
+            .addLine("    .build();")
+            .addLine("assertThat(value.items())")
+            .addLine("    .containsExactly(\"3\", \"011\", \"222\").inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testSetComparatorFailsAfterBulkAdd() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Comparator already set for items");
+    behaviorTester
+        .with(new Processor(features))
+        .with(datatype)
+        .with(testBuilder()
+            .addLine("new DataType.Builder()")
+            .addLine("    .addItems(\"11\", \"3\")")
+            .addLine("    .setComparatorForItems(NATURAL_ORDER);")
+            .build())
+        .runTest();
+  }
+
   private void assumeGuavaAvailable() {
     assumeTrue("Guava available", features.get(GUAVA).isAvailable());
   }
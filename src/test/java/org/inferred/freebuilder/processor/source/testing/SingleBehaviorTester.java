@@ -21,6 +21,7 @@ import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.util.concurrent.Uninterruptibles.joinUninterruptibly;
 
 import static org.inferred.freebuilder.processor.source.feature.GuavaLibrary.GUAVA;
+import static org.inferred.freebuilder.processor.source.feature.RuntimeLibrary.RUNTIME;
 import static org.inferred.freebuilder.processor.source.feature.SourceLevel.SOURCE_LEVEL;
 
 import static java.util.stream.Collectors.toSet;
@@ -36,6 +37,7 @@ import com.google.common.collect.Multiset;
 import com.google.common.io.ByteStreams;
 
 import org.inferred.freebuilder.processor.source.feature.FeatureSet;
+import org.inferred.freebuilder.processor.source.feature.RuntimeLibrary;
 import org.inferred.freebuilder.processor.source.feature.SourceLevel;
 import org.inferred.freebuilder.processor.source.testing.TestBuilder.TestFile;
 import org.inferred.freebuilder.processor.source.testing.TestBuilder.TestSource;
@@ -80,6 +82,9 @@ class SingleBehaviorTester implements BehaviorTester {
     if (features.get(GUAVA).isAvailable()) {
       permittedPackages.add("com.google.common");
     }
+    if (features.get(RUNTIME).isAvailable()) {
+      permittedPackages.add(RuntimeLibrary.PACKAGE);
+    }
   }
 
   @Override